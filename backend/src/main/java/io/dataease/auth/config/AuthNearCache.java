@@ -0,0 +1,197 @@
+package io.dataease.auth.config;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dataease.service.sys.DistributedAuthCacheService;
+import org.apache.commons.lang3.ObjectUtils;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 用户、角色、权限的本地缓存
+ * 按估算的字节数限制容量，不再溢出到磁盘；使用 redis 缓存时作为 redis 的近端缓存，
+ * 本地未命中时读取 redis，写入和失效同时作用于 redis，并广播通知其他节点失效本地副本
+ */
+public class AuthNearCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final Cache<Object, Object> local;
+
+    private final org.springframework.cache.Cache remote;
+
+    private final DistributedAuthCacheService distributedAuthCacheService;
+
+    /**
+     * 每次失效递增，预热开始后版本号发生变化的结果不写入
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param remote 远端缓存，为空时只使用本地缓存
+     */
+    public AuthNearCache(String name, long maxBytes, long ttl, long tti, org.springframework.cache.Cache remote, DistributedAuthCacheService distributedAuthCacheService) {
+        super(true);
+        this.name = name;
+        this.remote = remote;
+        this.distributedAuthCacheService = distributedAuthCacheService;
+        this.local = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((key, value) -> estimate(key) + estimate(value))
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .expireAfterAccess(tti, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object value = local.getIfPresent(key);
+        if (value != null || remote == null) {
+            return value;
+        }
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        value = toStoreValue(wrapper.get());
+        local.put(key, value);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * 预热本地副本，本地或 redis 中已有值时不加载；只写本节点，不写 redis 也不广播，
+     * 加载期间发生过失效时放弃写入
+     */
+    public void warmUp(Object key, Callable<?> loader) throws Exception {
+        if (lookup(key) != null) {
+            return;
+        }
+        long start = version.get();
+        Object value = toStoreValue(loader.call());
+        if (version.get() != start) {
+            return;
+        }
+        local.asMap().putIfAbsent(key, value);
+        // 写入前后之间发生的失效可能没有看到这个值
+        if (version.get() != start) {
+            local.asMap().remove(key, value);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        local.put(key, toStoreValue(value));
+        if (remote != null) {
+            remote.put(key, value);
+            broadcast(key);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        version.incrementAndGet();
+        local.invalidate(key);
+        if (remote != null) {
+            remote.evict(key);
+            broadcast(key);
+        }
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        version.incrementAndGet();
+        boolean present = local.asMap().remove(key) != null;
+        if (remote != null) {
+            present = remote.evictIfPresent(key) || present;
+            broadcast(key);
+        }
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        version.incrementAndGet();
+        local.invalidateAll();
+        if (remote != null) {
+            remote.clear();
+            broadcast(null);
+        }
+    }
+
+    /**
+     * 只失效本节点的副本，key 为空时清空全部
+     */
+    public void invalidateLocal(Object key) {
+        version.incrementAndGet();
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    private void broadcast(Object key) {
+        if (ObjectUtils.isNotEmpty(distributedAuthCacheService)) {
+            distributedAuthCacheService.pushBroadcast(name, key == null ? null : String.valueOf(key));
+        }
+    }
+
+    /**
+     * 粗略估算对象占用的字节数，字符串按 UTF-16 计算，其他对象按固定大小计算
+     */
+    private static int estimate(Object value) {
+        if (value == null) {
+            return 16;
+        }
+        if (value instanceof CharSequence) {
+            return 40 + ((CharSequence) value).length() * 2;
+        }
+        if (value instanceof Collection) {
+            int size = 32;
+            for (Object item : (Collection<?>) value) {
+                size += 8 + estimate(item);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            int size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimate(entry.getKey()) + estimate(entry.getValue());
+            }
+            return size;
+        }
+        return 512;
+    }
+}
@@ -0,0 +1,132 @@
+package io.dataease.auth.service.impl;
+
+import io.dataease.auth.config.AuthNearCache;
+import io.dataease.auth.entity.SysUserEntity;
+import io.dataease.commons.constants.AuthConstants;
+import io.dataease.commons.constants.SysLogConstants;
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.ext.AuthMapper;
+import io.dataease.service.sys.DistributedAuthCacheService;
+import org.apache.commons.collections4.CollectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户、角色、权限缓存
+ * 替代 ehcache 中容量只有 100 条、超出后溢出到磁盘的缓存区域，@Cacheable 等注解和 CacheUtils 对这三个缓存的访问都会转到这里；
+ * 启动后在后台预热最近登录过的用户
+ */
+@Service
+public class AuthCacheService {
+
+    @Value("${dataease.auth-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${dataease.auth-cache.ttl:3600}")
+    private long ttl;
+
+    @Value("${dataease.auth-cache.tti:1800}")
+    private long tti;
+
+    @Value("${dataease.auth-cache.warm-up-size:500}")
+    private int warmUpSize;
+
+    @Value("${dataease.auth-cache.warm-up-days:7}")
+    private int warmUpDays;
+
+    @Resource
+    private CacheManager cacheManager;
+    @Resource
+    private AuthMapper authMapper;
+    @Resource
+    private AuthUserServiceImpl authUserService;
+    @Autowired(required = false)
+    private DistributedAuthCacheService distributedAuthCacheService;
+
+    private final Map<String, AuthNearCache> caches = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (String name : new String[]{AuthConstants.USER_CACHE_NAME, AuthConstants.USER_ROLE_CACHE_NAME, AuthConstants.USER_PERMISSION_CACHE_NAME}) {
+            org.springframework.cache.Cache remote = cacheManager instanceof RedisCacheManager ? cacheManager.getCache(name) : null;
+            caches.put(name, new AuthNearCache(name, maxBytes, ttl, tti, remote, distributedAuthCacheService));
+        }
+    }
+
+    /**
+     * @return 不是用户相关的缓存时返回 null
+     */
+    public AuthNearCache getCache(String cacheName) {
+        return caches.get(cacheName);
+    }
+
+    /**
+     * 只失效本节点缓存，key 为空时清空全部
+     */
+    public void invalidateLocal(String cacheName, String key) {
+        AuthNearCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.invalidateLocal(key);
+        }
+    }
+
+    public static String key(Long userId) {
+        return "user" + userId;
+    }
+
+    @EventListener
+    public void warmUp(ApplicationReadyEvent event) {
+        if (warmUpSize <= 0) {
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "auth-cache-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            long since = start - warmUpDays * 24L * 3600 * 1000;
+            List<Long> userIds = authMapper.recentLoginUserIds(SysLogConstants.OPERATE_TYPE.LOGIN.getValue(), since, warmUpSize);
+            if (CollectionUtils.isEmpty(userIds)) {
+                return;
+            }
+            AuthNearCache userCache = caches.get(AuthConstants.USER_CACHE_NAME);
+            AuthNearCache roleCache = caches.get(AuthConstants.USER_ROLE_CACHE_NAME);
+            AuthNearCache permissionCache = caches.get(AuthConstants.USER_PERMISSION_CACHE_NAME);
+            int count = 0;
+            for (Long userId : userIds) {
+                // 登录日志中的用户可能已被删除，单个用户加载失败不影响其他用户
+                try {
+                    SysUserEntity user = authMapper.findUser(userId);
+                    if (user == null) {
+                        continue;
+                    }
+                    String key = key(userId);
+                    // 已被请求加载或其他节点写入 redis 的不再覆盖，与失效并发时放弃写入
+                    userCache.warmUp(key, () -> user);
+                    roleCache.warmUp(key, () -> authMapper.roles(userId));
+                    permissionCache.warmUp(key, () -> authUserService.loadPermissions(userId));
+                    count++;
+                } catch (Exception e) {
+                    LogUtil.warn("Auth cache warm up skipped user " + userId + ": " + e.getMessage());
+                }
+            }
+            LogUtil.info("Auth cache warmed up with " + count + " users in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            LogUtil.error("Auth cache warm up failed: " + e.getMessage(), e);
+        }
+    }
+}
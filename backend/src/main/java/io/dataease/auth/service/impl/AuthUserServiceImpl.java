@@ -140,6 +140,13 @@ public class AuthUserServiceImpl implements AuthUserService {
             LogUtil.error(e);
             //ignore
         }
+        return loadPermissions(userId);
+    }
+
+    /**
+     * 查询用户权限，不同步插件菜单，供缓存预热使用
+     */
+    public List<String> loadPermissions(Long userId) {
         List<String> permissions;
         SysUser sysUser = sysUserMapper.selectByPrimaryKey(userId);
         if (sysUser.getIsAdmin() != null && sysUser.getIsAdmin()) {
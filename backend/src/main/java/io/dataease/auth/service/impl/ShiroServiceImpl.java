@@ -129,6 +129,8 @@ public class ShiroServiceImpl implements ShiroService {
         filterChainDefinitionMap.put("/api/link/viewDetail/**", "link");
         filterChainDefinitionMap.put("/api/link/viewLog", "link");
         filterChainDefinitionMap.put("/panel/group/exportDetails", ANON);
+        filterChainDefinitionMap.put("/panel/group/exportDetailsTask", "link");
+        filterChainDefinitionMap.put("/panel/group/exportDetailsTask/**", "link");
         filterChainDefinitionMap.put("/dataset/field/linkMultFieldValues", "link");
         filterChainDefinitionMap.put("/dataset/field/linkMappingFieldValues", "link");
         filterChainDefinitionMap.put("/systemInfo/proxyUserLoginInfo", ANON);
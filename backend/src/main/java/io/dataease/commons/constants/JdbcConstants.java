@@ -2,7 +2,5 @@ package io.dataease.commons.constants;
 
 public class JdbcConstants {
 
-    public final static String VIEW_CACHE_KEY = "view_cache";
-
     public final static String PANEL_CACHE_KEY="panel_cache-";
 }
@@ -8,6 +8,14 @@ public class RedisConstants {
 
     public static final String WEBSOCKET_MSG = "wsMsgService";
 
+    public static final String DATASET_META_MSG = "datasetMetaMsgService";
+
+    public static final String AUTH_CACHE_MSG = "authCacheMsgService";
+
+    public static final String TOKEN_MSG = "tokenMsgService";
+
+    public static final String VIEW_RESULT_CACHE_MSG = "viewResultCacheMsgService";
+
     public static final String DS_REDIS_TOPIC = "ds_redis_topic";
 
 
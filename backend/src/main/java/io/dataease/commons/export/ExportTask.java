@@ -0,0 +1,36 @@
+package io.dataease.commons.export;
+
+import io.dataease.commons.constants.JobStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步导出任务的公共状态，各类导出在子类中补充自己的字段
+ */
+@Getter
+@Setter
+public class ExportTask {
+
+    private String id;
+
+    private Long owner;
+
+    private File file;
+
+    private long createTime;
+
+    private volatile long finishTime;
+
+    private volatile JobStatus status = JobStatus.Prepare;
+
+    private volatile String error;
+
+    private final AtomicLong rows = new AtomicLong();
+
+    public boolean isFinished() {
+        return finishTime > 0;
+    }
+}
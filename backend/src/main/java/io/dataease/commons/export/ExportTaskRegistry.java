@@ -0,0 +1,99 @@
+package io.dataease.commons.export;
+
+import cn.hutool.core.io.FileUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import io.dataease.commons.constants.JobStatus;
+import io.dataease.exception.DataEaseException;
+import io.dataease.i18n.Translator;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 异步导出任务登记
+ * 任务只保存在内存中，在保留时间内无人查询时连同导出文件一起清理；
+ * 重启后上次遗留的导出文件无法再下载，创建时直接删除
+ */
+public class ExportTaskRegistry<T extends ExportTask> {
+
+    private final String path;
+
+    private final Cache<String, T> tasks;
+
+    /**
+     * @param keepSeconds 任务无人查询时的保留时间
+     * @param path        导出文件目录
+     * @param extensions  该目录下导出文件的扩展名，用于清理遗留文件
+     */
+    public ExportTaskRegistry(long keepSeconds, String path, String... extensions) {
+        this.path = path;
+        this.tasks = CacheBuilder.newBuilder()
+                .expireAfterAccess(keepSeconds, TimeUnit.SECONDS)
+                .<String, T>removalListener(notification -> {
+                    // 未结束的任务结束时会重新写入，文件由那时的缓存项负责清理
+                    if (notification.getCause() != RemovalCause.REPLACED && notification.getValue() != null && notification.getValue().isFinished()) {
+                        FileUtil.del(notification.getValue().getFile());
+                    }
+                })
+                .build();
+        File[] staleFiles = new File(path).listFiles((dir, name) -> Arrays.stream(extensions).anyMatch(extension -> name.endsWith("." + extension)));
+        if (staleFiles != null) {
+            for (File staleFile : staleFiles) {
+                FileUtil.del(staleFile);
+            }
+        }
+    }
+
+    /**
+     * 登记新任务，分配 id 和导出文件
+     */
+    public T register(T task, Long owner, String extension) {
+        tasks.cleanUp();
+        task.setId(UUID.randomUUID().toString());
+        task.setOwner(owner);
+        task.setFile(new File(path, task.getId() + "." + extension));
+        task.setCreateTime(System.currentTimeMillis());
+        tasks.put(task.getId(), task);
+        return task;
+    }
+
+    /**
+     * 任务未能提交执行时移除
+     */
+    public void remove(T task) {
+        tasks.invalidate(task.getId());
+    }
+
+    /**
+     * 查询任务并校验所属用户
+     */
+    public T get(String taskId, Long owner) {
+        T task = StringUtils.isEmpty(taskId) ? null : tasks.getIfPresent(taskId);
+        if (task == null || !Objects.equals(task.getOwner(), owner)) {
+            DataEaseException.throwException(Translator.get("i18n_export_task_not_exists"));
+        }
+        return task;
+    }
+
+    /**
+     * 用户保留中的任务，按提交时间倒序
+     */
+    public List<T> list(Long owner) {
+        return tasks.asMap().values().stream()
+                .filter(task -> Objects.equals(task.getOwner(), owner))
+                .sorted(Comparator.comparingLong(ExportTask::getCreateTime).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public void finish(T task, JobStatus status) {
+        task.setStatus(status);
+        task.setFinishTime(System.currentTimeMillis());
+        // 重新写入以便从完成时刻开始计算保留时间，执行期间过期的任务也在此恢复
+        tasks.put(task.getId(), task);
+    }
+}
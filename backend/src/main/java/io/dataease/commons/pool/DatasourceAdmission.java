@@ -0,0 +1,202 @@
+package io.dataease.commons.pool;
+
+import io.dataease.exception.DataEaseException;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.plugins.common.request.datasource.DatasourceRequest;
+import io.dataease.plugins.datasource.provider.Provider;
+import io.dataease.provider.datasource.QueryRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 数据源查询准入控制
+ * 每个数据源同时执行的查询数有上限，超出的查询进入有界等待队列，等待超时或队列已满时拒绝；
+ * 等待队列中交互查询(视图、预览、过滤器取值)优先于后台查询(导出)，后台查询最多占用部分并发数，
+ * 避免一个繁忙的仪表板或大批量导出压垮数据源
+ */
+@Component
+public class DatasourceAdmission {
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    @Value("${dataease.datasource.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${dataease.datasource.admission.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${dataease.datasource.admission.max-background:4}")
+    private int maxBackground;
+
+    @Value("${dataease.datasource.admission.queue-size:50}")
+    private int queueSize;
+
+    @Value("${dataease.datasource.admission.wait-timeout:30}")
+    private int waitTimeoutSeconds;
+
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+
+    public List<String[]> getData(Provider provider, DatasourceRequest datasourceRequest, Priority priority) throws Exception {
+        return call(datasourceRequest.getDatasource(), priority, () -> provider.getData(datasourceRequest));
+    }
+
+    /**
+     * 获得准入后执行查询，查询结束释放
+     */
+    public <T> T call(Datasource datasource, Priority priority, Callable<T> query) throws Exception {
+        if (!enabled || datasource == null || datasource.getId() == null) {
+            return query.call();
+        }
+        Gate gate = gates.computeIfAbsent(datasource.getId(), id -> new Gate());
+        gate.name = datasource.getName();
+        gate.acquire(priority);
+        try {
+            // 等待期间请求可能已被取消
+            QueryRegistry.checkCancelled();
+            return query.call();
+        } finally {
+            gate.release(priority);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        gates.forEach((id, gate) -> stats.put(id, gate.stats()));
+        return stats;
+    }
+
+    /**
+     * 数据源删除或修改后移除，已获得准入的查询仍在原来的 Gate 上释放
+     */
+    public void remove(String datasourceId) {
+        gates.remove(datasourceId);
+    }
+
+    private class Gate {
+
+        private volatile String name;
+
+        private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(
+                Comparator.comparing((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.seq));
+
+        private long seq;
+
+        private int active;
+
+        private int activeBackground;
+
+        private long admitted;
+
+        private long rejected;
+
+        private long timeouts;
+
+        private long waited;
+
+        private long waitTime;
+
+        private int peakWaiting;
+
+        synchronized void acquire(Priority priority) throws InterruptedException {
+            Waiter head = waiting.peek();
+            if (canRun(priority) && (head == null || priority.compareTo(head.priority) < 0)) {
+                grant(priority);
+                return;
+            }
+            if (waiting.size() >= queueSize) {
+                rejected++;
+                DataEaseException.throwException("Too many concurrent queries on datasource: " + name);
+            }
+            Waiter waiter = new Waiter(priority, seq++);
+            waiting.add(waiter);
+            peakWaiting = Math.max(peakWaiting, waiting.size());
+            long start = System.currentTimeMillis();
+            long deadline = waitTimeoutSeconds > 0 ? start + waitTimeoutSeconds * 1000L : Long.MAX_VALUE;
+            try {
+                while (!waiter.granted) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        waiting.remove(waiter);
+                        timeouts++;
+                        DataEaseException.throwException("Wait for datasource timeout: " + name);
+                    }
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    release(priority);
+                } else {
+                    waiting.remove(waiter);
+                }
+                throw e;
+            }
+            waited++;
+            waitTime += System.currentTimeMillis() - start;
+        }
+
+        synchronized void release(Priority priority) {
+            active--;
+            if (priority == Priority.BACKGROUND) {
+                activeBackground--;
+            }
+            // 按优先级唤醒等待中的查询，队首的后台查询受后台并发数限制时停止
+            boolean granted = false;
+            Waiter head;
+            while ((head = waiting.peek()) != null && canRun(head.priority)) {
+                waiting.poll();
+                head.granted = true;
+                grant(head.priority);
+                granted = true;
+            }
+            if (granted) {
+                notifyAll();
+            }
+        }
+
+        private boolean canRun(Priority priority) {
+            return active < maxConcurrent && (priority != Priority.BACKGROUND || activeBackground < Math.min(maxBackground, maxConcurrent));
+        }
+
+        private void grant(Priority priority) {
+            active++;
+            if (priority == Priority.BACKGROUND) {
+                activeBackground++;
+            }
+            admitted++;
+        }
+
+        synchronized Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", name);
+            stats.put("active", active);
+            stats.put("activeBackground", activeBackground);
+            stats.put("waiting", waiting.size());
+            stats.put("peakWaiting", peakWaiting);
+            stats.put("admitted", admitted);
+            stats.put("rejected", rejected);
+            stats.put("timeouts", timeouts);
+            stats.put("avgWaitTime", waited == 0 ? 0 : waitTime / waited);
+            return stats;
+        }
+    }
+
+    private static class Waiter {
+
+        private final Priority priority;
+
+        private final long seq;
+
+        private boolean granted;
+
+        Waiter(Priority priority, long seq) {
+            this.priority = priority;
+            this.seq = seq;
+        }
+    }
+}
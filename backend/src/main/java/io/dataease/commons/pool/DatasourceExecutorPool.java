@@ -0,0 +1,78 @@
+package io.dataease.commons.pool;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 按数据源隔离的查询线程池
+ * 每个数据源拥有独立的有界线程池，避免某个慢数据源占满线程影响其他数据源；
+ * 队列满时由提交线程自行执行，对调用方形成反压
+ */
+@Component
+public class DatasourceExecutorPool {
+
+    @Value("${dataease.datasource.query-parallelism:4}")
+    private int parallelism;
+
+    @Value("${dataease.datasource.query-queue-size:100}")
+    private int queueSize;
+
+    @Value("${dataease.datasource.query-keep-alive:60}")
+    private int keepAliveSeconds;
+
+    private static final String SUB_QUERY_SUFFIX = "-sub";
+
+    private final Map<String, ThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    public <T> CompletableFuture<T> submit(String datasourceId, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor(datasourceId).execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 提交视图内的附属查询(总数、辅助线、明细等)
+     * 使用独立于视图查询的线程池，视图查询线程等待附属查询时不会因线程被占满而互相等待
+     *
+     * @return 可通过 cancel(true) 中断的 Future
+     */
+    public <T> Future<T> submitSubQuery(String datasourceId, Callable<T> task) {
+        return executor(datasourceId + SUB_QUERY_SUFFIX).submit(task);
+    }
+
+    private ThreadPoolExecutor executor(String datasourceId) {
+        return executors.computeIfAbsent(datasourceId, id -> {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, keepAliveSeconds, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueSize),
+                    new ThreadFactoryBuilder().setNameFormat("ds-query-" + id + "-%d").setDaemon(true).build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
+    /**
+     * 数据源删除或修改后移除其线程池，已提交的查询继续执行，空闲线程超时后退出
+     */
+    public void remove(String datasourceId) {
+        executors.remove(datasourceId);
+        executors.remove(datasourceId + SUB_QUERY_SUFFIX);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        executors.clear();
+    }
+}
@@ -0,0 +1,118 @@
+package io.dataease.commons.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 RFC 4180 逐行读取 CSV
+ * 支持双引号包裹的字段、字段内的逗号与换行以及 "" 转义，只在内存中保留当前行
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int length = 0;
+
+    private int position = 0;
+
+    private boolean firstChar = true;
+
+    private final StringBuilder field = new StringBuilder();
+
+    private final List<String> row = new ArrayList<>();
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 读取下一行
+     *
+     * @return 当前行的字段，读到文件末尾时返回 null
+     */
+    public String[] next() throws IOException {
+        row.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while ((c = read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+                continue;
+            }
+            if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                return endRow();
+            } else if (c == '\n') {
+                return endRow();
+            } else {
+                field.append((char) c);
+            }
+        }
+        return any ? endRow() : null;
+    }
+
+    private String[] endRow() {
+        row.add(field.toString());
+        field.setLength(0);
+        return row.toArray(new String[0]);
+    }
+
+    private int read() throws IOException {
+        if (position >= length && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (firstChar) {
+            firstChar = false;
+            // 跳过 UTF-8 BOM
+            if (c == '\uFEFF') {
+                return read();
+            }
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (position >= length && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        length = reader.read(buffer, 0, BUFFER_SIZE);
+        position = 0;
+        return length > 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
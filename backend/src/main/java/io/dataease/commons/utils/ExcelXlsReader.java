@@ -3,6 +3,8 @@ package io.dataease.commons.utils;
 import io.dataease.dto.dataset.ExcelSheetData;
 import io.dataease.i18n.Translator;
 import io.dataease.plugins.common.dto.datasource.TableField;
+import io.dataease.provider.datasource.RowHandler;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.hssf.eventusermodel.*;
 import org.apache.poi.hssf.eventusermodel.dummyrecord.LastCellOfRowDummyRecord;
 import org.apache.poi.hssf.eventusermodel.dummyrecord.MissingCellDummyRecord;
@@ -35,6 +37,18 @@ public class ExcelXlsReader implements HSSFListener {
 
     private Integer obtainedNum = null;
 
+    /**
+     * 设置后指定 sheet 的数据行逐行交给 rowHandler 处理，不再保存到 totalSheets 中
+     */
+    private RowHandler rowHandler;
+
+    private String rowHandlerSheet;
+
+    public void setRowHandler(String sheetName, RowHandler rowHandler) {
+        this.rowHandlerSheet = sheetName;
+        this.rowHandler = rowHandler;
+    }
+
     private POIFSFileSystem fs;
 
     /**
@@ -328,7 +342,16 @@ public class ExcelXlsReader implements HSSFListener {
             }
 
 
-            if (flag && curRow != 0) { //该行不为空行且该行不是第一行，发送（第一行为列名，不需要）
+            if (flag && curRow != 0 && rowHandler != null) {
+                if (StringUtils.equalsIgnoreCase(sheetName, rowHandlerSheet)) {
+                    try {
+                        rowHandler.handle(cellList.toArray(new String[0]));
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                    totalRows++;
+                }
+            } else if (flag && curRow != 0) { //该行不为空行且该行不是第一行，发送（第一行为列名，不需要）
                 if (!totalSheets.stream().map(ExcelSheetData::getExcelLabel).collect(Collectors.toList()).contains(sheetName)) {
                     ExcelSheetData excelSheetData = new ExcelSheetData();
                     excelSheetData.setData(new ArrayList<>(data));
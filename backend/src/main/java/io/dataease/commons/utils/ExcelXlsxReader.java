@@ -3,6 +3,7 @@ package io.dataease.commons.utils;
 import io.dataease.dto.dataset.ExcelSheetData;
 import io.dataease.i18n.Translator;
 import io.dataease.plugins.common.dto.datasource.TableField;
+import io.dataease.provider.datasource.RowHandler;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.ss.usermodel.DataFormatter;
@@ -132,6 +133,18 @@ public class ExcelXlsxReader extends DefaultHandler {
 
     private Integer obtainedNum = null;
 
+    /**
+     * 设置后只解析指定 sheet，数据行逐行交给 rowHandler 处理而不再保存到 data 中
+     */
+    private RowHandler rowHandler;
+
+    private String rowHandlerSheet;
+
+    public void setRowHandler(String sheetName, RowHandler rowHandler) {
+        this.rowHandlerSheet = sheetName;
+        this.rowHandler = rowHandler;
+    }
+
     public List<TableField> getFields() {
         return fields;
     }
@@ -166,6 +179,10 @@ public class ExcelXlsxReader extends DefaultHandler {
             fields.clear();
             data.clear();
             InputStream sheet = sheets.next(); //sheets.next()和sheets.getSheetName()不能换位置，否则sheetName报错
+            if (rowHandler != null && !sheets.getSheetName().equalsIgnoreCase(rowHandlerSheet)) {
+                sheet.close();
+                continue;
+            }
             InputSource sheetSource = new InputSource(sheet);
             parser.parse(sheetSource); //解析excel的每条记录，在这个过程中startElement()、characters()、endElement()这三个函数会依次执行
 
@@ -315,8 +332,16 @@ public class ExcelXlsxReader extends DefaultHandler {
                     for (int i = cellList.size(); i < this.fields.size(); i++) {
                         cellList.add("");
                     }
-                    List<String> tmp = new ArrayList<>(cellList);
-                    this.getData().add(tmp);
+                    if (rowHandler != null) {
+                        try {
+                            rowHandler.handle(cellList.toArray(new String[0]));
+                        } catch (Exception e) {
+                            throw new SAXException(e);
+                        }
+                    } else {
+                        List<String> tmp = new ArrayList<>(cellList);
+                        this.getData().add(tmp);
+                    }
                 }
                 totalRows++;
                 cellList.clear();
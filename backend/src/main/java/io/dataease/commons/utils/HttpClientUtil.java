@@ -6,8 +6,10 @@ import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.EntityBuilder;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.HttpClientConnectionManager;
@@ -27,6 +29,8 @@ import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
@@ -38,6 +42,13 @@ public class HttpClientUtil {
 
     private static final String HTTPS = "https";
 
+    /**
+     * 响应内容处理，用于不把整个响应读入内存的场景
+     */
+    public interface StreamHandler {
+        void handle(InputStream inputStream) throws Exception;
+    }
+
     /**
      * 根据url构建HttpClient（区分http和https）
      *
@@ -199,6 +210,103 @@ public class HttpClientUtil {
         }
     }
 
+    /**
+     * 构建可在多次请求间复用的 HttpClient，连接池大小为 maxConnections，由调用方关闭
+     */
+    public static CloseableHttpClient buildPooledHttpClient(String url, int maxConnections) {
+        try {
+            SSLConnectionSocketFactory socketFactory = SSLConnectionSocketFactory.getSocketFactory();
+            if (url.startsWith(HTTPS)) {
+                SSLContextBuilder builder = new SSLContextBuilder();
+                builder.loadTrustMaterial(null, (X509Certificate[] x509Certificates, String s) -> true);
+                socketFactory = new SSLConnectionSocketFactory(builder.build(), new String[]{"TLSv1.1", "TLSv1.2", "SSLv3"}, null, NoopHostnameVerifier.INSTANCE);
+            }
+            Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                    .register("http", new PlainConnectionSocketFactory())
+                    .register("https", socketFactory).build();
+            PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager(registry);
+            connManager.setMaxTotal(Math.max(maxConnections, 2));
+            connManager.setDefaultMaxPerRoute(Math.max(maxConnections, 2));
+            return HttpClients.custom().setConnectionManager(connManager).build();
+        } catch (Exception e) {
+            throw new RuntimeException("HttpClient构建失败", e);
+        }
+    }
+
+    /**
+     * Get http请求，响应内容以流的形式交给 handler 读取
+     *
+     * @param httpClient 复用的 HttpClient，为 null 时本次请求单独创建
+     */
+    public static void get(String url, HttpClientConfig config, CloseableHttpClient httpClient, StreamHandler handler) throws Exception {
+        execute(url, new HttpGet(url), config, httpClient, handler);
+    }
+
+    /**
+     * Post请求，请求内容为JSON格式的字符串，响应内容以流的形式交给 handler 读取
+     */
+    public static void post(String url, String json, HttpClientConfig config, CloseableHttpClient httpClient, StreamHandler handler) throws Exception {
+        HttpPost httpPost = new HttpPost(url);
+        EntityBuilder entityBuilder = EntityBuilder.create();
+        entityBuilder.setText(json);
+        entityBuilder.setContentType(ContentType.APPLICATION_JSON);
+        httpPost.setEntity(entityBuilder.build());
+        execute(url, httpPost, config, httpClient, handler);
+    }
+
+    /**
+     * Post请求，请求内容为键值对参数，响应内容以流的形式交给 handler 读取
+     */
+    public static void post(String url, Map<String, String> body, HttpClientConfig config, CloseableHttpClient httpClient, StreamHandler handler) throws Exception {
+        HttpPost httpPost = new HttpPost(url);
+        if (config == null) {
+            config = new HttpClientConfig();
+        }
+        if (body != null && body.size() > 0) {
+            List<NameValuePair> nvps = new ArrayList<>();
+            for (String key : body.keySet()) {
+                nvps.add(new BasicNameValuePair(key, body.get(key)));
+            }
+            httpPost.setEntity(new UrlEncodedFormEntity(nvps, config.getCharset()));
+        }
+        execute(url, httpPost, config, httpClient, handler);
+    }
+
+    private static void execute(String url, HttpRequestBase request, HttpClientConfig config, CloseableHttpClient httpClient, StreamHandler handler) throws Exception {
+        if (config == null) {
+            config = new HttpClientConfig();
+        }
+        request.setConfig(config.buildRequestConfig());
+        Map<String, String> header = config.getHeader();
+        for (String key : header.keySet()) {
+            request.addHeader(key, header.get(key));
+        }
+        CloseableHttpClient client = httpClient == null ? buildHttpClient(url) : httpClient;
+        try (CloseableHttpResponse response = client.execute(request)) {
+            if (response.getStatusLine().getStatusCode() >= 400) {
+                getResponseStr(response, config);
+            }
+            if (response.getEntity() == null) {
+                handler.handle(new ByteArrayInputStream(new byte[0]));
+                return;
+            }
+            try (InputStream inputStream = response.getEntity().getContent()) {
+                handler.handle(inputStream);
+            }
+        } catch (Exception e) {
+            logger.error("HttpClient查询失败", e);
+            throw new RuntimeException("HttpClient查询失败: " + e.getMessage(), e);
+        } finally {
+            if (httpClient == null) {
+                try {
+                    client.close();
+                } catch (Exception e) {
+                    logger.error("HttpClient关闭连接失败", e);
+                }
+            }
+        }
+    }
+
     private static String getResponseStr(HttpResponse response, HttpClientConfig config) throws Exception{
         if(response.getStatusLine().getStatusCode() >= 400){
             String msg = EntityUtils.toString(response.getEntity(), config.getCharset());
@@ -1,8 +1,12 @@
 package io.dataease.commons.utils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import io.dataease.commons.model.OnlineUserModel;
 import io.dataease.listener.util.CacheUtils;
+import io.dataease.service.sys.DistributedTokenService;
 import io.dataease.service.system.SystemParameterService;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -11,9 +15,21 @@ import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
+/**
+ * token 黑名单与在线 token 存储
+ * ehcache 模式下写入只进内存，由后台线程按固定间隔把有变化的缓存区域批量刷到磁盘，停机时由 ehcache 关闭时持久化；
+ * 校验过不在黑名单中的 token 在本地短暂缓存，请求鉴权时通常不再访问缓存存储，token 加入黑名单时立即失效本地记录，集群下广播通知其他节点
+ */
 @Component
 public class TokenCacheUtils {
 
@@ -28,6 +44,23 @@ public class TokenCacheUtils {
 
     private static Gson gson = new Gson();
 
+    private static long flushInterval;
+
+    private static long validCacheSize;
+
+    private static long validCacheTtl;
+
+    private static final Set<String> dirtyRegions = ConcurrentHashMap.newKeySet();
+
+    private static Cache<String, Boolean> validTokens;
+
+    /**
+     * 每次有 token 加入黑名单时递增，校验开始后发生变化的结果不记为有效
+     */
+    private static final AtomicLong invalidEpoch = new AtomicLong();
+
+    private static ScheduledExecutorService flushExecutor;
+
     @Value("${spring.cache.type:ehcache}")
     public void setCacheType(String cacheType) {
         TokenCacheUtils.cacheType = cacheType;
@@ -38,6 +71,41 @@ public class TokenCacheUtils {
         TokenCacheUtils.expTime = expTime;
     }
 
+    @Value("${dataease.token-cache.flush-interval:10}")
+    public void setFlushInterval(long flushInterval) {
+        TokenCacheUtils.flushInterval = flushInterval;
+    }
+
+    @Value("${dataease.token-cache.valid-cache-size:10000}")
+    public void setValidCacheSize(long validCacheSize) {
+        TokenCacheUtils.validCacheSize = validCacheSize;
+    }
+
+    @Value("${dataease.token-cache.valid-cache-ttl:10}")
+    public void setValidCacheTtl(long validCacheTtl) {
+        TokenCacheUtils.validCacheTtl = validCacheTtl;
+    }
+
+    @PostConstruct
+    public void init() {
+        validTokens = CacheBuilder.newBuilder()
+                .maximumSize(validCacheSize)
+                .expireAfterWrite(validCacheTtl, TimeUnit.SECONDS)
+                .build();
+        if (!useRedis() && flushInterval > 0) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("token-store-flush").setDaemon(true).build());
+            flushExecutor.scheduleWithFixedDelay(TokenCacheUtils::flushDirty, flushInterval, flushInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 剩余的变更由 ApplicationCloseEventListener 关闭 ehcache 时写入磁盘
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+    }
+
     private static boolean useRedis() {
         return StringUtils.equals(cacheType, "redis");
     }
@@ -53,23 +121,54 @@ public class TokenCacheUtils {
         if (useRedis()) {
             ValueOperations valueOperations = cacheHandler();
             valueOperations.set(KEY + token, userId, expTime, TimeUnit.MINUTES);
+            // 写入黑名单之后再失效，避免并发校验把 token 重新记为有效
+            invalidateLocal(token);
+            DistributedTokenService distributedTokenService = CommonBeanFactory.getBean(DistributedTokenService.class);
+            if (ObjectUtils.isNotEmpty(distributedTokenService)) {
+                distributedTokenService.pushBroadcast(token);
+            }
             return;
         }
 
         Long time = expTime * 60;
         Double v = time * 0.6;
         CacheUtils.put(KEY, token, userId, time.intValue(), v.intValue());
-        CacheUtils.flush(KEY);
+        invalidateLocal(token);
+        markDirty(KEY);
     }
 
 
     public static boolean invalid(String token) {
+        if (validTokens != null && token != null && validTokens.getIfPresent(token) != null) {
+            return false;
+        }
+        long epoch = invalidEpoch.get();
+        boolean invalid;
         if (useRedis()) {
             RedisTemplate redisTemplate = (RedisTemplate) CommonBeanFactory.getBean("redisTemplate");
-            return redisTemplate.hasKey(KEY + token);
+            invalid = Boolean.TRUE.equals(redisTemplate.hasKey(KEY + token));
+        } else {
+            Object sys_token_store = CacheUtils.get(KEY, token);
+            invalid = ObjectUtils.isNotEmpty(sys_token_store) && StringUtils.isNotBlank(sys_token_store.toString());
+        }
+        // 读取存储之后有 token 被注销时，本次结果可能已过期，不写入本地记录
+        if (!invalid && validTokens != null && token != null && invalidEpoch.get() == epoch) {
+            validTokens.put(token, Boolean.TRUE);
+            if (invalidEpoch.get() != epoch) {
+                validTokens.invalidate(token);
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * 只清除本节点记录的有效 token
+     */
+    public static void invalidateLocal(String token) {
+        invalidEpoch.incrementAndGet();
+        if (validTokens != null && token != null) {
+            validTokens.invalidate(token);
         }
-        Object sys_token_store = CacheUtils.get(KEY, token);
-        return ObjectUtils.isNotEmpty(sys_token_store) && StringUtils.isNotBlank(sys_token_store.toString());
     }
 
     public static void add2OnlinePools(String token, Long userId) {
@@ -83,7 +182,29 @@ public class TokenCacheUtils {
         Long time = expTime * 60;
         Double v = time * 0.6;
         CacheUtils.put(ONLINE_TOKEN_POOL_KEY, userId, model, time.intValue(), v.intValue());
-        CacheUtils.flush(ONLINE_TOKEN_POOL_KEY);
+        markDirty(ONLINE_TOKEN_POOL_KEY);
+    }
+
+    /**
+     * 记录需要刷盘的缓存区域，未开启定时刷盘时立即刷盘
+     */
+    private static void markDirty(String cacheName) {
+        if (flushExecutor == null) {
+            CacheUtils.flush(cacheName);
+            return;
+        }
+        dirtyRegions.add(cacheName);
+    }
+
+    private static void flushDirty() {
+        for (String cacheName : dirtyRegions) {
+            dirtyRegions.remove(cacheName);
+            try {
+                CacheUtils.flush(cacheName);
+            } catch (Exception e) {
+                LogUtil.error("Flush " + cacheName + " failed: " + e.getMessage(), e);
+            }
+        }
     }
 
     public static String multiLoginType() {
@@ -0,0 +1,38 @@
+package io.dataease.config;
+
+import io.dataease.auth.config.AuthNearCache;
+import io.dataease.auth.service.impl.AuthCacheService;
+import io.dataease.commons.utils.CommonBeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurerSupport;
+import org.springframework.cache.interceptor.CacheResolver;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * 缓存注解中的用户、角色、权限缓存使用 AuthCacheService 中的本地缓存，其余缓存仍由 CacheManager 提供
+ * 相关 bean 在首次使用时获取，避免缓存配置提前初始化业务 bean
+ */
+@Configuration
+public class AuthCacheConfig extends CachingConfigurerSupport {
+
+    @Override
+    public CacheResolver cacheResolver() {
+        return context -> {
+            Collection<Cache> caches = new ArrayList<>();
+            for (String cacheName : context.getOperation().getCacheNames()) {
+                AuthCacheService authCacheService = CommonBeanFactory.getBean(AuthCacheService.class);
+                AuthNearCache authCache = authCacheService == null ? null : authCacheService.getCache(cacheName);
+                Cache cache = authCache != null ? authCache : CommonBeanFactory.getBean(CacheManager.class).getCache(cacheName);
+                if (cache == null) {
+                    throw new IllegalArgumentException("Cannot find cache named '" + cacheName + "' for " + context.getOperation());
+                }
+                caches.add(cache);
+            }
+            return caches;
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package io.dataease.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 视图结果缓存配置
+ */
+@ConfigurationProperties(prefix = "dataease.view-cache", ignoreInvalidFields = true)
+@Data
+@Component
+public class ViewCacheProperties {
+
+    /**
+     * 是否启用视图结果缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 抽取数据集结果存活时间(秒)，抽取完成或数据集变更时会主动失效
+     */
+    private int extractTtl = 600;
+
+    /**
+     * 直连数据集结果存活时间(秒)，0 表示直连数据集默认不缓存
+     */
+    private int directTtl = 0;
+
+    /**
+     * 按数据源单独配置存活时间(秒)，key 为数据源ID或数据源类型，优先级：ID > 类型 > 默认值
+     */
+    private Map<String, Integer> datasourceTtl = new HashMap<>();
+
+    /**
+     * 内存层容量上限，按编码后的结果字节数计算
+     */
+    private long maxMemoryBytes = 256L * 1024 * 1024;
+
+    /**
+     * 是否启用磁盘层，内存层按容量淘汰的结果写入磁盘，读取时通过内存映射解码
+     */
+    private boolean diskEnabled = false;
+
+    /**
+     * 磁盘层目录，启动时清空
+     */
+    private String diskPath = "/opt/dataease/data/view-cache/";
+
+    /**
+     * 磁盘层容量上限(字节)
+     */
+    private long maxDiskBytes = 2L * 1024 * 1024 * 1024;
+
+}
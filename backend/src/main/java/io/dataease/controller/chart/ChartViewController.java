@@ -1,25 +1,38 @@
 package io.dataease.controller.chart;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.xiaoymin.knife4j.annotations.ApiSupport;
 import io.dataease.auth.annotation.DePermission;
 import io.dataease.auth.annotation.DePermissionProxy;
+import io.dataease.auth.api.dto.CurrentUserDto;
 import io.dataease.commons.constants.DePermissionType;
 import io.dataease.commons.constants.ResourceAuthLevel;
+import io.dataease.commons.utils.AuthUtils;
+import io.dataease.commons.utils.ServletUtils;
 import io.dataease.controller.request.chart.*;
 import io.dataease.controller.response.ChartDetail;
 import io.dataease.dto.chart.ChartViewDTO;
 import io.dataease.dto.chart.ViewOption;
 import io.dataease.plugins.common.base.domain.ChartViewWithBLOBs;
+import io.dataease.provider.datasource.QueryRegistry;
 import io.dataease.service.chart.ChartViewCacheService;
+import io.dataease.service.chart.ChartViewResultCacheService;
 import io.dataease.service.chart.ChartViewService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
 import org.springframework.web.bind.annotation.*;
 import springfox.documentation.annotations.ApiIgnore;
 
 import javax.annotation.Resource;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * @Author gin
@@ -30,12 +43,23 @@ import java.util.Map;
 @RestController
 @RequestMapping("/chart/view")
 public class ChartViewController {
+    private static final String QUERY_ID_HEADER = "DE-QUERY-ID";
+
     @Resource
     private ChartViewService chartViewService;
 
+    @Resource
+    private QueryRegistry queryRegistry;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
     @Resource
     private ChartViewCacheService chartViewCacheService;
 
+    @Resource
+    private ChartViewResultCacheService chartViewResultCacheService;
+
     @DePermission(type = DePermissionType.PANEL, level = ResourceAuthLevel.PANEL_LEVEL_MANAGE)
     @ApiOperation("保存")
     @PostMapping("/save/{panelId}")
@@ -91,8 +115,77 @@ public class ChartViewController {
     @ApiOperation("数据")
     @PostMapping("/getData/{id}/{panelId}")
     public ChartViewDTO getData(@PathVariable String id, @PathVariable String panelId,
-                                @RequestBody ChartExtRequest requestList) throws Exception {
-        return chartViewService.getData(id, requestList);
+                                @RequestBody ChartExtRequest requestList,
+                                @RequestHeader(value = QUERY_ID_HEADER, required = false) String queryId) throws Exception {
+        return trackQuery(queryId, panelId + ":" + id, () -> chartViewService.getData(id, requestList));
+    }
+
+    @DePermissionProxy(value = "proxy", paramIndex = 1)
+    @DePermission(type = DePermissionType.PANEL, level = ResourceAuthLevel.PANEL_LEVEL_VIEW)
+    @ApiOperation("批量数据")
+    @PostMapping("/batchGetData/{panelId}")
+    public void batchGetData(@PathVariable String panelId,
+                             @RequestBody ChartBatchDataRequest request,
+                             @RequestHeader(value = QUERY_ID_HEADER, required = false) String queryId,
+                             HttpServletResponse response) throws Exception {
+        // 每行一个视图的结果，视图完成即写出，前端边接收边渲染；写出第一行前的异常仍按普通接口返回错误
+        trackQuery(queryId, panelId + ":batch", () -> {
+            chartViewService.batchGetData(request, result -> {
+                try {
+                    if (!response.isCommitted()) {
+                        response.setContentType("application/x-ndjson;charset=UTF-8");
+                    }
+                    ServletOutputStream out = response.getOutputStream();
+                    out.write(objectMapper.writeValueAsBytes(result));
+                    out.write('\n');
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return null;
+        });
+    }
+
+    @ApiOperation("取消查询")
+    @PostMapping("/cancelQuery/{queryId}")
+    public boolean cancelQuery(@PathVariable String queryId) {
+        CurrentUserDto user = AuthUtils.getUser();
+        return queryRegistry.cancel(queryId, user.getUserId(), user.getIsAdmin());
+    }
+
+    @RequiresPermissions("sysparam:read")
+    @ApiOperation("执行中的查询")
+    @GetMapping("/runningQueries")
+    public List<Map<String, Object>> runningQueries() {
+        return queryRegistry.running();
+    }
+
+    /**
+     * 登记取数请求，请求 id 通过响应头返回，可用于取消
+     * 请求 id 格式为 客户端id:序号，客户端id 中带有发起请求的组件实例，同一组件对同一视图的新请求会取消旧请求，
+     * 同一视图在放大、全屏等其他组件中的查询互不影响；没有客户端 id 时不取消
+     */
+    private <T> T trackQuery(String queryId, String key, Callable<T> query) throws Exception {
+        CurrentUserDto user = AuthUtils.getUser();
+        String clientId = StringUtils.contains(queryId, ":") ? StringUtils.substringBeforeLast(queryId, ":") : null;
+        String supersedeKey = user == null || StringUtils.isBlank(clientId) ? null : clientId + ":" + key;
+        QueryRegistry.QueryContext context = queryRegistry.begin(queryId, user == null ? null : user.getUserId(), supersedeKey);
+        HttpServletResponse response = ServletUtils.response();
+        response.addHeader("Access-Control-Expose-Headers", QUERY_ID_HEADER);
+        response.setHeader(QUERY_ID_HEADER, context.getRequestId());
+        try {
+            return query.call();
+        } finally {
+            queryRegistry.end(context);
+        }
+    }
+
+    @RequiresPermissions("sysparam:read")
+    @ApiOperation("视图结果缓存统计")
+    @GetMapping("/resultCacheStats")
+    public Map<String, Object> resultCacheStats() {
+        return chartViewResultCacheService.stats();
     }
 
     @DePermission(type = DePermissionType.PANEL, level = ResourceAuthLevel.PANEL_LEVEL_VIEW, paramIndex = 1)
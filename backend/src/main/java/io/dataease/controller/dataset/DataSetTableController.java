@@ -9,6 +9,7 @@ import io.dataease.auth.annotation.DePermissions;
 import io.dataease.commons.constants.DePermissionType;
 import io.dataease.commons.constants.ResourceAuthLevel;
 import io.dataease.commons.constants.SysLogConstants;
+import io.dataease.commons.utils.AuthUtils;
 import io.dataease.commons.utils.PageUtils;
 import io.dataease.commons.utils.Pager;
 import io.dataease.controller.ResultHolder;
@@ -18,6 +19,7 @@ import io.dataease.controller.request.dataset.DataSetTableRequest;
 import io.dataease.controller.response.DataSetDetail;
 import io.dataease.dto.authModel.VAuthModelDTO;
 import io.dataease.dto.dataset.DataSetTableDTO;
+import io.dataease.dto.dataset.DatasetExportTaskDTO;
 import io.dataease.dto.dataset.ExcelFileData;
 import io.dataease.plugins.common.base.domain.DatasetSqlLog;
 import io.dataease.plugins.common.base.domain.DatasetTable;
@@ -27,6 +29,7 @@ import io.dataease.plugins.common.dto.dataset.SqlVariableDetails;
 import io.dataease.plugins.common.dto.datasource.TableField;
 import io.dataease.service.authModel.VAuthModelService;
 import io.dataease.service.dataset.DataSetTableService;
+import io.dataease.service.dataset.DatasetExportService;
 import io.swagger.annotations.*;
 import org.apache.shiro.authz.annotation.Logical;
 import org.springframework.web.bind.annotation.*;
@@ -34,6 +37,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +58,9 @@ public class DataSetTableController {
     @Resource
     private VAuthModelService vAuthModelService;
 
+    @Resource
+    private DatasetExportService datasetExportService;
+
     @DePermissions(value = {
             @DePermission(type = DePermissionType.DATASET, value = "id"),
             @DePermission(type = DePermissionType.DATASET, value = "sceneId", level = ResourceAuthLevel.DATASET_LEVEL_MANAGE)
@@ -271,6 +278,37 @@ public class DataSetTableController {
     @PostMapping("/exportDataset")
     @I18n
     public void exportDataset(@RequestBody DataSetExportRequest request, HttpServletResponse response) throws Exception {
-        dataSetTableService.exportDataset(request, response);
+        datasetExportService.export(request, response);
+    }
+
+    @ApiOperation("提交数据集导出任务")
+    @PostMapping("/exportDatasetTask")
+    @I18n
+    public DatasetExportTaskDTO exportDatasetTask(@RequestBody DataSetExportRequest request) {
+        return datasetExportService.submit(request, AuthUtils.getUser().getUserId());
+    }
+
+    @ApiOperation("当前用户保留中的数据集导出任务")
+    @GetMapping("/exportDatasetTasks")
+    public List<DatasetExportTaskDTO> exportDatasetTasks(@RequestParam(required = false) String tableId) {
+        return datasetExportService.list(AuthUtils.getUser().getUserId(), tableId);
+    }
+
+    @ApiOperation("查询数据集导出任务")
+    @GetMapping("/exportDatasetTask/{taskId}")
+    public DatasetExportTaskDTO exportDatasetTaskStatus(@PathVariable String taskId) {
+        return datasetExportService.status(taskId, AuthUtils.getUser().getUserId());
+    }
+
+    @ApiOperation("取消数据集导出任务")
+    @PostMapping("/exportDatasetTask/{taskId}/cancel")
+    public DatasetExportTaskDTO cancelExportDatasetTask(@PathVariable String taskId) {
+        return datasetExportService.cancel(taskId, AuthUtils.getUser().getUserId());
+    }
+
+    @ApiOperation("下载数据集导出文件")
+    @GetMapping("/exportDatasetTask/{taskId}/download")
+    public void exportDatasetTaskDownload(@PathVariable String taskId, HttpServletResponse response) throws IOException {
+        datasetExportService.download(taskId, AuthUtils.getUser().getUserId(), response);
     }
 }
@@ -198,8 +198,14 @@ public class DataSetTableFieldController {
     @PostMapping("multFieldValues")
     public List<Object> multFieldValues(@RequestBody MultFieldValuesRequest multFieldValuesRequest) throws Exception {
         List<Object> results = new ArrayList<>();
+        Integer page = multFieldValuesRequest.getPage();
+        Integer pageSize = multFieldValuesRequest.getPageSize();
+        boolean pageable = page != null && page > 0 && pageSize != null && pageSize > 0;
+        boolean chineseSort = multFieldValuesRequest.getSort() != null && "chinese".equals(multFieldValuesRequest.getSort().getSort());
+        // 中文排序在内存中完成，只能取全部值排序后再分页
+        Integer limit = pageable && !chineseSort ? page * pageSize : null;
         for (String fieldId : multFieldValuesRequest.getFieldIds()) {
-            List<Object> fieldValues = dataSetFieldService.fieldValues(fieldId, multFieldValuesRequest.getSort(), multFieldValuesRequest.getUserId(), true, false);
+            List<Object> fieldValues = dataSetFieldService.fieldValues(fieldId, multFieldValuesRequest.getSort(), multFieldValuesRequest.getUserId(), true, false, multFieldValuesRequest.getKeyword(), limit);
             if (CollectionUtil.isNotEmpty(fieldValues)) {
                 results.addAll(fieldValues);
             }
@@ -207,6 +213,10 @@ public class DataSetTableFieldController {
         }
         List<Object> list = results.stream().distinct().collect(Collectors.toList());
         list = dataSetFieldService.chineseSort(list, multFieldValuesRequest.getSort());
+        if (pageable) {
+            int from = Math.min((page - 1) * pageSize, list.size());
+            list = new ArrayList<>(list.subList(from, Math.min(from + pageSize, list.size())));
+        }
         return list;
     }
 
@@ -218,13 +228,13 @@ public class DataSetTableFieldController {
         DecodedJWT jwt = JWT.decode(linkToken);
         Long userId = jwt.getClaim("userId").asLong();
         multFieldValuesRequest.setUserId(userId);
-        return dataSetFieldService.fieldValues(multFieldValuesRequest.getFieldIds(), multFieldValuesRequest.getSort(), multFieldValuesRequest.getUserId(), true, true, false);
+        return dataSetFieldService.fieldValues(multFieldValuesRequest.getFieldIds(), multFieldValuesRequest.getSort(), multFieldValuesRequest.getUserId(), true, true, false, multFieldValuesRequest.getKeyword(), null);
     }
 
     @ApiIgnore
     @PostMapping("mappingFieldValues")
     public List<Object> mappingFieldValues(@RequestBody MultFieldValuesRequest multFieldValuesRequest) throws Exception {
-        return dataSetFieldService.fieldValues(multFieldValuesRequest.getFieldIds(), multFieldValuesRequest.getSort(), multFieldValuesRequest.getUserId(), true, true, false);
+        return dataSetFieldService.fieldValues(multFieldValuesRequest.getFieldIds(), multFieldValuesRequest.getSort(), multFieldValuesRequest.getUserId(), true, true, false, multFieldValuesRequest.getKeyword(), null);
     }
 
     @ApiIgnore
@@ -9,6 +9,7 @@ import io.dataease.commons.constants.DePermissionType;
 import io.dataease.commons.constants.ResourceAuthLevel;
 import io.dataease.commons.constants.SysAuthConstants;
 import io.dataease.commons.constants.SysLogConstants;
+import io.dataease.commons.pool.DatasourceAdmission;
 import io.dataease.commons.utils.AuthUtils;
 import io.dataease.commons.utils.DeLogUtils;
 import io.dataease.controller.ResultHolder;
@@ -23,6 +24,8 @@ import io.dataease.plugins.common.base.domain.DatasourceExample;
 import io.dataease.plugins.common.dto.datasource.DataSourceType;
 import io.dataease.plugins.datasource.provider.Provider;
 import io.dataease.provider.ProviderFactory;
+import io.dataease.service.datasource.DatasourceHealthCheckService;
+import io.dataease.service.datasource.DatasourcePoolWarmUpService;
 import io.dataease.service.datasource.DatasourceService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -48,6 +51,15 @@ public class DatasourceController {
     @Resource
     private DatasourceService datasourceService;
 
+    @Resource
+    private DatasourceHealthCheckService datasourceHealthCheckService;
+
+    @Resource
+    private DatasourcePoolWarmUpService datasourcePoolWarmUpService;
+
+    @Resource
+    private DatasourceAdmission datasourceAdmission;
+
     @RequiresPermissions("datasource:read")
     @DePermission(type = DePermissionType.DATASOURCE, value = "id")
     @ApiOperation("新增数据源")
@@ -170,5 +182,26 @@ public class DatasourceController {
         return datasourceService.checkApiDatasource(apiDefinition);
     }
 
+    @RequiresPermissions("sysparam:read")
+    @ApiOperation("数据源健康检查统计")
+    @GetMapping("/healthCheck/stats")
+    public Map<String, Object> healthCheckStats() {
+        return datasourceHealthCheckService.stats();
+    }
+
+    @RequiresPermissions("sysparam:read")
+    @ApiOperation("连接池预热状态")
+    @GetMapping("/pool/status")
+    public Map<String, Object> poolStatus() {
+        return datasourcePoolWarmUpService.status();
+    }
+
+    @RequiresPermissions("sysparam:read")
+    @ApiOperation("数据源查询准入统计")
+    @GetMapping("/admission/stats")
+    public Map<String, Object> admissionStats() {
+        return datasourceAdmission.stats();
+    }
+
 
 }
@@ -11,14 +11,17 @@ import io.dataease.auth.service.impl.ExtAuthServiceImpl;
 import io.dataease.commons.constants.DePermissionType;
 import io.dataease.commons.constants.PanelConstants;
 import io.dataease.commons.constants.ResourceAuthLevel;
+import io.dataease.commons.utils.AuthUtils;
 import io.dataease.controller.handler.annotation.I18n;
 import io.dataease.controller.request.panel.*;
 import io.dataease.dto.PermissionProxy;
 import io.dataease.dto.authModel.VAuthModelDTO;
 import io.dataease.dto.panel.PanelExport2App;
 import io.dataease.dto.panel.PanelGroupDTO;
+import io.dataease.dto.panel.ViewDetailsExportTaskDTO;
 import io.dataease.plugins.common.base.domain.PanelGroup;
 import io.dataease.service.panel.PanelGroupService;
+import io.dataease.service.panel.ViewDetailsExportService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.apache.shiro.authz.annotation.Logical;
@@ -50,6 +53,8 @@ public class PanelGroupController {
     private PanelGroupService panelGroupService;
     @Resource
     private ExtAuthServiceImpl authService;
+    @Resource
+    private ViewDetailsExportService viewDetailsExportService;
 
     @ApiOperation("查询树")
     @PostMapping("/tree")
@@ -147,12 +152,7 @@ public class PanelGroupController {
     @PostMapping("/exportDetails")
     @I18n
     public void exportDetails(@RequestBody PanelViewDetailsRequest request, HttpServletResponse response) throws IOException {
-        HttpServletRequest httpServletRequest = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes())
-                .getRequest();
-        String linkToken = httpServletRequest.getHeader(F2CLinkFilter.LINK_TOKEN_KEY);
-        DecodedJWT jwt = JWT.decode(linkToken);
-        Long userId = jwt.getClaim("userId").asLong();
-        request.setUserId(userId);
+        request.setUserId(linkUserId());
         panelGroupService.exportPanelViewDetails(request, response);
     }
 
@@ -164,6 +164,55 @@ public class PanelGroupController {
         panelGroupService.exportPanelViewDetails(request, response);
     }
 
+    @ApiOperation("公共连接提交视图明细导出任务")
+    @PostMapping("/exportDetailsTask")
+    @I18n
+    public ViewDetailsExportTaskDTO exportDetailsTask(@RequestBody PanelViewDetailsRequest request) {
+        Long userId = linkUserId();
+        request.setUserId(userId);
+        return viewDetailsExportService.submit(request, userId);
+    }
+
+    @ApiOperation("公共连接查询视图明细导出任务")
+    @GetMapping("/exportDetailsTask/{taskId}")
+    public ViewDetailsExportTaskDTO exportDetailsTaskStatus(@PathVariable String taskId) {
+        return viewDetailsExportService.status(taskId, linkUserId());
+    }
+
+    @ApiOperation("公共连接下载视图明细导出文件")
+    @GetMapping("/exportDetailsTask/{taskId}/download")
+    public void exportDetailsTaskDownload(@PathVariable String taskId, HttpServletResponse response) throws IOException {
+        viewDetailsExportService.download(taskId, linkUserId(), response);
+    }
+
+    @ApiOperation("站内提交视图明细导出任务")
+    @PostMapping("/innerExportDetailsTask")
+    @DePermissionProxy(value = "proxy")
+    @I18n
+    public ViewDetailsExportTaskDTO innerExportDetailsTask(@RequestBody PanelViewDetailsRequest request) {
+        return viewDetailsExportService.submit(request, AuthUtils.getUser().getUserId());
+    }
+
+    @ApiOperation("站内查询视图明细导出任务")
+    @GetMapping("/innerExportDetailsTask/{taskId}")
+    public ViewDetailsExportTaskDTO innerExportDetailsTaskStatus(@PathVariable String taskId) {
+        return viewDetailsExportService.status(taskId, AuthUtils.getUser().getUserId());
+    }
+
+    @ApiOperation("站内下载视图明细导出文件")
+    @GetMapping("/innerExportDetailsTask/{taskId}/download")
+    public void innerExportDetailsTaskDownload(@PathVariable String taskId, HttpServletResponse response) throws IOException {
+        viewDetailsExportService.download(taskId, AuthUtils.getUser().getUserId(), response);
+    }
+
+    private Long linkUserId() {
+        HttpServletRequest httpServletRequest = ((ServletRequestAttributes) RequestContextHolder.getRequestAttributes())
+                .getRequest();
+        String linkToken = httpServletRequest.getHeader(F2CLinkFilter.LINK_TOKEN_KEY);
+        DecodedJWT jwt = JWT.decode(linkToken);
+        return jwt.getClaim("userId").asLong();
+    }
+
     @ApiOperation("更新仪表板状态")
     @PostMapping("/updatePanelStatus/{panelId}")
     @I18n
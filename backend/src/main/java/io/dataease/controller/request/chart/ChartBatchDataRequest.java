@@ -0,0 +1,26 @@
+package io.dataease.controller.request.chart;
+
+import io.dataease.dto.PermissionProxy;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 批量获取仪表板视图数据
+ */
+@Getter
+@Setter
+public class ChartBatchDataRequest {
+
+    @ApiModelProperty("视图ID及其过滤条件")
+    private Map<String, ChartExtRequest> views = new LinkedHashMap<>();
+
+    @ApiModelProperty("用户ID")
+    private Long user = null;
+
+    @ApiModelProperty(hidden = true)
+    private PermissionProxy proxy;
+}
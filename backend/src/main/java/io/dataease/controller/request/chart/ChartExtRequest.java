@@ -1,7 +1,9 @@
 package io.dataease.controller.request.chart;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.dataease.dto.PermissionProxy;
 import io.dataease.plugins.common.request.chart.ChartExtFilterRequest;
+import io.dataease.service.chart.ViewRowHandler;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Getter;
 import lombok.Setter;
@@ -51,4 +53,8 @@ public class ChartExtRequest {
 
     private Boolean excelExportFlag = false;
 
+    @ApiModelProperty(hidden = true)
+    @JsonIgnore
+    private transient ViewRowHandler rowHandler;
+
 }
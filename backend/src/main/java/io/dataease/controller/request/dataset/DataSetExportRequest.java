@@ -9,4 +9,8 @@ import lombok.Data;
 public class DataSetExportRequest extends DataSetTableRequest {
     private String filename;
     private String expressionTree;
+    /**
+     * xlsx 或 csv，为空时导出 xlsx
+     */
+    private String fileType;
 }
@@ -13,4 +13,16 @@ public class MultFieldValuesRequest {
 
     private DeSortDTO sort;
 
+    /**
+     * 搜索关键字
+     */
+    private String keyword;
+
+    /**
+     * 分页取值，为空时返回全部
+     */
+    private Integer page;
+
+    private Integer pageSize;
+
 }
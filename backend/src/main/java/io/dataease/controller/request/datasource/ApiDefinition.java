@@ -28,5 +28,26 @@ public class ApiDefinition {
     private boolean showApiStructure;
     private boolean reName = false;
     private String orgName;
+    private Pagination pagination = new Pagination();
 
+
+    /**
+     * 分页拉取配置，分页参数统一追加到请求 url 的查询参数中
+     * type: none 不分页；offset 按偏移量；page 按页码；cursor 按上一页返回的游标；nextLink 按上一页返回的下一页地址
+     */
+    @Data
+    public static class Pagination {
+        private String type = "none";
+        private int pageSize = 100;
+        private String offsetParam = "offset";
+        private String limitParam = "limit";
+        private String pageParam = "page";
+        private int startPage = 1;
+        private String cursorParam = "cursor";
+        private String cursorPath;
+        private String nextLinkPath;
+        private int maxPages = 10000;
+        private int concurrency = 1;
+        private double rateLimit;
+    }
 }
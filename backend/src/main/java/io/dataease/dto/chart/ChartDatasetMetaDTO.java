@@ -0,0 +1,41 @@
+package io.dataease.dto.chart;
+
+import io.dataease.dto.dataset.DataSetTableDTO;
+import io.dataease.plugins.common.base.domain.DatasetTableField;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.plugins.common.request.permission.DataSetRowPermissionsTreeDTO;
+import io.dataease.plugins.xpack.auth.dto.request.ColumnPermissionItem;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 视图取数所需的数据集元数据(数据集、字段、行列权限、数据源)
+ * 同一仪表板中使用相同数据集的视图共用一份，只读，不可在计算过程中修改
+ */
+@Getter
+@Setter
+public class ChartDatasetMetaDTO {
+
+    private DataSetTableDTO table;
+
+    private List<DatasetTableField> fields;
+
+    private List<DatasetTableField> columnPermissionFields;
+
+    private Map<String, ColumnPermissionItem> desensitizationList;
+
+    private List<DataSetRowPermissionsTreeDTO> rowPermissionsTree;
+
+    /**
+     * 实际执行查询的数据源，抽取模式下为引擎
+     */
+    private Datasource datasource;
+
+    /**
+     * 数据集自身的数据源类型
+     */
+    private String datasourceType;
+}
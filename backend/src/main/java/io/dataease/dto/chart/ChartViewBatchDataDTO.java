@@ -0,0 +1,22 @@
+package io.dataease.dto.chart;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * 批量获取视图数据时单个视图的结果
+ */
+@Getter
+@Setter
+public class ChartViewBatchDataDTO {
+
+    @ApiModelProperty("视图ID")
+    private String viewId;
+
+    @ApiModelProperty("视图数据")
+    private ChartViewDTO data;
+
+    @ApiModelProperty("错误信息，查询成功时为空")
+    private String error;
+}
@@ -46,4 +46,6 @@ public class ChartViewDTO extends ChartViewWithBLOBs {
     private long totalItems;
     private int datasetMode;
     private String datasourceType;
+    @ApiModelProperty("各查询耗时(毫秒)")
+    private Map<String, Long> queryTimes;
 }
@@ -0,0 +1,29 @@
+package io.dataease.dto.dataset;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+
+@Data
+public class DatasetExportTaskDTO {
+
+    @ApiModelProperty("导出任务ID")
+    private String id;
+    @ApiModelProperty("数据集ID")
+    private String tableId;
+    @ApiModelProperty("文件名称")
+    private String filename;
+    @ApiModelProperty("文件类型: xlsx/csv")
+    private String fileType;
+    @ApiModelProperty("任务状态: Prepare/Underway/Completed/Error/Cancelled")
+    private String status;
+    @ApiModelProperty("已导出行数")
+    private Long rows;
+    @ApiModelProperty("错误信息")
+    private String error;
+    @ApiModelProperty("创建时间")
+    private Long createTime;
+    @ApiModelProperty("完成时间")
+    private Long finishTime;
+
+}
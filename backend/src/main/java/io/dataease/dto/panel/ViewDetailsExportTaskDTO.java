@@ -0,0 +1,27 @@
+package io.dataease.dto.panel;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+
+
+@Data
+public class ViewDetailsExportTaskDTO {
+
+    @ApiModelProperty("导出任务ID")
+    private String id;
+    @ApiModelProperty("视图ID")
+    private String viewId;
+    @ApiModelProperty("视图名称")
+    private String viewName;
+    @ApiModelProperty("任务状态: Prepare/Underway/Completed/Error")
+    private String status;
+    @ApiModelProperty("已导出行数")
+    private Long rows;
+    @ApiModelProperty("错误信息")
+    private String error;
+    @ApiModelProperty("创建时间")
+    private Long createTime;
+    @ApiModelProperty("完成时间")
+    private Long finishTime;
+
+}
@@ -0,0 +1,14 @@
+package io.dataease.exception;
+
+/**
+ * 查询被用户取消或被同一视图的新请求取代
+ */
+public class QueryCancelledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public QueryCancelledException(String message) {
+        super(message);
+    }
+
+}
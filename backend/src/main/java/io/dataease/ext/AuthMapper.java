@@ -39,4 +39,6 @@ public interface AuthMapper {
     SysUserEntity findLarkUser(@Param("larkId") String larkId);
     SysUserEntity findLarksuiteUser(@Param("larksuiteId") String larksuiteId);
 
+    List<Long> recentLoginUserIds(@Param("operateType") Integer operateType, @Param("since") Long since, @Param("limit") Integer limit);
+
 }
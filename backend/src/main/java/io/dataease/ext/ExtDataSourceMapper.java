@@ -21,4 +21,6 @@ public interface ExtDataSourceMapper {
     DatasourceDTO queryDetails(@Param("datasourceId") String datasourceId, @Param("userId") String userId);
 
     List<RelationDTO> queryDatasourceRelation(@Param("datasourceId") String datasourceId, @Param("userId")Long userId);
+
+    List<String> directQueryDatasourceIds();
 }
@@ -1,5 +1,7 @@
 package io.dataease.listener.util;
 
+import io.dataease.auth.config.AuthNearCache;
+import io.dataease.auth.service.impl.AuthCacheService;
 import io.dataease.commons.utils.CommonBeanFactory;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.Element;
@@ -24,10 +26,16 @@ public class CacheUtils {
     }
 
     public static Object get(String cacheName, Object key) {
+        AuthNearCache authCache = authCache(cacheName);
+        if (null != authCache) {
+            org.springframework.cache.Cache.ValueWrapper wrapper = authCache.get(key);
+            return null == wrapper ? null : wrapper.get();
+        }
         if (getCacheManager() instanceof RedisCacheManager) {
             org.springframework.cache.Cache cache = getCacheManager().getCache(cacheName);
-            if (null == cache || null == cache.get(key)) return null;
-            return cache.get(key).get();
+            if (null == cache) return null;
+            org.springframework.cache.Cache.ValueWrapper wrapper = cache.get(key);
+            return null == wrapper ? null : wrapper.get();
         }
         Element element = cache(cacheName).get(key);
         if (null == element) return null;
@@ -35,6 +43,11 @@ public class CacheUtils {
     }
 
     public static void put(String cacheName, Object key, Object value, Integer ttl, Integer tti) {
+        AuthNearCache authCache = authCache(cacheName);
+        if (null != authCache) {
+            authCache.put(key, value);
+            return;
+        }
         if (getCacheManager() instanceof RedisCacheManager) {
             /*RedisTemplate redisTemplate = (RedisTemplate) CommonBeanFactory.getBean("redisTemplate");
             ValueOperations valueOperations = redisTemplate.opsForValue();
@@ -58,6 +71,10 @@ public class CacheUtils {
     }
 
     public static boolean remove(String cacheName, Object key) {
+        AuthNearCache authCache = authCache(cacheName);
+        if (null != authCache) {
+            return authCache.evictIfPresent(key);
+        }
         if (getCacheManager() instanceof RedisCacheManager) {
             org.springframework.cache.Cache cache = getCacheManager().getCache(cacheName);
             if (null == cache) return false;
@@ -68,11 +85,16 @@ public class CacheUtils {
 
     public static void flush(String cacheName) {
         CacheManager manager = getCacheManager();
-        if (manager instanceof RedisCacheManager) return;
+        if (manager instanceof RedisCacheManager || null != authCache(cacheName)) return;
         cache(cacheName).flush();
     }
 
     public static void removeAll(String cacheName) {
+        AuthNearCache authCache = authCache(cacheName);
+        if (null != authCache) {
+            authCache.clear();
+            return;
+        }
         if (getCacheManager() instanceof RedisCacheManager) {
             org.springframework.cache.Cache cache = getCacheManager().getCache(cacheName);
             if (null == cache) return;
@@ -82,6 +104,14 @@ public class CacheUtils {
         cache(cacheName).removeAll();
     }
 
+    /**
+     * 用户、角色、权限缓存由 AuthCacheService 管理，其他缓存返回 null
+     */
+    private static AuthNearCache authCache(String cacheName) {
+        AuthCacheService authCacheService = CommonBeanFactory.getBean(AuthCacheService.class);
+        return null == authCacheService ? null : authCacheService.getCache(cacheName);
+    }
+
     private static Cache cache(String cacheName) {
         if (getCacheManager() instanceof RedisCacheManager) {
             return null;
@@ -21,4 +21,6 @@ public abstract class DDLProvider {
     public abstract String createTableSql(String name, List<DatasetTableField> datasetTableFields, Datasource engine);
 
     public abstract String insertSql(String name, List<String[]> dataList, int page, int pageNumber);
+
+    public abstract String insertPrepareSql(String name, int columnCount);
 }
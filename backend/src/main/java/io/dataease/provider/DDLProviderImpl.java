@@ -56,5 +56,14 @@ public class DDLProviderImpl extends DDLProvider {
         return insertSql + values.substring(0, values.length() - 1);
     }
 
+    @Override
+    public String insertPrepareSql(String name, int columnCount) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columnCount; i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+        }
+        return "INSERT INTO TABLE_NAME VALUES (PLACEHOLDERS)".replace("TABLE_NAME", name).replace("PLACEHOLDERS", placeholders);
+    }
+
 
 }
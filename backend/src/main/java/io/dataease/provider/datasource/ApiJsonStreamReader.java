@@ -0,0 +1,267 @@
+package io.dataease.provider.datasource;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.dataease.controller.request.datasource.ApiDefinition;
+import io.dataease.dto.dataset.DatasetTableFieldDTO;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * API 响应的流式解析
+ * 边读取边按数据路径逐个解析数组元素并回调行数据，不构建整个响应的文档树；
+ * 只支持由键和末尾的 [*] 组成的简单路径，其他 JsonPath 表达式(过滤、下标、递归等)返回 null，由调用方按整个响应解析
+ */
+public class ApiJsonStreamReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String ANY = "*";
+
+    private final List<String> rowsPath;
+
+    private final Map<List<String>, Integer> fieldPaths = new HashMap<>();
+
+    private final Set<List<String>> fieldPrefixes = new HashSet<>();
+
+    private final int columnCount;
+
+    private final List<String> capturePath;
+
+    private final Set<List<String>> walkPrefixes = new HashSet<>();
+
+    private ApiJsonStreamReader(List<String> rowsPath, List<List<String>> fields, List<String> capturePath) {
+        this.rowsPath = rowsPath;
+        this.columnCount = fields.size();
+        this.capturePath = capturePath;
+        for (int i = 0; i < fields.size(); i++) {
+            fieldPaths.putIfAbsent(fields.get(i), i);
+            addPrefixes(fieldPrefixes, fields.get(i));
+        }
+        addPrefixes(walkPrefixes, rowsPath);
+        if (capturePath != null) {
+            addPrefixes(walkPrefixes, capturePath);
+        }
+    }
+
+    /**
+     * 按 API 定义中的数据路径构建，路径无法流式解析时返回 null
+     *
+     * @param capturePath 需要同时读取的单个值的路径，如分页游标，可以为空
+     */
+    public static ApiJsonStreamReader of(ApiDefinition apiDefinition, String capturePath) {
+        List<String> capture = null;
+        if (StringUtils.isNotEmpty(capturePath)) {
+            capture = parsePath(capturePath);
+            if (capture == null || capture.contains(ANY)) {
+                return null;
+            }
+        }
+        String dataPath = apiDefinition.isUseJsonPath() ? apiDefinition.getJsonPath()
+                : StringUtils.isNotEmpty(apiDefinition.getDataPath()) && CollectionUtils.isEmpty(apiDefinition.getJsonFields()) ? apiDefinition.getDataPath() : null;
+        if (dataPath != null) {
+            // 行模式：数据路径指向对象数组或单个对象，字段按名称取值
+            List<String> rowsPath = parsePath(dataPath);
+            if (rowsPath == null) {
+                return null;
+            }
+            if (!rowsPath.isEmpty() && ANY.equals(rowsPath.get(rowsPath.size() - 1))) {
+                rowsPath = rowsPath.subList(0, rowsPath.size() - 1);
+            }
+            if (rowsPath.contains(ANY)) {
+                return null;
+            }
+            List<List<String>> fields = new ArrayList<>();
+            for (DatasetTableFieldDTO field : apiDefinition.getFields()) {
+                fields.add(Collections.singletonList(field.getOriginName()));
+            }
+            return new ApiJsonStreamReader(rowsPath, fields, capture);
+        }
+        // 列模式：各字段路径形如 prefix[*]suffix，prefix 必须相同
+        List<String> rowsPath = null;
+        List<List<String>> fields = new ArrayList<>();
+        for (DatasetTableFieldDTO field : apiDefinition.getFields()) {
+            List<String> path = parsePath(field.getJsonPath());
+            if (path == null || path.indexOf(ANY) < 0 || path.indexOf(ANY) != path.lastIndexOf(ANY)) {
+                return null;
+            }
+            List<String> prefix = path.subList(0, path.indexOf(ANY));
+            if (rowsPath != null && !rowsPath.equals(prefix)) {
+                return null;
+            }
+            rowsPath = prefix;
+            fields.add(path.subList(path.indexOf(ANY) + 1, path.size()));
+        }
+        return rowsPath == null ? null : new ApiJsonStreamReader(rowsPath, fields, capture);
+    }
+
+    /**
+     * 解析响应，每行回调一次
+     *
+     * @return capturePath 对应的值，没有时为 null
+     */
+    public String read(InputStream inputStream, RowHandler handler) throws Exception {
+        String[] captured = new String[1];
+        try (JsonParser parser = MAPPER.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != null) {
+                walk(parser, new ArrayList<>(), handler, captured);
+            }
+        }
+        return captured[0];
+    }
+
+    private void walk(JsonParser parser, List<String> path, RowHandler handler, String[] captured) throws Exception {
+        JsonToken token = parser.currentToken();
+        if (path.equals(rowsPath)) {
+            if (token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    readRow(parser, handler);
+                }
+            } else if (token == JsonToken.START_OBJECT) {
+                readRow(parser, handler);
+            } else {
+                parser.skipChildren();
+            }
+            return;
+        }
+        if (path.equals(capturePath)) {
+            captured[0] = value(parser);
+            return;
+        }
+        if (token == JsonToken.START_OBJECT && walkPrefixes.contains(path)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                path.add(parser.getCurrentName());
+                parser.nextToken();
+                walk(parser, path, handler, captured);
+                path.remove(path.size() - 1);
+            }
+            return;
+        }
+        parser.skipChildren();
+    }
+
+    private void readRow(JsonParser parser, RowHandler handler) throws Exception {
+        String[] row = new String[columnCount];
+        collect(parser, new ArrayList<>(), row);
+        for (int i = 0; i < row.length; i++) {
+            row[i] = row[i] == null ? "" : row[i].replace('\n', ' ').replace('\r', ' ');
+        }
+        handler.handle(row);
+    }
+
+    private void collect(JsonParser parser, List<String> path, String[] row) throws Exception {
+        Integer index = fieldPaths.get(path);
+        if (index != null) {
+            row[index] = value(parser);
+            return;
+        }
+        if (parser.currentToken() == JsonToken.START_OBJECT && fieldPrefixes.contains(path)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                path.add(parser.getCurrentName());
+                parser.nextToken();
+                collect(parser, path, row);
+                path.remove(path.size() - 1);
+            }
+            return;
+        }
+        parser.skipChildren();
+    }
+
+    /**
+     * 标量取原始文本，数组取 json 字符串；
+     * 对象与按 JsonPath 解析时一致，取 Map.toString() 的 {key=value, ...} 格式，保证已抽取数据的值和 dataease_uuid 不变
+     */
+    private String value(JsonParser parser) throws Exception {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.START_OBJECT) {
+            return mapText(MAPPER.readTree(parser));
+        }
+        if (token == JsonToken.START_ARRAY) {
+            return MAPPER.readTree(parser).toString();
+        }
+        return parser.getText();
+    }
+
+    private static String mapText(JsonNode node) {
+        if (node.isObject()) {
+            StringBuilder text = new StringBuilder("{");
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                text.append(field.getKey()).append('=').append(mapText(field.getValue()));
+                if (fields.hasNext()) {
+                    text.append(", ");
+                }
+            }
+            return text.append('}').toString();
+        }
+        if (node.isNull()) {
+            return "null";
+        }
+        return node.isValueNode() ? node.asText() : node.toString();
+    }
+
+    private static void addPrefixes(Set<List<String>> prefixes, List<String> path) {
+        for (int i = 0; i < path.size(); i++) {
+            prefixes.add(new ArrayList<>(path.subList(0, i)));
+        }
+    }
+
+    /**
+     * 把 $.a['b'][*] 形式的路径解析为键列表，[*] 记为 *，不支持的写法返回 null
+     */
+    static List<String> parsePath(String path) {
+        if (StringUtils.isEmpty(path) || !path.startsWith("$")) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>();
+        int i = 1;
+        while (i < path.length()) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                if (i + 1 < path.length() && path.charAt(i + 1) == '.') {
+                    return null;
+                }
+                i++;
+                continue;
+            }
+            if (c == '[') {
+                if (path.startsWith("[*]", i)) {
+                    keys.add(ANY);
+                    i += 3;
+                    continue;
+                }
+                if (i + 1 >= path.length() || (path.charAt(i + 1) != '\'' && path.charAt(i + 1) != '"')) {
+                    return null;
+                }
+                char quote = path.charAt(i + 1);
+                int end = path.indexOf(quote, i + 2);
+                if (end < 0 || end + 1 >= path.length() || path.charAt(end + 1) != ']') {
+                    return null;
+                }
+                keys.add(path.substring(i + 2, end));
+                i = end + 2;
+                continue;
+            }
+            int end = i;
+            while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+                end++;
+            }
+            String key = path.substring(i, end);
+            if (key.equals(ANY) || StringUtils.containsAny(key, "()?@")) {
+                return null;
+            }
+            keys.add(key);
+            i = end;
+        }
+        return keys;
+    }
+}
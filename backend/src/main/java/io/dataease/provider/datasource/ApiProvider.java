@@ -6,6 +6,8 @@ import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import io.dataease.controller.sys.response.BasicInfo;
@@ -14,7 +16,9 @@ import io.dataease.plugins.common.dto.datasource.TableDesc;
 import io.dataease.plugins.common.dto.datasource.TableField;
 import io.dataease.plugins.common.request.datasource.DatasourceRequest;
 import io.dataease.plugins.datasource.provider.Provider;
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
 import io.dataease.commons.utils.HttpClientConfig;
 import io.dataease.commons.utils.HttpClientUtil;
 import io.dataease.controller.request.datasource.ApiDefinition;
@@ -22,14 +26,22 @@ import io.dataease.controller.request.datasource.ApiDefinitionRequest;
 
 import io.dataease.service.system.SystemParameterService;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
 
 import org.springframework.stereotype.Service;
 
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 @Service("apiProvider")
@@ -40,6 +52,8 @@ public class ApiProvider extends Provider {
     @Resource
     private SystemParameterService systemParameterService;
 
+    private final ExecutorService pageExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("api-page-%d").setDaemon(true).build());
+
     @Override
     public List<String[]> getData(DatasourceRequest datasourceRequest) throws Exception {
         BasicInfo basicInfo = systemParameterService.basicInfo();
@@ -82,6 +96,155 @@ public class ApiProvider extends Provider {
         return result;
     }
 
+    /**
+     * 流式拉取数据用于数据抽取，按分页配置逐页请求，每页响应边读取边解析，不在内存中保留整个响应
+     * offset/page 分页可以并发拉取后续页，返回行数少于 pageSize 的页视为最后一页；cursor/nextLink 分页只能逐页拉取
+     */
+    public void streamData(DatasourceRequest datasourceRequest, RowHandler handler) throws Exception {
+        BasicInfo basicInfo = systemParameterService.basicInfo();
+        int socketTimeout = StringUtils.isNotBlank(basicInfo.getFrontTimeOut()) ? Integer.parseInt(basicInfo.getFrontTimeOut()) : 10;
+        ApiDefinition apiDefinition = checkApiDefinition(datasourceRequest);
+        ApiDefinition.Pagination pagination = apiDefinition.getPagination() == null ? new ApiDefinition.Pagination() : apiDefinition.getPagination();
+        RateLimiter rateLimiter = pagination.getRateLimit() > 0 ? RateLimiter.create(pagination.getRateLimit()) : null;
+        String url = argumentUrl(apiDefinition);
+        // 同一次同步的所有分页请求复用一个连接池
+        try (CloseableHttpClient httpClient = HttpClientUtil.buildPooledHttpClient(url, Math.max(pagination.getConcurrency(), 1))) {
+            switch (StringUtils.defaultString(pagination.getType())) {
+                case "offset":
+                case "page":
+                    streamPages(apiDefinition, pagination, url, socketTimeout, rateLimiter, httpClient, handler);
+                    break;
+                case "cursor":
+                case "nextLink":
+                    streamLinkedPages(apiDefinition, pagination, url, socketTimeout, rateLimiter, httpClient, handler);
+                    break;
+                default:
+                    fetchPage(apiDefinition, url, null, socketTimeout, rateLimiter, httpClient, handler);
+                    break;
+            }
+        }
+    }
+
+    private void streamPages(ApiDefinition apiDefinition, ApiDefinition.Pagination pagination, String url, int socketTimeout, RateLimiter rateLimiter, CloseableHttpClient httpClient, RowHandler handler) throws Exception {
+        int pageSize = Math.max(pagination.getPageSize(), 1);
+        int concurrency = Math.max(pagination.getConcurrency(), 1);
+        if (concurrency == 1) {
+            for (int page = 0; page < pagination.getMaxPages(); page++) {
+                if (fetchPage(apiDefinition, pageUrl(url, pagination, page), null, socketTimeout, rateLimiter, httpClient, handler).rows < pageSize) {
+                    break;
+                }
+            }
+            return;
+        }
+        // 并发拉取时每页先缓存，再按页序交给 handler，同时在途的页数不超过 concurrency
+        Deque<Future<List<String[]>>> window = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (true) {
+                while (window.size() < concurrency && next < pagination.getMaxPages()) {
+                    String pageUrl = pageUrl(url, pagination, next++);
+                    window.add(pageExecutor.submit(() -> {
+                        List<String[]> rows = new ArrayList<>(pageSize);
+                        fetchPage(apiDefinition, pageUrl, null, socketTimeout, rateLimiter, httpClient, rows::add);
+                        return rows;
+                    }));
+                }
+                Future<List<String[]>> head = window.poll();
+                if (head == null) {
+                    break;
+                }
+                List<String[]> rows = head.get();
+                for (String[] row : rows) {
+                    handler.handle(row);
+                }
+                if (rows.size() < pageSize) {
+                    break;
+                }
+            }
+        } finally {
+            window.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private void streamLinkedPages(ApiDefinition apiDefinition, ApiDefinition.Pagination pagination, String url, int socketTimeout, RateLimiter rateLimiter, CloseableHttpClient httpClient, RowHandler handler) throws Exception {
+        boolean cursor = "cursor".equals(pagination.getType());
+        String nextPath = cursor ? pagination.getCursorPath() : pagination.getNextLinkPath();
+        if (StringUtils.isEmpty(nextPath)) {
+            throw new Exception("分页路径不能为空");
+        }
+        String pageUrl = url;
+        String previous = null;
+        for (int page = 0; page < pagination.getMaxPages(); page++) {
+            PageResult result = fetchPage(apiDefinition, pageUrl, nextPath, socketTimeout, rateLimiter, httpClient, handler);
+            if (StringUtils.isEmpty(result.next) || result.next.equals(previous) || (cursor && result.rows == 0)) {
+                break;
+            }
+            previous = result.next;
+            pageUrl = cursor ? appendParams(url, Collections.singletonMap(pagination.getCursorParam(), result.next)) : URI.create(pageUrl).resolve(result.next).toString();
+        }
+    }
+
+    private String pageUrl(String url, ApiDefinition.Pagination pagination, int page) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if ("page".equals(pagination.getType())) {
+            params.put(pagination.getPageParam(), String.valueOf(pagination.getStartPage() + page));
+        } else {
+            params.put(pagination.getOffsetParam(), String.valueOf((long) page * pagination.getPageSize()));
+        }
+        params.put(pagination.getLimitParam(), String.valueOf(pagination.getPageSize()));
+        return appendParams(url, params);
+    }
+
+    /**
+     * 请求一页数据，数据路径可以流式解析时边读边回调，否则读取整页后按 JsonPath 解析
+     *
+     * @param nextPath 下一页游标或地址在响应中的路径，不分页时为空
+     */
+    private PageResult fetchPage(ApiDefinition apiDefinition, String url, String nextPath, int socketTimeout, RateLimiter rateLimiter, CloseableHttpClient httpClient, RowHandler handler) throws Exception {
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+        PageResult result = new PageResult();
+        RowHandler counter = row -> {
+            result.rows++;
+            handler.handle(row);
+        };
+        ApiJsonStreamReader reader = ApiJsonStreamReader.of(apiDefinition, nextPath);
+        execHttpRequest(apiDefinition, url, socketTimeout, httpClient, inputStream -> {
+            if (reader != null) {
+                result.next = reader.read(inputStream, counter);
+                return;
+            }
+            String response = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+            if (StringUtils.isBlank(response)) {
+                return;
+            }
+            for (String[] row : fetchResult(response, apiDefinition)) {
+                counter.handle(row);
+            }
+            if (nextPath != null) {
+                try {
+                    Object next = JsonPath.read(response, nextPath);
+                    result.next = next == null ? null : next.toString();
+                } catch (PathNotFoundException ignore) {
+                }
+            }
+        });
+        return result;
+    }
+
+    private static class PageResult {
+
+        private long rows;
+
+        private String next;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        pageExecutor.shutdownNow();
+    }
+
 
     private List<TableField> getTableFields(ApiDefinition apiDefinition) throws Exception {
         List<TableField> tableFields = new ArrayList<>();
@@ -126,7 +289,15 @@ public class ApiProvider extends Provider {
     }
 
     static public String execHttpRequest(ApiDefinition apiDefinition, int socketTimeout) throws Exception {
-        String response = "";
+        if ("GET".equals(apiDefinition.getMethod())) {
+            apiDefinition.setUrl(argumentUrl(apiDefinition));
+        }
+        StringBuilder response = new StringBuilder();
+        execHttpRequest(apiDefinition, apiDefinition.getUrl().trim(), socketTimeout, null, inputStream -> response.append(IOUtils.toString(inputStream, StandardCharsets.UTF_8)));
+        return response.toString();
+    }
+
+    static private void execHttpRequest(ApiDefinition apiDefinition, String url, int socketTimeout, CloseableHttpClient httpClient, HttpClientUtil.StreamHandler handler) throws Exception {
         HttpClientConfig httpClientConfig = new HttpClientConfig();
         httpClientConfig.setSocketTimeout(socketTimeout * 1000);
         ApiDefinitionRequest apiDefinitionRequest = apiDefinition.getRequest();
@@ -146,16 +317,7 @@ public class ApiProvider extends Provider {
 
         switch (apiDefinition.getMethod()) {
             case "GET":
-                List<String>  params = new ArrayList<>();
-                for (Map<String, String> argument : apiDefinition.getRequest().getArguments()) {
-                    if(StringUtils.isNotEmpty(argument.get("name")) && StringUtils.isNotEmpty(argument.get("value"))){
-                        params.add(argument.get("name") + "=" + URLEncoder.encode(argument.get("value")));
-                    }
-                }
-                if(CollectionUtils.isNotEmpty(params)){
-                    apiDefinition.setUrl(apiDefinition.getUrl() + "?" + StringUtils.join(params, "&"));
-                }
-                response = HttpClientUtil.get(apiDefinition.getUrl().trim(), httpClientConfig);
+                HttpClientUtil.get(url, httpClientConfig, httpClient, handler);
                 break;
             case "POST":
                 if (apiDefinitionRequest.getBody().get("type") == null) {
@@ -166,7 +328,7 @@ public class ApiProvider extends Provider {
                     String raw = null;
                     if (apiDefinitionRequest.getBody().get("raw") != null) {
                         raw = apiDefinitionRequest.getBody().get("raw").toString();
-                        response = HttpClientUtil.post(apiDefinition.getUrl(), raw, httpClientConfig);
+                        HttpClientUtil.post(url, raw, httpClientConfig, httpClient, handler);
                     }
                 }
                 if (StringUtils.equalsAny(type, "Form_Data", "WWW_FORM")) {
@@ -180,14 +342,43 @@ public class ApiProvider extends Provider {
                                 body.put(kv.getString("name"), kv.getString("value"));
                             }
                         }
-                        response = HttpClientUtil.post(apiDefinition.getUrl(), body, httpClientConfig);
+                        HttpClientUtil.post(url, body, httpClientConfig, httpClient, handler);
                     }
                 }
                 break;
             default:
                 break;
         }
-        return response;
+    }
+
+    /**
+     * GET 请求的参数拼接到 url 上
+     */
+    static private String argumentUrl(ApiDefinition apiDefinition) {
+        String url = apiDefinition.getUrl().trim();
+        if (!"GET".equals(apiDefinition.getMethod())) {
+            return url;
+        }
+        List<String> params = new ArrayList<>();
+        for (Map<String, String> argument : apiDefinition.getRequest().getArguments()) {
+            if (StringUtils.isNotEmpty(argument.get("name")) && StringUtils.isNotEmpty(argument.get("value"))) {
+                params.add(argument.get("name") + "=" + URLEncoder.encode(argument.get("value")));
+            }
+        }
+        return appendParams(url, params);
+    }
+
+    static private String appendParams(String url, Map<String, String> params) {
+        List<String> pairs = new ArrayList<>();
+        params.forEach((name, value) -> pairs.add(name + "=" + URLEncoder.encode(value)));
+        return appendParams(url, pairs);
+    }
+
+    static private String appendParams(String url, List<String> pairs) {
+        if (CollectionUtils.isEmpty(pairs)) {
+            return url;
+        }
+        return url + (url.contains("?") ? "&" : "?") + StringUtils.join(pairs, "&");
     }
 
 
@@ -426,7 +617,7 @@ public class ApiProvider extends Provider {
     }
 
     private List<String[]> fetchResult(String result, ApiDefinition apiDefinition) {
-        List<String[]> dataList = new LinkedList<>();
+        List<String[]> dataList = new ArrayList<>();
         if(apiDefinition.isUseJsonPath()){
             List<LinkedHashMap> currentData = new ArrayList<>();
             Object object = JsonPath.read(result, apiDefinition.getJsonPath());
@@ -439,7 +630,7 @@ public class ApiProvider extends Provider {
                 String[] row = new String[apiDefinition.getFields().size()];
                 int i = 0;
                 for (DatasetTableFieldDTO field : apiDefinition.getFields()) {
-                    row[i] = Optional.ofNullable(data.get(field.getOriginName())).orElse("").toString().replaceAll("\n", " ").replaceAll("\r", " ");
+                    row[i] = Optional.ofNullable(data.get(field.getOriginName())).orElse("").toString().replace('\n', ' ').replace('\r', ' ');
                     i++;
                 }
                 dataList.add(row);
@@ -457,7 +648,7 @@ public class ApiProvider extends Provider {
                     String[] row = new String[apiDefinition.getFields().size()];
                     int i = 0;
                     for (DatasetTableFieldDTO field : apiDefinition.getFields()) {
-                        row[i] = Optional.ofNullable(data.get(field.getOriginName())).orElse("").toString().replaceAll("\n", " ").replaceAll("\r", " ");
+                        row[i] = Optional.ofNullable(data.get(field.getOriginName())).orElse("").toString().replace('\n', ' ').replace('\r', ' ');
                         i++;
                     }
                     dataList.add(row);
@@ -466,9 +657,11 @@ public class ApiProvider extends Provider {
                 List<String> jsonPaths = apiDefinition.getFields().stream().map(DatasetTableFieldDTO::getJsonPath).collect(Collectors.toList());
                 Long maxLength = 0l;
                 List<List<String>> columnDataList = new ArrayList<>();
+                // 只解析一次响应，各字段在同一个文档上取值
+                DocumentContext document = JsonPath.parse(result);
                 for (int i = 0; i < jsonPaths.size(); i++) {
                     List<String> data = new ArrayList<>();
-                    Object object = JsonPath.read(result, jsonPaths.get(i));
+                    Object object = document.read(jsonPaths.get(i));
                     if (object instanceof List && jsonPaths.get(i).contains("[*]")) {
                         data = (List<String>) object;
                     } else {
@@ -485,7 +678,7 @@ public class ApiProvider extends Provider {
                 }
                 for (int i = 0; i < columnDataList.size(); i++) {
                     for (int j = 0; j < columnDataList.get(i).size(); j++) {
-                        dataList.get(j)[i] = Optional.ofNullable(String.valueOf(columnDataList.get(i).get(j))).orElse("").replaceAll("\n", " ").replaceAll("\r", " ");
+                        dataList.get(j)[i] = String.valueOf(columnDataList.get(i).get(j)).replace('\n', ' ').replace('\r', ' ');
                     }
                 }
             }
@@ -2,10 +2,12 @@ package io.dataease.provider.datasource;
 
 import com.alibaba.druid.pool.DruidDataSource;
 import com.alibaba.druid.pool.DruidPooledConnection;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import io.dataease.commons.utils.LogUtil;
 import io.dataease.dto.datasource.*;
 import io.dataease.exception.DataEaseException;
+import io.dataease.exception.QueryCancelledException;
 import io.dataease.i18n.Translator;
 import io.dataease.plugins.common.base.domain.Datasource;
 import io.dataease.plugins.common.base.domain.DeDriver;
@@ -19,19 +21,38 @@ import io.dataease.plugins.datasource.provider.DefaultJdbcProvider;
 import io.dataease.plugins.datasource.provider.ExtendedJdbcClassLoader;
 import io.dataease.plugins.datasource.query.QueryProvider;
 import io.dataease.provider.ProviderFactory;
+import io.dataease.service.datasource.DatasourcePoolWarmUpService;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import javax.annotation.Resource;
 import java.lang.reflect.Method;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 @Service("jdbc")
 public class JdbcProvider extends DefaultJdbcProvider {
 
 
+    private static final int COLUMN_STRING = 0;
+    private static final int COLUMN_DATE = 1;
+    private static final int COLUMN_BOOLEAN = 2;
+    private static final int COLUMN_BLOB = 3;
+
+    private static final Executor NETWORK_TIMEOUT_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("jdbc-network-timeout-%d").setDaemon(true).build());
+
     @Resource
     private DeDriverMapper deDriverMapper;
+    @Resource
+    @Lazy
+    private DatasourcePoolWarmUpService datasourcePoolWarmUpService;
+
+    @Value("${dataease.jdbc.fetch-size:1000}")
+    private int fetchSize;
 
     @Override
     public boolean isUseDatasourcePool() {
@@ -71,6 +92,45 @@ public class JdbcProvider extends DefaultJdbcProvider {
         }
     }
 
+    /**
+     * 使用预编译语句批量写入，每 batchSize 行执行并提交一次
+     *
+     * @param sql  带占位符的 INSERT 语句
+     * @param rows 每行的参数，顺序与占位符一致
+     */
+    public void batchExec(DatasourceRequest datasourceRequest, String sql, List<String[]> rows, int batchSize) throws Exception {
+        try (Connection connection = getConnectionFromPool(datasourceRequest); PreparedStatement ps = connection.prepareStatement(sql)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                int count = 0;
+                for (String[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        ps.setString(i + 1, row[i]);
+                    }
+                    ps.addBatch();
+                    if (++count % batchSize == 0) {
+                        ps.executeBatch();
+                        connection.commit();
+                    }
+                }
+                if (count % batchSize != 0) {
+                    ps.executeBatch();
+                    connection.commit();
+                }
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            DataEaseException.throwException(e);
+        } catch (Exception e) {
+            DataEaseException.throwException(e);
+        }
+    }
+
 
     @Override
     public List<TableField> getTableFields(DatasourceRequest datasourceRequest) throws Exception {
@@ -259,6 +319,19 @@ public class JdbcProvider extends DefaultJdbcProvider {
     }
 
     private List<String[]> getDataResult(ResultSet rs, DatasourceRequest datasourceRequest) throws Exception {
+        List<String[]> list = new ArrayList<>();
+        readRows(rs, datasourceRequest, row -> list.add(row.clone()), 0, -1);
+        return list;
+    }
+
+    /**
+     * 逐行读取结果集，列类型在读取前一次性解析，行数组在各行之间复用
+     *
+     * @param datasourceRequest 为空时不做 oracle 字符集转换
+     * @param skip              跳过的行数
+     * @param limit             最多读取的行数，小于 0 表示不限制
+     */
+    private void readRows(ResultSet rs, DatasourceRequest datasourceRequest, RowHandler handler, long skip, long limit) throws Exception {
         String charset = null;
         String targetCharset = "UTF-8";
         if (datasourceRequest != null && datasourceRequest.getDatasource().getType().equalsIgnoreCase("oracle")) {
@@ -270,40 +343,62 @@ public class JdbcProvider extends DefaultJdbcProvider {
                 targetCharset = jdbcConfiguration.getTargetCharset();
             }
         }
-        List<String[]> list = new LinkedList<>();
         ResultSetMetaData metaData = rs.getMetaData();
         int columnCount = metaData.getColumnCount();
+        String[] columnLabels = new String[columnCount];
+        int[] columnKinds = new int[columnCount];
+        for (int j = 0; j < columnCount; j++) {
+            columnLabels[j] = metaData.getColumnLabel(j + 1);
+            switch (metaData.getColumnType(j + 1)) {
+                case Types.DATE:
+                    columnKinds[j] = COLUMN_DATE;
+                    break;
+                case Types.BOOLEAN:
+                    columnKinds[j] = COLUMN_BOOLEAN;
+                    break;
+                default:
+                    columnKinds[j] = "blob".equalsIgnoreCase(metaData.getColumnTypeName(j + 1)) ? COLUMN_BLOB : COLUMN_STRING;
+                    break;
+            }
+        }
+        handler.start(columnLabels);
+
+        String[] row = new String[columnCount];
+        long index = -1;
         while (rs.next()) {
-            String[] row = new String[columnCount];
+            index++;
+            if (index < skip) {
+                continue;
+            }
+            if (limit >= 0 && index >= skip + limit) {
+                break;
+            }
             for (int j = 0; j < columnCount; j++) {
-                int columnType = metaData.getColumnType(j + 1);
-                switch (columnType) {
-                    case Types.DATE:
-                        if (rs.getDate(j + 1) != null) {
-                            row[j] = rs.getDate(j + 1).toString();
-                        }
+                switch (columnKinds[j]) {
+                    case COLUMN_DATE:
+                        java.sql.Date date = rs.getDate(j + 1);
+                        row[j] = date == null ? null : date.toString();
                         break;
-                    case Types.BOOLEAN:
+                    case COLUMN_BOOLEAN:
                         row[j] = rs.getBoolean(j + 1) ? "1" : "0";
                         break;
+                    case COLUMN_BLOB:
+                        Blob blob = rs.getBlob(j + 1);
+                        row[j] = blob == null ? "" : blob.toString();
+                        break;
                     default:
-                        if (metaData.getColumnTypeName(j + 1).toLowerCase().equalsIgnoreCase("blob")) {
-                            row[j] = rs.getBlob(j + 1) == null ? "" : rs.getBlob(j + 1).toString();
+                        String value = rs.getString(j + 1);
+                        if (charset != null && StringUtils.isNotEmpty(value)) {
+                            String originStr = new String(value.getBytes(charset), targetCharset);
+                            row[j] = new String(originStr.getBytes("UTF-8"), "UTF-8");
                         } else {
-                            if (charset != null && StringUtils.isNotEmpty(rs.getString(j + 1))) {
-                                String originStr = new String(rs.getString(j + 1).getBytes(charset), targetCharset);
-                                row[j] = new String(originStr.getBytes("UTF-8"), "UTF-8");
-                            } else {
-                                row[j] = rs.getString(j + 1);
-                            }
+                            row[j] = value;
                         }
-
                         break;
                 }
             }
-            list.add(row);
+            handler.handle(row);
         }
-        return list;
     }
 
     private List<TableField> fetchResultField(ResultSet rs, DatasourceRequest datasourceRequest) throws Exception {
@@ -339,24 +434,112 @@ public class JdbcProvider extends DefaultJdbcProvider {
         return fieldList;
     }
 
+    /**
+     * 表的主键列，按主键中的顺序返回，驱动不支持时返回空列表
+     */
+    public List<String> primaryKeys(DatasourceRequest datasourceRequest) throws Exception {
+        List<String> keys = new ArrayList<>();
+        try (Connection connection = getConnectionFromPool(datasourceRequest)) {
+            DatabaseMetaData databaseMetaData = connection.getMetaData();
+            String schemaPattern = null;
+            if (datasourceRequest.getDatasource().getType().equalsIgnoreCase(DatasourceTypes.oracle.name())) {
+                schemaPattern = databaseMetaData.getUserName();
+            }
+            Map<Short, String> columns = new TreeMap<>();
+            try (ResultSet resultSet = databaseMetaData.getPrimaryKeys(connection.getCatalog(), schemaPattern, datasourceRequest.getTable())) {
+                while (resultSet.next()) {
+                    columns.put(resultSet.getShort("KEY_SEQ"), resultSet.getString("COLUMN_NAME"));
+                }
+            }
+            keys.addAll(columns.values());
+        } catch (SQLFeatureNotSupportedException e) {
+            return keys;
+        }
+        return keys;
+    }
+
     @Override
     public List<String[]> getData(DatasourceRequest dsr) throws Exception {
-        List<String[]> list = new LinkedList<>();
+        List<String[]> list = new ArrayList<>();
+        streamData(dsr, row -> list.add(row.clone()));
+        return list;
+    }
+
+    /**
+     * 流式读取查询结果，不在内存中保留整个结果集
+     * SQL Server / DB2 的分页在读取过程中跳过和截断，不再先取全量再 subList
+     *
+     * @param dsr
+     * @param handler 行回调，row 数组在各行之间复用
+     * @throws Exception
+     */
+    public void streamData(DatasourceRequest dsr, RowHandler handler) throws Exception {
+        streamData(dsr, handler, 0);
+    }
+
+    /**
+     * 流式读取查询结果，并由驱动限制最多返回的行数
+     *
+     * @param maxRows 大于 0 时生效，通过 Statement.setMaxRows 下推，不依赖各数据库的分页语法
+     */
+    public void streamData(DatasourceRequest dsr, RowHandler handler, int maxRows) throws Exception {
         JdbcConfiguration jdbcConfiguration = new Gson().fromJson(dsr.getDatasource().getConfiguration(), JdbcConfiguration.class);
         int queryTimeout = jdbcConfiguration.getQueryTimeout() > 0 ? jdbcConfiguration.getQueryTimeout() : 0;
-        try (Connection connection = getConnectionFromPool(dsr); Statement stat = getStatement(connection, queryTimeout); ResultSet rs = stat.executeQuery(dsr.getQuery())) {
-            list = getDataResult(rs, dsr);
-            if (dsr.isPageable() && (dsr.getDatasource().getType().equalsIgnoreCase(DatasourceTypes.sqlServer.name()) || dsr.getDatasource().getType().equalsIgnoreCase(DatasourceTypes.db2.name()))) {
-                Integer realSize = dsr.getPage() * dsr.getPageSize() < list.size() ? dsr.getPage() * dsr.getPageSize() : list.size();
-                list = list.subList((dsr.getPage() - 1) * dsr.getPageSize(), realSize);
-            }
+        streamData(dsr, handler, maxRows, queryTimeout);
+    }
 
+    /**
+     * 数据抽取使用的流式读取，不受数据源配置的查询超时限制；
+     * 返回原始值，字符集转换由写入端在计算 dataease_uuid 之后进行，与 kettle 转换一致
+     */
+    public void streamExtractData(DatasourceRequest dsr, RowHandler handler) throws Exception {
+        streamData(dsr, handler, 0, 0, false);
+    }
+
+    private void streamData(DatasourceRequest dsr, RowHandler handler, int maxRows, int queryTimeout) throws Exception {
+        streamData(dsr, handler, maxRows, queryTimeout, true);
+    }
+
+    private void streamData(DatasourceRequest dsr, RowHandler handler, int maxRows, int queryTimeout, boolean convertCharset) throws Exception {
+        long skip = 0;
+        long limit = -1;
+        if (dsr.isPageable() && (dsr.getDatasource().getType().equalsIgnoreCase(DatasourceTypes.sqlServer.name()) || dsr.getDatasource().getType().equalsIgnoreCase(DatasourceTypes.db2.name()))) {
+            skip = (long) (dsr.getPage() - 1) * dsr.getPageSize();
+            limit = dsr.getPageSize();
+        }
+        try (Connection connection = getConnectionFromPool(dsr); Statement stat = getStatement(connection, queryTimeout)) {
+            // 登记到当前请求，请求取消时由 QueryRegistry 调用 Statement.cancel()
+            QueryRegistry.register(stat);
+            try {
+                stat.setFetchSize(getFetchSize(dsr));
+                if (maxRows > 0) {
+                    stat.setMaxRows(maxRows);
+                }
+                try (ResultSet rs = stat.executeQuery(dsr.getQuery())) {
+                    readRows(rs, convertCharset ? dsr : null, handler, skip, limit);
+                }
+            } finally {
+                QueryRegistry.unregister(stat);
+            }
+        } catch (QueryCancelledException e) {
+            throw e;
         } catch (SQLException e) {
+            QueryRegistry.checkCancelled();
             DataEaseException.throwException("SQL ERROR" + e.getMessage());
         } catch (Exception e) {
+            QueryRegistry.checkCancelled();
             DataEaseException.throwException("Data source connection exception: " + e.getMessage());
         }
-        return list;
+    }
+
+    private int getFetchSize(DatasourceRequest dsr) {
+        String type = dsr.getDatasource().getType();
+        // MySQL 协议的驱动只有 Integer.MIN_VALUE 才会逐行读取，其他值仍会一次性缓存整个结果集
+        if (StringUtils.equalsAnyIgnoreCase(type, DatasourceTypes.mysql.name(), DatasourceTypes.mariadb.name(), DatasourceTypes.TiDB.name(),
+                DatasourceTypes.StarRocks.name(), DatasourceTypes.ds_doris.name(), DatasourceTypes.engine_doris.name(), DatasourceTypes.engine_mysql.name())) {
+            return Integer.MIN_VALUE;
+        }
+        return fetchSize;
     }
 
     @Override
@@ -372,8 +555,58 @@ public class JdbcProvider extends DefaultJdbcProvider {
         return "Success";
     }
 
+    /**
+     * 健康检查：直连数据源执行各方言的轻量校验语句，不再列出全部表
+     *
+     * 语句登记到当前的 QueryRegistry 上下文，超时后可由调用方通过 Statement.cancel() 中止
+     *
+     * @param timeoutSeconds 建立连接与执行语句的超时时间，小于等于 0 时不限制
+     */
+    public String probe(DatasourceRequest datasourceRequest, int timeoutSeconds) throws Exception {
+        String queryStr = validationQuery(datasourceRequest.getDatasource().getType());
+        try (Connection con = getConnection(datasourceRequest, timeoutSeconds); Statement statement = getStatement(con, Math.max(timeoutSeconds, 0))) {
+            if (timeoutSeconds > 0) {
+                setNetworkTimeout(con, timeoutSeconds);
+            }
+            QueryRegistry.register(statement);
+            try (ResultSet resultSet = statement.executeQuery(queryStr)) {
+            } finally {
+                QueryRegistry.unregister(statement);
+            }
+        }
+        return "Success";
+    }
+
+    /**
+     * 没有读取超时参数的驱动通过 JDBC 4.1 的 setNetworkTimeout 限制读取时间，不支持时忽略
+     */
+    private void setNetworkTimeout(Connection con, int timeoutSeconds) {
+        try {
+            con.setNetworkTimeout(NETWORK_TIMEOUT_EXECUTOR, (int) Math.min(timeoutSeconds * 1000L, Integer.MAX_VALUE));
+        } catch (Throwable e) {
+            LogUtil.debug("Network timeout is not supported: " + e.getMessage());
+        }
+    }
+
+    public String validationQuery(String type) {
+        if (StringUtils.equalsIgnoreCase(type, DatasourceTypes.oracle.name())) {
+            return "select 1 from dual";
+        }
+        if (StringUtils.equalsIgnoreCase(type, DatasourceTypes.db2.name())) {
+            return "select 1 from sysibm.sysdummy1";
+        }
+        return "select 1";
+    }
+
     @Override
     public Connection getConnection(DatasourceRequest datasourceRequest) throws Exception {
+        return getConnection(datasourceRequest, 0);
+    }
+
+    /**
+     * @param connectTimeoutSeconds 大于 0 时按驱动设置连接与读取超时
+     */
+    private Connection getConnection(DatasourceRequest datasourceRequest, int connectTimeoutSeconds) throws Exception {
         String username = null;
         String password = null;
         String defaultDriver = null;
@@ -502,6 +735,9 @@ public class JdbcProvider extends DefaultJdbcProvider {
                 props.setProperty("password", password);
             }
         }
+        if (connectTimeoutSeconds > 0) {
+            setConnectTimeout(datasourceType, props, connectTimeoutSeconds);
+        }
 
         Connection conn;
         String driverClassName;
@@ -613,6 +849,10 @@ public class JdbcProvider extends DefaultJdbcProvider {
                 break;
         }
 
+        if (datasourceType == DatasourceTypes.engine_mysql) {
+            // 简易模式抽取批量写入引擎时，由驱动将批量 INSERT 合并为多值语句
+            dataSource.addConnectionProperty("rewriteBatchedStatements", "true");
+        }
         dataSource.setUsername(jdbcConfiguration.getUsername());
 
         ExtendedJdbcClassLoader classLoader;
@@ -624,10 +864,55 @@ public class JdbcProvider extends DefaultJdbcProvider {
         }
         dataSource.setDriverClassLoader(classLoader);
         dataSource.setPassword(jdbcConfiguration.getPassword());
+        // 创建连接池时回调，启动时未预热的连接池在第一次查询创建后标记为就绪
+        datasourcePoolWarmUpService.created(datasourceRequest.getDatasource().getId());
 
         return jdbcConfiguration;
     }
 
+    private void setConnectTimeout(DatasourceTypes datasourceType, Properties props, int timeoutSeconds) {
+        String millis = String.valueOf(timeoutSeconds * 1000L);
+        String seconds = String.valueOf(timeoutSeconds);
+        switch (datasourceType) {
+            case mysql:
+            case mariadb:
+            case engine_doris:
+            case engine_mysql:
+            case ds_doris:
+            case TiDB:
+            case StarRocks:
+                props.setProperty("connectTimeout", millis);
+                props.setProperty("socketTimeout", millis);
+                break;
+            case pg:
+            case redshift:
+                props.setProperty("connectTimeout", seconds);
+                props.setProperty("socketTimeout", seconds);
+                break;
+            case sqlServer:
+                props.setProperty("loginTimeout", seconds);
+                break;
+            case oracle:
+                props.put("oracle.net.CONNECT_TIMEOUT", millis);
+                props.put("oracle.jdbc.ReadTimeout", millis);
+                break;
+            case ck:
+                props.setProperty("connect_timeout", millis);
+                props.setProperty("socket_timeout", millis);
+                break;
+            case db2:
+                props.setProperty("loginTimeout", seconds);
+                props.setProperty("blockingReadConnectionTimeout", seconds);
+                break;
+            case impala:
+                props.setProperty("SocketTimeout", seconds);
+                break;
+            default:
+                // hive、mongo 的驱动没有对应参数，依赖 setNetworkTimeout 和 Statement.cancel()
+                break;
+        }
+    }
+
     @Override
     public String getTablesSql(DatasourceRequest datasourceRequest) throws Exception {
         DatasourceTypes datasourceType = DatasourceTypes.valueOf(datasourceRequest.getDatasource().getType());
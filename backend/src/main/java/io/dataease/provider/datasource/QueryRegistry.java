@@ -0,0 +1,211 @@
+package io.dataease.provider.datasource;
+
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.exception.QueryCancelledException;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 执行中的查询登记表
+ * 每个取数请求开始时登记一个上下文，JdbcProvider 执行语句期间把 Statement 挂在当前上下文上；
+ * 取消请求时调用 Statement.cancel() 中止数据库端的执行并释放连接，
+ * 同一用户在同一客户端（浏览器标签页中的同一视图组件）对同一视图发起新请求时，旧请求自动取消
+ */
+@Component
+public class QueryRegistry {
+
+    private static final ThreadLocal<QueryContext> CURRENT = new ThreadLocal<>();
+
+    private final Map<String, QueryContext> requests = new ConcurrentHashMap<>();
+
+    private final Map<String, QueryContext> latest = new ConcurrentHashMap<>();
+
+    /**
+     * 登记当前线程的取数请求
+     *
+     * @param requestId 请求 id，为空或与执行中的请求重复时自动生成
+     * @param key       相同用户、相同 key 的旧请求会被取消，为空时不取消
+     */
+    public QueryContext begin(String requestId, Long userId, String key) {
+        QueryContext context = new QueryContext(requestId == null ? UUID.randomUUID().toString() : requestId, userId, key == null ? null : userId + ":" + key, null);
+        while (requests.putIfAbsent(context.requestId, context) != null) {
+            LogUtil.warn("Duplicate query id {}, generate a new one", context.requestId);
+            context = new QueryContext(UUID.randomUUID().toString(), userId, context.key, null);
+        }
+        if (context.key != null) {
+            QueryContext superseded = latest.put(context.key, context);
+            if (superseded != null && superseded != context) {
+                superseded.cancel("Query superseded by a newer request");
+            }
+        }
+        CURRENT.set(context);
+        return context;
+    }
+
+    public void end(QueryContext context) {
+        CURRENT.remove();
+        if (context == null) {
+            return;
+        }
+        requests.remove(context.requestId, context);
+        if (context.key != null) {
+            latest.remove(context.key, context);
+        }
+    }
+
+    /**
+     * 取消请求，只能取消自己的请求，管理员可以取消任意请求
+     */
+    public boolean cancel(String requestId, Long userId, boolean admin) {
+        QueryContext context = requests.get(requestId);
+        if (context == null || (!admin && !Objects.equals(context.userId, userId))) {
+            return false;
+        }
+        context.cancel("Query cancelled by user");
+        return true;
+    }
+
+    public List<Map<String, Object>> running() {
+        List<Map<String, Object>> running = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        requests.values().forEach(context -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("requestId", context.requestId);
+            item.put("userId", context.userId);
+            item.put("statements", context.statements.size());
+            item.put("cancelled", context.cancelled);
+            item.put("duration", now - context.startTime);
+            running.add(item);
+        });
+        return running;
+    }
+
+    public static QueryContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 当前请求下的子上下文，不登记到请求表；取消子上下文只中止其中的语句，取消外层请求时子上下文中的语句一并中止
+     */
+    public static QueryContext child() {
+        QueryContext parent = CURRENT.get();
+        return new QueryContext(parent == null ? UUID.randomUUID().toString() : parent.requestId, parent == null ? null : parent.userId, null, parent);
+    }
+
+    /**
+     * 把当前线程的请求上下文带到其他线程中执行的查询
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        return propagate(CURRENT.get(), task);
+    }
+
+    /**
+     * 在指定的请求上下文中执行查询
+     */
+    public static <T> Callable<T> propagate(QueryContext context, Callable<T> task) {
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            QueryContext previous = CURRENT.get();
+            CURRENT.set(context);
+            try {
+                return task.call();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * 语句执行前登记，请求已取消时直接抛出异常
+     */
+    static void register(Statement statement) {
+        QueryContext context = CURRENT.get();
+        if (context == null) {
+            return;
+        }
+        for (QueryContext item = context; item != null; item = item.parent) {
+            item.statements.add(statement);
+        }
+        if (context.isCancelled()) {
+            unregister(statement);
+            throw new QueryCancelledException(context.getReason());
+        }
+    }
+
+    static void unregister(Statement statement) {
+        for (QueryContext item = CURRENT.get(); item != null; item = item.parent) {
+            item.statements.remove(statement);
+        }
+    }
+
+    /**
+     * 当前请求是否已取消，已取消时抛出异常
+     */
+    public static void checkCancelled() {
+        QueryContext context = CURRENT.get();
+        if (context != null && context.isCancelled()) {
+            throw new QueryCancelledException(context.getReason());
+        }
+    }
+
+    public static class QueryContext {
+
+        private final String requestId;
+
+        private final Long userId;
+
+        private final String key;
+
+        private final QueryContext parent;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean cancelled;
+
+        private volatile String reason;
+
+        QueryContext(String requestId, Long userId, String key, QueryContext parent) {
+            this.requestId = requestId;
+            this.userId = userId;
+            this.key = key;
+            this.parent = parent;
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+
+        public boolean isCancelled() {
+            return cancelled || (parent != null && parent.isCancelled());
+        }
+
+        private String getReason() {
+            return cancelled || parent == null ? reason : parent.getReason();
+        }
+
+        public void cancel(String reason) {
+            this.reason = reason;
+            this.cancelled = true;
+            for (Statement statement : statements) {
+                try {
+                    statement.cancel();
+                } catch (Exception e) {
+                    LogUtil.warn("Failed to cancel statement: " + e.getMessage());
+                }
+            }
+            LogUtil.info("Cancel query {}: {}", requestId, reason);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.dataease.provider.datasource;
+
+/**
+ * 逐行消费查询结果
+ * 为避免每行分配新数组，handle 收到的 row 在各行之间复用，需要保留时请自行 clone
+ */
+@FunctionalInterface
+public interface RowHandler {
+
+    /**
+     * 结果集元数据解析完成、读取第一行之前回调
+     *
+     * @param columnLabels 列名
+     */
+    default void start(String[] columnLabels) throws Exception {
+    }
+
+    void handle(String[] row) throws Exception;
+
+}
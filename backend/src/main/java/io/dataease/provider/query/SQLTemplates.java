@@ -0,0 +1,32 @@
+package io.dataease.provider.query;
+
+import io.dataease.plugins.common.constants.datasource.SQLConstants;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL 模板缓存
+ * 模板文件只解析一次，各 QueryProvider 共享同一个 STGroup，每次通过 getInstanceOf 获取新的 ST 实例渲染
+ */
+public class SQLTemplates {
+
+    private static final Map<String, STGroup> GROUPS = new ConcurrentHashMap<>();
+
+    public static STGroup sqlTemplate() {
+        return getGroup(SQLConstants.SQL_TEMPLATE);
+    }
+
+    public static STGroup getGroup(String path) {
+        return GROUPS.computeIfAbsent(path, SQLTemplates::load);
+    }
+
+    private static STGroup load(String path) {
+        STGroupFile stg = new STGroupFile(path);
+        // 提前加载并编译全部模板，避免多线程首次 getInstanceOf 时并发解析
+        stg.load();
+        return stg;
+    }
+}
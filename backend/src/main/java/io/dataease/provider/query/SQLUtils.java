@@ -1,5 +1,7 @@
 package io.dataease.provider.query;
 
+import org.apache.commons.lang3.StringUtils;
+
 /**
  * @Author Junjun
  */
@@ -7,4 +9,33 @@ public class SQLUtils {
     public static String transKeyword(String value) {
         return value.replaceAll("'", "\\\\'");
     }
+
+    /**
+     * LIKE 匹配的关键字：在 transKeyword 的基础上转义 % 和 _，使其按字面匹配；
+     * SQL Server 使用方括号转义，Oracle、DB2 等没有默认转义符的数据源不转义通配符
+     */
+    public static String transLikeKeyword(String value, String type) {
+        String keyword = value.replace("\\", "");
+        if (StringUtils.equalsIgnoreCase(type, "sqlServer")) {
+            keyword = keyword.replace("[", "[[]").replace("%", "[%]").replace("_", "[_]");
+        } else if (!StringUtils.equalsAnyIgnoreCase(type, "oracle", "db2", "hive", "impala", "es", "api", "mongo")) {
+            keyword = keyword.replace("%", "\\%").replace("_", "\\_");
+        }
+        // 这些数据源的字符串常量不支持反斜杠转义，单引号需写成两个
+        if (StringUtils.equalsAnyIgnoreCase(type, "pg", "redshift", "oracle", "sqlServer", "db2", "ck")) {
+            return keyword.replace("'", "''");
+        }
+        return transKeyword(keyword);
+    }
+
+    /**
+     * 把带行数上限的查询包装为 COUNT 查询，上限由原查询中各方言的 LIMIT / TOP / ROWNUM 保证；
+     * 派生表别名不加 AS，兼容 Oracle，不支持子查询计数的数据源返回 null
+     */
+    public static String countSQL(String type, String limitSQL) {
+        if (StringUtils.isEmpty(limitSQL) || StringUtils.equalsAnyIgnoreCase(type, "es", "api", "mongo")) {
+            return null;
+        }
+        return "SELECT COUNT(*) FROM (" + limitSQL + ") DE_COUNT_TMP";
+    }
 }
@@ -0,0 +1,500 @@
+package io.dataease.service.chart;
+
+import cn.hutool.core.io.FileUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.commons.utils.Md5Utils;
+import io.dataease.config.properties.ViewCacheProperties;
+import io.dataease.exception.QueryCancelledException;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.provider.datasource.QueryRegistry;
+import io.dataease.service.sys.DistributedViewResultCacheService;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 视图查询结果缓存
+ * key 由数据源、最终执行的 SQL 以及权限指纹计算得出，因此带过滤条件、联动、下钻的查询同样可以命中缓存；
+ * 同时按视图、数据集、数据源建立索引，用于视图保存、抽取完成、数据集变更时主动失效，集群部署下通过 redis 广播通知其他节点；
+ * 未命中时按 key 合并并发加载，同一 key 只有一个线程查询数据源，不同 key 互不阻塞，加载期间发生失效时结果不写入缓存；
+ * 结果以 ViewResultCodec 编码后按字节数计算容量，内存层淘汰的结果可溢出到磁盘层，磁盘层通过内存映射读取
+ */
+@Service
+public class ChartViewResultCacheService {
+
+    private static final String VIEW_TAG = "view:";
+    private static final String TABLE_TAG = "table:";
+    private static final String DATASOURCE_TAG = "ds:";
+    private static final String DISK_DIR = "view-result";
+    private static final String DISK_SUFFIX = ".bin";
+    private static final int SPILL_QUEUE_SIZE = 1000;
+
+    @Resource
+    private ViewCacheProperties viewCacheProperties;
+
+    @Autowired(required = false)
+    private DistributedViewResultCacheService distributedViewResultCacheService;
+
+    private Cache<String, CacheEntry> memory;
+
+    private Cache<String, DiskEntry> disk;
+
+    private File diskDir;
+
+    private ThreadPoolExecutor spillExecutor;
+
+    private final Map<String, Set<String>> tagIndex = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicLong spillCount = new AtomicLong();
+    private final AtomicLong spillFailureCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong loadFailureCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong totalLoadTime = new AtomicLong();
+
+    /**
+     * 每次失效递增，加载开始后版本号发生变化的结果不写入缓存，避免并发加载把旧数据写回
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int maxTtl = maxTtl();
+        CacheBuilder<String, CacheEntry> builder = CacheBuilder.newBuilder()
+                .maximumWeight(viewCacheProperties.getMaxMemoryBytes())
+                .weigher((String key, CacheEntry entry) -> entry.data.length)
+                .removalListener(this::onMemoryRemoval)
+                .recordStats();
+        if (maxTtl > 0) {
+            builder.expireAfterWrite(maxTtl, TimeUnit.SECONDS);
+        }
+        memory = builder.build();
+        if (viewCacheProperties.isDiskEnabled()) {
+            // 失效索引只保存在内存中，重启后磁盘上的结果无法判断是否过期，直接清空；只删除本缓存写入的文件
+            diskDir = new File(viewCacheProperties.getDiskPath(), DISK_DIR);
+            FileUtil.mkdir(diskDir);
+            File[] staleFiles = diskDir.listFiles((dir, name) -> name.endsWith(DISK_SUFFIX));
+            if (staleFiles != null) {
+                for (File staleFile : staleFiles) {
+                    FileUtil.del(staleFile);
+                }
+            }
+            // 溢出在单独的线程中写盘，不阻塞触发淘汰的查询线程
+            spillExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(SPILL_QUEUE_SIZE),
+                    new ThreadFactoryBuilder().setNameFormat("view-cache-spill-%d").setDaemon(true).build());
+            CacheBuilder<String, DiskEntry> diskBuilder = CacheBuilder.newBuilder()
+                    .maximumWeight(viewCacheProperties.getMaxDiskBytes())
+                    .weigher((String key, DiskEntry entry) -> entry.length)
+                    .removalListener(this::onDiskRemoval)
+                    .recordStats();
+            if (maxTtl > 0) {
+                diskBuilder.expireAfterWrite(maxTtl, TimeUnit.SECONDS);
+            }
+            disk = diskBuilder.build();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (spillExecutor != null) {
+            spillExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 当前数据源是否允许缓存
+     *
+     * @param ds      实际执行查询的数据源(抽取模式下为引擎)
+     * @param extract 是否抽取数据集
+     */
+    public boolean cacheable(Datasource ds, boolean extract) {
+        return viewCacheProperties.isEnabled() && ds != null && ttl(ds, extract) > 0;
+    }
+
+    public String buildKey(Datasource ds, String sql, String permissionFingerprint) {
+        return Md5Utils.md5(ds.getId() + "|" + StringUtils.defaultString(permissionFingerprint) + "|" + sql);
+    }
+
+    /**
+     * 读取缓存，每次返回新解码的结果，调用方可以直接修改
+     */
+    public List<String[]> get(String key) {
+        CacheEntry entry = memory.getIfPresent(key);
+        if (entry != null) {
+            if (entry.expireAt < System.currentTimeMillis()) {
+                memory.invalidate(key);
+                return null;
+            }
+            return ViewResultCodec.decode(ByteBuffer.wrap(entry.data));
+        }
+        if (disk == null) {
+            return null;
+        }
+        DiskEntry diskEntry = disk.getIfPresent(key);
+        if (diskEntry == null) {
+            return null;
+        }
+        if (diskEntry.expireAt < System.currentTimeMillis()) {
+            disk.invalidate(key);
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(diskEntry.file.toPath(), StandardOpenOption.READ)) {
+            return ViewResultCodec.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, diskEntry.length));
+        } catch (Exception e) {
+            LogUtil.error(e.getMessage(), e);
+            disk.invalidate(key);
+            return null;
+        }
+    }
+
+    /**
+     * 读取缓存，未命中时加载并写入缓存
+     * 同一 key 的并发请求只会触发一次 loader，其余请求等待同一个 Future 的结果
+     */
+    public List<String[]> getOrLoad(String key, Callable<List<String[]>> loader, Datasource ds, boolean extract, String viewId, String tableId) throws Exception {
+        List<String[]> cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            coalescedCount.incrementAndGet();
+            try {
+                byte[] result = inFlight.get();
+                return result == null ? null : ViewResultCodec.decode(ByteBuffer.wrap(result));
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                // 共享的加载被发起它的请求取消时，本请求自行重新加载
+                if (cause instanceof QueryCancelledException && (QueryRegistry.current() == null || !QueryRegistry.current().isCancelled())) {
+                    loading.remove(key, inFlight);
+                    return getOrLoad(key, loader, ds, extract, viewId, tableId);
+                }
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+        }
+        long start = System.currentTimeMillis();
+        long startVersion = version.get();
+        try {
+            // 抢到加载权之前可能已有其他线程完成加载
+            cached = get(key);
+            if (cached != null) {
+                future.complete(ViewResultCodec.encode(cached));
+                return cached;
+            }
+            loadCount.incrementAndGet();
+            List<String[]> result = loader.call();
+            byte[] encoded = result == null ? null : ViewResultCodec.encode(result);
+            // 加载期间发生过失效，结果可能已过期，只返回给本次等待的请求，不写入缓存
+            if (encoded != null && version.get() == startVersion) {
+                store(key, encoded, ds, extract, viewId, tableId);
+            }
+            future.complete(encoded);
+            return result;
+        } catch (Throwable e) {
+            // Error 同样需要通知等待中的请求，否则它们会一直阻塞
+            loadFailureCount.incrementAndGet();
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            totalLoadTime.addAndGet(System.currentTimeMillis() - start);
+            loading.remove(key, future);
+        }
+    }
+
+    public void put(String key, List<String[]> data, Datasource ds, boolean extract, String viewId, String tableId) {
+        if (data == null) {
+            return;
+        }
+        store(key, ViewResultCodec.encode(data), ds, extract, viewId, tableId);
+    }
+
+    private void store(String key, byte[] data, Datasource ds, boolean extract, String viewId, String tableId) {
+        int ttl = ttl(ds, extract);
+        if (ttl <= 0) {
+            return;
+        }
+        List<String> tags = new ArrayList<>();
+        tags.add(DATASOURCE_TAG + ds.getId());
+        if (StringUtils.isNotEmpty(viewId)) {
+            tags.add(VIEW_TAG + viewId);
+        }
+        if (StringUtils.isNotEmpty(tableId)) {
+            tags.add(TABLE_TAG + tableId);
+        }
+        CacheEntry entry = new CacheEntry(data, System.currentTimeMillis() + ttl * 1000L, tags);
+        tags.forEach(tag -> tagIndex.computeIfAbsent(tag, k -> ConcurrentHashMap.newKeySet()).add(key));
+        memoryBytes.addAndGet(data.length);
+        memory.put(key, entry);
+        // 先写内存层再清理磁盘层的旧结果，保证 key 始终在索引中
+        if (disk != null) {
+            disk.invalidate(key);
+        }
+    }
+
+    public void invalidateView(String viewId) {
+        invalidate(Collections.singletonList(VIEW_TAG + viewId));
+    }
+
+    public void invalidateViews(Collection<String> viewIds) {
+        if (CollectionUtils.isEmpty(viewIds)) {
+            return;
+        }
+        invalidate(viewIds.stream().map(viewId -> VIEW_TAG + viewId).collect(Collectors.toList()));
+    }
+
+    public void invalidateDataset(String tableId) {
+        invalidate(Collections.singletonList(TABLE_TAG + tableId));
+    }
+
+    public void invalidateDatasource(String datasourceId) {
+        invalidate(Collections.singletonList(DATASOURCE_TAG + datasourceId));
+    }
+
+    public void invalidateAll() {
+        invalidate(null);
+    }
+
+    /**
+     * 失效本节点缓存，集群部署下通过 redis 广播通知其他节点
+     */
+    private void invalidate(List<String> tags) {
+        invalidateLocal(tags);
+        if (ObjectUtils.isNotEmpty(distributedViewResultCacheService)) {
+            distributedViewResultCacheService.pushBroadcast(tags);
+        }
+    }
+
+    /**
+     * 只失效本节点缓存，tags 为空时清空全部
+     */
+    public void invalidateLocal(Collection<String> tags) {
+        version.incrementAndGet();
+        // 失效前开始的加载不再被新请求复用
+        loading.clear();
+        if (CollectionUtils.isEmpty(tags)) {
+            memory.invalidateAll();
+            if (disk != null) {
+                disk.invalidateAll();
+            }
+            tagIndex.clear();
+            return;
+        }
+        tags.forEach(this::invalidateTag);
+    }
+
+    /**
+     * 按缓存层统计命中、淘汰和容量，以及加载情况
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("memory", regionStats(memory, memoryBytes.get(), viewCacheProperties.getMaxMemoryBytes()));
+        if (disk != null) {
+            Map<String, Object> diskStats = regionStats(disk, diskBytes.get(), viewCacheProperties.getMaxDiskBytes());
+            diskStats.put("spillCount", spillCount.get());
+            diskStats.put("spillFailureCount", spillFailureCount.get());
+            map.put("disk", diskStats);
+        }
+        long loads = loadCount.get();
+        map.put("loadCount", loads);
+        map.put("loadFailureCount", loadFailureCount.get());
+        map.put("coalescedCount", coalescedCount.get());
+        map.put("inFlight", loading.size());
+        map.put("totalLoadTime", totalLoadTime.get());
+        map.put("averageLoadTime", loads == 0 ? 0 : totalLoadTime.get() / loads);
+        return map;
+    }
+
+    private Map<String, Object> regionStats(Cache<String, ?> region, long bytes, long maxBytes) {
+        CacheStats stats = region.stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", region.size());
+        map.put("bytes", bytes);
+        map.put("maxBytes", maxBytes);
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        return map;
+    }
+
+    private void invalidateTag(String tag) {
+        Set<String> keys = tagIndex.remove(tag);
+        if (CollectionUtils.isNotEmpty(keys)) {
+            memory.invalidateAll(keys);
+            if (disk != null) {
+                disk.invalidateAll(keys);
+            }
+        }
+    }
+
+    private void onMemoryRemoval(RemovalNotification<String, CacheEntry> notification) {
+        CacheEntry entry = notification.getValue();
+        if (entry == null) {
+            return;
+        }
+        memoryBytes.addAndGet(-entry.data.length);
+        if (notification.getCause() == RemovalCause.REPLACED) {
+            return;
+        }
+        // 因容量被淘汰且未过期的结果溢出到磁盘层
+        if (disk != null && notification.getCause() == RemovalCause.SIZE && entry.expireAt > System.currentTimeMillis()) {
+            if (submitSpill(notification.getKey(), entry)) {
+                return;
+            }
+        }
+        releaseTags(notification.getKey(), entry.tags);
+    }
+
+    private void onDiskRemoval(RemovalNotification<String, DiskEntry> notification) {
+        DiskEntry entry = notification.getValue();
+        if (entry == null) {
+            return;
+        }
+        diskBytes.addAndGet(-entry.length);
+        FileUtil.del(entry.file);
+        if (notification.getCause() != RemovalCause.REPLACED && !memory.asMap().containsKey(notification.getKey())) {
+            removeFromTags(notification.getKey(), entry.tags);
+        }
+    }
+
+    private boolean submitSpill(String key, CacheEntry entry) {
+        long startVersion = version.get();
+        try {
+            spillExecutor.execute(() -> spill(key, entry, startVersion));
+            return true;
+        } catch (RejectedExecutionException e) {
+            spillFailureCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * 写入磁盘层，等待期间结果被重新写入内存或发生过失效时放弃
+     */
+    private void spill(String key, CacheEntry entry, long startVersion) {
+        if (version.get() != startVersion || memory.asMap().containsKey(key)) {
+            releaseTags(key, entry.tags);
+            return;
+        }
+        File file = new File(diskDir, key + "." + System.nanoTime() + DISK_SUFFIX);
+        try {
+            Files.write(file.toPath(), entry.data);
+            diskBytes.addAndGet(entry.data.length);
+            disk.put(key, new DiskEntry(file, entry.data.length, entry.expireAt, entry.tags));
+            spillCount.incrementAndGet();
+            // 写盘期间发生的失效可能没有看到这个 key
+            if (version.get() != startVersion) {
+                disk.invalidate(key);
+            }
+        } catch (Exception e) {
+            spillFailureCount.incrementAndGet();
+            LogUtil.error(e.getMessage(), e);
+            FileUtil.del(file);
+            releaseTags(key, entry.tags);
+        }
+    }
+
+    /**
+     * key 已不在任何缓存层时从索引中移除
+     */
+    private void releaseTags(String key, List<String> tags) {
+        if (!memory.asMap().containsKey(key) && (disk == null || !disk.asMap().containsKey(key))) {
+            removeFromTags(key, tags);
+        }
+    }
+
+    private void removeFromTags(String key, List<String> tags) {
+        for (String tag : tags) {
+            Set<String> keys = tagIndex.get(tag);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    tagIndex.remove(tag, keys);
+                }
+            }
+        }
+    }
+
+    private int ttl(Datasource ds, boolean extract) {
+        Map<String, Integer> datasourceTtl = viewCacheProperties.getDatasourceTtl();
+        if (datasourceTtl != null) {
+            if (StringUtils.isNotEmpty(ds.getId()) && datasourceTtl.containsKey(ds.getId())) {
+                return datasourceTtl.get(ds.getId());
+            }
+            if (StringUtils.isNotEmpty(ds.getType()) && datasourceTtl.containsKey(ds.getType())) {
+                return datasourceTtl.get(ds.getType());
+            }
+        }
+        return extract ? viewCacheProperties.getExtractTtl() : viewCacheProperties.getDirectTtl();
+    }
+
+    private int maxTtl() {
+        int max = Math.max(viewCacheProperties.getExtractTtl(), viewCacheProperties.getDirectTtl());
+        if (viewCacheProperties.getDatasourceTtl() != null) {
+            for (Integer ttl : viewCacheProperties.getDatasourceTtl().values()) {
+                if (ttl != null) {
+                    max = Math.max(max, ttl);
+                }
+            }
+        }
+        if (max <= 0) {
+            LogUtil.info("View result cache ttl is not configured, cache is disabled.");
+        }
+        return max;
+    }
+
+    private static class CacheEntry {
+        private final byte[] data;
+        private final long expireAt;
+        private final List<String> tags;
+
+        CacheEntry(byte[] data, long expireAt, List<String> tags) {
+            this.data = data;
+            this.expireAt = expireAt;
+            this.tags = tags;
+        }
+    }
+
+    private static class DiskEntry {
+        private final File file;
+        private final int length;
+        private final long expireAt;
+        private final List<String> tags;
+
+        DiskEntry(File file, int length, long expireAt, List<String> tags) {
+            this.file = file;
+            this.length = length;
+            this.expireAt = expireAt;
+            this.tags = tags;
+        }
+    }
+}
@@ -8,8 +8,9 @@ import com.google.gson.reflect.TypeToken;
 import io.dataease.auth.entity.SysUserEntity;
 import io.dataease.auth.service.AuthUserService;
 import io.dataease.commons.constants.CommonConstants;
-import io.dataease.commons.constants.JdbcConstants;
 import io.dataease.commons.exception.DEException;
+import io.dataease.commons.pool.DatasourceAdmission;
+import io.dataease.commons.pool.DatasourceExecutorPool;
 import io.dataease.commons.model.PluginViewSetImpl;
 import io.dataease.commons.utils.AuthUtils;
 import io.dataease.commons.utils.BeanUtils;
@@ -19,14 +20,12 @@ import io.dataease.controller.response.ChartDetail;
 import io.dataease.controller.response.DataSetDetail;
 import io.dataease.dto.chart.*;
 import io.dataease.dto.dataset.DataSetTableDTO;
-import io.dataease.dto.dataset.DataSetTableUnionDTO;
 import io.dataease.dto.dataset.DataTableInfoDTO;
 import io.dataease.exception.DataEaseException;
 import io.dataease.ext.ExtChartGroupMapper;
 import io.dataease.ext.ExtChartViewMapper;
 import io.dataease.ext.ExtPanelGroupExtendDataMapper;
 import io.dataease.i18n.Translator;
-import io.dataease.listener.util.CacheUtils;
 import io.dataease.plugins.common.base.domain.*;
 import io.dataease.plugins.common.base.mapper.ChartViewCacheMapper;
 import io.dataease.plugins.common.base.mapper.ChartViewMapper;
@@ -43,6 +42,7 @@ import io.dataease.plugins.common.request.chart.ChartExtFilterRequest;
 import io.dataease.plugins.common.request.datasource.DatasourceRequest;
 import io.dataease.plugins.common.request.permission.DataSetRowPermissionsTreeDTO;
 import io.dataease.plugins.config.SpringContextUtil;
+import io.dataease.plugins.datasource.entity.JdbcConfiguration;
 import io.dataease.plugins.datasource.entity.PageInfo;
 import io.dataease.plugins.datasource.provider.Provider;
 import io.dataease.plugins.datasource.query.QueryProvider;
@@ -50,7 +50,11 @@ import io.dataease.plugins.view.entity.*;
 import io.dataease.plugins.view.service.ViewPluginService;
 import io.dataease.plugins.xpack.auth.dto.request.ColumnPermissionItem;
 import io.dataease.provider.ProviderFactory;
+import io.dataease.provider.datasource.JdbcProvider;
+import io.dataease.provider.datasource.QueryRegistry;
 import io.dataease.provider.query.SQLUtils;
+import io.dataease.service.chart.util.ChartCompareCalc;
+import io.dataease.service.chart.util.ChartCustomSort;
 import io.dataease.service.chart.util.ChartDataBuild;
 import io.dataease.service.dataset.*;
 import io.dataease.service.datasource.DatasourceService;
@@ -59,6 +63,8 @@ import io.dataease.service.panel.PanelGroupExtendDataService;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
 import org.pentaho.di.core.util.UUIDUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,11 +74,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.lang.reflect.Type;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -98,8 +106,6 @@ public class ChartViewService {
     @Resource
     private ExtChartGroupMapper extChartGroupMapper;
     @Resource
-    private DataSetTableUnionService dataSetTableUnionService;
-    @Resource
     private PermissionService permissionService;
     @Resource
     private AuthUserService authUserService;
@@ -121,22 +127,27 @@ public class ChartViewService {
     private PermissionsTreeService permissionsTreeService;
     @Resource
     private DatasetTableFieldMapper datasetTableFieldMapper;
+    @Resource
+    private ChartViewResultCacheService chartViewResultCacheService;
+    @Resource
+    private DatasourceExecutorPool datasourceExecutorPool;
+    @Resource
+    private DatasourceAdmission datasourceAdmission;
+    @Resource
+    private DatasetMetaCacheService datasetMetaCacheService;
 
     private static final Logger logger = LoggerFactory.getLogger(ChartViewService.class);
 
     private static final String START_END_SEPARATOR = "_START_END_SPLIT";
 
 
-    //默认使用非公平
-    private ReentrantLock lock = new ReentrantLock();
-
     // 直接保存统一到缓存表
     public ChartViewDTO save(ChartViewRequest chartView) {
         long timestamp = System.currentTimeMillis();
         chartView.setUpdateTime(timestamp);
         chartViewMapper.updateByPrimaryKeySelective(chartView);
         Optional.ofNullable(chartView.getId()).ifPresent(id -> {
-            CacheUtils.remove(JdbcConstants.VIEW_CACHE_KEY, id);
+            chartViewResultCacheService.invalidateView(id);
         });
         return getOne(chartView.getId(), "panel_edit");
     }
@@ -187,7 +198,7 @@ public class ChartViewService {
         chartView.setUpdateTime(timestamp);
         chartViewMapper.updateByPrimaryKeySelective(chartView);
         Optional.ofNullable(chartView.getId()).ifPresent(id -> {
-            CacheUtils.remove(JdbcConstants.VIEW_CACHE_KEY, id);
+            chartViewResultCacheService.invalidateView(id);
         });
     }
 
@@ -336,6 +347,126 @@ public class ChartViewService {
 
     }
 
+    /**
+     * 批量获取仪表板视图数据
+     * 同一数据集的元数据(数据集、字段、行列权限、数据源)只解析一次，视图查询按数据源提交到各自的有界线程池并发执行，
+     * 单个视图失败不影响其他视图；每个视图完成后即在调用线程中交给 consumer，调用方可逐个写出，不必等全部视图完成
+     */
+    public void batchGetData(ChartBatchDataRequest request, Consumer<ChartViewBatchDataDTO> consumer) throws Exception {
+        if (request.getViews() == null || request.getViews().isEmpty()) {
+            return;
+        }
+        BlockingQueue<ChartViewBatchDataDTO> results = new LinkedBlockingQueue<>();
+        // 查询线程中没有当前用户的上下文，需要显式传递
+        Subject subject = SecurityUtils.getSubject();
+        Long proxyUserId = request.getProxy() != null ? request.getProxy().getUserId() : null;
+        Map<String, ChartDatasetMetaDTO> metaMap = new HashMap<>();
+        Map<String, Exception> metaErrors = new HashMap<>();
+        int delivered = 0;
+        for (Map.Entry<String, ChartExtRequest> entry : request.getViews().entrySet()) {
+            // 后面视图的元数据解析期间，先写出已完成的视图
+            for (ChartViewBatchDataDTO done; (done = results.poll()) != null; delivered++) {
+                consumer.accept(done);
+            }
+            String viewId = entry.getKey();
+            ChartExtRequest extRequest = entry.getValue() == null ? new ChartExtRequest() : entry.getValue();
+            if (extRequest.getUser() == null) {
+                extRequest.setUser(request.getUser());
+            }
+            ChartViewBatchDataDTO result = new ChartViewBatchDataDTO();
+            result.setViewId(viewId);
+            try {
+                ChartViewDTO view = extChartViewMapper.searchOne(viewId);
+                if (view == null) {
+                    DataEaseException.throwException(Translator.get("i18n_chart_delete"));
+                }
+                if (CommonConstants.VIEW_RESULT_MODE.CUSTOM.equals(extRequest.getResultMode())) {
+                    view.setResultMode(extRequest.getResultMode());
+                    view.setResultCount(extRequest.getResultCount());
+                }
+                if (CommonConstants.VIEW_DATA_FROM.TEMPLATE.equals(view.getDataFrom())) {
+                    result.setData(extendDataService.getChartDataInfo(viewId, view));
+                    results.add(result);
+                    continue;
+                }
+                if (metaErrors.containsKey(view.getTableId())) {
+                    throw metaErrors.get(view.getTableId());
+                }
+                ChartDatasetMetaDTO meta = metaMap.get(view.getTableId());
+                if (meta == null) {
+                    try {
+                        meta = resolveDatasetMeta(view.getTableId(), extRequest.getUser());
+                    } catch (Exception e) {
+                        metaErrors.put(view.getTableId(), e);
+                        throw e;
+                    }
+                    metaMap.put(view.getTableId(), meta);
+                }
+                view.setDatasetMode(meta.getTable().getMode());
+                view.setDatasourceType(meta.getDatasourceType());
+                ChartDatasetMetaDTO viewMeta = meta;
+                Callable<ChartViewDTO> task = QueryRegistry.propagate(subject.associateWith(() -> {
+                    if (proxyUserId != null) {
+                        AuthUtils.setProxyUser(proxyUserId);
+                    }
+                    try {
+                        return calcData(view, extRequest, extRequest.isCache(), viewMeta);
+                    } finally {
+                        if (proxyUserId != null) {
+                            AuthUtils.cleanProxyUser();
+                        }
+                    }
+                }));
+                datasourceExecutorPool.submit(meta.getDatasource().getId(), task).whenComplete((data, e) -> {
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                        LogUtil.error(cause.getMessage(), cause);
+                        result.setError(cause.getMessage());
+                    } else {
+                        result.setData(data);
+                    }
+                    results.add(result);
+                });
+            } catch (Exception e) {
+                LogUtil.error(e.getMessage(), e);
+                result.setError(e.getMessage());
+                results.add(result);
+            }
+        }
+        // 每个视图无论成功失败都会放入一个结果
+        for (; delivered < request.getViews().size(); delivered++) {
+            consumer.accept(results.take());
+        }
+    }
+
+    /**
+     * 解析视图取数所需的数据集元数据，并校验数据集使用权限
+     */
+    public ChartDatasetMetaDTO resolveDatasetMeta(String tableId, Long user) throws Exception {
+        List<DatasetTableField> fields = datasetMetaCacheService.getCheckedFields(tableId);
+        DataSetTableDTO table = dataSetTableService.getWithPermission(tableId, user);
+        checkPermission("use", table, user);
+
+        Map<String, ColumnPermissionItem> desensitizationList = new HashMap<>();
+        List<DatasetTableField> columnPermissionFields = permissionService.filterColumnPermissions(fields, desensitizationList, table.getId(), user);
+        List<DataSetRowPermissionsTreeDTO> rowPermissionsTree = permissionsTreeService.getRowPermissionsTree(fields, table, user);
+
+        Datasource datasource = StringUtils.isNotEmpty(table.getDataSourceId()) ? datasourceService.get(table.getDataSourceId()) : null;
+
+        ChartDatasetMetaDTO meta = new ChartDatasetMetaDTO();
+        meta.setTable(table);
+        meta.setFields(fields);
+        meta.setColumnPermissionFields(columnPermissionFields);
+        meta.setDesensitizationList(desensitizationList);
+        meta.setRowPermissionsTree(rowPermissionsTree);
+        meta.setDatasourceType(datasource != null ? datasource.getType() : null);
+        meta.setDatasource(table.getMode() == 0 ? datasource : engineService.getDeEngine());
+        if (meta.getDatasource() == null) {
+            DataEaseException.throwException(Translator.get("i18n_datasource_delete"));
+        }
+        return meta;
+    }
+
     public List<String[]> sqlData(ChartViewDTO view, ChartExtRequest requestList, boolean cache, String fieldId) throws Exception {
         if (ObjectUtils.isEmpty(view)) {
             throw new RuntimeException(Translator.get("i18n_chart_delete"));
@@ -362,8 +493,7 @@ public class ChartViewService {
         List<ChartViewFieldDTO> drill = new ArrayList<ChartViewFieldDTO>();
 
 
-        DatasetTableField datasetTableFieldObj = DatasetTableField.builder().tableId(view.getTableId()).checked(Boolean.TRUE).build();
-        List<DatasetTableField> fields = dataSetTableFieldsService.list(datasetTableFieldObj);
+        List<DatasetTableField> fields = datasetMetaCacheService.getCheckedFields(view.getTableId());
         // 获取数据集,需校验权限
         DataSetTableDTO table = dataSetTableService.getWithPermission(view.getTableId(), requestList.getUser());
         checkPermission("use", table, requestList.getUser());
@@ -453,7 +583,7 @@ public class ChartViewService {
                 return new ArrayList<String[]>();
             }
             datasourceRequest.setQuery(sql);
-            data = datasourceProvider.getData(datasourceRequest);
+            data = datasourceAdmission.getData(datasourceProvider, datasourceRequest, queryPriority(requestList));
             return data;
             // 如果是插件到此结束
         }
@@ -467,7 +597,7 @@ public class ChartViewService {
                 throw new Exception(Translator.get("i18n_invalid_ds"));
             }
             datasourceRequest.setDatasource(ds);
-            DataTableInfoDTO dataTableInfoDTO = gson.fromJson(table.getInfo(), DataTableInfoDTO.class);
+            DataTableInfoDTO dataTableInfoDTO = datasetMetaCacheService.parseInfo(table.getInfo());
             QueryProvider qp = ProviderFactory.getQueryProvider(ds.getType());
             if (StringUtils.equalsIgnoreCase(table.getType(), DatasetType.DB.name())) {
                 datasourceRequest.setTable(dataTableInfoDTO.getTable());
@@ -497,9 +627,7 @@ public class ChartViewService {
                     datasourceRequest.setQuery(qp.getSQLAsTmp(sql, xAxis, yAxis, fieldCustomFilter, rowPermissionsTree, extFilterList, view));
                 }
             } else if (StringUtils.equalsIgnoreCase(table.getType(), DatasetType.CUSTOM.name())) {
-                DataTableInfoDTO dt = gson.fromJson(table.getInfo(), DataTableInfoDTO.class);
-                List<DataSetTableUnionDTO> list = dataSetTableUnionService.listByTableId(dt.getList().get(0).getTableId());
-                String sql = dataSetTableService.getCustomSQLDatasource(dt, list, ds);
+                String sql = datasetMetaCacheService.getCustomSql(table, ds);
                 if (StringUtils.equalsIgnoreCase("text", view.getType()) || StringUtils.equalsIgnoreCase("gauge", view.getType()) || StringUtils.equalsIgnoreCase("liquid", view.getType())) {
                     datasourceRequest.setQuery(qp.getSQLSummaryAsTmp(sql, yAxis, fieldCustomFilter, rowPermissionsTree, extFilterList, view));
                 } else if (StringUtils.containsIgnoreCase(view.getType(), "stack")) {
@@ -512,9 +640,7 @@ public class ChartViewService {
                     datasourceRequest.setQuery(qp.getSQLAsTmp(sql, xAxis, yAxis, fieldCustomFilter, rowPermissionsTree, extFilterList, view));
                 }
             } else if (StringUtils.equalsIgnoreCase(table.getType(), DatasetType.UNION.name())) {
-                DataTableInfoDTO dt = gson.fromJson(table.getInfo(), DataTableInfoDTO.class);
-                Map<String, Object> sqlMap = dataSetTableService.getUnionSQLDatasource(dt, ds);
-                String sql = (String) sqlMap.get("sql");
+                String sql = datasetMetaCacheService.getUnionSql(table, ds);
 
                 if (StringUtils.equalsIgnoreCase("text", view.getType()) || StringUtils.equalsIgnoreCase("gauge", view.getType()) || StringUtils.equalsIgnoreCase("liquid", view.getType())) {
                     datasourceRequest.setQuery(qp.getSQLSummaryAsTmp(sql, yAxis, fieldCustomFilter, rowPermissionsTree, extFilterList, view));
@@ -535,7 +661,7 @@ public class ChartViewService {
             List<ChartViewFieldDTO> yAxisForRequest = new ArrayList<>();
             yAxisForRequest.addAll(yAxis);
             datasourceRequest.setYAxis(yAxisForRequest);
-            data = datasourceProvider.getData(datasourceRequest);
+            data = queryViewData(cache, queryPriority(requestList), datasourceProvider, datasourceRequest, view, table, permissionFingerprint(rowPermissionsTree, desensitizationList, dataeaseNames));
         } else if (table.getMode() == 1) {// 抽取
             datasourceRequest.setDatasource(ds);
             String tableName = "ds_" + table.getId().replaceAll("-", "_");
@@ -552,24 +678,7 @@ public class ChartViewService {
             } else {
                 datasourceRequest.setQuery(qp.getSQL(tableName, xAxis, yAxis, fieldCustomFilter, rowPermissionsTree, extFilterList, ds, view));
             }
-            // 仪表板有参数不使用缓存
-            if (!cache || CollectionUtils.isNotEmpty(requestList.getFilter())
-                    || CollectionUtils.isNotEmpty(requestList.getLinkageFilters())
-                    || CollectionUtils.isNotEmpty(requestList.getOuterParamsFilters())
-                    || CollectionUtils.isNotEmpty(requestList.getDrill()) || CollectionUtils.isNotEmpty(rowPermissionsTree) || fields.size() != columnPermissionFields.size()) {
-                data = datasourceProvider.getData(datasourceRequest);
-            } else {
-                try {
-                    data = cacheViewData(datasourceProvider, datasourceRequest, view.getId());
-                } catch (Exception e) {
-                    LogUtil.error(e);
-                } finally {
-                    // 如果当前对象被锁 且 当前线程冲入次数 > 0 则释放锁
-                    if (lock.isLocked() && lock.getHoldCount() > 0) {
-                        lock.unlock();
-                    }
-                }
-            }
+            data = queryViewData(cache, queryPriority(requestList), datasourceProvider, datasourceRequest, view, table, permissionFingerprint(rowPermissionsTree, desensitizationList, dataeaseNames));
         }
         return data;
     }
@@ -581,6 +690,10 @@ public class ChartViewService {
     }
 
     public ChartViewDTO calcData(ChartViewDTO view, ChartExtRequest chartExtRequest, boolean cache) throws Exception {
+        return calcData(view, chartExtRequest, cache, null);
+    }
+
+    public ChartViewDTO calcData(ChartViewDTO view, ChartExtRequest chartExtRequest, boolean cache, ChartDatasetMetaDTO meta) throws Exception {
         ChartViewDTO chartViewDTO = new ChartViewDTO();
         if (ObjectUtils.isEmpty(view)) {
             throw new RuntimeException(Translator.get("i18n_chart_delete"));
@@ -631,15 +744,15 @@ public class ChartViewService {
         List<String> chartViewFieldNameList = chartViewFields.stream().map(ChartViewField::getDataeaseName).collect(Collectors.toList());
 
 
-        DatasetTableField datasetTableFieldObj = DatasetTableField.builder().tableId(view.getTableId()).checked(Boolean.TRUE).build();
-        List<DatasetTableField> fields = dataSetTableFieldsService.list(datasetTableFieldObj);
-        // 获取数据集,需校验权限
-        DataSetTableDTO table = dataSetTableService.getWithPermission(view.getTableId(), chartExtRequest.getUser());
-        checkPermission("use", table, chartExtRequest.getUser());
+        // 获取数据集,需校验权限；批量取数时由调用方按数据集解析一次后传入
+        if (meta == null) {
+            meta = resolveDatasetMeta(view.getTableId(), chartExtRequest.getUser());
+        }
+        DataSetTableDTO table = meta.getTable();
 
-        Map<String, ColumnPermissionItem> desensitizationList = new HashMap<>();
+        Map<String, ColumnPermissionItem> desensitizationList = meta.getDesensitizationList();
         //列权限
-        List<DatasetTableField> columnPermissionFields = permissionService.filterColumnPermissions(fields, desensitizationList, table.getId(), chartExtRequest.getUser());
+        List<DatasetTableField> columnPermissionFields = meta.getColumnPermissionFields();
         //将没有权限的列删掉
         List<String> dataeaseNames = columnPermissionFields.stream().map(DatasetTableField::getDataeaseName).collect(Collectors.toList());
         dataeaseNames.add("*");
@@ -649,7 +762,7 @@ public class ChartViewService {
         drill = drill.stream().filter(item -> chartViewFieldNameList.contains(item.getDataeaseName()) || (!desensitizationList.keySet().contains(item.getDataeaseName()) && dataeaseNames.contains(item.getDataeaseName()))).collect(Collectors.toList());
 
         //行权限
-        List<DataSetRowPermissionsTreeDTO> rowPermissionsTree = permissionsTreeService.getRowPermissionsTree(fields, table, chartExtRequest.getUser());
+        List<DataSetRowPermissionsTreeDTO> rowPermissionsTree = meta.getRowPermissionsTree();
 
         for (ChartFieldCustomFilterDTO ele : fieldCustomFilter) {
             ele.setField(dataSetTableFieldsService.get(ele.getId()));
@@ -927,7 +1040,7 @@ public class ChartViewService {
 
         // 判断连接方式，直连或者定时抽取 table.mode
         DatasourceRequest datasourceRequest = new DatasourceRequest();
-        Datasource ds = table.getMode() == 0 ? datasourceService.get(table.getDataSourceId()) : engineService.getDeEngine();
+        Datasource ds = meta.getDatasource();
         datasourceRequest.setDatasource(ds);
         Provider datasourceProvider = ProviderFactory.getProvider(ds.getType());
         List<String[]> data = new ArrayList<>();
@@ -980,7 +1093,7 @@ public class ChartViewService {
                 return emptyChartViewDTO(view);
             }
             datasourceRequest.setQuery(sql);
-            data = datasourceProvider.getData(datasourceRequest);
+            data = datasourceAdmission.getData(datasourceProvider, datasourceRequest, queryPriority(chartExtRequest));
 
             Map<String, Object> mapChart = pluginViewResult(pluginViewParam, view, data, isDrill);
             Map<String, Object> mapTableNormal = ChartDataBuild.transTableNormal(fieldMap, view, data, desensitizationList);
@@ -1006,6 +1119,7 @@ public class ChartViewService {
         List<ChartViewFieldDTO> detailFieldList = new ArrayList<>();
         String detailFieldSql = null;
         List<String[]> detailData = new ArrayList<>();
+        ViewSubQueries subQueries = new ViewSubQueries(datasourceExecutorPool, datasourceAdmission, queryPriority(chartExtRequest), ds.getId(), queryTimeout(ds));
         //如果不是插件视图 走原生逻辑
         if (table.getMode() == 0) {// 直连
             if (ObjectUtils.isEmpty(ds)) {
@@ -1016,7 +1130,7 @@ public class ChartViewService {
             }
             pageInfo.setDsVersion(datasourceProvider.dsVersion(ds));
             datasourceRequest.setDatasource(ds);
-            DataTableInfoDTO dataTableInfoDTO = gson.fromJson(table.getInfo(), DataTableInfoDTO.class);
+            DataTableInfoDTO dataTableInfoDTO = datasetMetaCacheService.parseInfo(table.getInfo());
             QueryProvider qp = ProviderFactory.getQueryProvider(ds.getType());
             if (StringUtils.equalsIgnoreCase(table.getType(), DatasetType.DB.name())) {
                 datasourceRequest.setTable(dataTableInfoDTO.getTable());
@@ -1058,9 +1172,7 @@ public class ChartViewService {
                     }
                 }
             } else if (StringUtils.equalsIgnoreCase(table.getType(), DatasetType.CUSTOM.name())) {
-                DataTableInfoDTO dt = gson.fromJson(table.getInfo(), DataTableInfoDTO.class);
-                List<DataSetTableUnionDTO> list = dataSetTableUnionService.listByTableId(dt.getList().get(0).getTableId());
-                String sql = dataSetTableService.getCustomSQLDatasource(dt, list, ds);
+                String sql = datasetMetaCacheService.getCustomSql(table, ds);
                 if (StringUtils.equalsAnyIgnoreCase(view.getType(), "text", "gauge", "liquid")) {
                     querySql = qp.getSQLSummaryAsTmp(sql, yAxis, fieldCustomFilter, rowPermissionsTree, extFilterList, view);
                 } else if (StringUtils.containsIgnoreCase(view.getType(), "stack")) {
@@ -1079,9 +1191,7 @@ public class ChartViewService {
                     }
                 }
             } else if (StringUtils.equalsIgnoreCase(table.getType(), DatasetType.UNION.name())) {
-                DataTableInfoDTO dt = gson.fromJson(table.getInfo(), DataTableInfoDTO.class);
-                Map<String, Object> sqlMap = dataSetTableService.getUnionSQLDatasource(dt, ds);
-                String sql = (String) sqlMap.get("sql");
+                String sql = datasetMetaCacheService.getUnionSql(table, ds);
                 if (StringUtils.equalsAnyIgnoreCase(view.getType(), "text", "gauge", "liquid")) {
                     querySql = qp.getSQLSummaryAsTmp(sql, yAxis, fieldCustomFilter, rowPermissionsTree, extFilterList, view);
                 } else if (StringUtils.containsIgnoreCase(view.getType(), "stack")) {
@@ -1100,14 +1210,6 @@ public class ChartViewService {
                     }
                 }
             }
-            if (StringUtils.isNotEmpty(totalPageSql) && StringUtils.equalsIgnoreCase((String) mapSize.get("tablePageMode"), "page")) {
-                datasourceRequest.setQuery(totalPageSql);
-                datasourceRequest.setTotalPageFlag(true);
-                java.util.List<java.lang.String[]> tmpData = datasourceProvider.getData(datasourceRequest);
-                totalItems = CollectionUtils.isEmpty(tmpData) ? 0 : Long.valueOf(tmpData.get(0)[0]);
-                totalPage = (totalItems / pageInfo.getPageSize()) + (totalItems % pageInfo.getPageSize() > 0 ? 1 : 0);
-            }
-
             datasourceRequest.setQuery(querySql);
             List<ChartViewFieldDTO> xAxisForRequest = new ArrayList<>();
             xAxisForRequest.addAll(xAxis);
@@ -1117,16 +1219,35 @@ public class ChartViewService {
             yAxisForRequest.addAll(yAxis);
             datasourceRequest.setYAxis(yAxisForRequest);
             datasourceRequest.setTotalPageFlag(false);
-            data = datasourceProvider.getData(datasourceRequest);
+
+            // 总数、辅助线、明细查询与主查询互不依赖，并发执行
+            if (StringUtils.isNotEmpty(totalPageSql) && StringUtils.equalsIgnoreCase((String) mapSize.get("tablePageMode"), "page") && !chartExtRequest.getExcelExportFlag()) {
+                DatasourceRequest countRequest = BeanUtils.copyBean(new DatasourceRequest(), datasourceRequest);
+                countRequest.setQuery(totalPageSql);
+                countRequest.setTotalPageFlag(true);
+                subQueries.submit(ViewSubQueries.COUNT, datasourceProvider, countRequest);
+            }
             if (CollectionUtils.isNotEmpty(assistFields)) {
-                datasourceAssistRequest.setQuery(assistSQL(datasourceRequest.getQuery(), assistFields));
+                datasourceAssistRequest.setQuery(assistSQL(querySql, assistFields));
                 logger.info(datasourceAssistRequest.getQuery());
-                assistData = datasourceProvider.getData(datasourceAssistRequest);
+                subQueries.submit(ViewSubQueries.ASSIST, datasourceProvider, datasourceAssistRequest);
             }
-
             if (StringUtils.isNotBlank(detailFieldSql)) {
-                datasourceRequest.setQuery(detailFieldSql);
-                detailData = datasourceProvider.getData(datasourceRequest);
+                DatasourceRequest detailRequest = BeanUtils.copyBean(new DatasourceRequest(), datasourceRequest);
+                detailRequest.setQuery(detailFieldSql);
+                subQueries.submit(ViewSubQueries.DETAIL, datasourceProvider, detailRequest);
+            }
+            data = runMainQuery(subQueries, cache, queryPriority(chartExtRequest), datasourceProvider, datasourceRequest, view, table, xAxis, desensitizationList, chartExtRequest.getRowHandler(), permissionFingerprint(rowPermissionsTree, desensitizationList, dataeaseNames));
+            List<String[]> countData = subQueries.get(ViewSubQueries.COUNT);
+            if (countData != null) {
+                totalItems = CollectionUtils.isEmpty(countData) ? 0 : Long.valueOf(countData.get(0)[0]);
+                totalPage = (totalItems / pageInfo.getPageSize()) + (totalItems % pageInfo.getPageSize() > 0 ? 1 : 0);
+            }
+            if (CollectionUtils.isNotEmpty(assistFields)) {
+                assistData = subQueries.get(ViewSubQueries.ASSIST);
+            }
+            if (StringUtils.isNotBlank(detailFieldSql)) {
+                detailData = subQueries.get(ViewSubQueries.DETAIL);
             }
         } else if (table.getMode() == 1) {// 抽取
             // 连接doris，构建doris数据源查询
@@ -1153,31 +1274,19 @@ public class ChartViewService {
             if (CollectionUtils.isNotEmpty(assistFields)) {
                 datasourceAssistRequest.setQuery(assistSQL(datasourceRequest.getQuery(), assistFields));
                 logger.info(datasourceAssistRequest.getQuery());
-                assistData = datasourceProvider.getData(datasourceAssistRequest);
+                subQueries.submit(ViewSubQueries.ASSIST, datasourceProvider, datasourceAssistRequest);
             }
-            // 仪表板有参数不使用缓存
-            if (!cache || CollectionUtils.isNotEmpty(chartExtRequest.getFilter())
-                    || CollectionUtils.isNotEmpty(chartExtRequest.getLinkageFilters())
-                    || CollectionUtils.isNotEmpty(chartExtRequest.getOuterParamsFilters())
-                    || CollectionUtils.isNotEmpty(chartExtRequest.getDrill())
-                    || CollectionUtils.isNotEmpty(rowPermissionsTree)
-                    || fields.size() != columnPermissionFields.size()) {
-                data = datasourceProvider.getData(datasourceRequest);
-            } else {
-                try {
-                    data = cacheViewData(datasourceProvider, datasourceRequest, view.getId());
-                } catch (Exception e) {
-                    LogUtil.error(e);
-                } finally {
-                    // 如果当前对象被锁 且 当前线程冲入次数 > 0 则释放锁
-                    if (lock.isLocked() && lock.getHoldCount() > 0) {
-                        lock.unlock();
-                    }
-                }
+            if (StringUtils.isNotBlank(detailFieldSql)) {
+                DatasourceRequest detailRequest = BeanUtils.copyBean(new DatasourceRequest(), datasourceRequest);
+                detailRequest.setQuery(detailFieldSql);
+                subQueries.submit(ViewSubQueries.DETAIL, datasourceProvider, detailRequest);
+            }
+            data = runMainQuery(subQueries, cache, queryPriority(chartExtRequest), datasourceProvider, datasourceRequest, view, table, xAxis, desensitizationList, chartExtRequest.getRowHandler(), permissionFingerprint(rowPermissionsTree, desensitizationList, dataeaseNames));
+            if (CollectionUtils.isNotEmpty(assistFields)) {
+                assistData = subQueries.get(ViewSubQueries.ASSIST);
             }
             if (StringUtils.isNotBlank(detailFieldSql)) {
-                datasourceRequest.setQuery(detailFieldSql);
-                detailData = datasourceProvider.getData(datasourceRequest);
+                detailData = subQueries.get(ViewSubQueries.DETAIL);
             }
         }
         // 自定义排序
@@ -1232,64 +1341,13 @@ public class ChartViewService {
                     } else {
                         // 计算 同比/环比
                         // 1，处理当期数据；2，根据type计算上一期数据；3，根据resultData计算结果
-                        Map<String, String> currentMap = new LinkedHashMap<>();
-                        for (String[] item : data) {
-                            String[] dimension = Arrays.copyOfRange(item, 0, checkedField.size());
-                            currentMap.put(StringUtils.join(dimension, "-"), item[dataIndex]);
-                        }
-
-                        for (int index = 0; index < data.size(); index++) {
-                            String[] item = data.get(index);
-                            String cTime = item[timeIndex];
-                            String cValue = item[dataIndex];
-
-                            // 获取计算后的时间，并且与所有维度拼接
-                            String lastTime = calcLastTime(cTime, compareCalc.getType(), timeField.getDateStyle(), timeField.getDatePattern());
-                            String[] dimension = Arrays.copyOfRange(item, 0, checkedField.size());
-                            dimension[timeIndex] = lastTime;
-
-                            String lastValue = currentMap.get(StringUtils.join(dimension, "-"));
-                            if (StringUtils.isEmpty(cValue) || StringUtils.isEmpty(lastValue)) {
-                                item[dataIndex] = null;
-                            } else {
-                                if (StringUtils.equalsIgnoreCase(resultData, "sub")) {
-                                    item[dataIndex] = new BigDecimal(cValue).subtract(new BigDecimal(lastValue)).toString();
-                                } else if (StringUtils.equalsIgnoreCase(resultData, "percent")) {
-                                    if (new BigDecimal(lastValue).compareTo(BigDecimal.ZERO) == 0) {
-                                        item[dataIndex] = null;
-                                    } else {
-                                        item[dataIndex] = new BigDecimal(cValue)
-                                                .divide(new BigDecimal(lastValue), 8, RoundingMode.HALF_UP)
-                                                .subtract(new BigDecimal(1))
-                                                .setScale(8, RoundingMode.HALF_UP)
-                                                .toString();
-                                    }
-                                }
-                            }
-                        }
+                        ChartViewFieldDTO compareTimeField = timeField;
+                        ChartCompareCalc.periodCompare(data, checkedField.size(), timeIndex, dataIndex, resultData,
+                                cTime -> calcLastTime(cTime, compareCalc.getType(), compareTimeField.getDateStyle(), compareTimeField.getDatePattern()));
                     }
                 } else if (StringUtils.equalsIgnoreCase(compareCalc.getType(), "percent")) {
-                    // 求和
-                    BigDecimal sum = new BigDecimal(0);
-                    for (int index = 0; index < data.size(); index++) {
-                        String[] item = data.get(index);
-                        String cValue = item[dataIndex];
-                        if (StringUtils.isEmpty(cValue)) {
-                            continue;
-                        }
-                        sum = sum.add(new BigDecimal(cValue));
-                    }
-                    // 计算占比
-                    for (int index = 0; index < data.size(); index++) {
-                        String[] item = data.get(index);
-                        String cValue = item[dataIndex];
-                        if (StringUtils.isEmpty(cValue)) {
-                            continue;
-                        }
-                        item[dataIndex] = new BigDecimal(cValue)
-                                .divide(sum, 8, RoundingMode.HALF_UP)
-                                .toString();
-                    }
+                    // 求和后计算占比
+                    ChartCompareCalc.percent(data, dataIndex);
                 }
             }
         }
@@ -1353,49 +1411,14 @@ public class ChartViewService {
         chartViewDTO = uniteViewResult(datasourceRequest.getQuery(), mapChart, mapTableNormal, view, isDrill, drillFilters, dynamicAssistFields, assistData);
         chartViewDTO.setTotalPage(totalPage);
         chartViewDTO.setTotalItems(totalItems);
+        chartViewDTO.setQueryTimes(subQueries.getQueryTimes());
         return chartViewDTO;
     }
 
     // 对结果排序
     public List<String[]> resultCustomSort(List<ChartViewFieldDTO> xAxis, List<String[]> data) {
-        List<String[]> res = new ArrayList<>(data);
-        if (xAxis.size() > 0) {
-            // 找到对应维度
-            for (int i = 0; i < xAxis.size(); i++) {
-                ChartViewFieldDTO item = xAxis.get(i);
-                if (StringUtils.equalsIgnoreCase(item.getSort(), "custom_sort")) {
-                    // 获取自定义值与data对应列的结果
-                    if (i > 0) {
-                        // 首先根据优先级高的字段分类，在每个前置字段相同的组里排序
-                        Map<String, List<String[]>> map = new LinkedHashMap<>();
-                        for (String[] d : res) {
-                            StringBuilder stringBuilder = new StringBuilder();
-                            for (int j = 0; j < i; j++) {
-                                if (StringUtils.equalsIgnoreCase(xAxis.get(j).getSort(), "none")) {
-                                    continue;
-                                }
-                                stringBuilder.append(d[j]);
-                            }
-                            if (CollectionUtils.isEmpty(map.get(stringBuilder.toString()))) {
-                                map.put(stringBuilder.toString(), new ArrayList<>());
-                            }
-                            map.get(stringBuilder.toString()).add(d);
-                        }
-                        Iterator<Map.Entry<String, List<String[]>>> iterator = map.entrySet().iterator();
-                        List<String[]> list = new ArrayList<>();
-                        while (iterator.hasNext()) {
-                            Map.Entry<String, List<String[]>> next = iterator.next();
-                            list.addAll(customSort(Optional.ofNullable(item.getCustomSort()).orElse(new ArrayList<>()), next.getValue(), i));
-                        }
-                        res.clear();
-                        res.addAll(list);
-                    } else {
-                        res = customSort(Optional.ofNullable(item.getCustomSort()).orElse(new ArrayList<>()), res, i);
-                    }
-                }
-            }
-        }
-        return res;
+        // 首先根据优先级高的字段分类，在每个前置字段相同的组里排序
+        return ChartCustomSort.sort(xAxis, data);
     }
 
     public String assistSQL(String sql, List<ChartViewFieldDTO> assistFields) {
@@ -1604,40 +1627,99 @@ public class ChartViewService {
         return false;
     }
 
+    /**
+     * 查询视图数据，可缓存时走结果缓存
+     * 缓存 key 由最终 SQL、数据源和权限指纹组成，过滤、联动、下钻、行列权限都会体现在 key 中
+     */
+    private List<String[]> queryViewData(boolean cache, DatasourceAdmission.Priority priority, Provider datasourceProvider, DatasourceRequest datasourceRequest, ChartViewDTO view, DatasetTable table, String permissionFingerprint) throws Exception {
+        if (!cache || !chartViewResultCacheService.cacheable(datasourceRequest.getDatasource(), table.getMode() == 1)) {
+            return datasourceAdmission.getData(datasourceProvider, datasourceRequest, priority);
+        }
+        return cacheViewData(priority, datasourceProvider, datasourceRequest, view.getId(), table, permissionFingerprint);
+    }
+
+    /**
+     * 导出明细时按后台查询准入，其余视图查询按交互查询准入
+     */
+    private DatasourceAdmission.Priority queryPriority(ChartExtRequest chartExtRequest) {
+        if (chartExtRequest != null && (Boolean.TRUE.equals(chartExtRequest.getExcelExportFlag()) || chartExtRequest.getRowHandler() != null)) {
+            return DatasourceAdmission.Priority.BACKGROUND;
+        }
+        return DatasourceAdmission.Priority.INTERACTIVE;
+    }
+
+    /**
+     * 在当前线程执行视图主查询，明细表导出时逐行交给 handler，失败时取消并发中的其他查询
+     */
+    private List<String[]> runMainQuery(ViewSubQueries subQueries, boolean cache, DatasourceAdmission.Priority priority, Provider datasourceProvider, DatasourceRequest datasourceRequest, ChartViewDTO view, DatasetTable table, List<ChartViewFieldDTO> fields, Map<String, ColumnPermissionItem> desensitizationList, ViewRowHandler rowHandler, String permissionFingerprint) throws Exception {
+        return subQueries.run(ViewSubQueries.MAIN, () -> {
+            if (rowHandler != null && StringUtils.equalsIgnoreCase("table-info", view.getType())) {
+                datasourceAdmission.call(datasourceRequest.getDatasource(), priority, () -> {
+                    streamViewData(datasourceProvider, datasourceRequest, fields, desensitizationList, rowHandler);
+                    return null;
+                });
+                return new ArrayList<>();
+            }
+            return queryViewData(cache, priority, datasourceProvider, datasourceRequest, view, table, permissionFingerprint);
+        });
+    }
+
+    /**
+     * 数据源配置的查询超时时间(秒)，非 JDBC 数据源或未配置时返回 0
+     */
+    private int queryTimeout(Datasource ds) {
+        if (ds == null || StringUtils.isEmpty(ds.getConfiguration())) {
+            return 0;
+        }
+        try {
+            JdbcConfiguration configuration = gson.fromJson(ds.getConfiguration(), JdbcConfiguration.class);
+            return configuration == null ? 0 : configuration.getQueryTimeout();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 明细表导出时把查询结果逐行交给 handler，不在内存中保留结果集
+     * 含自定义排序的字段或非 JDBC 数据源时只能先取全量再逐行回调
+     */
+    private void streamViewData(Provider datasourceProvider, DatasourceRequest datasourceRequest, List<ChartViewFieldDTO> fields, Map<String, ColumnPermissionItem> desensitizationList, ViewRowHandler handler) throws Exception {
+        handler.fields(fields, desensitizationList);
+        boolean customSort = fields.stream().anyMatch(field -> StringUtils.equalsIgnoreCase(field.getSort(), "custom_sort"));
+        if (datasourceProvider instanceof JdbcProvider && !customSort) {
+            ((JdbcProvider) datasourceProvider).streamData(datasourceRequest, handler);
+            return;
+        }
+        for (String[] row : resultCustomSort(fields, datasourceProvider.getData(datasourceRequest))) {
+            handler.handle(row);
+        }
+    }
+
+    private String permissionFingerprint(List<DataSetRowPermissionsTreeDTO> rowPermissionsTree, Map<String, ColumnPermissionItem> desensitizationList, List<String> dataeaseNames) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(CollectionUtils.isEmpty(rowPermissionsTree) ? "" : gson.toJson(rowPermissionsTree));
+        stringBuilder.append("|").append(new TreeSet<>(desensitizationList.keySet()));
+        stringBuilder.append("|").append(new TreeSet<>(dataeaseNames));
+        return stringBuilder.toString();
+    }
+
     /**
      * 避免缓存击穿
-     * 虽然流量不一定能够达到击穿的水平
+     * 同一缓存 key 的并发请求只查询一次数据源，不同 key 之间并行加载
      *
+     * @param priority
      * @param datasourceProvider
      * @param datasourceRequest
      * @param viewId
+     * @param table
+     * @param permissionFingerprint
      * @return
      * @throws Exception
      */
-    public List<String[]> cacheViewData(Provider datasourceProvider, DatasourceRequest datasourceRequest, String viewId) throws Exception {
-        List<String[]> result;
-        Object cache = CacheUtils.get(JdbcConstants.VIEW_CACHE_KEY, viewId);
-        if (cache == null) {
-            if (lock.tryLock()) {// 获取锁成功
-                try {
-                    result = datasourceProvider.getData(datasourceRequest);
-                    if (result != null) {
-                        CacheUtils.put(JdbcConstants.VIEW_CACHE_KEY, viewId, result, null, null);
-                    }
-                } catch (Exception e) {
-                    LogUtil.error(e);
-                    throw e;
-                } finally {
-                    lock.unlock();
-                }
-            } else {//获取锁失败
-                Thread.sleep(100);//避免CAS自旋频率过大 占用cpu资源过高
-                result = cacheViewData(datasourceProvider, datasourceRequest, viewId);
-            }
-        } else {
-            result = (List<String[]>) cache;
-        }
-        return result;
+    public List<String[]> cacheViewData(DatasourceAdmission.Priority priority, Provider datasourceProvider, DatasourceRequest datasourceRequest, String viewId, DatasetTable table, String permissionFingerprint) throws Exception {
+        Datasource ds = datasourceRequest.getDatasource();
+        String key = chartViewResultCacheService.buildKey(ds, datasourceRequest.getQuery(), permissionFingerprint);
+        return chartViewResultCacheService.getOrLoad(key, () -> datasourceAdmission.getData(datasourceProvider, datasourceRequest, priority), ds, table.getMode() == 1, viewId, table.getId());
     }
 
     private void checkName(ChartViewWithBLOBs chartView) {
@@ -1797,39 +1879,7 @@ public class ChartViewService {
     }
 
     public List<String[]> customSort(List<String> custom, List<String[]> data, int index) {
-        List<String[]> res = new ArrayList<>();
-
-        List<Integer> indexArr = new ArrayList<>();
-        List<String[]> joinArr = new ArrayList<>();
-        for (int i = 0; i < custom.size(); i++) {
-            String ele = custom.get(i);
-            for (int j = 0; j < data.size(); j++) {
-                String[] d = data.get(j);
-                if (StringUtils.equalsIgnoreCase(ele, d[index])) {
-                    joinArr.add(d);
-                    indexArr.add(j);
-                }
-            }
-        }
-        // 取得 joinArr 就是两者的交集
-        List<Integer> indexArrData = new ArrayList<>();
-        for (int i = 0; i < data.size(); i++) {
-            indexArrData.add(i);
-        }
-        List<Integer> indexResult = new ArrayList<>();
-        for (int i = 0; i < indexArrData.size(); i++) {
-            if (!indexArr.contains(indexArrData.get(i))) {
-                indexResult.add(indexArrData.get(i));
-            }
-        }
-
-        List<String[]> subArr = new ArrayList<>();
-        for (int i = 0; i < indexResult.size(); i++) {
-            subArr.add(data.get(indexResult.get(i)));
-        }
-        res.addAll(joinArr);
-        res.addAll(subArr);
-        return res;
+        return ChartCustomSort.sort(custom, data, index);
     }
 
     /**
@@ -0,0 +1,182 @@
+package io.dataease.service.chart;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 视图查询结果的紧凑二进制编码
+ * 按列存储，重复值多的列使用字典编码，其余列直接存储 UTF-8 字符串，长度和字典下标使用变长整数；
+ * 解码时生成新的数组，调用方可以直接修改，无需再复制
+ */
+public final class ViewResultCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final byte PLAIN = 0;
+
+    private static final byte DICT = 1;
+
+    private ViewResultCodec() {
+    }
+
+    public static byte[] encode(List<String[]> rows) {
+        Output out = new Output();
+        out.write(VERSION);
+        int rowCount = rows.size();
+        int columnCount = 0;
+        boolean uniform = true;
+        for (int r = 0; r < rowCount; r++) {
+            String[] row = rows.get(r);
+            int length = row == null ? -1 : row.length;
+            if (r == 0) {
+                columnCount = Math.max(length, 0);
+                uniform = length >= 0;
+            } else if (length != columnCount) {
+                uniform = false;
+            }
+            columnCount = Math.max(columnCount, length);
+        }
+        out.writeVarInt(rowCount);
+        out.writeVarInt(columnCount);
+        out.write(uniform ? 1 : 0);
+        if (!uniform) {
+            // 行长度不一致时单独记录每行的列数，0 表示 null 行
+            for (String[] row : rows) {
+                out.writeVarInt(row == null ? 0 : row.length + 1);
+            }
+        }
+        for (int c = 0; c < columnCount; c++) {
+            Map<String, Integer> dict = dictionary(rows, c);
+            if (dict != null) {
+                out.write(DICT);
+                out.writeVarInt(dict.size());
+                for (String value : dict.keySet()) {
+                    out.writeString(value);
+                }
+                for (String[] row : rows) {
+                    if (row != null && c < row.length) {
+                        out.writeVarInt(row[c] == null ? 0 : dict.get(row[c]) + 1);
+                    }
+                }
+            } else {
+                out.write(PLAIN);
+                for (String[] row : rows) {
+                    if (row != null && c < row.length) {
+                        out.writeString(row[c]);
+                    }
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static List<String[]> decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported view result encoding version: " + version);
+        }
+        int rowCount = readVarInt(buffer);
+        int columnCount = readVarInt(buffer);
+        boolean uniform = buffer.get() == 1;
+        String[][] rows = new String[rowCount][];
+        for (int r = 0; r < rowCount; r++) {
+            if (uniform) {
+                rows[r] = new String[columnCount];
+            } else {
+                int length = readVarInt(buffer) - 1;
+                rows[r] = length < 0 ? null : new String[length];
+            }
+        }
+        for (int c = 0; c < columnCount; c++) {
+            byte mode = buffer.get();
+            if (mode == DICT) {
+                String[] dict = new String[readVarInt(buffer)];
+                for (int i = 0; i < dict.length; i++) {
+                    dict[i] = readString(buffer);
+                }
+                for (String[] row : rows) {
+                    if (row != null && c < row.length) {
+                        int index = readVarInt(buffer);
+                        row[c] = index == 0 ? null : dict[index - 1];
+                    }
+                }
+            } else {
+                for (String[] row : rows) {
+                    if (row != null && c < row.length) {
+                        row[c] = readString(buffer);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+
+    /**
+     * 不同值不超过非空行数一半时使用字典编码，否则返回 null
+     */
+    private static Map<String, Integer> dictionary(List<String[]> rows, int column) {
+        int limit = Math.max(rows.size() / 2, 1);
+        Map<String, Integer> dict = new LinkedHashMap<>();
+        for (String[] row : rows) {
+            if (row == null || column >= row.length || row[column] == null) {
+                continue;
+            }
+            if (dict.putIfAbsent(row[column], dict.size()) == null && dict.size() > limit) {
+                return null;
+            }
+        }
+        return dict;
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readVarInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(1024);
+        }
+
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        /**
+         * 长度加一写入，0 表示 null
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
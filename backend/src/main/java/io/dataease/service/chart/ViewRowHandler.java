@@ -0,0 +1,24 @@
+package io.dataease.service.chart;
+
+import io.dataease.plugins.common.dto.chart.ChartViewFieldDTO;
+import io.dataease.plugins.xpack.auth.dto.request.ColumnPermissionItem;
+import io.dataease.provider.datasource.RowHandler;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 逐行接收明细表视图的查询结果，用于大数据量导出
+ * 结果列与 fields 一一对应，脱敏由接收方按 desensitizationList 处理
+ */
+public interface ViewRowHandler extends RowHandler {
+
+    /**
+     * 开始查询前回调
+     *
+     * @param fields              结果列对应的视图字段
+     * @param desensitizationList 需要脱敏的字段
+     */
+    void fields(List<ChartViewFieldDTO> fields, Map<String, ColumnPermissionItem> desensitizationList) throws Exception;
+
+}
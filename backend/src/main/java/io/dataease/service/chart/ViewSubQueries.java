@@ -0,0 +1,154 @@
+package io.dataease.service.chart;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dataease.commons.pool.DatasourceAdmission;
+import io.dataease.commons.pool.DatasourceExecutorPool;
+import io.dataease.exception.DataEaseException;
+import io.dataease.plugins.common.request.datasource.DatasourceRequest;
+import io.dataease.plugins.datasource.provider.Provider;
+import io.dataease.provider.datasource.QueryRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+
+/**
+ * 视图一次取数中互不依赖的查询(总数、主查询、辅助线、明细)并发执行
+ * 附属查询提交到数据源的附属查询线程池，主查询在当前线程执行；所有查询共享同一个截止时间，
+ * 任一查询失败或超时时取消其余查询；每个查询的耗时记录下来随视图结果返回
+ * 所有查询在当前请求的子上下文中执行，取消时通过 Statement.cancel() 中止数据库端的执行
+ */
+public class ViewSubQueries {
+
+    public static final String COUNT = "count";
+
+    public static final String MAIN = "main";
+
+    public static final String ASSIST = "assist";
+
+    public static final String DETAIL = "detail";
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("view-query-deadline").setDaemon(true).build());
+
+    private final DatasourceExecutorPool pool;
+
+    private final DatasourceAdmission admission;
+
+    private final DatasourceAdmission.Priority priority;
+
+    private final String datasourceId;
+
+    private final long deadline;
+
+    private final QueryRegistry.QueryContext context = QueryRegistry.child();
+
+    private volatile boolean timedOut;
+
+    private final Map<String, Future<List<String[]>>> futures = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> queryTimes = new ConcurrentHashMap<>();
+
+    /**
+     * @param timeoutSeconds 数据源的查询超时时间，小于等于 0 时不限制
+     */
+    public ViewSubQueries(DatasourceExecutorPool pool, DatasourceAdmission admission, DatasourceAdmission.Priority priority, String datasourceId, int timeoutSeconds) {
+        this.pool = pool;
+        this.admission = admission;
+        this.priority = priority;
+        this.datasourceId = datasourceId;
+        this.deadline = timeoutSeconds > 0 ? System.currentTimeMillis() + timeoutSeconds * 1000L : 0;
+    }
+
+    public void submit(String name, Provider provider, DatasourceRequest datasourceRequest) {
+        futures.put(name, pool.submitSubQuery(datasourceId, QueryRegistry.propagate(context, () -> timed(name, () -> admission.getData(provider, datasourceRequest, priority)))));
+    }
+
+    /**
+     * 在当前线程执行查询，超过截止时间时中止，失败时取消已提交的其他查询
+     */
+    public <T> T run(String name, Callable<T> query) throws Exception {
+        ScheduledFuture<?> timer = null;
+        if (deadline > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                cancel();
+                DataEaseException.throwException("Query timeout: " + name);
+            }
+            timer = TIMER.schedule(() -> {
+                timedOut = true;
+                cancel();
+            }, remaining, TimeUnit.MILLISECONDS);
+        }
+        try {
+            return timed(name, QueryRegistry.propagate(context, query));
+        } catch (Exception e) {
+            cancel();
+            if (timedOut) {
+                DataEaseException.throwException("Query timeout: " + name);
+            }
+            throw e;
+        } finally {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 等待已提交的查询结果，未提交时返回 null
+     */
+    public List<String[]> get(String name) throws Exception {
+        Future<List<String[]>> future = futures.get(name);
+        if (future == null) {
+            return null;
+        }
+        try {
+            if (deadline <= 0) {
+                return future.get();
+            }
+            return future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (TimeoutException e) {
+            cancel();
+            DataEaseException.throwException("Query timeout: " + name);
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        return null;
+    }
+
+    /**
+     * 取消所有尚未完成的查询
+     * future.cancel 无法中断驱动的网络读写，执行中的语句由 Statement.cancel() 中止
+     */
+    public void cancel() {
+        futures.values().forEach(future -> future.cancel(true));
+        context.cancel("View query cancelled");
+    }
+
+    /**
+     * 各查询耗时，单位毫秒
+     */
+    public Map<String, Long> getQueryTimes() {
+        return new TreeMap<>(queryTimes);
+    }
+
+    private <T> T timed(String name, Callable<T> query) throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            return query.call();
+        } finally {
+            queryTimes.put(name, System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package io.dataease.service.chart.util;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 同比/环比、占比计算
+ * 指标列只解析一次：整数列使用 long 数组，其余使用 BigDecimal 数组，空值记录在位图中；
+ * 维度列按列做字典编码，以编码数组作为行的 key，不再拼接字符串；上一期时间按时间维度的不同取值只计算一次
+ */
+public class ChartCompareCalc {
+
+    private ChartCompareCalc() {
+    }
+
+    /**
+     * 同比/环比，结果直接写回 data 中的指标列
+     *
+     * @param dimensionCount 维度列数，维度位于每行的前 dimensionCount 列
+     * @param timeIndex      对比的时间维度下标
+     * @param dataIndex      指标列下标
+     * @param resultData     数据设置：sub 差值，percent 变化率
+     * @param lastTime       根据当期时间计算上一期时间
+     */
+    public static void periodCompare(List<String[]> data, int dimensionCount, int timeIndex, int dataIndex, String resultData, Function<String, String> lastTime) {
+        int rowCount = data.size();
+        List<Map<String, Integer>> dictionaries = new ArrayList<>(dimensionCount);
+        int[][] codes = new int[dimensionCount][rowCount];
+        for (int c = 0; c < dimensionCount; c++) {
+            Map<String, Integer> dictionary = new HashMap<>();
+            for (int r = 0; r < rowCount; r++) {
+                String value = data.get(r)[c];
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(value, code);
+                }
+                codes[c][r] = code;
+            }
+            dictionaries.add(dictionary);
+        }
+        NumberColumn values = new NumberColumn(data, dataIndex);
+
+        // 维度相同的行以最后一行为准
+        Map<RowKey, Integer> rowIndex = new HashMap<>(Math.max(rowCount * 4 / 3, 16));
+        for (int r = 0; r < rowCount; r++) {
+            rowIndex.put(RowKey.of(codes, r, -1, 0), r);
+        }
+
+        Map<String, Integer> timeDictionary = dictionaries.get(timeIndex);
+        int[] lastTimeCodes = new int[timeDictionary.size()];
+        for (Map.Entry<String, Integer> entry : timeDictionary.entrySet()) {
+            Integer code = timeDictionary.get(lastTime.apply(entry.getKey()));
+            lastTimeCodes[entry.getValue()] = code == null ? -1 : code;
+        }
+
+        for (int r = 0; r < rowCount; r++) {
+            String[] item = data.get(r);
+            int lastTimeCode = lastTimeCodes[codes[timeIndex][r]];
+            Integer last = lastTimeCode < 0 ? null : rowIndex.get(RowKey.of(codes, r, timeIndex, lastTimeCode));
+            if (values.isNull(r) || last == null || values.isNull(last)) {
+                item[dataIndex] = null;
+            } else if (StringUtils.equalsIgnoreCase(resultData, "sub")) {
+                item[dataIndex] = values.subtract(r, last);
+            } else if (StringUtils.equalsIgnoreCase(resultData, "percent")) {
+                if (values.isZero(last)) {
+                    item[dataIndex] = null;
+                } else {
+                    item[dataIndex] = values.decimal(r)
+                            .divide(values.decimal(last), 8, RoundingMode.HALF_UP)
+                            .subtract(BigDecimal.ONE)
+                            .setScale(8, RoundingMode.HALF_UP)
+                            .toString();
+                }
+            }
+        }
+    }
+
+    /**
+     * 占比，结果直接写回 data 中的指标列
+     */
+    public static void percent(List<String[]> data, int dataIndex) {
+        NumberColumn values = new NumberColumn(data, dataIndex);
+        BigDecimal sum = values.sum();
+        for (int r = 0; r < data.size(); r++) {
+            if (values.isNull(r)) {
+                continue;
+            }
+            data.get(r)[dataIndex] = values.decimal(r)
+                    .divide(sum, 8, RoundingMode.HALF_UP)
+                    .toString();
+        }
+    }
+
+    /**
+     * 一列指标值，全部为整数时使用 long 存储，出现小数或超出 long 范围时整列改用 BigDecimal
+     * 无法解析的值在使用时才抛出异常，与逐个解析时的行为一致
+     */
+    static class NumberColumn {
+
+        private final List<String[]> data;
+
+        private final int index;
+
+        private final BitSet nulls = new BitSet();
+
+        private final BitSet invalid = new BitSet();
+
+        private long[] longs;
+
+        private BigDecimal[] decimals;
+
+        NumberColumn(List<String[]> data, int index) {
+            this.data = data;
+            this.index = index;
+            int rowCount = data.size();
+            longs = new long[rowCount];
+            for (int r = 0; r < rowCount; r++) {
+                String value = data.get(r)[index];
+                if (StringUtils.isEmpty(value)) {
+                    nulls.set(r);
+                } else if (longs != null && isLong(value)) {
+                    longs[r] = Long.parseLong(value);
+                } else {
+                    if (decimals == null) {
+                        toDecimals(r);
+                    }
+                    try {
+                        decimals[r] = new BigDecimal(value);
+                    } catch (NumberFormatException e) {
+                        invalid.set(r);
+                    }
+                }
+            }
+        }
+
+        private void toDecimals(int end) {
+            decimals = new BigDecimal[longs.length];
+            for (int r = 0; r < end; r++) {
+                if (!nulls.get(r)) {
+                    decimals[r] = BigDecimal.valueOf(longs[r]);
+                }
+            }
+            longs = null;
+        }
+
+        boolean isNull(int r) {
+            return nulls.get(r);
+        }
+
+        BigDecimal decimal(int r) {
+            if (invalid.get(r)) {
+                return new BigDecimal(data.get(r)[index]);
+            }
+            return longs != null ? BigDecimal.valueOf(longs[r]) : decimals[r];
+        }
+
+        boolean isZero(int r) {
+            return longs != null ? longs[r] == 0 : decimal(r).compareTo(BigDecimal.ZERO) == 0;
+        }
+
+        String subtract(int r, int other) {
+            if (longs != null) {
+                try {
+                    return Long.toString(Math.subtractExact(longs[r], longs[other]));
+                } catch (ArithmeticException e) {
+                    // 溢出时按 BigDecimal 计算
+                }
+            }
+            return decimal(r).subtract(decimal(other)).toString();
+        }
+
+        BigDecimal sum() {
+            if (longs != null) {
+                long sum = 0;
+                try {
+                    for (int r = 0; r < longs.length; r++) {
+                        if (!nulls.get(r)) {
+                            sum = Math.addExact(sum, longs[r]);
+                        }
+                    }
+                    return BigDecimal.valueOf(sum);
+                } catch (ArithmeticException e) {
+                    // 溢出时按 BigDecimal 计算
+                }
+            }
+            BigDecimal sum = BigDecimal.ZERO;
+            for (int r = 0; r < data.size(); r++) {
+                if (!nulls.get(r)) {
+                    sum = sum.add(decimal(r));
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * 最多 18 位的整数一定在 long 范围内
+         */
+        private static boolean isLong(String value) {
+            int start = value.charAt(0) == '-' ? 1 : 0;
+            int length = value.length() - start;
+            if (length < 1 || length > 18) {
+                return false;
+            }
+            for (int i = start; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch < '0' || ch > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 按维度编码组成的行 key，可以替换其中一列的编码
+     */
+    static class RowKey {
+
+        private final int[] codes;
+
+        private final int hash;
+
+        private RowKey(int[] codes) {
+            this.codes = codes;
+            this.hash = Arrays.hashCode(codes);
+        }
+
+        static RowKey of(int[][] columns, int row, int replaceColumn, int replaceCode) {
+            int[] codes = new int[columns.length];
+            for (int c = 0; c < columns.length; c++) {
+                codes[c] = c == replaceColumn ? replaceCode : columns[c][row];
+            }
+            return new RowKey(codes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RowKey && Arrays.equals(codes, ((RowKey) o).codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.dataease.service.chart.util;
+
+import io.dataease.plugins.common.dto.chart.ChartViewFieldDTO;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+
+/**
+ * 维度自定义排序
+ * 自定义值预先转换为 值 -> 序号 的哈希表（忽略大小写），每个自定义排序的维度只做一次分组和一次按行下标的稳定排序；
+ * 排序结果与逐个自定义值扫描数据的实现一致：在前置维度相同的组内，命中自定义值的行按自定义顺序排在前面，其余行保持原有顺序
+ */
+public class ChartCustomSort {
+
+    private static final String CUSTOM_SORT = "custom_sort";
+
+    private ChartCustomSort() {
+    }
+
+    /**
+     * 按维度顺序依次应用各个维度的自定义排序，后面的维度在前置维度（不含未排序维度）相同的组内排序，组按首次出现的顺序排列
+     */
+    public static List<String[]> sort(List<ChartViewFieldDTO> fields, List<String[]> data) {
+        List<String[]> res = new ArrayList<>(data);
+        for (int i = 0; i < fields.size(); i++) {
+            ChartViewFieldDTO item = fields.get(i);
+            if (!StringUtils.equalsIgnoreCase(item.getSort(), CUSTOM_SORT)) {
+                continue;
+            }
+            int[] groups = null;
+            if (i > 0) {
+                List<Integer> prefix = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    if (!StringUtils.equalsIgnoreCase(fields.get(j).getSort(), "none")) {
+                        prefix.add(j);
+                    }
+                }
+                groups = groups(res, prefix);
+            }
+            res = reorder(res, item.getCustomSort(), i, groups);
+        }
+        return res;
+    }
+
+    /**
+     * 单个维度的自定义排序
+     */
+    public static List<String[]> sort(List<String> custom, List<String[]> data, int index) {
+        return reorder(data, custom, index, null);
+    }
+
+    /**
+     * 按前置维度的取值分组，组号按首次出现的顺序递增
+     */
+    private static int[] groups(List<String[]> data, List<Integer> prefix) {
+        int[] groups = new int[data.size()];
+        if (prefix.isEmpty()) {
+            return groups;
+        }
+        Map<Object, Integer> groupIds = new HashMap<>();
+        for (int r = 0; r < data.size(); r++) {
+            String[] row = data.get(r);
+            Object key;
+            if (prefix.size() == 1) {
+                key = row[prefix.get(0)];
+            } else {
+                String[] values = new String[prefix.size()];
+                for (int k = 0; k < values.length; k++) {
+                    values[k] = row[prefix.get(k)];
+                }
+                key = Arrays.asList(values);
+            }
+            Integer groupId = groupIds.get(key);
+            if (groupId == null) {
+                groupId = groupIds.size();
+                groupIds.put(key, groupId);
+            }
+            groups[r] = groupId;
+        }
+        return groups;
+    }
+
+    private static List<String[]> reorder(List<String[]> data, List<String> custom, int index, int[] groups) {
+        Map<String, Integer> ranks = ranks(custom);
+        int unmatched = ranks.size();
+        int rowCount = data.size();
+        int[] rowRanks = new int[rowCount];
+        Integer[] order = new Integer[rowCount];
+        for (int r = 0; r < rowCount; r++) {
+            Integer rank = ranks.isEmpty() ? null : ranks.get(foldCase(data.get(r)[index]));
+            rowRanks[r] = rank == null ? unmatched : rank;
+            order[r] = r;
+        }
+        // 稳定排序，组号、序号都相同的行保持原有顺序
+        Arrays.sort(order, (a, b) -> {
+            if (groups != null && groups[a] != groups[b]) {
+                return Integer.compare(groups[a], groups[b]);
+            }
+            return Integer.compare(rowRanks[a], rowRanks[b]);
+        });
+        List<String[]> res = new ArrayList<>(rowCount);
+        for (Integer r : order) {
+            res.add(data.get(r));
+        }
+        return res;
+    }
+
+    /**
+     * 自定义值 -> 序号，忽略大小写，重复的值以第一次出现的为准
+     */
+    private static Map<String, Integer> ranks(List<String> custom) {
+        Map<String, Integer> ranks = new HashMap<>();
+        if (custom == null) {
+            return ranks;
+        }
+        for (String value : custom) {
+            ranks.putIfAbsent(foldCase(value), ranks.size());
+        }
+        return ranks;
+    }
+
+    /**
+     * 与 equalsIgnoreCase 相同的逐字符大小写折叠
+     */
+    private static String foldCase(String value) {
+        if (value == null) {
+            return null;
+        }
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+}
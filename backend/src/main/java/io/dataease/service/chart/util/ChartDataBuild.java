@@ -18,6 +18,28 @@ public class ChartDataBuild {
 
     private final static String format = "(%s)";
 
+    /**
+     * 一行数据的维度信息，同一行的各个指标共用，调用方不要修改
+     */
+    private static List<ChartDimensionDTO> rowDimensions(List<ChartViewFieldDTO> xAxis, String[] row) {
+        List<ChartDimensionDTO> dimensionList = new ArrayList<>(xAxis.size());
+        for (int j = 0; j < xAxis.size(); j++) {
+            ChartDimensionDTO chartDimensionDTO = new ChartDimensionDTO();
+            chartDimensionDTO.setId(xAxis.get(j).getId());
+            chartDimensionDTO.setValue(row[j]);
+            dimensionList.add(chartDimensionDTO);
+        }
+        return dimensionList;
+    }
+
+    private static BigDecimal quotaValue(String value) {
+        try {
+            return StringUtils.isEmpty(value) ? null : new BigDecimal(value);
+        } catch (Exception e) {
+            return new BigDecimal(0);
+        }
+    }
+
     // AntV
     public static Map<String, Object> transChartDataAntV(List<ChartViewFieldDTO> xAxis, List<ChartViewFieldDTO> yAxis, ChartViewWithBLOBs view, List<String[]> data, boolean isDrill) {
         Map<String, Object> map = new HashMap<>();
@@ -39,21 +61,16 @@ public class ChartDataBuild {
                 }
             }
 
+            // 同一行的各个指标共用维度信息
+            String field = a.toString();
+            List<ChartDimensionDTO> dimensionList = rowDimensions(xAxis, row);
             if (StringUtils.containsIgnoreCase(view.getType(), "table")) {
                 for (int i = 0; i < xAxis.size() + yAxis.size(); i++) {
                     AxisChartDataAntVDTO axisChartDataDTO = new AxisChartDataAntVDTO();
-                    axisChartDataDTO.setField(a.toString());
-                    axisChartDataDTO.setName(a.toString());
+                    axisChartDataDTO.setField(field);
+                    axisChartDataDTO.setName(field);
 
-                    List<ChartDimensionDTO> dimensionList = new ArrayList<>();
                     List<ChartQuotaDTO> quotaList = new ArrayList<>();
-
-                    for (int j = 0; j < xAxis.size(); j++) {
-                        ChartDimensionDTO chartDimensionDTO = new ChartDimensionDTO();
-                        chartDimensionDTO.setId(xAxis.get(j).getId());
-                        chartDimensionDTO.setValue(row[j]);
-                        dimensionList.add(chartDimensionDTO);
-                    }
                     axisChartDataDTO.setDimensionList(dimensionList);
 
                     int j = i - xAxis.size();
@@ -62,11 +79,7 @@ public class ChartDataBuild {
                         chartQuotaDTO.setId(yAxis.get(j).getId());
                         quotaList.add(chartQuotaDTO);
                         axisChartDataDTO.setQuotaList(quotaList);
-                        try {
-                            axisChartDataDTO.setValue(StringUtils.isEmpty(row[i]) ? null : new BigDecimal(row[i]));
-                        } catch (Exception e) {
-                            axisChartDataDTO.setValue(new BigDecimal(0));
-                        }
+                        axisChartDataDTO.setValue(quotaValue(row[i]));
                         axisChartDataDTO.setCategory(yAxis.get(j).getName());
                     }
                     dataList.add(axisChartDataDTO);
@@ -74,18 +87,10 @@ public class ChartDataBuild {
             } else {
                 for (int i = xAxis.size(); i < xAxis.size() + yAxis.size(); i++) {
                     AxisChartDataAntVDTO axisChartDataDTO = new AxisChartDataAntVDTO();
-                    axisChartDataDTO.setField(a.toString());
-                    axisChartDataDTO.setName(a.toString());
+                    axisChartDataDTO.setField(field);
+                    axisChartDataDTO.setName(field);
 
-                    List<ChartDimensionDTO> dimensionList = new ArrayList<>();
                     List<ChartQuotaDTO> quotaList = new ArrayList<>();
-
-                    for (int j = 0; j < xAxis.size(); j++) {
-                        ChartDimensionDTO chartDimensionDTO = new ChartDimensionDTO();
-                        chartDimensionDTO.setId(xAxis.get(j).getId());
-                        chartDimensionDTO.setValue(row[j]);
-                        dimensionList.add(chartDimensionDTO);
-                    }
                     axisChartDataDTO.setDimensionList(dimensionList);
 
                     int j = i - xAxis.size();
@@ -93,11 +98,7 @@ public class ChartDataBuild {
                     chartQuotaDTO.setId(yAxis.get(j).getId());
                     quotaList.add(chartQuotaDTO);
                     axisChartDataDTO.setQuotaList(quotaList);
-                    try {
-                        axisChartDataDTO.setValue(StringUtils.isEmpty(row[i]) ? null : new BigDecimal(row[i]));
-                    } catch (Exception e) {
-                        axisChartDataDTO.setValue(new BigDecimal(0));
-                    }
+                    axisChartDataDTO.setValue(quotaValue(row[i]));
                     axisChartDataDTO.setCategory(yAxis.get(j).getName());
                     dataList.add(axisChartDataDTO);
                 }
@@ -136,20 +137,15 @@ public class ChartDataBuild {
                 }
             }
 
+            String field = a.toString();
+            String category = b.toString();
+            List<ChartDimensionDTO> dimensionList = rowDimensions(xAxis, row);
             for (int i = xAxis.size(); i < xAxis.size() + yAxis.size(); i++) {
                 AxisChartDataAntVDTO axisChartDataDTO = new AxisChartDataAntVDTO();
-                axisChartDataDTO.setField(a.toString());
-                axisChartDataDTO.setName(a.toString());
+                axisChartDataDTO.setField(field);
+                axisChartDataDTO.setName(field);
 
-                List<ChartDimensionDTO> dimensionList = new ArrayList<>();
                 List<ChartQuotaDTO> quotaList = new ArrayList<>();
-
-                for (int j = 0; j < xAxis.size(); j++) {
-                    ChartDimensionDTO chartDimensionDTO = new ChartDimensionDTO();
-                    chartDimensionDTO.setId(xAxis.get(j).getId());
-                    chartDimensionDTO.setValue(row[j]);
-                    dimensionList.add(chartDimensionDTO);
-                }
                 axisChartDataDTO.setDimensionList(dimensionList);
 
                 int j = i - xAxis.size();
@@ -157,12 +153,8 @@ public class ChartDataBuild {
                 chartQuotaDTO.setId(yAxis.get(j).getId());
                 quotaList.add(chartQuotaDTO);
                 axisChartDataDTO.setQuotaList(quotaList);
-                try {
-                    axisChartDataDTO.setValue(StringUtils.isEmpty(row[i]) ? null : new BigDecimal(row[i]));
-                } catch (Exception e) {
-                    axisChartDataDTO.setValue(new BigDecimal(0));
-                }
-                axisChartDataDTO.setCategory(b.toString());
+                axisChartDataDTO.setValue(quotaValue(row[i]));
+                axisChartDataDTO.setCategory(category);
                 dataList.add(axisChartDataDTO);
 
                 if ("line".equals(view.getType())) {
@@ -255,20 +247,14 @@ public class ChartDataBuild {
                     }
                 }
 
+                String field = a.toString();
+                List<ChartDimensionDTO> dimensionList = rowDimensions(xAxis, row);
                 for (int i = xAxis.size(); i < xAxis.size() + yAxis.size(); i++) {
                     AxisChartDataAntVDTO axisChartDataDTO = new AxisChartDataAntVDTO();
-                    axisChartDataDTO.setField(a.toString());
-                    axisChartDataDTO.setName(a.toString());
+                    axisChartDataDTO.setField(field);
+                    axisChartDataDTO.setName(field);
 
-                    List<ChartDimensionDTO> dimensionList = new ArrayList<>();
                     List<ChartQuotaDTO> quotaList = new ArrayList<>();
-
-                    for (int j = 0; j < xAxis.size(); j++) {
-                        ChartDimensionDTO chartDimensionDTO = new ChartDimensionDTO();
-                        chartDimensionDTO.setId(xAxis.get(j).getId());
-                        chartDimensionDTO.setValue(row[j]);
-                        dimensionList.add(chartDimensionDTO);
-                    }
                     axisChartDataDTO.setDimensionList(dimensionList);
 
                     int j = i - xAxis.size();
@@ -276,11 +262,7 @@ public class ChartDataBuild {
                     chartQuotaDTO.setId(yAxis.get(j).getId());
                     quotaList.add(chartQuotaDTO);
                     axisChartDataDTO.setQuotaList(quotaList);
-                    try {
-                        axisChartDataDTO.setValue(StringUtils.isEmpty(row[i]) ? null : new BigDecimal(row[i]));
-                    } catch (Exception e) {
-                        axisChartDataDTO.setValue(new BigDecimal(0));
-                    }
+                    axisChartDataDTO.setValue(quotaValue(row[i]));
                     axisChartDataDTO.setCategory(yAxis.get(j).getName());
                     dataList.add(axisChartDataDTO);
                 }
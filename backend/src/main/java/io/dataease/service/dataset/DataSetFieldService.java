@@ -13,5 +13,13 @@ public interface DataSetFieldService {
 
     List<Object> fieldValues(List<String> fieldIds, DeSortDTO sortDTO, Long userId, Boolean userPermissions, Boolean needMapping, Boolean rowAndColumnMgm) throws Exception;
 
+    /**
+     * @param keyword 搜索关键字，为空时不过滤
+     * @param limit   最多返回的值个数，为空时不限制
+     */
+    List<Object> fieldValues(String fieldId, DeSortDTO sortDTO, Long userId, Boolean userPermissions, Boolean rowAndColumnMgm, String keyword, Integer limit) throws Exception;
+
+    List<Object> fieldValues(List<String> fieldIds, DeSortDTO sortDTO, Long userId, Boolean userPermissions, Boolean needMapping, Boolean rowAndColumnMgm, String keyword, Integer limit) throws Exception;
+
     List<Object> chineseSort(List<Object> list, DeSortDTO sortDTO) throws Exception;
 }
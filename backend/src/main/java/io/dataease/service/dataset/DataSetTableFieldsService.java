@@ -24,6 +24,8 @@ import java.util.UUID;
 public class DataSetTableFieldsService {
     @Resource
     private DatasetTableFieldMapper datasetTableFieldMapper;
+    @Resource
+    private DatasetMetaCacheService datasetMetaCacheService;
 
     public void batchEdit(List<DatasetTableField> list) {
         for (DatasetTableField field : list) {
@@ -45,6 +47,7 @@ public class DataSetTableFieldsService {
         } else {
             datasetTableFieldMapper.updateByPrimaryKeySelective(datasetTableField);
         }
+        invalidateMeta(datasetTableField.getTableId(), datasetTableField.getId());
         return datasetTableField;
     }
 
@@ -83,6 +86,7 @@ public class DataSetTableFieldsService {
         DatasetTableFieldExample datasetTableFieldExample = new DatasetTableFieldExample();
         datasetTableFieldExample.createCriteria().andTableIdEqualTo(tableId);
         datasetTableFieldMapper.deleteByExample(datasetTableFieldExample);
+        datasetMetaCacheService.invalidate(tableId);
     }
 
     public List<DatasetTableField> getListByIds(List<String> ids) {
@@ -114,10 +118,29 @@ public class DataSetTableFieldsService {
     }
 
     public void delete(String id) {
+        DatasetTableField datasetTableField = datasetTableFieldMapper.selectByPrimaryKey(id);
         datasetTableFieldMapper.deleteByPrimaryKey(id);
+        if (datasetTableField != null) {
+            datasetMetaCacheService.invalidate(datasetTableField.getTableId());
+        }
     }
 
     public void updateByPrimaryKeySelective(DatasetTableField request) {
         datasetTableFieldMapper.updateByPrimaryKeySelective(request);
+        invalidateMeta(request.getTableId(), request.getId());
+    }
+
+    /**
+     * 更新字段时请求中可能不带 tableId，此时按字段 id 查出所属数据集
+     */
+    private void invalidateMeta(String tableId, String fieldId) {
+        if (StringUtils.isEmpty(tableId)) {
+            DatasetTableField datasetTableField = datasetTableFieldMapper.selectByPrimaryKey(fieldId);
+            if (datasetTableField == null) {
+                return;
+            }
+            tableId = datasetTableField.getTableId();
+        }
+        datasetMetaCacheService.invalidate(tableId);
     }
 }
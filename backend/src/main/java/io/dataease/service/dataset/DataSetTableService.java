@@ -9,6 +9,7 @@ import io.dataease.auth.annotation.DeCleaner;
 import io.dataease.auth.api.dto.CurrentUserDto;
 import io.dataease.commons.constants.*;
 import io.dataease.commons.exception.DEException;
+import io.dataease.commons.pool.DatasourceAdmission;
 import io.dataease.commons.utils.*;
 import io.dataease.controller.ResultHolder;
 import io.dataease.controller.request.dataset.DataSetExportRequest;
@@ -24,6 +25,7 @@ import io.dataease.dto.dataset.union.UnionDTO;
 import io.dataease.dto.dataset.union.UnionItemDTO;
 import io.dataease.dto.dataset.union.UnionParamDTO;
 import io.dataease.exception.DataEaseException;
+import io.dataease.exception.QueryCancelledException;
 import io.dataease.ext.ExtDataSetGroupMapper;
 import io.dataease.ext.ExtDataSetTableMapper;
 import io.dataease.ext.UtilMapper;
@@ -48,6 +50,8 @@ import io.dataease.plugins.xpack.auth.dto.request.ColumnPermissionItem;
 import io.dataease.provider.DDLProvider;
 import io.dataease.provider.ProviderFactory;
 import io.dataease.provider.datasource.JdbcProvider;
+import io.dataease.provider.query.SQLUtils;
+import io.dataease.service.chart.ChartViewResultCacheService;
 import io.dataease.service.chart.util.ChartDataBuild;
 import io.dataease.service.datasource.DatasourceService;
 import io.dataease.service.engine.EngineService;
@@ -68,7 +72,6 @@ import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.hssf.usermodel.HSSFDateUtil;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -78,7 +81,6 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
-import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
@@ -101,6 +103,8 @@ public class DataSetTableService {
     @Resource
     private DatasetTableMapper datasetTableMapper;
     @Resource
+    private DatasourceAdmission datasourceAdmission;
+    @Resource
     private DatasourceMapper datasourceMapper;
     @Resource
     private DataSetTableFieldsService dataSetTableFieldsService;
@@ -140,6 +144,14 @@ public class DataSetTableService {
     private DatasourceService datasourceService;
     @Resource
     private DatasetSqlLogMapper datasetSqlLogMapper;
+    @Resource
+    private ChartViewResultCacheService chartViewResultCacheService;
+    @Resource
+    private FieldValuesCacheService fieldValuesCacheService;
+    @Resource
+    private PreviewCountCacheService previewCountCacheService;
+    @Resource
+    private DatasetMetaCacheService datasetMetaCacheService;
 
     private static boolean isUpdatingDatasetTableStatus = false;
     private static final String lastUpdateTime = "${__last_update_time__}";
@@ -347,6 +359,10 @@ public class DataSetTableService {
             }
         } else {
             int update = datasetTableMapper.updateByPrimaryKeySelective(datasetTable);
+            chartViewResultCacheService.invalidateDataset(datasetTable.getId());
+            fieldValuesCacheService.invalidateDataset(datasetTable.getId());
+            previewCountCacheService.invalidateDataset(datasetTable.getId());
+            datasetMetaCacheService.invalidate(datasetTable.getId());
             if (datasetTable.getIsRename() == null || !datasetTable.getIsRename()) {
                 // 更新数据和字段
                 if (update == 1) {
@@ -366,6 +382,7 @@ public class DataSetTableService {
     public void alter(DataSetTableRequest request) {
         checkName(request);
         datasetTableMapper.updateByPrimaryKeySelective(request);
+        datasetMetaCacheService.invalidate(request.getId());
     }
 
     public void delete(String id) {
@@ -373,6 +390,10 @@ public class DataSetTableService {
         SysLogDTO sysLogDTO = DeLogUtils.buildLog(SysLogConstants.OPERATE_TYPE.DELETE, SysLogConstants.SOURCE_TYPE.DATASET, table.getId(), table.getSceneId(), null, null);
         datasetTableMapper.deleteByPrimaryKey(id);
         dataSetTableFieldsService.deleteByTableId(id);
+        chartViewResultCacheService.invalidateDataset(id);
+        fieldValuesCacheService.invalidateDataset(id);
+        previewCountCacheService.invalidateDataset(id);
+        datasetMetaCacheService.invalidate(id);
         // 删除同步任务
         dataSetTableTaskService.deleteByTableId(id);
         // 删除关联关系
@@ -564,9 +585,7 @@ public class DataSetTableService {
                                               List<DatasetTableField> extFields, DatasetRowPermissionsTreeObj extTree) throws Exception {
         Map<String, Object> map = new HashMap<>();
         String syncStatus = "";
-        DatasetTableField datasetTableField = DatasetTableField.builder().tableId(dataSetTableRequest.getId())
-                .checked(Boolean.TRUE).build();
-        List<DatasetTableField> fields = dataSetTableFieldsService.list(datasetTableField);
+        List<DatasetTableField> fields = datasetMetaCacheService.getCheckedFields(dataSetTableRequest.getId());
         if (CollectionUtils.isNotEmpty(extFields)) {
             fields = extFields;
         }
@@ -576,7 +595,7 @@ public class DataSetTableService {
             map.put("page", new DataSetPreviewPage());
             return map;
         }
-        DatasetTable datasetTable = datasetTableMapper.selectByPrimaryKey(dataSetTableRequest.getId());
+        DatasetTable datasetTable = datasetMetaCacheService.getTable(dataSetTableRequest.getId());
         // 行权限
         List<DataSetRowPermissionsTreeDTO> rowPermissionsTree = permissionsTreeService.getRowPermissionsTree(fields, datasetTable, null);
         // ext filter
@@ -597,7 +616,7 @@ public class DataSetTableService {
 
         String[] fieldArray = fields.stream().map(DatasetTableField::getDataeaseName).toArray(String[]::new);
 
-        DataTableInfoDTO dataTableInfoDTO = new Gson().fromJson(dataSetTableRequest.getInfo(), DataTableInfoDTO.class);
+        DataTableInfoDTO dataTableInfoDTO = datasetMetaCacheService.parseInfo(dataSetTableRequest.getInfo());
 
         List<String[]> data = new ArrayList<>();
         DataSetPreviewPage dataSetPreviewPage = new DataSetPreviewPage();
@@ -636,7 +655,7 @@ public class DataSetTableService {
                 datasourceRequest.setPreviewData(true);
                 try {
                     datasourceRequest.setPageable(true);
-                    data.addAll(datasourceProvider.getData(datasourceRequest));
+                    data.addAll(previewData(datasourceProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -646,7 +665,7 @@ public class DataSetTableService {
                     datasourceRequest.setQuery(qp.createQueryTableWithLimit(table, fields,
                             Integer.valueOf(dataSetTableRequest.getRow()), false, ds, null, rowPermissionsTree));
                     datasourceRequest.setPageable(false);
-                    dataSetPreviewPage.setTotal(datasourceProvider.getData(datasourceRequest).size());
+                    dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), datasourceProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -673,7 +692,7 @@ public class DataSetTableService {
                         qp.createQueryTableWithPage(table, fields, page, pageSize, realSize, false, ds, null, rowPermissionsTree));
                 map.put("sql", java.util.Base64.getEncoder().encodeToString(datasourceRequest.getQuery().getBytes()));
                 try {
-                    data.addAll(jdbcProvider.getData(datasourceRequest));
+                    data.addAll(previewData(jdbcProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -681,7 +700,7 @@ public class DataSetTableService {
                 try {
                     datasourceRequest.setQuery(qp.createQueryTableWithLimit(table, fields,
                             Integer.valueOf(dataSetTableRequest.getRow()), false, ds, null, rowPermissionsTree));
-                    dataSetPreviewPage.setTotal(jdbcProvider.getData(datasourceRequest).size());
+                    dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), jdbcProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -715,7 +734,7 @@ public class DataSetTableService {
                 try {
                     datasourceRequest.setPageable(true);
                     datasourceRequest.setPermissionFields(fields);
-                    data.addAll(datasourceProvider.getData(datasourceRequest));
+                    data.addAll(previewData(datasourceProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -724,7 +743,7 @@ public class DataSetTableService {
                     datasourceRequest.setPageable(false);
                     datasourceRequest.setQuery(qp.createQuerySqlWithLimit(sql, fields,
                             Integer.valueOf(dataSetTableRequest.getRow()), false, null, rowPermissionsTree));
-                    dataSetPreviewPage.setTotal(datasourceProvider.getData(datasourceRequest).size());
+                    dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), datasourceProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -744,7 +763,7 @@ public class DataSetTableService {
                         qp.createQueryTableWithPage(table, fields, page, pageSize, realSize, false, ds, null, rowPermissionsTree));
                 map.put("sql", java.util.Base64.getEncoder().encodeToString(datasourceRequest.getQuery().getBytes()));
                 try {
-                    data.addAll(jdbcProvider.getData(datasourceRequest));
+                    data.addAll(previewData(jdbcProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -752,7 +771,7 @@ public class DataSetTableService {
                 try {
                     datasourceRequest.setQuery(qp.createQueryTableWithLimit(table, fields,
                             Integer.valueOf(dataSetTableRequest.getRow()), false, ds, null, rowPermissionsTree));
-                    dataSetPreviewPage.setTotal(jdbcProvider.getData(datasourceRequest).size());
+                    dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), jdbcProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -773,7 +792,7 @@ public class DataSetTableService {
                     qp.createQueryTableWithPage(table, fields, page, pageSize, realSize, false, ds, null, rowPermissionsTree));
             map.put("sql", java.util.Base64.getEncoder().encodeToString(datasourceRequest.getQuery().getBytes()));
             try {
-                data.addAll(jdbcProvider.getData(datasourceRequest));
+                data.addAll(previewData(jdbcProvider, datasourceRequest));
             } catch (Exception e) {
                 logger.error(e.getMessage());
                 DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -781,7 +800,7 @@ public class DataSetTableService {
             try {
                 datasourceRequest.setQuery(qp.createQueryTableWithLimit(table, fields,
                         Integer.valueOf(dataSetTableRequest.getRow()), false, ds, null, rowPermissionsTree));
-                dataSetPreviewPage.setTotal(jdbcProvider.getData(datasourceRequest).size());
+                dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), jdbcProvider, datasourceRequest));
             } catch (Exception e) {
                 logger.error(e.getMessage());
                 DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -810,13 +829,9 @@ public class DataSetTableService {
                 DatasourceRequest datasourceRequest = new DatasourceRequest();
                 datasourceRequest.setDatasource(ds);
 
-                DataTableInfoDTO dt = new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class);
-                List<DataSetTableUnionDTO> list = dataSetTableUnionService
-                        .listByTableId(dt.getList().get(0).getTableId());
-
                 String sql = "";
                 try {
-                    sql = getCustomSQLDatasource(dt, list, ds);
+                    sql = datasetMetaCacheService.getCustomSql(datasetTable, ds);
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -832,7 +847,7 @@ public class DataSetTableService {
                 datasourceRequest.setPreviewData(true);
                 try {
                     datasourceRequest.setPageable(true);
-                    data.addAll(datasourceProvider.getData(datasourceRequest));
+                    data.addAll(previewData(datasourceProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -841,7 +856,7 @@ public class DataSetTableService {
                     datasourceRequest.setPageable(false);
                     datasourceRequest.setQuery(qp.createQuerySqlWithLimit(sql, fields,
                             Integer.valueOf(dataSetTableRequest.getRow()), false, null, rowPermissionsTree));
-                    dataSetPreviewPage.setTotal(datasourceProvider.getData(datasourceRequest).size());
+                    dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), datasourceProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -857,7 +872,7 @@ public class DataSetTableService {
                         qp.createQueryTableWithPage(table, fields, page, pageSize, realSize, false, ds, null, rowPermissionsTree));
                 map.put("sql", java.util.Base64.getEncoder().encodeToString(datasourceRequest.getQuery().getBytes()));
                 try {
-                    data.addAll(jdbcProvider.getData(datasourceRequest));
+                    data.addAll(previewData(jdbcProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -866,7 +881,7 @@ public class DataSetTableService {
                 try {
                     datasourceRequest.setQuery(qp.createQueryTableWithLimit(table, fields,
                             Integer.valueOf(dataSetTableRequest.getRow()), false, ds, null, rowPermissionsTree));
-                    dataSetPreviewPage.setTotal(jdbcProvider.getData(datasourceRequest).size());
+                    dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), jdbcProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -882,11 +897,9 @@ public class DataSetTableService {
                 DatasourceRequest datasourceRequest = new DatasourceRequest();
                 datasourceRequest.setDatasource(ds);
 
-                DataTableInfoDTO dt = new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class);
-
                 String sql = "";
                 try {
-                    sql = (String) getUnionSQLDatasource(dt, ds).get("sql");
+                    sql = datasetMetaCacheService.getUnionSql(datasetTable, ds);
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -902,7 +915,7 @@ public class DataSetTableService {
                 datasourceRequest.setPreviewData(true);
                 try {
                     datasourceRequest.setPageable(true);
-                    data.addAll(datasourceProvider.getData(datasourceRequest));
+                    data.addAll(previewData(datasourceProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -911,7 +924,7 @@ public class DataSetTableService {
                     datasourceRequest.setPageable(false);
                     datasourceRequest.setQuery(qp.createQuerySqlWithLimit(sql, fields,
                             Integer.valueOf(dataSetTableRequest.getRow()), false, null, rowPermissionsTree));
-                    dataSetPreviewPage.setTotal(datasourceProvider.getData(datasourceRequest).size());
+                    dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), datasourceProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -927,7 +940,7 @@ public class DataSetTableService {
                         qp.createQueryTableWithPage(table, fields, page, pageSize, realSize, false, ds, null, rowPermissionsTree));
                 map.put("sql", java.util.Base64.getEncoder().encodeToString(datasourceRequest.getQuery().getBytes()));
                 try {
-                    data.addAll(jdbcProvider.getData(datasourceRequest));
+                    data.addAll(previewData(jdbcProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -936,7 +949,7 @@ public class DataSetTableService {
                 try {
                     datasourceRequest.setQuery(qp.createQueryTableWithLimit(table, fields,
                             Integer.valueOf(dataSetTableRequest.getRow()), false, ds, null, rowPermissionsTree));
-                    dataSetPreviewPage.setTotal(jdbcProvider.getData(datasourceRequest).size());
+                    dataSetPreviewPage.setTotal(previewTotal(datasetTable.getId(), jdbcProvider, datasourceRequest));
                 } catch (Exception e) {
                     logger.error(e.getMessage());
                     DEException.throwException(Translator.get("i18n_ds_error") + "->" + e.getMessage());
@@ -970,6 +983,41 @@ public class DataSetTableService {
         return map;
     }
 
+    /**
+     * 预览查询按交互查询准入
+     */
+    private List<String[]> previewData(Provider provider, DatasourceRequest datasourceRequest) throws Exception {
+        return datasourceAdmission.getData(provider, datasourceRequest, DatasourceAdmission.Priority.INTERACTIVE);
+    }
+
+    /**
+     * 预览总行数：把带行数上限的查询包装为 COUNT 下推到数据源，不再取回最多 row 行数据后计数；
+     * 结果按数据集短暂缓存，翻页时不重复计数，不支持或计数失败时退回取数计数
+     */
+    private int previewTotal(String tableId, Provider provider, DatasourceRequest datasourceRequest) throws Exception {
+        String limitSQL = datasourceRequest.getQuery();
+        String countSQL = provider instanceof JdbcProvider ? SQLUtils.countSQL(datasourceRequest.getDatasource().getType(), limitSQL) : null;
+        String key = previewCountCacheService.buildKey(tableId, datasourceRequest.getDatasource(), countSQL == null ? limitSQL : countSQL);
+        return previewCountCacheService.getOrLoad(key, () -> {
+            if (countSQL != null) {
+                datasourceRequest.setQuery(countSQL);
+                try {
+                    List<String[]> result = previewData(provider, datasourceRequest);
+                    if (CollectionUtils.isNotEmpty(result) && result.get(0)[0] != null) {
+                        return new BigDecimal(result.get(0)[0].trim()).intValue();
+                    }
+                } catch (QueryCancelledException e) {
+                    throw e;
+                } catch (Exception e) {
+                    LogUtil.warn("Failed to count preview data, fallback to fetching rows: " + e.getMessage());
+                } finally {
+                    datasourceRequest.setQuery(limitSQL);
+                }
+            }
+            return previewData(provider, datasourceRequest).size();
+        });
+    }
+
     public List<SqlVariableDetails> datasetParams(String type, String id) {
         if (!Arrays.asList("DATE", "TEXT", "NUM").contains(type)) {
             return new ArrayList<>();
@@ -1622,14 +1670,7 @@ public class DataSetTableService {
                 DEException.throwException(
                         Translator.get("i18n_custom_ds_delete") + String.format(":table id [%s]", tableId));
             }
-            CurrentUserDto user = AuthUtils.getUser();
-            if (user != null && !user.getIsAdmin()) {
-                DataSetTableDTO withPermission = getWithPermission(datasetTable.getId(), user.getUserId());
-                if (ObjectUtils.isEmpty(withPermission.getPrivileges()) || !withPermission.getPrivileges().contains("use")) {
-                    DEException.throwException(
-                            Translator.get("i18n_dataset_no_permission") + String.format(":table name [%s]", withPermission.getName()));
-                }
-            }
+            checkUnionDatasetPermission(datasetTable);
             List<DatasetTableField> fields = dataSetTableFieldsService.getListByIdsEach(unionDTO.getCurrentDsField());
 
             String[] array = fields.stream()
@@ -1772,14 +1813,7 @@ public class DataSetTableService {
                 DEException.throwException(
                         Translator.get("i18n_custom_ds_delete") + String.format(":table id [%s]", tableId));
             }
-            CurrentUserDto user = AuthUtils.getUser();
-            if (user != null && !user.getIsAdmin()) {
-                DataSetTableDTO withPermission = getWithPermission(datasetTable.getId(), user.getUserId());
-                if (ObjectUtils.isEmpty(withPermission.getPrivileges()) || !withPermission.getPrivileges().contains("use")) {
-                    DEException.throwException(
-                            Translator.get("i18n_dataset_no_permission") + String.format(":table name [%s]", withPermission.getName()));
-                }
-            }
+            checkUnionDatasetPermission(datasetTable);
             List<DatasetTableField> fields = dataSetTableFieldsService.getListByIdsEach(unionDTO.getCurrentDsField());
 
             String[] array = fields.stream()
@@ -1857,6 +1891,20 @@ public class DataSetTableService {
         return map;
     }
 
+    /**
+     * 校验当前用户对关联数据集中的数据集是否有使用权限
+     */
+    public void checkUnionDatasetPermission(DatasetTable datasetTable) {
+        CurrentUserDto user = AuthUtils.getUser();
+        if (user != null && !user.getIsAdmin()) {
+            DataSetTableDTO withPermission = getWithPermission(datasetTable.getId(), user.getUserId());
+            if (ObjectUtils.isEmpty(withPermission.getPrivileges()) || !withPermission.getPrivileges().contains("use")) {
+                DEException.throwException(
+                        Translator.get("i18n_dataset_no_permission") + String.format(":table name [%s]", withPermission.getName()));
+            }
+        }
+    }
+
     private String subPrefixSuffixChar(String str) {
         while (StringUtils.startsWith(str, ",")) {
             str = str.substring(1, str.length());
@@ -2122,6 +2170,7 @@ public class DataSetTableService {
             DatasetTableFieldExample datasetTableFieldExample = new DatasetTableFieldExample();
             datasetTableFieldExample.createCriteria().andTableIdEqualTo(datasetTable.getId()).andExtFieldEqualTo(0).andOriginNameNotIn(originNameList);
             datasetTableFieldMapper.deleteByExample(datasetTableFieldExample);
+            datasetMetaCacheService.invalidate(datasetTable.getId());
         }
     }
 
@@ -2437,25 +2486,27 @@ public class DataSetTableService {
 
         if (StringUtils.equalsIgnoreCase(suffix, "csv")) {
             List<TableField> fields = new ArrayList<>();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
-            String s = reader.readLine();// first line
-            String[] split = s.split(",");
-            for (String s1 : split) {
-                TableField tableFiled = new TableField();
-                tableFiled.setFieldName(s1);
-                tableFiled.setRemarks(s1);
-                tableFiled.setFieldType("TEXT");
-                fields.add(tableFiled);
-            }
             List<List<String>> data = new ArrayList<>();
-            int num = 1;
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (num > 1000) {
-                    break;
+            // 与抽取时使用同一个解析器，保证预览的列与入库的列一致
+            CsvReader reader = new CsvReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            String[] header = reader.next();// first line
+            if (header != null) {
+                for (String s1 : header) {
+                    TableField tableFiled = new TableField();
+                    tableFiled.setFieldName(s1);
+                    tableFiled.setRemarks(s1);
+                    tableFiled.setFieldType("TEXT");
+                    fields.add(tableFiled);
+                }
+                int num = 1;
+                String[] row;
+                while ((row = reader.next()) != null) {
+                    if (num > 1000) {
+                        break;
+                    }
+                    data.add(Arrays.asList(row));
+                    num++;
                 }
-                data.add(Arrays.asList(line.split(",")));
-                num++;
             }
             ExcelSheetData excelSheetData = new ExcelSheetData();
             String[] fieldArray = fields.stream().map(TableField::getFieldName).toArray(String[]::new);
@@ -2655,6 +2706,7 @@ public class DataSetTableService {
                 example.clear();
                 example.createCriteria().andIdEqualTo(datasetTable.getId());
                 datasetTableMapper.updateByExampleSelective(record, example);
+                datasetMetaCacheService.invalidate(datasetTable.getId());
             }
         });
         if (CollectionUtils.isEmpty(jobStoppeddDatasetTables)) {
@@ -2679,6 +2731,7 @@ public class DataSetTableService {
         example.createCriteria().andSyncStatusEqualTo(JobStatus.Underway.name())
                 .andIdIn(jobStoppeddDatasetTables.stream().map(DatasetTable::getId).collect(Collectors.toList()));
         datasetTableMapper.updateByExampleSelective(record, example);
+        jobStoppeddDatasetTables.forEach(datasetTable -> datasetMetaCacheService.invalidate(datasetTable.getId()));
 
         //TaskLog
         DatasetTableTaskLog datasetTableTaskLog = new DatasetTableTaskLog();
@@ -2714,6 +2767,10 @@ public class DataSetTableService {
     public DatasetTable syncDatasetTableField(String id) throws Exception {
         DatasetTable datasetTable = datasetTableMapper.selectByPrimaryKey(id);
         saveTableField(datasetTable);
+        chartViewResultCacheService.invalidateDataset(id);
+        fieldValuesCacheService.invalidateDataset(id);
+        previewCountCacheService.invalidateDataset(id);
+        datasetMetaCacheService.invalidate(id);
         return datasetTable;
     }
 
@@ -2920,90 +2977,82 @@ public class DataSetTableService {
 
     public void updateDatasetInfo(DatasetTable datasetTable) {
         datasetTableMapper.updateByPrimaryKeySelective(datasetTable);
+        datasetMetaCacheService.invalidate(datasetTable.getId());
     }
 
-    public void exportDataset(DataSetExportRequest request, HttpServletResponse response) throws Exception {
-        try {
-            DatasetRowPermissionsTreeObj tree = null;
-            if (StringUtils.isNotEmpty(request.getExpressionTree())) {
-                Gson gson = new Gson();
-                tree = gson.fromJson(request.getExpressionTree(), DatasetRowPermissionsTreeObj.class);
-                permissionsTreeService.getField(tree);
-            }
-            Datasource datasource = datasourceService.get(request.getDataSourceId());
-            int pageSize = (datasource != null && StringUtils.equalsIgnoreCase(datasource.getType(), "es")) ? 10000 : 100000;
-            request.setRow(String.valueOf(pageSize));
-            Map<String, Object> previewData = getPreviewData(request, 1, pageSize, null, tree);
-            List<DatasetTableField> fields = (List<DatasetTableField>) previewData.get("fields");
-            List<Map<String, Object>> data = (List<Map<String, Object>>) previewData.get("data");
-            // 构建Excel数据格式
-            List<List<String>> details = new ArrayList<>();
-            List<String> header = new ArrayList<>();
-            for (DatasetTableField field : fields) {
-                header.add(field.getName());
-            }
-            details.add(header);
-            for (Map<String, Object> obj : data) {
-                List<String> row = new ArrayList<>();
-                for (DatasetTableField field : fields) {
-                    String string = (String) obj.get(field.getDataeaseName());
-                    row.add(string);
-                }
-                details.add(row);
-            }
-            // 操作Excel
-            Workbook wb = new XSSFWorkbook();
-            // Sheet
-            Sheet detailsSheet = wb.createSheet("数据");
-            //给单元格设置样式
-            CellStyle cellStyle = wb.createCellStyle();
-            Font font = wb.createFont();
-            //设置字体大小
-            font.setFontHeightInPoints((short) 12);
-            //设置字体加粗
-            font.setBold(true);
-            //给字体设置样式
-            cellStyle.setFont(font);
-            //设置单元格背景颜色
-            cellStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-            //设置单元格填充样式(使用纯色背景颜色填充)
-            cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-            if (CollectionUtils.isNotEmpty(details)) {
-                for (int i = 0; i < details.size(); i++) {
-                    Row row = detailsSheet.createRow(i);
-                    List<String> rowData = details.get(i);
-                    if (rowData != null) {
-                        for (int j = 0; j < rowData.size(); j++) {
-                            Cell cell = row.createCell(j);
-                            if (i == 0) {// 头部
-                                cell.setCellValue(rowData.get(j));
-                                cell.setCellStyle(cellStyle);
-                                //设置列的宽度
-                                detailsSheet.setColumnWidth(j, 255 * 20);
-                            } else {
-                                if ((fields.get(j).getDeType().equals(DeTypeConstants.DE_INT) || fields.get(j).getDeType() == DeTypeConstants.DE_FLOAT) && StringUtils.isNotEmpty(rowData.get(j))) {
-                                    try {
-                                        cell.setCellValue(Double.valueOf(rowData.get(j)));
-                                    } catch (Exception e) {
-                                        LogUtil.warn("export excel data transform error");
-                                    }
-                                } else {
-                                    cell.setCellValue(rowData.get(j));
-                                }
-                            }
-                        }
-                    }
-                }
+    /**
+     * 数据集导出使用的查询，行列权限与预览一致
+     * 数据源支持流式读取时不带行数上限，由导出逐行读取；否则按 limit 截断
+     */
+    public DatasetExportQuery exportQuery(DataSetExportRequest request, int limit) throws Exception {
+        DatasetRowPermissionsTreeObj tree = null;
+        if (StringUtils.isNotEmpty(request.getExpressionTree())) {
+            tree = new Gson().fromJson(request.getExpressionTree(), DatasetRowPermissionsTreeObj.class);
+            permissionsTreeService.getField(tree);
+        }
+        DatasetTable datasetTable = datasetMetaCacheService.getTable(request.getId());
+        List<DatasetTableField> fields = datasetMetaCacheService.getCheckedFields(request.getId());
+        // 行权限
+        List<DataSetRowPermissionsTreeDTO> rowPermissionsTree = permissionsTreeService.getRowPermissionsTree(fields, datasetTable, null);
+        // ext filter
+        if (tree != null) {
+            DataSetRowPermissionsTreeDTO dto = new DataSetRowPermissionsTreeDTO();
+            dto.setTree(tree);
+            rowPermissionsTree.add(dto);
+        }
+        // 列权限
+        Map<String, ColumnPermissionItem> desensitizationList = new HashMap<>();
+        fields = permissionService.filterColumnPermissions(fields, desensitizationList, datasetTable.getId(), null);
+        DatasetExportQuery query = new DatasetExportQuery();
+        query.setFields(fields);
+        query.setDesensitizationList(desensitizationList);
+        if (CollectionUtils.isEmpty(fields)) {
+            return query;
+        }
+
+        Datasource ds;
+        Provider provider;
+        String table = null;
+        String sql = null;
+        if (datasetTable.getMode() == 0) {
+            ds = datasourceMapper.selectByPrimaryKey(datasetTable.getDataSourceId());
+            if (ObjectUtils.isEmpty(ds)) {
+                throw new RuntimeException(Translator.get("i18n_datasource_delete"));
+            }
+            if (StringUtils.isNotEmpty(ds.getStatus()) && ds.getStatus().equalsIgnoreCase("Error")) {
+                throw new Exception(Translator.get("i18n_invalid_ds"));
+            }
+            provider = ProviderFactory.getProvider(ds.getType());
+            if (StringUtils.equalsIgnoreCase(datasetTable.getType(), DatasetType.SQL.name())) {
+                DataTableInfoDTO dataTableInfo = new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class);
+                sql = dataTableInfo.isBase64Encryption() ? new String(java.util.Base64.getDecoder().decode(dataTableInfo.getSql())) : dataTableInfo.getSql();
+                sql = handleVariableDefaultValue(sql, datasetTable.getSqlVariableDetails(), ds.getType(), false);
+            } else if (StringUtils.equalsIgnoreCase(datasetTable.getType(), "custom")) {
+                sql = datasetMetaCacheService.getCustomSql(datasetTable, ds);
+            } else if (StringUtils.equalsIgnoreCase(datasetTable.getType(), "union")) {
+                sql = datasetMetaCacheService.getUnionSql(datasetTable, ds);
+            } else {
+                table = datasetMetaCacheService.parseInfo(datasetTable.getInfo()).getTable();
             }
-            OutputStream outputStream = response.getOutputStream();
-            response.setContentType("application/vnd.ms-excel");
-            //文件名称
-            response.setHeader("Content-disposition", "attachment;filename=" + request.getFilename() + ".xlsx");
-            wb.write(outputStream);
-            outputStream.flush();
-            outputStream.close();
-        } catch (Exception e) {
-            DataEaseException.throwException(e);
+        } else {
+            if (!checkEngineTableIsExists(datasetTable.getId())) {
+                throw new RuntimeException(Translator.get("i18n_data_not_sync"));
+            }
+            ds = engineService.getDeEngine();
+            provider = CommonBeanFactory.getBean(JdbcProvider.class);
+            table = TableUtils.tableName(datasetTable.getId());
+        }
+        QueryProvider qp = ProviderFactory.getQueryProvider(ds.getType());
+        boolean stream = provider instanceof JdbcProvider;
+        if (table != null) {
+            query.setSql(stream ? qp.createQuerySQL(table, fields, false, ds, null, rowPermissionsTree)
+                    : qp.createQueryTableWithLimit(table, fields, limit, false, ds, null, rowPermissionsTree));
+        } else {
+            query.setSql(stream ? qp.createQuerySQLAsTmp(sql, fields, false, null, rowPermissionsTree)
+                    : qp.createQuerySqlWithLimit(sql, fields, limit, false, null, rowPermissionsTree));
         }
+        query.setDatasource(ds);
+        query.setProvider(provider);
+        return query;
     }
 }
@@ -39,6 +39,9 @@ public class DataSetTableTaskService {
     @Resource
     private DatasetTableTaskMapper datasetTableTaskMapper;
     @Resource
+    @Lazy
+    private DatasetMetaCacheService datasetMetaCacheService;
+    @Resource
     private DataSetTableTaskLogService dataSetTableTaskLogService;
     @Resource
     private ScheduleService scheduleService;
@@ -122,6 +125,7 @@ public class DataSetTableTaskService {
         example.or(example.createCriteria().andIdEqualTo(datasetTableId).andSyncStatusIsNull());
         Boolean existSyncTask = datasetTableMapper.updateByExampleSelective(record, example) == 0;
         if (!existSyncTask) {
+            datasetMetaCacheService.invalidate(datasetTableId);
             Long startTime = System.currentTimeMillis();
 
             DatasetTableTask datasetTableTaskRecord = new DatasetTableTask();
@@ -29,6 +29,8 @@ public class DataSetTableUnionService {
     private DatasetTableUnionMapper datasetTableUnionMapper;
     @Resource
     private ExtDatasetTableUnionMapper extDatasetTableUnionMapper;
+    @Resource
+    private DatasetMetaCacheService datasetMetaCacheService;
 
     public DatasetTableUnion save(DatasetTableUnion datasetTableUnion) {
         checkUnion(datasetTableUnion);
@@ -40,11 +42,13 @@ public class DataSetTableUnionService {
         } else {
             datasetTableUnionMapper.updateByPrimaryKeySelective(datasetTableUnion);
         }
+        datasetMetaCacheService.invalidate(datasetTableUnion.getSourceTableId());
         return datasetTableUnion;
     }
 
     public void delete(String id) {
         datasetTableUnionMapper.deleteByPrimaryKey(id);
+        datasetMetaCacheService.invalidateAll();
     }
 
     public List<DataSetTableUnionDTO> listByTableId(String tableId) {
@@ -82,6 +86,7 @@ public class DataSetTableUnionService {
         DatasetTableUnionExample.Criteria criteriaTarget = datasetTableUnionExample.createCriteria().andTargetTableIdEqualTo(tableId);
         datasetTableUnionExample.or(criteriaTarget);
         datasetTableUnionMapper.deleteByExample(datasetTableUnionExample);
+        datasetMetaCacheService.invalidate(tableId);
     }
 
     private void checkUnion(DatasetTableUnion datasetTableUnion) {
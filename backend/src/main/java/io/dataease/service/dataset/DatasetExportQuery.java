@@ -0,0 +1,27 @@
+package io.dataease.service.dataset;
+
+import io.dataease.plugins.common.base.domain.DatasetTableField;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.plugins.datasource.provider.Provider;
+import io.dataease.plugins.xpack.auth.dto.request.ColumnPermissionItem;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 数据集导出的查询，字段已按列权限过滤，sql 已带行权限条件
+ */
+@Data
+public class DatasetExportQuery {
+
+    private List<DatasetTableField> fields;
+
+    private Map<String, ColumnPermissionItem> desensitizationList;
+
+    private Datasource datasource;
+
+    private Provider provider;
+
+    private String sql;
+}
@@ -0,0 +1,333 @@
+package io.dataease.service.dataset;
+
+import cn.hutool.core.io.FileUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dataease.commons.constants.JobStatus;
+import io.dataease.commons.export.ExportTask;
+import io.dataease.commons.export.ExportTaskRegistry;
+import io.dataease.commons.pool.DatasourceAdmission;
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.controller.request.dataset.DataSetExportRequest;
+import io.dataease.dto.dataset.DatasetExportTaskDTO;
+import io.dataease.exception.DataEaseException;
+import io.dataease.exception.QueryCancelledException;
+import io.dataease.i18n.Translator;
+import io.dataease.plugins.common.base.domain.DatasetTableField;
+import io.dataease.plugins.common.constants.DeTypeConstants;
+import io.dataease.plugins.common.request.datasource.DatasourceRequest;
+import io.dataease.plugins.xpack.auth.dto.request.ColumnPermissionItem;
+import io.dataease.provider.datasource.JdbcProvider;
+import io.dataease.provider.datasource.QueryRegistry;
+import io.dataease.provider.datasource.RowHandler;
+import io.dataease.service.chart.util.ChartDataBuild;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 数据集导出
+ * 查询结果通过 JDBC 游标逐行读取并写入 SXSSF 工作簿或 CSV，不在内存中保留结果集，
+ * Excel 超过单个 sheet 的行数上限时续写到新的 sheet；
+ * 异步任务在有界线程池中执行，可查询进度和取消，完成后生成文件供下载，任务在保留时间内无人查询时连同文件一起清理
+ */
+@Service
+public class DatasetExportService {
+
+    @Value("${dataease.export.dataset.row-window:1000}")
+    private int rowWindow;
+
+    @Value("${dataease.export.dataset.sheet-rows:1000000}")
+    private int sheetRows;
+
+    @Value("${dataease.export.dataset.max-rows:0}")
+    private int maxRows;
+
+    @Value("${dataease.export.dataset.sync-max-rows:100000}")
+    private int syncMaxRows;
+
+    @Value("${dataease.export.dataset.non-stream-max-rows:10000}")
+    private int nonStreamMaxRows;
+
+    @Value("${dataease.export.dataset.threads:2}")
+    private int threads;
+
+    @Value("${dataease.export.dataset.queue-size:20}")
+    private int queueSize;
+
+    @Value("${dataease.export.dataset.keep:1800}")
+    private long keepSeconds;
+
+    @Value("${dataease.export.dataset.path:/opt/dataease/data/export/dataset/}")
+    private String path;
+
+    @Resource
+    private DataSetTableService dataSetTableService;
+
+    @Resource
+    private DatasourceAdmission datasourceAdmission;
+
+    @Resource
+    private QueryRegistry queryRegistry;
+
+    private ThreadPoolExecutor executor;
+
+    private ExportTaskRegistry<DatasetExportTask> tasks;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(Math.max(queueSize, 1)),
+                new ThreadFactoryBuilder().setNameFormat("dataset-export-%d").setDaemon(true).build());
+        tasks = new ExportTaskRegistry<>(keepSeconds, path, DatasetExportWriter.CSV, DatasetExportWriter.EXCEL);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 同步导出，直接写入响应，行数受 sync-max-rows 限制
+     */
+    public void export(DataSetExportRequest request, HttpServletResponse response) throws Exception {
+        String fileType = DatasetExportWriter.fileType(request.getFileType());
+        try {
+            OutputStream outputStream = response.getOutputStream();
+            contentType(response, request.getFilename(), fileType);
+            try (DatasetExportWriter writer = export(request, fileType, outputStream, syncMaxRows, null)) {
+                writer.finish();
+            }
+            outputStream.close();
+        } catch (Exception e) {
+            DataEaseException.throwException(e);
+        }
+    }
+
+    /**
+     * 提交导出任务
+     *
+     * @param owner 任务所属用户，查询进度、取消和下载时校验
+     */
+    public DatasetExportTaskDTO submit(DataSetExportRequest request, Long owner) {
+        DatasetExportTask task = new DatasetExportTask();
+        task.tableId = request.getId();
+        task.filename = request.getFilename();
+        task.fileType = DatasetExportWriter.fileType(request.getFileType());
+        tasks.register(task, owner, task.fileType);
+        // 导出线程中没有当前用户的上下文，行列权限需要按当前用户计算
+        Subject subject = SecurityUtils.getSubject();
+        try {
+            executor.execute(subject.associateWith(() -> run(task, request)));
+        } catch (RejectedExecutionException e) {
+            tasks.remove(task);
+            DataEaseException.throwException(Translator.get("i18n_export_task_busy"));
+        }
+        return task.toDTO();
+    }
+
+    public DatasetExportTaskDTO status(String taskId, Long owner) {
+        return tasks.get(taskId, owner).toDTO();
+    }
+
+    /**
+     * 用户保留中的导出任务，离开页面后可据此继续查看进度或下载
+     *
+     * @param tableId 只列出该数据集的任务，为空时列出全部
+     */
+    public List<DatasetExportTaskDTO> list(Long owner, String tableId) {
+        return tasks.list(owner).stream()
+                .filter(task -> tableId == null || tableId.equals(task.tableId))
+                .map(DatasetExportTask::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 取消任务，排队中的任务不再执行，执行中的任务中止数据库端的查询
+     */
+    public DatasetExportTaskDTO cancel(String taskId, Long owner) {
+        DatasetExportTask task = tasks.get(taskId, owner);
+        if (task.getStatus() == JobStatus.Prepare || task.getStatus() == JobStatus.Underway) {
+            task.cancel(queryRegistry);
+        }
+        return task.toDTO();
+    }
+
+    public void download(String taskId, Long owner, HttpServletResponse response) throws IOException {
+        DatasetExportTask task = tasks.get(taskId, owner);
+        if (task.getStatus() != JobStatus.Completed) {
+            DataEaseException.throwException(Translator.get("i18n_export_task_not_finished"));
+        }
+        if (!task.getFile().exists()) {
+            DataEaseException.throwException(Translator.get("i18n_export_task_not_exists"));
+        }
+        contentType(response, task.filename, task.fileType);
+        response.setContentLengthLong(task.getFile().length());
+        OutputStream outputStream = response.getOutputStream();
+        Files.copy(task.getFile().toPath(), outputStream);
+        outputStream.flush();
+    }
+
+    private void contentType(HttpServletResponse response, String filename, String fileType) throws UnsupportedEncodingException {
+        response.setContentType(DatasetExportWriter.CSV.equals(fileType) ? "text/csv;charset=UTF-8" : "application/vnd.ms-excel");
+        //文件名称
+        response.setHeader("Content-disposition", "attachment;filename=" + URLEncoder.encode(filename, "UTF-8") + "." + fileType);
+    }
+
+    private void run(DatasetExportTask task, DataSetExportRequest request) {
+        if (task.cancelled) {
+            tasks.finish(task, JobStatus.Error);
+            return;
+        }
+        task.setStatus(JobStatus.Underway);
+        // 登记查询，取消任务时由 QueryRegistry 中止正在执行的语句
+        QueryRegistry.QueryContext context = queryRegistry.begin(task.getId(), task.getOwner(), null);
+        JobStatus status;
+        try {
+            FileUtil.mkParentDirs(task.getFile());
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(task.getFile()));
+                 DatasetExportWriter writer = export(request, task.fileType, outputStream, maxRows, task)) {
+                writer.finish();
+            }
+            status = JobStatus.Completed;
+        } catch (Throwable e) {
+            if (!task.cancelled) {
+                LogUtil.error(e.getMessage(), e);
+                task.setError(e.getMessage());
+            }
+            FileUtil.del(task.getFile());
+            status = JobStatus.Error;
+        } finally {
+            queryRegistry.end(context);
+        }
+        tasks.finish(task, status);
+    }
+
+    /**
+     * 按行读取查询结果写入导出文件，返回的 writer 由调用方 finish 并关闭
+     *
+     * @param limit 最大导出行数，0 不限
+     * @param task  异步任务，用于更新进度和检查取消，同步导出时为空
+     */
+    private DatasetExportWriter export(DataSetExportRequest request, String fileType, OutputStream outputStream, int limit, DatasetExportTask task) throws Exception {
+        DatasetExportQuery query = dataSetTableService.exportQuery(request, limit > 0 ? Math.min(limit, nonStreamMaxRows) : nonStreamMaxRows);
+        List<DatasetTableField> fields = query.getFields() == null ? new ArrayList<>() : query.getFields();
+        boolean[] numberColumns = new boolean[fields.size()];
+        List<String> header = new ArrayList<>();
+        for (int i = 0; i < fields.size(); i++) {
+            DatasetTableField field = fields.get(i);
+            header.add(field.getName());
+            numberColumns[i] = (Objects.equals(field.getDeType(), DeTypeConstants.DE_INT) || Objects.equals(field.getDeType(), DeTypeConstants.DE_FLOAT))
+                    && !query.getDesensitizationList().containsKey(field.getDataeaseName());
+        }
+        DatasetExportWriter writer = DatasetExportWriter.of(fileType, outputStream, numberColumns, rowWindow, sheetRows);
+        try {
+            writer.writeHeader(header);
+            if (CollectionUtils.isEmpty(fields)) {
+                return writer;
+            }
+            ExportRowHandler handler = new ExportRowHandler(writer, fields, query.getDesensitizationList(), task);
+            DatasourceRequest datasourceRequest = new DatasourceRequest();
+            datasourceRequest.setDatasource(query.getDatasource());
+            datasourceRequest.setQuery(query.getSql());
+            // 导出按后台查询准入，不挤占视图和预览的并发
+            datasourceAdmission.call(query.getDatasource(), DatasourceAdmission.Priority.BACKGROUND, () -> {
+                if (query.getProvider() instanceof JdbcProvider) {
+                    ((JdbcProvider) query.getProvider()).streamData(datasourceRequest, handler, limit);
+                } else {
+                    for (String[] row : query.getProvider().getData(datasourceRequest)) {
+                        handler.handle(row);
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            writer.close();
+            throw e;
+        }
+        return writer;
+    }
+
+    /**
+     * 按字段顺序写入一行，脱敏规则与预览一致
+     */
+    private static class ExportRowHandler implements RowHandler {
+
+        private final DatasetExportWriter writer;
+
+        private final ColumnPermissionItem[] desensitization;
+
+        private final DatasetExportTask task;
+
+        private final Object[] rowData;
+
+        ExportRowHandler(DatasetExportWriter writer, List<DatasetTableField> fields, Map<String, ColumnPermissionItem> desensitizationList, DatasetExportTask task) {
+            this.writer = writer;
+            this.task = task;
+            this.desensitization = new ColumnPermissionItem[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                desensitization[i] = desensitizationList == null ? null : desensitizationList.get(fields.get(i).getDataeaseName());
+            }
+            this.rowData = new Object[fields.size()];
+        }
+
+        @Override
+        public void handle(String[] row) throws Exception {
+            if (task != null && task.cancelled) {
+                throw new QueryCancelledException("Export cancelled by user");
+            }
+            for (int i = 0; i < rowData.length; i++) {
+                String value = i < row.length ? row[i] : null;
+                rowData[i] = desensitization[i] != null ? ChartDataBuild.desensitizationValue(desensitization[i], String.valueOf(value)) : value;
+            }
+            writer.writeRow(rowData);
+            if (task != null) {
+                task.getRows().set(writer.getRowCount());
+            }
+        }
+    }
+
+    private static class DatasetExportTask extends ExportTask {
+
+        private String tableId;
+
+        private String filename;
+
+        private String fileType;
+
+        private volatile boolean cancelled;
+
+        private void cancel(QueryRegistry queryRegistry) {
+            cancelled = true;
+            queryRegistry.cancel(getId(), getOwner(), true);
+        }
+
+        private DatasetExportTaskDTO toDTO() {
+            DatasetExportTaskDTO dto = new DatasetExportTaskDTO();
+            dto.setId(getId());
+            dto.setTableId(tableId);
+            dto.setFilename(filename);
+            dto.setFileType(fileType);
+            dto.setStatus(cancelled && getStatus() != JobStatus.Completed ? "Cancelled" : getStatus().name());
+            dto.setRows(getRows().get());
+            dto.setError(getError());
+            dto.setCreateTime(getCreateTime());
+            dto.setFinishTime(isFinished() ? getFinishTime() : null);
+            return dto;
+        }
+    }
+}
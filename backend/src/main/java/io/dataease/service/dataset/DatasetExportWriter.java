@@ -0,0 +1,232 @@
+package io.dataease.service.dataset;
+
+import io.dataease.commons.utils.LogUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 数据集导出文件写入，行数据逐行写出，内存占用与数据量无关
+ * Excel 基于 SXSSF，内存中只保留最近 rowWindow 行，超过单个 sheet 的行数上限时续写到新的 sheet；
+ * CSV 直接写入输出流，没有行数上限
+ */
+public abstract class DatasetExportWriter implements Closeable {
+
+    public static final String CSV = "csv";
+
+    public static final String EXCEL = "xlsx";
+
+    protected final boolean[] numberColumns;
+
+    protected long rowCount = 0;
+
+    protected DatasetExportWriter(boolean[] numberColumns) {
+        this.numberColumns = numberColumns;
+    }
+
+    /**
+     * @param numberColumns 数值字段，Excel 中按数字写入
+     * @param sheetRows     Excel 单个 sheet 的最大数据行数
+     */
+    public static DatasetExportWriter of(String fileType, OutputStream outputStream, boolean[] numberColumns, int rowWindow, int sheetRows) {
+        if (StringUtils.equalsIgnoreCase(fileType, CSV)) {
+            return new CsvWriter(outputStream, numberColumns);
+        }
+        return new ExcelWriter(outputStream, numberColumns, rowWindow, sheetRows);
+    }
+
+    public static String fileType(String fileType) {
+        return StringUtils.equalsIgnoreCase(fileType, CSV) ? CSV : EXCEL;
+    }
+
+    public abstract void writeHeader(List<String> header) throws IOException;
+
+    public abstract void writeRow(Object[] rowData) throws IOException;
+
+    /**
+     * 写完所有行后调用，输出剩余内容
+     */
+    public abstract void finish() throws IOException;
+
+    /**
+     * 已写入的数据行数，不含表头
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    protected boolean isNumber(int j) {
+        return numberColumns != null && j < numberColumns.length && numberColumns[j];
+    }
+
+    private static class ExcelWriter extends DatasetExportWriter {
+
+        private static final int MAX_CELL_LENGTH = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+
+        private final OutputStream outputStream;
+
+        private final SXSSFWorkbook wb;
+
+        private final CellStyle cellStyle;
+
+        private final int sheetRows;
+
+        private List<String> header;
+
+        private Sheet sheet;
+
+        private int rowIndex;
+
+        ExcelWriter(OutputStream outputStream, boolean[] numberColumns, int rowWindow, int sheetRows) {
+            super(numberColumns);
+            this.outputStream = outputStream;
+            this.wb = new SXSSFWorkbook(Math.max(rowWindow, 1));
+            // 临时文件压缩，避免大数据量导出占满磁盘
+            this.wb.setCompressTempFiles(true);
+            // 表头占一行
+            this.sheetRows = Math.min(Math.max(sheetRows, 1), SpreadsheetVersion.EXCEL2007.getMaxRows() - 1);
+            //给单元格设置样式
+            cellStyle = wb.createCellStyle();
+            Font font = wb.createFont();
+            //设置字体大小
+            font.setFontHeightInPoints((short) 12);
+            //设置字体加粗
+            font.setBold(true);
+            //给字体设置样式
+            cellStyle.setFont(font);
+            //设置单元格背景颜色
+            cellStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+            //设置单元格填充样式(使用纯色背景颜色填充)
+            cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        }
+
+        @Override
+        public void writeHeader(List<String> header) {
+            this.header = header;
+            newSheet();
+        }
+
+        private void newSheet() {
+            int index = wb.getNumberOfSheets();
+            sheet = wb.createSheet(index == 0 ? "数据" : "数据" + (index + 1));
+            rowIndex = 0;
+            Row row = sheet.createRow(rowIndex++);
+            for (int j = 0; j < header.size(); j++) {
+                Cell cell = row.createCell(j);
+                cell.setCellValue(header.get(j));
+                cell.setCellStyle(cellStyle);
+                //设置列的宽度
+                sheet.setColumnWidth(j, 255 * 20);
+            }
+        }
+
+        @Override
+        public void writeRow(Object[] rowData) {
+            if (rowIndex > sheetRows) {
+                newSheet();
+            }
+            Row row = sheet.createRow(rowIndex++);
+            for (int j = 0; j < rowData.length; j++) {
+                if (rowData[j] == null) {
+                    continue;
+                }
+                String value = rowData[j].toString();
+                Cell cell = row.createCell(j);
+                try {
+                    if (isNumber(j) && StringUtils.isNotEmpty(value)) {
+                        cell.setCellValue(Double.parseDouble(value));
+                    } else {
+                        cell.setCellValue(value.length() > MAX_CELL_LENGTH ? value.substring(0, MAX_CELL_LENGTH) : value);
+                    }
+                } catch (Exception e) {
+                    LogUtil.warn("export excel data transform error");
+                    cell.setCellValue(value.length() > MAX_CELL_LENGTH ? value.substring(0, MAX_CELL_LENGTH) : value);
+                }
+            }
+            rowCount++;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (sheet == null) {
+                wb.createSheet("数据");
+            }
+            wb.write(outputStream);
+            outputStream.flush();
+        }
+
+        /**
+         * 删除 SXSSF 的临时文件
+         */
+        @Override
+        public void close() throws IOException {
+            wb.dispose();
+            wb.close();
+        }
+    }
+
+    private static class CsvWriter extends DatasetExportWriter {
+
+        private final Writer writer;
+
+        CsvWriter(OutputStream outputStream, boolean[] numberColumns) {
+            super(numberColumns);
+            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+        }
+
+        @Override
+        public void writeHeader(List<String> header) throws IOException {
+            // BOM，Excel 打开时按 UTF-8 识别
+            writer.write('\uFEFF');
+            writeLine(header.toArray(), false);
+        }
+
+        @Override
+        public void writeRow(Object[] rowData) throws IOException {
+            writeLine(rowData, true);
+            rowCount++;
+        }
+
+        private void writeLine(Object[] values, boolean data) throws IOException {
+            for (int j = 0; j < values.length; j++) {
+                if (j > 0) {
+                    writer.write(',');
+                }
+                if (values[j] != null) {
+                    writeValue(values[j].toString(), data && isNumber(j));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        /**
+         * 以 = + - @ 开头的文本在 Excel 中会被当作公式执行，前面加单引号按文本显示，数值字段不处理
+         */
+        private void writeValue(String value, boolean number) throws IOException {
+            if (!number && !value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package io.dataease.service.dataset;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.commons.utils.Md5Utils;
+import io.dataease.dto.dataset.DataSetTableUnionDTO;
+import io.dataease.dto.dataset.DataTableInfoDTO;
+import io.dataease.dto.dataset.union.UnionDTO;
+import io.dataease.plugins.common.base.domain.DatasetTable;
+import io.dataease.plugins.common.base.domain.DatasetTableField;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.plugins.common.base.mapper.DatasetTableMapper;
+import io.dataease.service.sys.DistributedDatasetMetaService;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据集元数据缓存
+ * 缓存数据集定义、已选字段、解析后的 info 以及自定义/关联数据集生成的基础 SQL，查询视图、过滤组件取值、预览时不再重复查库和解析 JSON；
+ * 数据集保存、字段同步、关联关系变更时失效，集群部署下通过 redis 广播通知其他节点；
+ * 每次失效都会递增版本号，加载开始后版本号发生变化的结果不会写入缓存，避免并发加载把旧数据写回
+ * 返回的对象与缓存共享，调用方只读不改
+ */
+@Service
+public class DatasetMetaCacheService {
+
+    private static final Gson gson = new Gson();
+
+    @Value("${dataease.dataset.meta-cache.max-size:2000}")
+    private long maxSize;
+
+    @Value("${dataease.dataset.meta-cache.ttl:600}")
+    private long ttl;
+
+    @Resource
+    private DatasetTableMapper datasetTableMapper;
+    @Resource
+    private DataSetTableFieldsService dataSetTableFieldsService;
+    @Resource
+    private DataSetTableUnionService dataSetTableUnionService;
+    @Resource
+    private DataSetTableService dataSetTableService;
+    @Autowired(required = false)
+    private DistributedDatasetMetaService distributedDatasetMetaService;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private Cache<String, DatasetTable> tableCache;
+
+    private Cache<String, List<DatasetTableField>> fieldCache;
+
+    private Cache<String, DataTableInfoDTO> infoCache;
+
+    private Cache<String, String> baseSqlCache;
+
+    @PostConstruct
+    public void init() {
+        tableCache = build();
+        fieldCache = build();
+        infoCache = build();
+        baseSqlCache = build();
+    }
+
+    private <V> Cache<String, V> build() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public DatasetTable getTable(String tableId) {
+        if (StringUtils.isEmpty(tableId)) {
+            return null;
+        }
+        return load(tableCache, tableId, () -> datasetTableMapper.selectByPrimaryKey(tableId));
+    }
+
+    /**
+     * 数据集已选字段，按 column_index 排序
+     *
+     * @return 新的列表，可以增删元素
+     */
+    public List<DatasetTableField> getCheckedFields(String tableId) {
+        List<DatasetTableField> fields = load(fieldCache, tableId, () -> {
+            DatasetTableField datasetTableField = DatasetTableField.builder().tableId(tableId).checked(Boolean.TRUE).build();
+            return dataSetTableFieldsService.list(datasetTableField);
+        });
+        return fields == null ? new ArrayList<>() : new ArrayList<>(fields);
+    }
+
+    /**
+     * 解析数据集 info，以 info 原文为 key，内容不变即可复用
+     */
+    public DataTableInfoDTO parseInfo(String info) {
+        if (StringUtils.isEmpty(info)) {
+            return gson.fromJson(info, DataTableInfoDTO.class);
+        }
+        return load(infoCache, info, () -> gson.fromJson(info, DataTableInfoDTO.class));
+    }
+
+    /**
+     * 自定义数据集在直连数据源上的基础 SQL
+     */
+    public String getCustomSql(DatasetTable table, Datasource ds) {
+        return load(baseSqlCache, baseSqlKey(table, ds), () -> {
+            DataTableInfoDTO dt = gson.fromJson(table.getInfo(), DataTableInfoDTO.class);
+            List<DataSetTableUnionDTO> list = dataSetTableUnionService.listByTableId(dt.getList().get(0).getTableId());
+            return dataSetTableService.getCustomSQLDatasource(dt, list, ds);
+        });
+    }
+
+    /**
+     * 关联数据集在直连数据源上的基础 SQL
+     * 生成 SQL 时会校验当前用户对各个关联数据集的使用权限，命中缓存时同样需要校验
+     */
+    public String getUnionSql(DatasetTable table, Datasource ds) {
+        String key = baseSqlKey(table, ds);
+        String sql = baseSqlCache.getIfPresent(key);
+        if (sql != null) {
+            List<DatasetTable> unionTables = new ArrayList<>();
+            for (UnionDTO unionDTO : parseInfo(table.getInfo()).getUnion()) {
+                unionTables.add(getTable(unionDTO.getCurrentDs().getId()));
+            }
+            // 关联的数据集已被删除时重新生成，由生成逻辑给出错误提示
+            if (unionTables.stream().allMatch(Objects::nonNull)) {
+                unionTables.forEach(dataSetTableService::checkUnionDatasetPermission);
+                return sql;
+            }
+            baseSqlCache.invalidate(key);
+        }
+        return load(baseSqlCache, key, () -> {
+            DataTableInfoDTO dt = gson.fromJson(table.getInfo(), DataTableInfoDTO.class);
+            return (String) dataSetTableService.getUnionSQLDatasource(dt, ds).get("sql");
+        });
+    }
+
+    /**
+     * 数据集或其字段发生变化
+     * 自定义、关联数据集的基础 SQL 依赖其他数据集的定义，因此同时清空所有基础 SQL
+     */
+    public void invalidate(String tableId) {
+        invalidateLocal(tableId);
+        if (ObjectUtils.isNotEmpty(distributedDatasetMetaService)) {
+            distributedDatasetMetaService.pushBroadcast(tableId);
+        }
+    }
+
+    public void invalidateAll() {
+        invalidateLocal(null);
+        if (ObjectUtils.isNotEmpty(distributedDatasetMetaService)) {
+            distributedDatasetMetaService.pushBroadcast(null);
+        }
+    }
+
+    /**
+     * 只失效本节点缓存，tableId 为空时清空全部
+     */
+    public void invalidateLocal(String tableId) {
+        version.incrementAndGet();
+        if (StringUtils.isEmpty(tableId)) {
+            tableCache.invalidateAll();
+            fieldCache.invalidateAll();
+        } else {
+            tableCache.invalidate(tableId);
+            fieldCache.invalidate(tableId);
+        }
+        baseSqlCache.invalidateAll();
+    }
+
+    private String baseSqlKey(DatasetTable table, Datasource ds) {
+        return table.getId() + "|" + ds.getId() + "|" + ds.getType() + "|" + Md5Utils.md5(table.getInfo() + "|" + ds.getConfiguration());
+    }
+
+    private <V> V load(Cache<String, V> cache, String key, Callable<V> loader) {
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        long start = version.get();
+        try {
+            value = loader.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            LogUtil.error(e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+        // 加载期间发生过失效，结果可能已过期，不写入缓存
+        if (value != null && version.get() == start) {
+            cache.put(key, value);
+        }
+        return value;
+    }
+}
@@ -1,17 +1,15 @@
 package io.dataease.service.dataset;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import io.dataease.commons.constants.*;
 import io.dataease.commons.model.AuthURD;
 import io.dataease.commons.utils.*;
-import io.dataease.controller.request.datasource.ApiDefinition;
 import io.dataease.dto.dataset.DataTableInfoDTO;
 import io.dataease.dto.dataset.ExcelSheetData;
 import io.dataease.dto.datasource.*;
 import io.dataease.exception.DataEaseException;
 import io.dataease.ext.ExtChartViewMapper;
-import io.dataease.listener.util.CacheUtils;
+import io.dataease.i18n.Translator;
 import io.dataease.plugins.common.base.domain.*;
 import io.dataease.plugins.common.constants.DatasetType;
 import io.dataease.plugins.common.constants.DatasourceTypes;
@@ -23,8 +21,13 @@ import io.dataease.plugins.datasource.provider.Provider;
 import io.dataease.plugins.datasource.query.QueryProvider;
 import io.dataease.provider.DDLProvider;
 import io.dataease.provider.ProviderFactory;
+import io.dataease.provider.datasource.ApiProvider;
 import io.dataease.provider.datasource.JdbcProvider;
+import io.dataease.provider.datasource.RowHandler;
+import io.dataease.service.chart.ChartViewResultCacheService;
 import io.dataease.service.datasource.DatasourceService;
+import io.dataease.service.engine.DorisStreamLoadWriter;
+import io.dataease.service.engine.EngineBulkWriter;
 import io.dataease.service.engine.EngineService;
 import io.dataease.service.kettle.KettleService;
 import io.dataease.service.message.DeMsgutil;
@@ -72,6 +75,7 @@ import javax.annotation.Resource;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
@@ -91,11 +95,22 @@ public class ExtractDataService {
     @Resource
     private DatasourceService datasourceService;
     @Resource
+    @Lazy
+    private DatasetMetaCacheService datasetMetaCacheService;
+    @Resource
     private ExtChartViewMapper extChartViewMapper;
     @Resource
     private EngineService engineService;
     @Resource
     private KettleService kettleService;
+    @Resource
+    private ChartViewResultCacheService chartViewResultCacheService;
+    @Resource
+    private FieldValuesCacheService fieldValuesCacheService;
+    @Resource
+    private PreviewCountCacheService previewCountCacheService;
+    @Resource
+    private ExtractPartitionService extractPartitionService;
 
 
     private static final String lastUpdateTime = "${__last_update_time__}";
@@ -108,6 +123,18 @@ public class ExtractDataService {
     private boolean kettleFilesKeep;
     @Value("${extract.page.size:50000}")
     private Long extractPageSize;
+    @Value("${extract.simple.batch-size:5000}")
+    private int simpleModeBatchSize;
+    @Value("${extract.simple.writer-threads:4}")
+    private int simpleModeWriterThreads;
+    @Value("${extract.stream-load.enabled:true}")
+    private boolean streamLoadEnabled;
+    @Value("${extract.stream-load.batch-bytes:33554432}")
+    private int streamLoadBatchBytes;
+    @Value("${extract.stream-load.threads:2}")
+    private int streamLoadThreads;
+    @Value("${extract.stream-load.timeout:600000}")
+    private int streamLoadTimeout;
 
 
     private static final String shellScript = "result=`curl --location-trusted -u %s:%s -H \"label:%s\" -H \"column_separator:%s\" -H \"columns:%s\" -H \"merge_type: %s\" -T %s -XPUT http://%s:%s/api/%s/%s/_stream_load`\n" +
@@ -142,6 +169,9 @@ public class ExtractDataService {
         example.createCriteria().andIdEqualTo(datasetTableId).andSyncStatusNotEqualTo(JobStatus.Underway.name());
         example.or(example.createCriteria().andIdEqualTo(datasetTableId).andSyncStatusIsNull());
         boolean existSyncTask = dataSetTableService.updateByExampleSelective(datasetTableRecord, example) == 0;
+        if (!existSyncTask) {
+            datasetMetaCacheService.invalidate(datasetTableId);
+        }
         if (existSyncTask) {
             DatasetTableTaskLog datasetTableTaskLog = new DatasetTableTaskLog();
             datasetTableTaskLog.setTaskId(datasetTableTaskId);
@@ -197,7 +227,7 @@ public class ExtractDataService {
                         generateJobFile("all_scope", datasetTable, datasetTableFields.stream().map(DatasetTableField::getDataeaseName).collect(Collectors.joining(",")));
                         extractData(datasetTable, "all_scope");
                     } else {
-                        extractExcelDataForSimpleMode(datasetTable, "all_scope");
+                        extractExcelDataForSimpleMode(datasetTable, "all_scope", datasetTableFields, datasetTableTaskLog);
                     }
                     replaceTable(TableUtils.tableName(datasetTableId));
                     saveSuccessLog(datasetTableTaskLog, false);
@@ -250,7 +280,7 @@ public class ExtractDataService {
                         generateJobFile("incremental_add", datasetTable, datasetTableFields.stream().map(DatasetTableField::getDataeaseName).collect(Collectors.joining(",")));
                         extractData(datasetTable, "incremental_add");
                     } else {
-                        extractExcelDataForSimpleMode(datasetTable, "incremental_add");
+                        extractExcelDataForSimpleMode(datasetTable, "incremental_add", datasetTableFields, datasetTableTaskLog);
                     }
                     saveSuccessLog(datasetTableTaskLog, false);
                     updateTableStatus(datasetTableId, JobStatus.Completed, execTime);
@@ -267,10 +297,10 @@ public class ExtractDataService {
                 break;
         }
         //侵入式清除下属视图缓存
-        List<String> viewIds = extChartViewMapper.allViewIds(datasetTableId);
-        if (CollectionUtils.isNotEmpty(viewIds)) {
-            viewIds.forEach(viewId -> CacheUtils.remove(JdbcConstants.VIEW_CACHE_KEY, viewId));
-        }
+        chartViewResultCacheService.invalidateDataset(datasetTableId);
+        fieldValuesCacheService.invalidateDataset(datasetTableId);
+        previewCountCacheService.invalidateDataset(datasetTableId);
+        chartViewResultCacheService.invalidateViews(extChartViewMapper.allViewIds(datasetTableId));
     }
 
     public void extractData(String datasetTableId, String taskId, String type, JobExecutionContext context) {
@@ -319,7 +349,7 @@ public class ExtractDataService {
                     createEngineTable(TableUtils.tableName(datasetTableId), datasetTableFields);
                     createEngineTable(TableUtils.tmpName(TableUtils.tableName(datasetTableId)), datasetTableFields);
                     execTime = System.currentTimeMillis();
-                    extractData(datasetTable, datasource, datasetTableFields, "all_scope", null);
+                    extractData(datasetTable, datasource, datasetTableFields, "all_scope", null, datasetTableTaskLog);
                     replaceTable(TableUtils.tableName(datasetTableId));
                     saveSuccessLog(datasetTableTaskLog, true);
                     msg = true;
@@ -361,7 +391,7 @@ public class ExtractDataService {
             case add_scope: // 增量更新
                 try {
                     if (datasource.getType().equalsIgnoreCase(DatasourceTypes.api.name())) {
-                        extractData(datasetTable, datasource, datasetTableFields, "incremental_add", null);
+                        extractData(datasetTable, datasource, datasetTableFields, "incremental_add", null, datasetTableTaskLog);
                     } else {
                         DatasetTableIncrementalConfig datasetTableIncrementalConfig = dataSetTableService.incrementalConfig(datasetTableId);
                         if (datasetTable.getLastUpdateTime() == null || datasetTable.getLastUpdateTime() == 0) {
@@ -372,13 +402,13 @@ public class ExtractDataService {
                         if (datasetTableIncrementalConfig != null && StringUtils.isNotEmpty(datasetTableIncrementalConfig.getIncrementalAdd()) && StringUtils.isNotEmpty(datasetTableIncrementalConfig.getIncrementalAdd().replace(" ", ""))) {// 增量添加
                             String sql = datasetTableIncrementalConfig.getIncrementalAdd().replace(lastUpdateTime, datasetTable.getLastUpdateTime().toString())
                                     .replace(currentUpdateTime, Long.valueOf(System.currentTimeMillis()).toString());
-                            extractData(datasetTable, datasource, datasetTableFields, "incremental_add", sql);
+                            extractData(datasetTable, datasource, datasetTableFields, "incremental_add", sql, datasetTableTaskLog);
                         }
 
                         if (StringUtils.isNotEmpty(datasetTableIncrementalConfig.getIncrementalDelete()) && StringUtils.isNotEmpty(datasetTableIncrementalConfig.getIncrementalDelete().replace(" ", ""))) {// 增量删除
                             String sql = datasetTableIncrementalConfig.getIncrementalDelete().replace(lastUpdateTime, datasetTable.getLastUpdateTime().toString())
                                     .replace(currentUpdateTime, Long.valueOf(System.currentTimeMillis()).toString());
-                            extractData(datasetTable, datasource, datasetTableFields, "incremental_delete", sql);
+                            extractData(datasetTable, datasource, datasetTableFields, "incremental_delete", sql, datasetTableTaskLog);
                         }
                     }
                     saveSuccessLog(datasetTableTaskLog, true);
@@ -411,10 +441,10 @@ public class ExtractDataService {
                 break;
         }
         //侵入式清除下属视图缓存
-        List<String> viewIds = extChartViewMapper.allViewIds(datasetTableId);
-        if (CollectionUtils.isNotEmpty(viewIds)) {
-            viewIds.forEach(viewId -> CacheUtils.remove(JdbcConstants.VIEW_CACHE_KEY, viewId));
-        }
+        chartViewResultCacheService.invalidateDataset(datasetTableId);
+        fieldValuesCacheService.invalidateDataset(datasetTableId);
+        previewCountCacheService.invalidateDataset(datasetTableId);
+        chartViewResultCacheService.invalidateViews(extChartViewMapper.allViewIds(datasetTableId));
 
     }
 
@@ -433,12 +463,13 @@ public class ExtractDataService {
         return datasetTableFields;
     }
 
-    private void extractData(DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String extractType, String selectSQL) throws Exception {
+    private void extractData(DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String extractType, String selectSQL, DatasetTableTaskLog datasetTableTaskLog) throws Exception {
         if (datasource.getType().equalsIgnoreCase(DatasourceTypes.api.name())) {
-            extractApiData(datasetTable, datasource, datasetTableFields, extractType);
+            extractApiData(datasetTable, datasource, datasetTableFields, extractType, datasetTableTaskLog);
             return;
         }
         Map<String, String> sql = getSelectSQL(extractType, datasetTable, datasource, datasetTableFields, selectSQL);
+        ExtractThroughput throughput = new ExtractThroughput(datasetTableTaskLog);
         if (StringUtils.isNotEmpty(sql.get("totalSql"))) {
             DatasourceRequest datasourceRequest = new DatasourceRequest();
             datasourceRequest.setDatasource(datasource);
@@ -446,143 +477,224 @@ public class ExtractDataService {
             datasourceRequest.setQuery(sql.get("totalSql"));
             List<String[]> tmpData = datasourceProvider.getData(datasourceRequest);
             Long totalItems = CollectionUtils.isEmpty(tmpData) ? 0 : Long.valueOf(tmpData.get(0)[0]);
+            if (extractType.equalsIgnoreCase("all_scope") && !engineService.isSimpleMode()) {
+                List<ExtractPartitionService.ExtractPartition> partitions = extractPartitionService.plan(datasource, datasetTable, datasetTableFields, sql.get("selectSQL"), totalItems, extractPageSize);
+                if (partitions != null) {
+                    extractDataByPartitions(datasetTable, datasource, datasetTableFields, partitions, throughput);
+                    LogUtil.info("Extract dataset {}: {}", datasetTable.getId(), throughput.toString());
+                    return;
+                }
+            }
             Long totalPage = (totalItems / extractPageSize) + (totalItems % extractPageSize > 0 ? 1 : 0);
             for (Long i = 0L; i < totalPage; i++) {
                 Long offset = i * extractPageSize;
                 Long all = offset + extractPageSize;
-                extractDataByKettle(datasetTable, datasource, datasetTableFields, extractType, sql.get("selectSQL").replace("DE_OFFSET", offset.toString()).replace("DE_PAGE_SIZE", extractPageSize.toString()).replace("DE_ALL", all.toString()));
+                extractDataByKettle(datasetTable, datasource, datasetTableFields, extractType, sql.get("selectSQL").replace("DE_OFFSET", offset.toString()).replace("DE_PAGE_SIZE", extractPageSize.toString()).replace("DE_ALL", all.toString()), throughput);
             }
         } else {
-            extractDataByKettle(datasetTable, datasource, datasetTableFields, extractType, sql.get("selectSQL"));
+            extractDataByKettle(datasetTable, datasource, datasetTableFields, extractType, sql.get("selectSQL"), throughput);
+        }
+        if (throughput.getRows() > 0) {
+            LogUtil.info("Extract dataset {}: {}", datasetTable.getId(), throughput.toString());
         }
     }
 
-    private void extractApiData(DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String extractType) throws Exception {
-        List<ApiDefinition> lists = new Gson().fromJson(datasource.getConfiguration(), new TypeToken<ArrayList<ApiDefinition>>() {
-        }.getType());
-        lists = lists.stream().filter(item -> item.getName().equalsIgnoreCase(new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class).getTable())).collect(Collectors.toList());
-        if (CollectionUtils.isEmpty(lists)) {
-            throw new Exception("未找到API数据表");
-        }
-        if (lists.size() > 1) {
-            throw new Exception("存在重名的API数据表");
-        }
-        Provider datasourceProvider = ProviderFactory.getProvider(datasource.getType());
+    /**
+     * API 数据按分页配置流式拉取，逐行写入引擎，不在内存中保留整个响应
+     */
+    private void extractApiData(DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String extractType, DatasetTableTaskLog datasetTableTaskLog) throws Exception {
+        ApiProvider apiProvider = (ApiProvider) ProviderFactory.getProvider(datasource.getType());
         DatasourceRequest datasourceRequest = new DatasourceRequest();
         datasourceRequest.setDatasource(datasource);
         datasourceRequest.setTable(new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class).getTable());
-        Map<String, List> result = datasourceProvider.fetchResultAndField(datasourceRequest);
-        List<String[]> dataList = result.get("dataList");
         if (engineService.isSimpleMode()) {
-            extractDataForSimpleMode(extractType, datasetTable.getId(), dataList);
+            try (EngineBulkWriter writer = simpleModeWriter(extractType, datasetTable.getId(), datasetTableFields, datasetTableTaskLog)) {
+                apiProvider.streamData(datasourceRequest, writer);
+                writer.finish();
+            }
             return;
         }
-
-        Datasource engine = engineService.getDeEngine();
-        DorisConfiguration dorisConfiguration = new Gson().fromJson(engine.getConfiguration(), DorisConfiguration.class);
-        String columns = datasetTableFields.stream().map(DatasetTableField::getDataeaseName).collect(Collectors.joining(",")) + ",dataease_uuid";
-
-        String dataFile = null;
-        String script = null;
-        String streamLoadScript = "";
-        if (kettleFilesKeep) {
-            streamLoadScript = shellScript;
-        } else {
-            streamLoadScript = shellScriptForDeleteFile;
+        ExtractThroughput throughput = new ExtractThroughput(datasetTableTaskLog);
+        try (DorisStreamLoadWriter writer = streamLoadWriter(datasetTable, datasetTableFields, extractType, datasetTable.getId() + System.currentTimeMillis(), throughput)) {
+            apiProvider.streamData(datasourceRequest, writer);
+            writer.finish();
         }
+        LogUtil.info("Extract dataset {}: {}", datasetTable.getId(), throughput.toString());
+    }
+
+    /**
+     * 使用预编译语句批量写入(连接开启 rewriteBatchedStatements)，按批次由多个线程并行写入，并将进度记录到任务日志
+     */
+    private EngineBulkWriter simpleModeWriter(String extractType, String datasetId, List<DatasetTableField> datasetTableFields, DatasetTableTaskLog datasetTableTaskLog) throws Exception {
+        String tableName;
         switch (extractType) {
             case "all_scope":
-                dataFile = root_path + TableUtils.tmpName(TableUtils.tableName(datasetTable.getId())) + "." + extension;
-                script = String.format(streamLoadScript, dorisConfiguration.getUsername(), dorisConfiguration.getPassword(), System.currentTimeMillis(), separator, columns, "APPEND", dataFile, dorisConfiguration.getHost(), dorisConfiguration.getHttpPort(), dorisConfiguration.getDataBase(), TableUtils.tmpName(TableUtils.tableName(datasetTable.getId())), dataFile);
+                tableName = TableUtils.tmpName(TableUtils.tableName(datasetId));
                 break;
             default:
-                dataFile = root_path + TableUtils.addName(TableUtils.tableName(datasetTable.getId())) + "." + extension;
-                script = String.format(streamLoadScript, dorisConfiguration.getUsername(), dorisConfiguration.getPassword(), System.currentTimeMillis(), separator, columns, "APPEND", dataFile, dorisConfiguration.getHost(), dorisConfiguration.getHttpPort(), dorisConfiguration.getDataBase(), TableUtils.tableName(datasetTable.getId()), dataFile);
+                tableName = TableUtils.tableName(datasetId);
                 break;
         }
+        Datasource engine = engineService.getDeEngine();
+        JdbcProvider jdbcProvider = CommonBeanFactory.getBean(JdbcProvider.class);
+        DatasourceRequest datasourceRequest = new DatasourceRequest();
+        datasourceRequest.setDatasource(engine);
+        DDLProvider ddlProvider = ProviderFactory.getDDLProvider(engine.getType());
+        int columnCount = datasetTableFields.size() + 1;
+        String insertSql = ddlProvider.insertPrepareSql(tableName, columnCount);
+        return new EngineBulkWriter(jdbcProvider, datasourceRequest, insertSql, columnCount, simpleModeBatchSize, simpleModeWriterThreads,
+                written -> reportSimpleModeProgress(datasetTableTaskLog, written));
+    }
 
+    private void reportSimpleModeProgress(DatasetTableTaskLog datasetTableTaskLog, long written) {
+        reportProgress(datasetTableTaskLog, String.format(Translator.get("i18n_extract_progress_rows"), written));
+    }
 
-        BufferedWriter bw = new BufferedWriter(new FileWriter(dataFile));
-        for (String[] strings : dataList) {
-            String content = "";
-            for (int i = 0; i < strings.length; i++) {
-                content = content + strings[i] + separator;
+    private void reportProgress(DatasetTableTaskLog datasetTableTaskLog, String info) {
+        if (datasetTableTaskLog == null || StringUtils.isEmpty(datasetTableTaskLog.getId())) {
+            return;
+        }
+        synchronized (datasetTableTaskLog) {
+            if (!JobStatus.Underway.name().equals(datasetTableTaskLog.getStatus())) {
+                return;
             }
-            content = content + Md5Utils.md5(content);
-            bw.write(content);
-            bw.newLine();
+            datasetTableTaskLog.setInfo(info);
+            dataSetTableTaskLogService.save(datasetTableTaskLog, false);
         }
-        bw.close();
+    }
 
-        File scriptFile = new File(root_path + datasetTable.getId() + ".sh");
-        scriptFile.createNewFile();
-        scriptFile.setExecutable(true);
+    private void extractDataByKettle(DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String extractType, String selectSQL, ExtractThroughput throughput) throws Exception {
+        if (useStreamLoad(datasource)) {
+            extractDataByStreamLoad(datasetTable, datasource, datasetTableFields, extractType, selectSQL, datasetTable.getId() + System.currentTimeMillis(), throughput);
+            return;
+        }
+        generateTransFile(extractType, datasetTable, datasource, datasetTableFields, selectSQL);
+        generateJobFile(extractType, datasetTable, datasetTableFields.stream().map(DatasetTableField::getDataeaseName).collect(Collectors.joining(",")));
+        extractData(datasetTable, extractType);
+    }
 
-        BufferedWriter scriptFileBw = new BufferedWriter(new FileWriter(root_path + datasetTable.getId() + ".sh"));
-        scriptFileBw.write("#!/bin/sh");
-        scriptFileBw.newLine();
-        scriptFileBw.write(script);
-        scriptFileBw.newLine();
-        scriptFileBw.close();
+    /**
+     * 全量抽取按主键区间分区并行执行，每个分区使用独立的 trans/job/数据文件；
+     * 源数据读取顺序不固定，分区重试时使用新的 stream load label 重新导入整个分区，导入前先删除上次写入的该分区数据
+     */
+    private void extractDataByPartitions(DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, List<ExtractPartitionService.ExtractPartition> partitions, ExtractThroughput throughput) throws Exception {
+        String columnFields = datasetTableFields.stream().map(DatasetTableField::getDataeaseName).collect(Collectors.joining(","));
+        long syncTime = System.currentTimeMillis();
+        boolean streamLoad = useStreamLoad(datasource);
+        extractPartitionService.run(datasource, partitions, (partition, attempt) -> {
+            String suffix = partitionSuffix(partition.getIndex());
+            String label = datasetTable.getId() + syncTime + suffix + "_" + attempt;
+            if (attempt > 0) {
+                clearPartition(datasetTable, partition);
+            }
+            if (streamLoad) {
+                extractDataByStreamLoad(datasetTable, datasource, datasetTableFields, "all_scope", partition.getSql(), label, throughput);
+                return;
+            }
+            try {
+                generateTransFile("all_scope", datasetTable, datasource, datasetTableFields, partition.getSql(), suffix);
+                generateJobFile("all_scope", datasetTable, columnFields, suffix, label);
+                extractData(datasetTable, "all_scope", suffix);
+            } finally {
+                deleteFile("all_scope", datasetTable.getId(), suffix);
+            }
+        });
+    }
 
+    /**
+     * 删除分区上次失败时已写入临时表的数据；删除失败时不再重试该分区，直接让本次抽取失败，
+     * 避免上次写入的行与重新导入的行同时留在临时表中
+     */
+    private void clearPartition(DatasetTable datasetTable, ExtractPartitionService.ExtractPartition partition) throws Exception {
+        Datasource engine = engineService.getDeEngine();
+        JdbcProvider jdbcProvider = CommonBeanFactory.getBean(JdbcProvider.class);
+        DatasourceRequest datasourceRequest = new DatasourceRequest();
+        datasourceRequest.setDatasource(engine);
+        datasourceRequest.setQuery("DELETE FROM " + TableUtils.tmpName(TableUtils.tableName(datasetTable.getId())) + " WHERE " + partition.getCondition());
         try {
-            Process process = Runtime.getRuntime().exec(root_path + datasetTable.getId() + ".sh");
-            process.waitFor();
-            if (process.waitFor() != 0) {
-                BufferedReader input = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-                String errMsg = "";
-                String line = "";
-                while ((line = input.readLine()) != null) {
-                    errMsg = errMsg + line + System.getProperty("line.separator");
-                }
-                input = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                while ((line = input.readLine()) != null) {
-                    errMsg = errMsg + line + System.getProperty("line.separator");
-                }
-                throw new Exception(errMsg);
-            }
+            jdbcProvider.exec(datasourceRequest);
         } catch (Exception e) {
-            throw e;
-        } finally {
-            File deleteFile = new File(root_path + datasetTable.getId() + ".sh");
-            FileUtils.forceDelete(deleteFile);
+            throw new ExtractPartitionService.PartitionAbortException("Failed to clear extract partition " + partition.getIndex() + ": " + e.getMessage(), e);
         }
+    }
 
+    private String partitionSuffix(int index) {
+        return "_p" + index;
     }
 
-    private void extractDataForSimpleMode(String extractType, String datasetId, List<String[]> dataList) throws Exception {
-        String tableName;
-        switch (extractType) {
-            case "all_scope":
-                tableName = TableUtils.tmpName(TableUtils.tableName(datasetId));
-                break;
-            default:
-                tableName = TableUtils.tableName(datasetId);
-                break;
+    private boolean useStreamLoad(Datasource datasource) {
+        return streamLoadEnabled && !engineService.isSimpleMode() && ProviderFactory.getProvider(datasource.getType()) instanceof JdbcProvider;
+    }
+
+    /**
+     * 在 JVM 内以游标读取源数据并直接 stream load 到 doris，不生成 kettle 转换、中间文件和 shell 脚本
+     *
+     * @param label stream load label 前缀，各批次在其后追加序号
+     */
+    private void extractDataByStreamLoad(DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String extractType, String selectSQL, String label, ExtractThroughput throughput) throws Exception {
+        if (StringUtils.isNotEmpty(datasetTable.getDataSourceId())) {
+            datasourceService.validate(datasetTable.getDataSourceId());
         }
-        Datasource engine = engineService.getDeEngine();
         JdbcProvider jdbcProvider = CommonBeanFactory.getBean(JdbcProvider.class);
         DatasourceRequest datasourceRequest = new DatasourceRequest();
-        datasourceRequest.setDatasource(engine);
-        DDLProvider ddlProvider = ProviderFactory.getDDLProvider(engine.getType());
-        int pageNumber = 100; //一次插入 100条
-        int totalPage;
-        if (dataList.size() % pageNumber > 0) {
-            totalPage = dataList.size() / pageNumber + 1;
-        } else {
-            totalPage = dataList.size() / pageNumber;
+        datasourceRequest.setDatasource(datasource);
+        datasourceRequest.setQuery(selectSQL);
+        try (DorisStreamLoadWriter writer = streamLoadWriter(datasetTable, datasetTableFields, extractType, label, throughput)) {
+            boolean[] timeColumns = new boolean[datasetTableFields.size()];
+            for (int i = 0; i < datasetTableFields.size(); i++) {
+                timeColumns[i] = Objects.equals(datasetTableFields.get(i).getDeExtractType(), DeTypeConstants.DE_TIME);
+            }
+            writer.setTimeColumns(timeColumns);
+            handleCharset(writer, datasource, datasetTableFields);
+            jdbcProvider.streamExtractData(datasourceRequest, writer);
+            writer.finish();
         }
+    }
 
-        for (int page = 1; page <= totalPage; page++) {
-            datasourceRequest.setQuery(ddlProvider.insertSql(tableName, dataList, page, pageNumber));
-            jdbcProvider.exec(datasourceRequest);
+    /**
+     * 与 kettle 转换的 handleCharset 一致，oracle、db2 数据源配置了字符集时转换字符串字段
+     */
+    private void handleCharset(DorisStreamLoadWriter writer, Datasource datasource, List<DatasetTableField> datasetTableFields) {
+        if (!StringUtils.equalsAny(datasource.getType(), DatasourceTypes.oracle.name(), DatasourceTypes.db2.name())) {
+            return;
+        }
+        JdbcConfiguration jdbcConfiguration = new Gson().fromJson(datasource.getConfiguration(), JdbcConfiguration.class);
+        if (StringUtils.isEmpty(jdbcConfiguration.getCharset()) || jdbcConfiguration.getCharset().equalsIgnoreCase("Default")) {
+            return;
         }
+        String targetCharset = "UTF-8";
+        if (StringUtils.isNotEmpty(jdbcConfiguration.getTargetCharset()) && !jdbcConfiguration.getTargetCharset().equalsIgnoreCase("Default")) {
+            targetCharset = jdbcConfiguration.getTargetCharset();
+        }
+        boolean[] charsetColumns = new boolean[datasetTableFields.size()];
+        for (int i = 0; i < datasetTableFields.size(); i++) {
+            charsetColumns[i] = Objects.equals(datasetTableFields.get(i).getDeExtractType(), DeTypeConstants.DE_STRING);
+        }
+        writer.setCharset(charsetColumns, jdbcConfiguration.getCharset(), targetCharset);
     }
 
-    private void extractDataByKettle(DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String extractType, String selectSQL) throws Exception {
-        generateTransFile(extractType, datasetTable, datasource, datasetTableFields, selectSQL);
-        generateJobFile(extractType, datasetTable, datasetTableFields.stream().map(DatasetTableField::getDataeaseName).collect(Collectors.joining(",")));
-        extractData(datasetTable, extractType);
+    private DorisStreamLoadWriter streamLoadWriter(DatasetTable datasetTable, List<DatasetTableField> datasetTableFields, String extractType, String label, ExtractThroughput throughput) throws Exception {
+        String table;
+        String mergeType = "APPEND";
+        switch (extractType) {
+            case "all_scope":
+                table = TableUtils.tmpName(TableUtils.tableName(datasetTable.getId()));
+                break;
+            case "incremental_delete":
+                table = TableUtils.tableName(datasetTable.getId());
+                mergeType = "DELETE";
+                break;
+            default:
+                table = TableUtils.tableName(datasetTable.getId());
+                break;
+        }
+        boolean[] binaryColumns = new boolean[datasetTableFields.size()];
+        for (int i = 0; i < datasetTableFields.size(); i++) {
+            binaryColumns[i] = Objects.equals(datasetTableFields.get(i).getDeExtractType(), DeTypeConstants.DE_BINARY);
+        }
+        String columns = datasetTableFields.stream().map(DatasetTableField::getDataeaseName).collect(Collectors.joining(",")) + ",dataease_uuid";
+        DorisConfiguration dorisConfiguration = new Gson().fromJson(engineService.getDeEngine().getConfiguration(), DorisConfiguration.class);
+        return new DorisStreamLoadWriter(dorisConfiguration, table, columns, mergeType, label, binaryColumns, streamLoadBatchBytes, streamLoadThreads, streamLoadTimeout, throughput::add);
     }
 
     private void sendWebMsg(DatasetTable datasetTable, DatasetTableTask datasetTableTask, DatasetTableTaskLog datasetTableTaskLog, Boolean status) {
@@ -622,6 +734,7 @@ public class ExtractDataService {
         DatasetTableExample example = new DatasetTableExample();
         example.createCriteria().andIdEqualTo(datasetTableId);
         dataSetTableService.updateByExampleSelective(datasetTableRecord, example);
+        datasetMetaCacheService.invalidate(datasetTableId);
     }
 
     private void saveSuccessLog(DatasetTableTaskLog datasetTableTaskLog, Boolean hasTask) {
@@ -724,71 +837,53 @@ public class ExtractDataService {
         return datasetTableTaskLog;
     }
 
-    private void extractExcelDataForSimpleMode(DatasetTable datasetTable, String extractType) throws Exception {
-        List<String[]> data = new ArrayList<>();
+    /**
+     * 逐行解析 Excel/CSV 并直接写入引擎，不在内存中保留整个文件的数据
+     */
+    private void extractExcelDataForSimpleMode(DatasetTable datasetTable, String extractType, List<DatasetTableField> datasetTableFields, DatasetTableTaskLog datasetTableTaskLog) throws Exception {
         DataTableInfoDTO dataTableInfoDTO = new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class);
         List<ExcelSheetData> excelSheetDataList = dataTableInfoDTO.getExcelSheetDataList();
-        for (ExcelSheetData excelSheetData : excelSheetDataList) {
-            String suffix = excelSheetData.getPath().substring(excelSheetData.getPath().lastIndexOf(".") + 1);
-            List<ExcelSheetData> totalSheets = new ArrayList<>();
-            if (StringUtils.equalsIgnoreCase(suffix, "xls")) {
-                ExcelXlsReader excelXlsReader = new ExcelXlsReader();
-                excelXlsReader.process(new FileInputStream(excelSheetData.getPath()));
-                totalSheets = excelXlsReader.totalSheets;
-            }
-            if (StringUtils.equalsIgnoreCase(suffix, "xlsx")) {
-                ExcelXlsxReader excelXlsxReader = new ExcelXlsxReader();
-                excelXlsxReader.process(new FileInputStream(excelSheetData.getPath()));
-                totalSheets = excelXlsxReader.totalSheets;
-            }
-
-            if (StringUtils.equalsIgnoreCase(suffix, "csv")) {
-                List<TableField> fields = new ArrayList<>();
-                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(excelSheetData.getPath()), StandardCharsets.UTF_8));
-                String s = reader.readLine();// first line
-                String[] split = s.split(",");
-                for (String s1 : split) {
-                    TableField tableFiled = new TableField();
-                    tableFiled.setFieldName(s1);
-                    tableFiled.setRemarks(s1);
-                    tableFiled.setFieldType("TEXT");
-                    fields.add(tableFiled);
+        try (EngineBulkWriter writer = simpleModeWriter(extractType, datasetTable.getId(), datasetTableFields, datasetTableTaskLog)) {
+            RowHandler rowHandler = row -> {
+                if (row.length > 0) {
+                    writer.handle(row);
                 }
-                List<List<String>> csvData = new ArrayList<>();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if(line.endsWith(",")){
-                        List<String> list = new ArrayList<>(Arrays.asList(line.split(",")));
-                        list.add("");
-                        csvData.add(list);
-                    }else {
-                        csvData.add(Arrays.asList(line.split(",")));
+            };
+            for (ExcelSheetData excelSheetData : excelSheetDataList) {
+                String suffix = excelSheetData.getPath().substring(excelSheetData.getPath().lastIndexOf(".") + 1);
+                if (StringUtils.equalsIgnoreCase(suffix, "xls")) {
+                    ExcelXlsReader excelXlsReader = new ExcelXlsReader();
+                    excelXlsReader.setRowHandler(excelSheetData.getExcelLabel(), rowHandler);
+                    try (InputStream inputStream = new FileInputStream(excelSheetData.getPath())) {
+                        excelXlsReader.process(inputStream);
                     }
                 }
-                ExcelSheetData csvSheetData = new ExcelSheetData();
-                String[] fieldArray = fields.stream().map(TableField::getFieldName).toArray(String[]::new);
-                csvSheetData.setFields(fields);
-                csvSheetData.setData(csvData);
-                csvSheetData.setExcelLabel(excelSheetData.getExcelLabel());
-                csvSheetData.setFieldsMd5(Md5Utils.md5(StringUtils.join(fieldArray, ",")));
-                totalSheets = Arrays.asList(csvSheetData);
-            }
-
-
-            for (ExcelSheetData sheet : totalSheets) {
-                if (sheet.getExcelLabel().equalsIgnoreCase(excelSheetData.getExcelLabel())) {
-                    for (List<String> dataItem : sheet.getData()) {
-                        if (dataItem.size() > 0) {
-                            data.add(dataItem.toArray(new String[dataItem.size()]));
+                if (StringUtils.equalsIgnoreCase(suffix, "xlsx")) {
+                    ExcelXlsxReader excelXlsxReader = new ExcelXlsxReader();
+                    excelXlsxReader.setRowHandler(excelSheetData.getExcelLabel(), rowHandler);
+                    try (InputStream inputStream = new FileInputStream(excelSheetData.getPath())) {
+                        excelXlsxReader.process(inputStream);
+                    }
+                }
+                if (StringUtils.equalsIgnoreCase(suffix, "csv")) {
+                    try (CsvReader reader = new CsvReader(new InputStreamReader(new FileInputStream(excelSheetData.getPath()), StandardCharsets.UTF_8))) {
+                        reader.next();// first line
+                        String[] row;
+                        while ((row = reader.next()) != null) {
+                            rowHandler.handle(row);
                         }
                     }
                 }
             }
+            writer.finish();
         }
-        extractDataForSimpleMode(extractType, datasetTable.getId(), data);
     }
 
     private void extractData(DatasetTable datasetTable, String extractType) throws Exception {
+        extractData(datasetTable, extractType, "");
+    }
+
+    private void extractData(DatasetTable datasetTable, String extractType, String partition) throws Exception {
         if (StringUtils.isNotEmpty(datasetTable.getDataSourceId())) {
             datasourceService.validate(datasetTable.getDataSourceId());
         }
@@ -798,8 +893,8 @@ public class ExtractDataService {
         JobMeta jobMeta = null;
         switch (extractType) {
             case "all_scope":
-                jobMeta = repository.loadJob("job_" + TableUtils.tableName(datasetTable.getId()), repositoryDirectoryInterface, null, null);
-                transMeta = repository.loadTransformation("trans_" + TableUtils.tableName(datasetTable.getId()), repositoryDirectoryInterface, null, true, "");
+                jobMeta = repository.loadJob("job_" + TableUtils.tableName(datasetTable.getId()) + partition, repositoryDirectoryInterface, null, null);
+                transMeta = repository.loadTransformation("trans_" + TableUtils.tableName(datasetTable.getId()) + partition, repositoryDirectoryInterface, null, true, "");
                 break;
             case "incremental_add":
                 jobMeta = repository.loadJob("job_add_" + TableUtils.tableName(datasetTable.getId()), repositoryDirectoryInterface, null, null);
@@ -855,9 +950,20 @@ public class ExtractDataService {
     }
 
     private void generateJobFile(String extractType, DatasetTable datasetTable, String columnFields) throws Exception {
+        generateJobFile(extractType, datasetTable, columnFields, "", null);
+    }
+
+    /**
+     * @param partition 全量分区抽取时的分区后缀，其余情况为空
+     * @param label     stream load 的 label，为空时按当前时间生成
+     */
+    private void generateJobFile(String extractType, DatasetTable datasetTable, String columnFields, String partition, String label) throws Exception {
         if (engineService.isSimpleMode()) {
             return;
         }
+        if (label == null) {
+            label = datasetTable.getId() + System.currentTimeMillis();
+        }
         String outFile;
         String jobName = null;
         String script = null;
@@ -872,18 +978,18 @@ public class ExtractDataService {
         }
         switch (extractType) {
             case "all_scope":
-                outFile = TableUtils.tmpName(TableUtils.tableName(datasetTable.getId()));
-                jobName = "job_" + TableUtils.tableName(datasetTable.getId());
-                script = String.format(streamLoadScript, dorisConfiguration.getUsername(), dorisConfiguration.getPassword(), datasetTable.getId() + System.currentTimeMillis(), separator, columns, "APPEND", root_path + outFile + "." + extension, dorisConfiguration.getHost(), dorisConfiguration.getHttpPort(), dorisConfiguration.getDataBase(), TableUtils.tmpName(TableUtils.tableName(datasetTable.getId())), root_path + outFile + "." + extension);
+                outFile = TableUtils.tmpName(TableUtils.tableName(datasetTable.getId())) + partition;
+                jobName = "job_" + TableUtils.tableName(datasetTable.getId()) + partition;
+                script = String.format(streamLoadScript, dorisConfiguration.getUsername(), dorisConfiguration.getPassword(), label, separator, columns, "APPEND", root_path + outFile + "." + extension, dorisConfiguration.getHost(), dorisConfiguration.getHttpPort(), dorisConfiguration.getDataBase(), TableUtils.tmpName(TableUtils.tableName(datasetTable.getId())), root_path + outFile + "." + extension);
                 break;
             case "incremental_add":
                 outFile = TableUtils.addName(datasetTable.getId());
                 jobName = "job_add_" + TableUtils.tableName(datasetTable.getId());
-                script = String.format(streamLoadScript, dorisConfiguration.getUsername(), dorisConfiguration.getPassword(), datasetTable.getId() + System.currentTimeMillis(), separator, columns, "APPEND", root_path + outFile + "." + extension, dorisConfiguration.getHost(), dorisConfiguration.getHttpPort(), dorisConfiguration.getDataBase(), TableUtils.tableName(datasetTable.getId()), root_path + outFile + "." + extension);
+                script = String.format(streamLoadScript, dorisConfiguration.getUsername(), dorisConfiguration.getPassword(), label, separator, columns, "APPEND", root_path + outFile + "." + extension, dorisConfiguration.getHost(), dorisConfiguration.getHttpPort(), dorisConfiguration.getDataBase(), TableUtils.tableName(datasetTable.getId()), root_path + outFile + "." + extension);
                 break;
             case "incremental_delete":
                 outFile = TableUtils.deleteName(TableUtils.tableName(datasetTable.getId()));
-                script = String.format(streamLoadScript, dorisConfiguration.getUsername(), dorisConfiguration.getPassword(), datasetTable.getId() + System.currentTimeMillis(), separator, columns, "DELETE", root_path + outFile + "." + extension, dorisConfiguration.getHost(), dorisConfiguration.getHttpPort(), dorisConfiguration.getDataBase(), TableUtils.tableName(datasetTable.getId()), root_path + outFile + "." + extension);
+                script = String.format(streamLoadScript, dorisConfiguration.getUsername(), dorisConfiguration.getPassword(), label, separator, columns, "DELETE", root_path + outFile + "." + extension, dorisConfiguration.getHost(), dorisConfiguration.getHttpPort(), dorisConfiguration.getDataBase(), TableUtils.tableName(datasetTable.getId()), root_path + outFile + "." + extension);
                 jobName = "job_delete_" + TableUtils.tableName(datasetTable.getId());
                 break;
             default:
@@ -948,6 +1054,10 @@ public class ExtractDataService {
     }
 
     private void generateTransFile(String extractType, DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String selectSQL) throws Exception {
+        generateTransFile(extractType, datasetTable, datasource, datasetTableFields, selectSQL, "");
+    }
+
+    private void generateTransFile(String extractType, DatasetTable datasetTable, Datasource datasource, List<DatasetTableField> datasetTableFields, String selectSQL, String partition) throws Exception {
         if (engineService.isSimpleMode()) {
             return;
         }
@@ -1031,8 +1141,8 @@ public class ExtractDataService {
 
         switch (extractType) {
             case "all_scope":
-                transName = "trans_" + TableUtils.tableName(datasetTable.getId());
-                outFile = TableUtils.tmpName(TableUtils.tableName(datasetTable.getId()));
+                transName = "trans_" + TableUtils.tableName(datasetTable.getId()) + partition;
+                outFile = TableUtils.tmpName(TableUtils.tableName(datasetTable.getId())) + partition;
                 transMeta.setName(transName);
                 break;
             case "incremental_add":
@@ -1323,6 +1433,10 @@ public class ExtractDataService {
     }
 
     public void deleteFile(String type, String dataSetTableId) {
+        deleteFile(type, dataSetTableId, "");
+    }
+
+    private void deleteFile(String type, String dataSetTableId, String partition) {
         if (kettleFilesKeep) {
             return;
         }
@@ -1332,9 +1446,9 @@ public class ExtractDataService {
 
         switch (type) {
             case "all_scope":
-                transName = "trans_" + TableUtils.tableName(dataSetTableId);
-                jobName = "job_" + TableUtils.tableName(dataSetTableId);
-                fileName = TableUtils.tmpName(TableUtils.tableName(dataSetTableId));
+                transName = "trans_" + TableUtils.tableName(dataSetTableId) + partition;
+                jobName = "job_" + TableUtils.tableName(dataSetTableId) + partition;
+                fileName = TableUtils.tmpName(TableUtils.tableName(dataSetTableId)) + partition;
                 break;
             case "incremental_add":
                 transName = "trans_add_" + TableUtils.tableName(dataSetTableId);
@@ -1495,5 +1609,38 @@ public class ExtractDataService {
             "        }\n" +
             "        return str;\n" +
             "    }";
-}
 
+    /**
+     * 一次同步的累计导入量，按同步开始时间计算吞吐并写入任务日志
+     */
+    private class ExtractThroughput {
+
+        private final DatasetTableTaskLog datasetTableTaskLog;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final AtomicLong rows = new AtomicLong();
+
+        private final AtomicLong bytes = new AtomicLong();
+
+        ExtractThroughput(DatasetTableTaskLog datasetTableTaskLog) {
+            this.datasetTableTaskLog = datasetTableTaskLog;
+        }
+
+        void add(long batchRows, long batchBytes) {
+            rows.addAndGet(batchRows);
+            bytes.addAndGet(batchBytes);
+            reportProgress(datasetTableTaskLog, toString());
+        }
+
+        long getRows() {
+            return rows.get();
+        }
+
+        @Override
+        public String toString() {
+            long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+            return String.format(Translator.get("i18n_extract_progress_throughput"), rows.get(), rows.get() * 1000 / elapsed, bytes.get() * 1000 / 1024 / elapsed);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package io.dataease.service.dataset;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.dto.dataset.DataTableInfoDTO;
+import io.dataease.plugins.common.base.domain.DatasetTable;
+import io.dataease.plugins.common.base.domain.DatasetTableField;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.plugins.common.constants.DatasetType;
+import io.dataease.plugins.common.constants.DatasourceTypes;
+import io.dataease.plugins.common.constants.DeTypeConstants;
+import io.dataease.plugins.common.request.datasource.DatasourceRequest;
+import io.dataease.plugins.datasource.provider.Provider;
+import io.dataease.provider.ProviderFactory;
+import io.dataease.provider.datasource.JdbcProvider;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * 全量抽取的分区规划与执行
+ * 选取整数主键(没有主键时使用名为 id 的整数列)，用 min/max 确定取值范围后按页大小等宽切分为若干区间，
+ * 另加一个空值分区，各分区的 SQL 只带区间条件，不再使用 OFFSET 分页逐页跳过前面的数据；
+ * 分区按数据源限制并发执行，失败的分区单独重试，不必重新同步整个数据集
+ */
+@Service
+public class ExtractPartitionService {
+
+    private static final Pattern LIMIT_OFFSET = Pattern.compile("(?i)\\s+LIMIT\\s+DE_OFFSET\\s*,\\s*DE_PAGE_SIZE\\s*$");
+
+    private static final Pattern LIMIT_PAGE_SIZE = Pattern.compile("(?i)\\s+LIMIT\\s+DE_PAGE_SIZE\\s+OFFSET\\s+DE_OFFSET\\s*$");
+
+    /**
+     * 派生表条件能下推、分页子句为 LIMIT 形式可以去掉的数据源；
+     * SQL Server 的抽取语句没有分页子句，DB2 的 LIMIT 写法依赖兼容模式，二者仍按原有的分页方式抽取
+     */
+    private static final Set<String> SUPPORTED_TYPES = new HashSet<>(Arrays.asList(
+            DatasourceTypes.mysql.name(), DatasourceTypes.mariadb.name(), DatasourceTypes.TiDB.name(), DatasourceTypes.StarRocks.name(),
+            DatasourceTypes.ds_doris.name(), DatasourceTypes.pg.name(), DatasourceTypes.ck.name()));
+
+    @Value("${extract.partition.enabled:true}")
+    private boolean enabled;
+
+    @Value("${extract.partition.parallelism:4}")
+    private int parallelism;
+
+    @Value("${extract.partition.retries:2}")
+    private int retries;
+
+    private final Map<String, Semaphore> sourcePermits = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("extract-partition-%d").setDaemon(true).build());
+
+    public interface PartitionTask {
+        /**
+         * @param attempt 第几次重试，首次执行为 0
+         */
+        void run(ExtractPartition partition, int attempt) throws Exception;
+    }
+
+    /**
+     * 规划分区，不支持分区时返回 null，由调用方按原有的分页方式抽取
+     *
+     * @param selectSQL  带 DE_OFFSET/DE_PAGE_SIZE 分页占位符的抽取语句
+     * @param totalItems 总行数
+     */
+    public List<ExtractPartition> plan(Datasource datasource, DatasetTable datasetTable, List<DatasetTableField> fields, String selectSQL, long totalItems, long pageSize) {
+        if (!enabled || totalItems <= pageSize || !SUPPORTED_TYPES.contains(datasource.getType())) {
+            return null;
+        }
+        String baseSQL = LIMIT_PAGE_SIZE.matcher(LIMIT_OFFSET.matcher(selectSQL).replaceAll("")).replaceAll("");
+        if (StringUtils.containsAny(baseSQL, "DE_OFFSET", "DE_PAGE_SIZE", "DE_ALL")) {
+            return null;
+        }
+        try {
+            DatasetTableField field = splitField(datasource, datasetTable, fields);
+            if (field == null) {
+                return null;
+            }
+            String column = field.getDataeaseName();
+            Provider provider = ProviderFactory.getProvider(datasource.getType());
+            DatasourceRequest datasourceRequest = new DatasourceRequest();
+            datasourceRequest.setDatasource(datasource);
+            datasourceRequest.setQuery("SELECT MIN(" + column + "), MAX(" + column + ") FROM (" + baseSQL + ") DE_BOUNDS");
+            List<String[]> bounds = provider.getData(datasourceRequest);
+            List<ExtractPartition> partitions = new ArrayList<>();
+            if (CollectionUtils.isNotEmpty(bounds) && bounds.get(0)[0] != null && bounds.get(0)[1] != null) {
+                long min = new BigDecimal(bounds.get(0)[0]).longValueExact();
+                long max = new BigDecimal(bounds.get(0)[1]).longValueExact();
+                long count = Math.max(1, (totalItems + pageSize - 1) / pageSize);
+                // 区间宽度向上取整，第一个区间不设下界、最后一个区间不设上界，抽取期间写入范围外的数据也不会漏掉
+                long width = Math.max(1, (long) Math.ceil(((double) max - min + 1) / count));
+                long lower = min;
+                while (lower <= max) {
+                    boolean first = lower == min;
+                    boolean last = max - lower < width;
+                    long upper = last ? Long.MAX_VALUE : lower + width;
+                    String condition;
+                    if (first && last) {
+                        condition = column + " IS NOT NULL";
+                    } else if (first) {
+                        condition = column + " < " + upper;
+                    } else if (last) {
+                        condition = column + " >= " + lower;
+                    } else {
+                        condition = column + " >= " + lower + " AND " + column + " < " + upper;
+                    }
+                    partitions.add(new ExtractPartition(partitions.size(), "SELECT * FROM (" + baseSQL + ") DE_PART WHERE " + condition, condition));
+                    if (last) {
+                        break;
+                    }
+                    lower = upper;
+                }
+            }
+            String nullCondition = column + " IS NULL";
+            partitions.add(new ExtractPartition(partitions.size(), "SELECT * FROM (" + baseSQL + ") DE_PART WHERE " + nullCondition, nullCondition));
+            LogUtil.info("Extract dataset {} in {} partitions by " + field.getOriginName(), datasetTable.getId(), partitions.size());
+            return partitions;
+        } catch (Exception e) {
+            LogUtil.warn("Failed to plan extract partitions, fallback to paging: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 按数据源的并发限制执行所有分区，失败的分区单独重试
+     * 有分区最终失败时，尚未开始的分区不再执行，等执行中的分区结束后再抛出异常，避免调用方清理时仍有分区在写入
+     */
+    public void run(Datasource datasource, List<ExtractPartition> partitions, PartitionTask task) throws Exception {
+        Semaphore permits = sourcePermits.computeIfAbsent(datasource.getId(), id -> new Semaphore(Math.max(parallelism, 1)));
+        AtomicBoolean aborted = new AtomicBoolean(false);
+        List<Future<?>> futures = new ArrayList<>();
+        for (ExtractPartition partition : partitions) {
+            futures.add(executor.submit(() -> {
+                permits.acquire();
+                try {
+                    if (!aborted.get()) {
+                        runWithRetry(partition, task, aborted);
+                    }
+                } catch (Exception e) {
+                    aborted.set(true);
+                    throw e;
+                } finally {
+                    permits.release();
+                }
+                return null;
+            }));
+        }
+        Exception failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                aborted.set(true);
+                throw e;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void runWithRetry(ExtractPartition partition, PartitionTask task, AtomicBoolean aborted) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                task.run(partition, attempt);
+                return;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (PartitionAbortException e) {
+                throw e;
+            } catch (Exception e) {
+                if (attempt >= retries || aborted.get()) {
+                    throw e;
+                }
+                LogUtil.warn("Extract partition " + partition.getIndex() + " failed, retry " + (attempt + 1) + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 用于切分的整数列：单列整数主键优先，其次是名为 id 的整数列
+     */
+    private DatasetTableField splitField(Datasource datasource, DatasetTable datasetTable, List<DatasetTableField> fields) throws Exception {
+        Map<String, DatasetTableField> integerFields = new LinkedHashMap<>();
+        for (DatasetTableField field : fields) {
+            if (field.getDeExtractType() != null && field.getDeExtractType() == DeTypeConstants.DE_INT && field.getExtField() != null && field.getExtField() == 0) {
+                integerFields.put(field.getOriginName().toLowerCase(), field);
+            }
+        }
+        if (integerFields.isEmpty()) {
+            return null;
+        }
+        if (StringUtils.equalsIgnoreCase(datasetTable.getType(), DatasetType.DB.name())) {
+            Provider provider = ProviderFactory.getProvider(datasource.getType());
+            if (provider instanceof JdbcProvider) {
+                DatasourceRequest datasourceRequest = new DatasourceRequest();
+                datasourceRequest.setDatasource(datasource);
+                datasourceRequest.setTable(new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class).getTable());
+                List<String> keys = ((JdbcProvider) provider).primaryKeys(datasourceRequest);
+                if (keys.size() == 1 && integerFields.containsKey(keys.get(0).toLowerCase())) {
+                    return integerFields.get(keys.get(0).toLowerCase());
+                }
+            }
+        }
+        return integerFields.get("id");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 分区无法安全重试时抛出，不再重试，直接让整个抽取失败
+     */
+    public static class PartitionAbortException extends Exception {
+
+        public PartitionAbortException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public static class ExtractPartition {
+
+        private final int index;
+
+        private final String sql;
+
+        private final String condition;
+
+        ExtractPartition(int index, String sql, String condition) {
+            this.index = index;
+            this.sql = sql;
+            this.condition = condition;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getCondition() {
+            return condition;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.dataease.service.dataset;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dataease.commons.utils.Md5Utils;
+import io.dataease.plugins.common.base.domain.Datasource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过滤组件取值缓存
+ * key 由数据集、数据源以及最终执行的 SQL 计算得出，行列权限已体现在 SQL 中，因此不同权限的用户互不命中；
+ * 数据集变更、抽取完成、数据源变更时主动失效，其余情况按存活时间过期
+ */
+@Service
+public class FieldValuesCacheService {
+
+    @Value("${dataease.field-values-cache.ttl:300}")
+    private long ttl;
+
+    @Value("${dataease.field-values-cache.max-cells:2000000}")
+    private long maxCells;
+
+    private Cache<String, List<String[]>> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCells)
+                .weigher((String key, List<String[]> rows) -> rows.isEmpty() ? 1 : rows.size() * Math.max(rows.get(0).length, 1))
+                .expireAfterWrite(Math.max(ttl, 1), TimeUnit.SECONDS)
+                .build();
+    }
+
+    public String buildKey(String tableId, Datasource ds, String sql, String option) {
+        return tableId + "|" + ds.getId() + "|" + Md5Utils.md5(option + "|" + sql);
+    }
+
+    /**
+     * 读取缓存，未命中时加载并写入缓存
+     * 返回的结果与缓存共享，调用方只读不改
+     */
+    public List<String[]> getOrLoad(String key, Callable<List<String[]>> loader) throws Exception {
+        if (ttl <= 0) {
+            return loader.call();
+        }
+        List<String[]> rows = cache.getIfPresent(key);
+        if (rows == null) {
+            rows = loader.call();
+            if (rows == null) {
+                return null;
+            }
+            cache.put(key, rows);
+        }
+        return rows;
+    }
+
+    public void invalidateDataset(String tableId) {
+        cache.asMap().keySet().removeIf(key -> key.startsWith(tableId + "|"));
+    }
+
+    public void invalidateDatasource(String datasourceId) {
+        cache.asMap().keySet().removeIf(key -> key.contains("|" + datasourceId + "|"));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
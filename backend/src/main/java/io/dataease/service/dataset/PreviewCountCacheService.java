@@ -0,0 +1,65 @@
+package io.dataease.service.dataset;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.dataease.commons.utils.Md5Utils;
+import io.dataease.plugins.common.base.domain.Datasource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据集预览总行数缓存
+ * 翻页时计数查询不变，短时间内直接复用；key 包含最终执行的计数 SQL，行权限不同的用户互不命中；
+ * 数据集变更、抽取完成、数据源变更时主动失效
+ */
+@Service
+public class PreviewCountCacheService {
+
+    @Value("${dataease.preview-count-cache.ttl:60}")
+    private long ttl;
+
+    @Value("${dataease.preview-count-cache.max-size:10000}")
+    private long maxSize;
+
+    private Cache<String, Integer> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Math.max(ttl, 1), TimeUnit.SECONDS)
+                .build();
+    }
+
+    public String buildKey(String tableId, Datasource ds, String sql) {
+        return tableId + "|" + ds.getId() + "|" + Md5Utils.md5(sql);
+    }
+
+    public int getOrLoad(String key, Callable<Integer> loader) throws Exception {
+        if (ttl <= 0) {
+            return loader.call();
+        }
+        Integer total = cache.getIfPresent(key);
+        if (total == null) {
+            total = loader.call();
+            cache.put(key, total);
+        }
+        return total;
+    }
+
+    public void invalidateDataset(String tableId) {
+        cache.asMap().keySet().removeIf(key -> key.startsWith(tableId + "|"));
+    }
+
+    public void invalidateDatasource(String datasourceId) {
+        cache.asMap().keySet().removeIf(key -> key.contains("|" + datasourceId + "|"));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -1,9 +1,9 @@
 package io.dataease.service.dataset.impl.direct;
 
 import cn.hutool.core.collection.CollectionUtil;
-import com.google.gson.Gson;
 import io.dataease.commons.exception.DEException;
 import io.dataease.commons.model.BaseTreeNode;
+import io.dataease.commons.pool.DatasourceAdmission;
 import io.dataease.commons.utils.BeanUtils;
 import io.dataease.commons.utils.LogUtil;
 import io.dataease.commons.utils.TreeUtils;
@@ -14,17 +14,22 @@ import io.dataease.plugins.common.base.domain.Datasource;
 import io.dataease.commons.constants.ColumnPermissionConstants;
 import io.dataease.i18n.Translator;
 import io.dataease.plugins.common.constants.DatasetType;
+import io.dataease.plugins.common.constants.datasource.SQLConstants;
+import io.dataease.plugins.common.dto.chart.ChartCustomFilterItemDTO;
 import io.dataease.plugins.common.dto.chart.ChartFieldCustomFilterDTO;
 import io.dataease.plugins.common.dto.datasource.DeSortField;
 import io.dataease.plugins.common.request.datasource.DatasourceRequest;
 import io.dataease.plugins.common.request.permission.DataSetRowPermissionsTreeDTO;
 import io.dataease.plugins.datasource.provider.Provider;
 import io.dataease.plugins.datasource.query.QueryProvider;
+import io.dataease.plugins.common.util.ConstantsUtil;
 import io.dataease.plugins.xpack.auth.dto.request.ColumnPermissionItem;
 import io.dataease.provider.ProviderFactory;
+import io.dataease.provider.datasource.JdbcProvider;
+import io.dataease.provider.datasource.RowHandler;
+import io.dataease.provider.query.SQLUtils;
 import io.dataease.service.dataset.*;
 import io.dataease.service.datasource.DatasourceService;
-import io.dataease.dto.dataset.DataSetTableUnionDTO;
 import io.dataease.dto.dataset.DataTableInfoDTO;
 import io.dataease.service.engine.EngineService;
 import org.apache.commons.collections.CollectionUtils;
@@ -33,6 +38,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -40,6 +46,8 @@ import java.util.stream.Collectors;
 
 @Service("directDataSetFieldService")
 public class DirectFieldService implements DataSetFieldService {
+
+
     @Resource
     private DataSetTableFieldsService dataSetTableFieldsService;
     @Resource
@@ -47,13 +55,17 @@ public class DirectFieldService implements DataSetFieldService {
     @Resource
     private DatasourceService datasourceService;
     @Resource
-    private DataSetTableUnionService dataSetTableUnionService;
-    @Resource
     private PermissionService permissionService;
     @Resource
     private EngineService engineService;
     @Resource
     private PermissionsTreeService permissionsTreeService;
+    @Resource
+    private DatasetMetaCacheService datasetMetaCacheService;
+    @Resource
+    private FieldValuesCacheService fieldValuesCacheService;
+    @Resource
+    private DatasourceAdmission datasourceAdmission;
 
     @Override
     public List<Object> fieldValues(String fieldId, Long userId, Boolean userPermissions, Boolean rowAndColumnMgm) throws Exception {
@@ -69,6 +81,13 @@ public class DirectFieldService implements DataSetFieldService {
         return fieldValues(fieldIds, sortDTO, userId, userPermissions, false, rowAndColumnMgm);
     }
 
+    @Override
+    public List<Object> fieldValues(String fieldId, DeSortDTO sortDTO, Long userId, Boolean userPermissions, Boolean rowAndColumnMgm, String keyword, Integer limit) throws Exception {
+        List<String> fieldIds = new ArrayList<>();
+        fieldIds.add(fieldId);
+        return fieldValues(fieldIds, sortDTO, userId, userPermissions, false, rowAndColumnMgm, keyword, limit);
+    }
+
     public List<DeSortField> buildSorts(List<DatasetTableField> allFields, DeSortDTO sortDTO) {
         if (ObjectUtils.isEmpty(sortDTO) || StringUtils.isBlank(sortDTO.getId()) || StringUtils.isBlank(sortDTO.getSort()))
             return null;
@@ -88,28 +107,34 @@ public class DirectFieldService implements DataSetFieldService {
         }
         String id = sortDTO.getId();
         String sortStr = StringUtils.equalsIgnoreCase("chineseDesc", id) ? "desc" : "asc";
-        List<Object> result = CollectionUtil.sort(list, (v1, v2) -> {
-            Collator instance = Collator.getInstance(Locale.CHINESE);
-            if (StringUtils.equals("desc", sortStr)) {
-                return instance.compare(v2, v1);
-            }
-            return instance.compare(v1, v2);
-        });
-
+        // 每个值只计算一次排序键，比较时不再重复创建 Collator
+        Collator instance = Collator.getInstance(Locale.CHINESE);
+        Comparator<CollationKey> comparator = Comparator.nullsLast(Comparator.naturalOrder());
+        if (StringUtils.equals("desc", sortStr)) {
+            comparator = comparator.reversed();
+        }
+        Map<Object, CollationKey> keys = new HashMap<>();
+        list.forEach(value -> keys.computeIfAbsent(value, v -> v == null ? null : instance.getCollationKey(v.toString())));
+        List<Object> result = new ArrayList<>(list);
+        result.sort(Comparator.comparing(keys::get, comparator));
         return result;
     }
 
     @Override
     public List<Object> fieldValues(List<String> fieldIds, DeSortDTO sortDTO, Long userId, Boolean userPermissions, Boolean needMapping, Boolean rowAndColumnMgm) throws Exception {
+        return fieldValues(fieldIds, sortDTO, userId, userPermissions, needMapping, rowAndColumnMgm, null, null);
+    }
+
+    @Override
+    public List<Object> fieldValues(List<String> fieldIds, DeSortDTO sortDTO, Long userId, Boolean userPermissions, Boolean needMapping, Boolean rowAndColumnMgm, String keyword, Integer limit) throws Exception {
         String fieldId = fieldIds.get(0);
         DatasetTableField field = dataSetTableFieldsService.selectByPrimaryKey(fieldId);
         if (field == null || StringUtils.isEmpty(field.getTableId())) return null;
 
-        DatasetTable datasetTable = dataSetTableService.get(field.getTableId());
+        DatasetTable datasetTable = datasetMetaCacheService.getTable(field.getTableId());
         if (ObjectUtils.isEmpty(datasetTable) || StringUtils.isEmpty(datasetTable.getName())) return null;
 
-        DatasetTableField datasetTableField = DatasetTableField.builder().tableId(field.getTableId()).checked(Boolean.TRUE).build();
-        List<DatasetTableField> fields = dataSetTableFieldsService.list(datasetTableField);
+        List<DatasetTableField> fields = datasetMetaCacheService.getCheckedFields(field.getTableId());
 
         List<DeSortField> deSortFields = buildSorts(fields, sortDTO);
 
@@ -148,57 +173,87 @@ public class DirectFieldService implements DataSetFieldService {
                 return new ArrayList<>();
             }
         }
-
-
         DatasourceRequest datasourceRequest = new DatasourceRequest();
         Provider datasourceProvider = null;
+        final int maxCount = limit == null ? 0 : Math.max(limit, 0);
+        // 带关键字的排序查询需要按取值去重后再取前 limit 个：排序字段一并查出，外层分组
+        boolean groupSorted = needSort && StringUtils.isNotBlank(keyword) && maxCount > 0;
+        List<DatasetTableField> queryFields = permissionFields;
+        boolean isGroup = !needSort;
+        List<DeSortField> querySorts = deSortFields;
         if (datasetTable.getMode() == 0) {// 直连
             if (StringUtils.isEmpty(datasetTable.getDataSourceId())) return null;
             Datasource ds = datasourceService.get(datasetTable.getDataSourceId());
             if (StringUtils.isNotEmpty(ds.getStatus()) && ds.getStatus().equalsIgnoreCase("Error")) {
                 throw new Exception(Translator.get("i18n_invalid_ds"));
             }
+            if (StringUtils.isNotBlank(keyword)) {
+                customFilter.add(keywordFilter(field, keyword, ds.getType()));
+            }
             datasourceProvider = ProviderFactory.getProvider(ds.getType());
             datasourceRequest = new DatasourceRequest();
             datasourceRequest.setDatasource(ds);
-            DataTableInfoDTO dataTableInfoDTO = new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class);
+            DataTableInfoDTO dataTableInfoDTO = datasetMetaCacheService.parseInfo(datasetTable.getInfo());
             QueryProvider qp = ProviderFactory.getQueryProvider(ds.getType());
+            groupSorted = groupSorted && !StringUtils.equalsAnyIgnoreCase(ds.getType(), "es", "api", "mongo");
+            if (groupSorted) {
+                queryFields = new ArrayList<>(permissionFields);
+                queryFields.addAll(deSortFields);
+                isGroup = false;
+                querySorts = null;
+            }
             if (StringUtils.equalsIgnoreCase(datasetTable.getType(), DatasetType.DB.toString())) {
                 datasourceRequest.setTable(dataTableInfoDTO.getTable());
-                datasourceRequest.setQuery(qp.createQuerySQL(dataTableInfoDTO.getTable(), permissionFields, !needSort, ds, customFilter, rowPermissionsTree, deSortFields));
+                datasourceRequest.setQuery(qp.createQuerySQL(dataTableInfoDTO.getTable(), queryFields, isGroup, ds, customFilter, rowPermissionsTree, querySorts));
             } else if (StringUtils.equalsIgnoreCase(datasetTable.getType(), DatasetType.SQL.toString())) {
                 String sql = dataTableInfoDTO.getSql();
                 if (dataTableInfoDTO.isBase64Encryption()) {
                     sql = new String(java.util.Base64.getDecoder().decode(sql));
                 }
                 sql = dataSetTableService.handleVariableDefaultValue(sql, null, ds.getType(), false);
-                datasourceRequest.setQuery(qp.createQuerySQLAsTmp(sql, permissionFields, !needSort, customFilter, rowPermissionsTree, deSortFields));
+                datasourceRequest.setQuery(qp.createQuerySQLAsTmp(sql, queryFields, isGroup, customFilter, rowPermissionsTree, querySorts));
             } else if (StringUtils.equalsIgnoreCase(datasetTable.getType(), DatasetType.CUSTOM.toString())) {
-                DataTableInfoDTO dt = new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class);
-                List<DataSetTableUnionDTO> listUnion = dataSetTableUnionService.listByTableId(dt.getList().get(0).getTableId());
-                String sql = dataSetTableService.getCustomSQLDatasource(dt, listUnion, ds);
-                datasourceRequest.setQuery(qp.createQuerySQLAsTmp(sql, permissionFields, !needSort, customFilter, rowPermissionsTree, deSortFields));
+                String sql = datasetMetaCacheService.getCustomSql(datasetTable, ds);
+                datasourceRequest.setQuery(qp.createQuerySQLAsTmp(sql, queryFields, isGroup, customFilter, rowPermissionsTree, querySorts));
             } else if (StringUtils.equalsIgnoreCase(datasetTable.getType(), DatasetType.UNION.toString())) {
-                DataTableInfoDTO dt = new Gson().fromJson(datasetTable.getInfo(), DataTableInfoDTO.class);
-                String sql = (String) dataSetTableService.getUnionSQLDatasource(dt, ds).get("sql");
-                datasourceRequest.setQuery(qp.createQuerySQLAsTmp(sql, permissionFields, !needSort, customFilter, rowPermissionsTree, deSortFields));
+                String sql = datasetMetaCacheService.getUnionSql(datasetTable, ds);
+                datasourceRequest.setQuery(qp.createQuerySQLAsTmp(sql, queryFields, isGroup, customFilter, rowPermissionsTree, querySorts));
             }
         } else if (datasetTable.getMode() == 1) {// 抽取
             // 连接doris，构建doris数据源查询
             Datasource ds = engineService.getDeEngine();
+            if (StringUtils.isNotBlank(keyword)) {
+                customFilter.add(keywordFilter(field, keyword, ds.getType()));
+            }
             datasourceProvider = ProviderFactory.getProvider(ds.getType());
             datasourceRequest = new DatasourceRequest();
             datasourceRequest.setDatasource(ds);
             String tableName = "ds_" + datasetTable.getId().replaceAll("-", "_");
             datasourceRequest.setTable(tableName);
             QueryProvider qp = ProviderFactory.getQueryProvider(ds.getType());
-            datasourceRequest.setQuery(qp.createQuerySQL(tableName, permissionFields, !needSort, null, customFilter, rowPermissionsTree, deSortFields));
+            groupSorted = groupSorted && !StringUtils.equalsAnyIgnoreCase(ds.getType(), "es", "api", "mongo");
+            if (groupSorted) {
+                queryFields = new ArrayList<>(permissionFields);
+                queryFields.addAll(deSortFields);
+                isGroup = false;
+                querySorts = null;
+            }
+            datasourceRequest.setQuery(qp.createQuerySQL(tableName, queryFields, isGroup, null, customFilter, rowPermissionsTree, querySorts));
+        }
+        if (groupSorted && StringUtils.isNotEmpty(datasourceRequest.getQuery())) {
+            datasourceRequest.setQuery(groupSortedSQL(datasourceRequest.getQuery(), datasourceRequest.getDatasource().getType(), permissionFields.size(), deSortFields));
         }
         LogUtil.info(datasourceRequest.getQuery());
         datasourceRequest.setPermissionFields(permissionFields);
-        List<String[]> rows = datasourceProvider.getData(datasourceRequest);
+        final Provider provider = datasourceProvider;
+        final DatasourceRequest request = datasourceRequest;
+        // 分组查询的结果本身不重复，可直接下推行数；未分组的排序查询需读完全部匹配行再去重
+        final int maxRows = needSort && !groupSorted ? 0 : maxCount;
+        String cacheKey = fieldValuesCacheService.buildKey(datasetTable.getId(), request.getDatasource(), request.getQuery(), needMapping + "|" + needSort + "|" + maxCount);
+        List<String[]> rows = fieldValuesCacheService.getOrLoad(cacheKey, () -> datasourceAdmission.call(request.getDatasource(), DatasourceAdmission.Priority.INTERACTIVE,
+                () -> queryValues(provider, request, needMapping, maxCount, maxRows)));
         if (!needMapping) {
-            List<Object> results = rows.stream().map(row -> row[0]).distinct().collect(Collectors.toList());
+            List<Object> results = rows.stream().map(row -> row[0]).collect(Collectors.toList());
             return results;
         }
         Set<String> pkSet = new HashSet<>();
@@ -209,6 +264,71 @@ public class DirectFieldService implements DataSetFieldService {
 
     }
 
+    /**
+     * 查询不重复的字段值，limit 大于 0 时最多返回 limit 个
+     * 分组查询的结果本身不重复，行数限制直接下推给驱动；带排序的查询未分组，边读边去重，够数后不再保留后续行
+     *
+     * @param maxRows 下推给驱动的最大行数，0 表示不限制
+     */
+    private List<String[]> queryValues(Provider provider, DatasourceRequest request, boolean needMapping, int limit, int maxRows) throws Exception {
+        Map<String, String[]> values = new LinkedHashMap<>();
+        RowHandler handler = row -> {
+            if (limit > 0 && values.size() >= limit) {
+                return;
+            }
+            String key = needMapping ? String.join(TreeUtils.SEPARATOR, row) : row[0];
+            if (!values.containsKey(key)) {
+                values.put(key, needMapping ? row.clone() : new String[]{row[0]});
+            }
+        };
+        if (provider instanceof JdbcProvider) {
+            ((JdbcProvider) provider).streamData(request, handler, maxRows);
+        } else {
+            for (String[] row : provider.getData(request)) {
+                handler.handle(row);
+            }
+        }
+        return new ArrayList<>(values.values());
+    }
+
+    /**
+     * 把查出取值列和排序列的查询包装为按取值分组的查询，升序取每组排序列的最小值、降序取最大值排序，
+     * 与未分组查询逐行去重后的先后顺序一致
+     */
+    private String groupSortedSQL(String sql, String dsType, int valueCount, List<DeSortField> sortFields) {
+        String aliasFix = ConstantsUtil.constantsValue(dsType, "ALIAS_FIX");
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < valueCount; i++) {
+            values.add(String.format(aliasFix, String.format(SQLConstants.FIELD_ALIAS_X_PREFIX, i)));
+        }
+        List<String> orders = new ArrayList<>();
+        for (int i = 0; i < sortFields.size(); i++) {
+            String alias = String.format(aliasFix, String.format(SQLConstants.FIELD_ALIAS_X_PREFIX, valueCount + i));
+            boolean desc = StringUtils.equalsIgnoreCase(sortFields.get(i).getOrderDirection(), "desc");
+            orders.add((desc ? "MAX(" : "MIN(") + alias + ") " + (desc ? "DESC" : "ASC"));
+        }
+        String columns = String.join(", ", values);
+        return "SELECT " + columns + " FROM (" + sql + ") DE_GROUP_TMP GROUP BY " + columns + " ORDER BY " + String.join(", ", orders);
+    }
+
+    /**
+     * 过滤组件搜索，按包含关键字匹配
+     */
+    private ChartFieldCustomFilterDTO keywordFilter(DatasetTableField field, String keyword, String dsType) {
+        ChartCustomFilterItemDTO itemDTO = new ChartCustomFilterItemDTO();
+        itemDTO.setTerm("like");
+        // 值会直接拼入 SQL，关键字中的 % 和 _ 按字面匹配
+        itemDTO.setValue(SQLUtils.transLikeKeyword(keyword, dsType));
+        List<ChartCustomFilterItemDTO> filterItemDTOS = new ArrayList<>();
+        filterItemDTOS.add(itemDTO);
+        ChartFieldCustomFilterDTO chartFieldCustomFilterDTO = new ChartFieldCustomFilterDTO();
+        chartFieldCustomFilterDTO.setField(field);
+        chartFieldCustomFilterDTO.setId(field.getId());
+        chartFieldCustomFilterDTO.setFilter(filterItemDTOS);
+        chartFieldCustomFilterDTO.setLogic("and");
+        return chartFieldCustomFilterDTO;
+    }
+
     private List<BaseTreeNode> buildTreeNode(String[] row, Set<String> pkSet) {
         List<BaseTreeNode> nodes = new ArrayList<>();
         List<String> parentPkList = new ArrayList<>();
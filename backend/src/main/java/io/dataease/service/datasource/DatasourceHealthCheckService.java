@@ -0,0 +1,295 @@
+package io.dataease.service.datasource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.plugins.common.request.datasource.DatasourceRequest;
+import io.dataease.plugins.datasource.provider.Provider;
+import io.dataease.provider.ProviderFactory;
+import io.dataease.provider.datasource.JdbcProvider;
+import io.dataease.provider.datasource.QueryRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据源健康检查
+ * 所有数据源在有界线程池中并行探测，JDBC 数据源使用带连接/读取超时的直连执行轻量校验语句，其他数据源沿用 provider.checkStatus；
+ * 每个探测从开始执行时计算独立的截止时间，超时即判定失败并中止执行中的语句，不可达的主机不会拖慢整轮检查；
+ * 保留每个数据源最近若干次的结果用于判断状态是否频繁变化，并统计探测耗时
+ */
+@Service
+public class DatasourceHealthCheckService {
+
+    @Value("${dataease.datasource.health-check.threads:8}")
+    private int threads;
+
+    @Value("${dataease.datasource.health-check.timeout:10}")
+    private int timeoutSeconds;
+
+    @Value("${dataease.datasource.health-check.history-size:10}")
+    private int historySize;
+
+    @Value("${dataease.datasource.health-check.flapping-threshold:3}")
+    private int flappingThreshold;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<String, Deque<ProbeResult>> histories = new ConcurrentHashMap<>();
+
+    private final AtomicLong probes = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private volatile long lastSweepTime;
+
+    private volatile long lastSweepDuration;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("ds-health-check-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 并行检查一批数据源，返回 数据源 id -> 本次结果
+     */
+    public Map<String, ProbeResult> checkAll(List<Datasource> datasources) {
+        long start = System.currentTimeMillis();
+        Map<String, ProbeTask> tasks = new LinkedHashMap<>();
+        long timeoutMillis = Math.max(timeoutSeconds, 1) * 1000L;
+        for (Datasource datasource : datasources) {
+            // 前面的探测每批最多占用一个超时时间，超过按排队位置算出的时间仍未开始执行时视为超时
+            long startDeadline = start + (tasks.size() / Math.max(threads, 1) + 1) * timeoutMillis;
+            ProbeTask task = new ProbeTask(datasource, startDeadline);
+            task.future = executor.submit(QueryRegistry.propagate(task.context, task::run));
+            tasks.put(datasource.getId(), task);
+        }
+        Map<String, ProbeResult> results = new LinkedHashMap<>();
+        for (Datasource datasource : datasources) {
+            ProbeResult result;
+            try {
+                result = tasks.get(datasource.getId()).await();
+            } catch (InterruptedException e) {
+                tasks.values().forEach(ProbeTask::cancel);
+                Thread.currentThread().interrupt();
+                break;
+            }
+            record(datasource.getId(), result);
+            results.put(datasource.getId(), result);
+        }
+        lastSweepTime = start;
+        lastSweepDuration = System.currentTimeMillis() - start;
+        LogUtil.info("Datasource health check finished: " + results.size() + " datasources in " + lastSweepDuration + " ms");
+        return results;
+    }
+
+    private ProbeResult probe(Datasource datasource) {
+        long start = System.currentTimeMillis();
+        try {
+            Provider provider = ProviderFactory.getProvider(datasource.getType());
+            DatasourceRequest datasourceRequest = new DatasourceRequest();
+            datasourceRequest.setDatasource(datasource);
+            String status = provider instanceof JdbcProvider
+                    ? ((JdbcProvider) provider).probe(datasourceRequest, timeoutSeconds)
+                    : provider.checkStatus(datasourceRequest);
+            return new ProbeResult(true, System.currentTimeMillis() - start, status);
+        } catch (Exception e) {
+            LogUtil.error("Datasource is invalid: " + datasource.getName(), e);
+            return new ProbeResult(false, System.currentTimeMillis() - start, e.getMessage());
+        }
+    }
+
+    /**
+     * 单个数据源的探测，超时时间从探测开始执行时计算，排队等待的时间不计入；
+     * 线程池被卡住的探测占满时，排队超过 startDeadline 仍未开始的探测直接按超时处理
+     */
+    private class ProbeTask {
+
+        private final Datasource datasource;
+
+        private final QueryRegistry.QueryContext context = QueryRegistry.child();
+
+        private final long startDeadline;
+
+        private volatile long startTime;
+
+        private Future<ProbeResult> future;
+
+        ProbeTask(Datasource datasource, long startDeadline) {
+            this.datasource = datasource;
+            this.startDeadline = startDeadline;
+        }
+
+        ProbeResult run() {
+            startTime = System.currentTimeMillis();
+            return probe(datasource);
+        }
+
+        ProbeResult await() throws InterruptedException {
+            long timeoutMillis = Math.max(timeoutSeconds, 1) * 1000L;
+            while (true) {
+                long started = startTime;
+                // 尚未开始执行时等到开始期限后重新判断
+                long deadline = started > 0 ? started + timeoutMillis : startDeadline;
+                try {
+                    return future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    started = startTime;
+                    long now = System.currentTimeMillis();
+                    if (started > 0 && now >= started + timeoutMillis) {
+                        cancel();
+                        timeouts.incrementAndGet();
+                        return new ProbeResult(false, timeoutMillis, "Health check timeout");
+                    }
+                    if (started == 0 && now >= startDeadline) {
+                        cancel();
+                        timeouts.incrementAndGet();
+                        return new ProbeResult(false, 0, "Health check timeout: waiting for a free probe thread");
+                    }
+                } catch (CancellationException e) {
+                    return new ProbeResult(false, 0, "Health check cancelled");
+                } catch (ExecutionException e) {
+                    return new ProbeResult(false, 0, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * future.cancel 无法中断驱动的网络读写，执行中的校验语句通过 Statement.cancel() 中止
+         */
+        void cancel() {
+            future.cancel(true);
+            context.cancel("Health check timeout");
+        }
+    }
+
+    private void record(String datasourceId, ProbeResult result) {
+        probes.incrementAndGet();
+        if (!result.isSuccess()) {
+            failures.incrementAndGet();
+        }
+        Deque<ProbeResult> history = histories.computeIfAbsent(datasourceId, id -> new ArrayDeque<>());
+        synchronized (history) {
+            history.addLast(result);
+            while (history.size() > Math.max(historySize, 1)) {
+                history.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * 最近的检查结果中成功/失败切换的次数达到阈值时认为状态不稳定
+     */
+    public boolean isFlapping(String datasourceId) {
+        Deque<ProbeResult> history = histories.get(datasourceId);
+        if (history == null) {
+            return false;
+        }
+        int changes = 0;
+        synchronized (history) {
+            Boolean last = null;
+            for (ProbeResult result : history) {
+                if (last != null && last != result.isSuccess()) {
+                    changes++;
+                }
+                last = result.isSuccess();
+            }
+        }
+        return changes >= flappingThreshold;
+    }
+
+    /**
+     * 数据源被删除后清理历史记录
+     */
+    public void remove(String datasourceId) {
+        histories.remove(datasourceId);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("probes", probes.get());
+        stats.put("failures", failures.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("lastSweepTime", lastSweepTime);
+        stats.put("lastSweepDuration", lastSweepDuration);
+        Map<String, Object> datasources = new LinkedHashMap<>();
+        histories.forEach((id, history) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            synchronized (history) {
+                if (history.isEmpty()) {
+                    return;
+                }
+                ProbeResult last = history.peekLast();
+                long total = 0;
+                long max = 0;
+                int success = 0;
+                for (ProbeResult result : history) {
+                    total += result.getLatency();
+                    max = Math.max(max, result.getLatency());
+                    success += result.isSuccess() ? 1 : 0;
+                }
+                item.put("lastSuccess", last.isSuccess());
+                item.put("lastLatency", last.getLatency());
+                item.put("lastMessage", last.getMessage());
+                item.put("lastTime", last.getTime());
+                item.put("avgLatency", total / history.size());
+                item.put("maxLatency", max);
+                item.put("successRate", (double) success / history.size());
+            }
+            item.put("flapping", isFlapping(id));
+            datasources.put(id, item);
+        });
+        stats.put("datasources", datasources);
+        return stats;
+    }
+
+    public static class ProbeResult {
+
+        private final long time = System.currentTimeMillis();
+
+        private final boolean success;
+
+        private final long latency;
+
+        private final String message;
+
+        ProbeResult(boolean success, long latency, String message) {
+            this.success = success;
+            this.latency = latency;
+            this.message = message;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public long getLatency() {
+            return latency;
+        }
+
+        /**
+         * 成功时为数据源状态，失败时为错误信息
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.dataease.service.datasource;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+
+/**
+ * 连接池预热状态，预热未完成时 warming 中列出仍在创建的连接池
+ * 未预热的连接池会在第一次查询时创建，服务本身可用，状态始终为 UP，预热进度只放在明细中
+ */
+@Component
+public class DatasourcePoolHealthIndicator implements HealthIndicator {
+
+    @Resource
+    private DatasourcePoolWarmUpService datasourcePoolWarmUpService;
+
+    @Override
+    public Health health() {
+        Map<String, Object> status = datasourcePoolWarmUpService.status();
+        return Health.up()
+                .withDetail("ready", status.get("ready"))
+                .withDetail("warming", status.get("warming"))
+                .withDetail("counts", status.get("counts"))
+                .build();
+    }
+}
@@ -0,0 +1,223 @@
+package io.dataease.service.datasource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.ext.ExtDataSourceMapper;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.plugins.common.request.datasource.DatasourceRequest;
+import io.dataease.plugins.datasource.provider.Provider;
+import io.dataease.provider.ProviderFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 数据源连接池预热
+ * 启动时在独立的有界线程池中并行创建连接池，单个数据源超时不影响其他数据源；
+ * 只有被直连数据集引用的数据源在启动时预热，其余数据源在第一次查询时由 provider 创建连接池；
+ * 记录每个连接池的状态，供健康检查查看哪些连接池仍在预热
+ */
+@Service
+public class DatasourcePoolWarmUpService {
+
+    public static final String PENDING = "pending";
+
+    public static final String WARMING = "warming";
+
+    public static final String READY = "ready";
+
+    public static final String LAZY = "lazy";
+
+    public static final String FAILED = "failed";
+
+    public static final String TIMEOUT = "timeout";
+
+    @Value("${dataease.datasource.warm-up.threads:4}")
+    private int threads;
+
+    @Value("${dataease.datasource.warm-up.timeout:60}")
+    private int timeoutSeconds;
+
+    @Value("${dataease.datasource.warm-up.lazy:true}")
+    private boolean lazy;
+
+    @Resource
+    private ExtDataSourceMapper extDataSourceMapper;
+
+    private final Map<String, PoolState> states = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    private ScheduledExecutorService timer;
+
+    private volatile boolean started;
+
+    /**
+     * 并行预热连接池，立即返回
+     */
+    public synchronized void warmUp(List<Datasource> datasources) {
+        if (executor == null) {
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new ThreadFactoryBuilder().setNameFormat("ds-pool-warm-up-%d").setDaemon(true).build());
+            executor.allowCoreThreadTimeOut(true);
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("ds-pool-warm-up-timer").setDaemon(true).build());
+        }
+        started = true;
+        Set<String> eager = lazy ? new HashSet<>(extDataSourceMapper.directQueryDatasourceIds()) : null;
+        for (Datasource datasource : datasources) {
+            if (eager != null && !eager.contains(datasource.getId())) {
+                states.put(datasource.getId(), new PoolState(datasource.getName(), LAZY));
+                continue;
+            }
+            PoolState state = new PoolState(datasource.getName(), PENDING);
+            states.put(datasource.getId(), state);
+            executor.execute(() -> create(datasource, state));
+        }
+    }
+
+    private void create(Datasource datasource, PoolState state) {
+        state.start();
+        Thread worker = Thread.currentThread();
+        // 超时只标记状态并中断，连接池仍可在第一次查询时创建
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if (state.finish(TIMEOUT, "Warm up timeout after " + timeoutSeconds + "s")) {
+                worker.interrupt();
+                LogUtil.warn("Timeout to init datasource connection pool: " + datasource.getName());
+            }
+        }, timeoutSeconds, TimeUnit.SECONDS);
+        try {
+            Provider datasourceProvider = ProviderFactory.getProvider(datasource.getType());
+            DatasourceRequest datasourceRequest = new DatasourceRequest();
+            datasourceRequest.setDatasource(datasource);
+            datasourceProvider.handleDatasource(datasourceRequest, "add");
+            if (state.finish(READY, null)) {
+                LogUtil.info("Success to init datasource connection pool: {}, {} ms", datasource.getName(), state.duration());
+            }
+        } catch (Exception e) {
+            if (state.finish(FAILED, e.getMessage())) {
+                LogUtil.error("Failed to init datasource: " + datasource.getName(), e);
+            }
+        } finally {
+            timeout.cancel(false);
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * 新增、更新数据源后连接池已经重建
+     */
+    public void ready(Datasource datasource) {
+        PoolState state = new PoolState(datasource.getName(), READY);
+        states.put(datasource.getId(), state);
+    }
+
+    /**
+     * provider 创建了连接池，未预热的连接池在第一次查询时创建后标记为就绪
+     */
+    public void created(String datasourceId) {
+        PoolState state = datasourceId == null ? null : states.get(datasourceId);
+        if (state != null) {
+            state.created();
+        }
+    }
+
+    public void remove(String datasourceId) {
+        states.remove(datasourceId);
+    }
+
+    /**
+     * 仍在排队或创建中的连接池
+     */
+    public List<String> warming() {
+        List<String> warming = new ArrayList<>();
+        states.forEach((id, state) -> {
+            if (PENDING.equals(state.status) || WARMING.equals(state.status)) {
+                warming.add(state.name);
+            }
+        });
+        return warming;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Integer> counts = new TreeMap<>();
+        Map<String, Object> pools = new LinkedHashMap<>();
+        states.forEach((id, state) -> {
+            counts.merge(state.status, 1, Integer::sum);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", state.name);
+            item.put("status", state.status);
+            if (state.startTime > 0) {
+                item.put("duration", state.duration());
+            }
+            if (state.message != null) {
+                item.put("message", state.message);
+            }
+            pools.put(id, item);
+        });
+        Map<String, Object> status = new LinkedHashMap<>();
+        List<String> warming = warming();
+        status.put("ready", started && warming.isEmpty());
+        status.put("warming", warming);
+        status.put("counts", counts);
+        status.put("pools", pools);
+        return status;
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            timer.shutdownNow();
+        }
+    }
+
+    private static class PoolState {
+
+        private final String name;
+
+        private volatile String status;
+
+        private volatile String message;
+
+        private volatile long startTime;
+
+        private volatile long endTime;
+
+        PoolState(String name, String status) {
+            this.name = name;
+            this.status = status;
+        }
+
+        void start() {
+            startTime = System.currentTimeMillis();
+            status = WARMING;
+        }
+
+        /**
+         * 只有预热中的状态可以结束，返回是否由本次调用结束
+         */
+        synchronized boolean finish(String status, String message) {
+            if (!PENDING.equals(this.status) && !WARMING.equals(this.status)) {
+                return false;
+            }
+            this.endTime = System.currentTimeMillis();
+            this.status = status;
+            this.message = message;
+            return true;
+        }
+
+        synchronized void created() {
+            if (LAZY.equals(status)) {
+                status = READY;
+            }
+        }
+
+        long duration() {
+            return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+        }
+    }
+}
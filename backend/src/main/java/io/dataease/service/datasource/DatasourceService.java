@@ -18,6 +18,8 @@ import io.dataease.commons.constants.DePermissionType;
 import io.dataease.commons.constants.SysAuthConstants;
 import io.dataease.commons.exception.DEException;
 import io.dataease.commons.model.AuthURD;
+import io.dataease.commons.pool.DatasourceAdmission;
+import io.dataease.commons.pool.DatasourceExecutorPool;
 import io.dataease.commons.utils.AuthUtils;
 import io.dataease.commons.utils.CommonThreadPool;
 import io.dataease.commons.utils.LogUtil;
@@ -48,7 +50,10 @@ import io.dataease.plugins.datasource.provider.Provider;
 import io.dataease.provider.ProviderFactory;
 import io.dataease.provider.datasource.ApiProvider;
 import io.dataease.service.ScheduleService;
+import io.dataease.service.chart.ChartViewResultCacheService;
 import io.dataease.service.dataset.DataSetGroupService;
+import io.dataease.service.dataset.FieldValuesCacheService;
+import io.dataease.service.dataset.PreviewCountCacheService;
 import io.dataease.service.message.DeMsgutil;
 import io.dataease.service.sys.SysAuthService;
 import io.dataease.service.system.SystemParameterService;
@@ -81,6 +86,15 @@ public class DatasourceService {
     @Resource
     private CommonThreadPool commonThreadPool;
     @Resource
+    private DatasourceHealthCheckService datasourceHealthCheckService;
+    @Resource
+    private DatasourcePoolWarmUpService datasourcePoolWarmUpService;
+    @Resource
+    private DatasourceAdmission datasourceAdmission;
+
+    @Resource
+    private DatasourceExecutorPool datasourceExecutorPool;
+    @Resource
     private SysAuthService sysAuthService;
     @Resource
     private Environment env;
@@ -94,6 +108,12 @@ public class DatasourceService {
     private UtilMapper utilMapper;
     @Resource
     private ExtTaskInstanceMapper extTaskInstanceMapper;
+    @Resource
+    private ChartViewResultCacheService chartViewResultCacheService;
+    @Resource
+    private FieldValuesCacheService fieldValuesCacheService;
+    @Resource
+    private PreviewCountCacheService previewCountCacheService;
 
     public Collection<DataSourceType> types() {
         Collection<DataSourceType> types = new ArrayList<>();
@@ -152,6 +172,11 @@ public class DatasourceService {
                 DatasourceRequest datasourceRequest = new DatasourceRequest();
                 datasourceRequest.setDatasource(datasource);
                 datasourceProvider.handleDatasource(datasourceRequest, type);
+                if (StringUtils.equals(type, "delete")) {
+                    datasourcePoolWarmUpService.remove(datasource.getId());
+                } else {
+                    datasourcePoolWarmUpService.ready(datasource);
+                }
                 LogUtil.info("Success to {} datasource connection pool: {}", type, datasource.getName());
             } catch (Exception e) {
                 LogUtil.error("Failed to handle datasource connection pool: " + datasource.getName(), e);
@@ -272,6 +297,9 @@ public class DatasourceService {
         Datasource datasource = datasourceMapper.selectByPrimaryKey(datasourceId);
         datasourceMapper.deleteByPrimaryKey(datasourceId);
         handleConnectionPool(datasource, "delete");
+        datasourceHealthCheckService.remove(datasourceId);
+        datasourceAdmission.remove(datasourceId);
+        datasourceExecutorPool.remove(datasourceId);
         return ResultHolder.success("success");
     }
 
@@ -296,6 +324,11 @@ public class DatasourceService {
         checkAndUpdateDatasourceStatus(datasource);
         datasourceMapper.updateByExampleSelective(datasource, example);
         handleConnectionPool(id);
+        chartViewResultCacheService.invalidateDatasource(id);
+        fieldValuesCacheService.invalidateDatasource(id);
+        previewCountCacheService.invalidateDatasource(id);
+        datasourceAdmission.remove(id);
+        datasourceExecutorPool.remove(id);
 
         if (datasource.getType().equalsIgnoreCase("api")) {
             DatasetTableExample datasetTableExample = new DatasetTableExample();
@@ -489,15 +522,7 @@ public class DatasourceService {
 
     public void initAllDataSourceConnectionPool() {
         List<Datasource> datasources = datasourceMapper.selectByExampleWithBLOBs(new DatasourceExample());
-        datasources.forEach(datasource -> {
-            commonThreadPool.addTask(() -> {
-                try {
-                    handleConnectionPool(datasource, "add");
-                } catch (Exception e) {
-                    LogUtil.error("Failed to init datasource: " + datasource.getName(), e);
-                }
-            });
-        });
+        datasourcePoolWarmUpService.warmUp(datasources);
     }
 
     public void checkName(String datasourceName, String type, String id) {
@@ -533,7 +558,35 @@ public class DatasourceService {
 
     public void updateDatasourceStatus() {
         List<Datasource> datasources = datasourceMapper.selectByExampleWithBLOBs(new DatasourceExample());
-        datasources.forEach(datasource -> checkAndUpdateDatasourceStatus(datasource, true));
+        Map<String, DatasourceHealthCheckService.ProbeResult> results = datasourceHealthCheckService.checkAll(datasources);
+        datasources.forEach(datasource -> {
+            DatasourceHealthCheckService.ProbeResult result = results.get(datasource.getId());
+            if (result != null) {
+                updateDatasourceStatus(datasource, result);
+            }
+        });
+    }
+
+    private void updateDatasourceStatus(Datasource datasource, DatasourceHealthCheckService.ProbeResult result) {
+        Datasource record = new Datasource();
+        DatasourceExample example = new DatasourceExample();
+        example.createCriteria().andIdEqualTo(datasource.getId());
+        if (result.isSuccess()) {
+            record.setStatus(result.getMessage());
+            datasourceMapper.updateByExampleSelective(record, example);
+            return;
+        }
+        if (StringUtils.equals(datasource.getStatus(), "Error")) {
+            return;
+        }
+        record.setStatus("Error");
+        // 状态频繁变化时只记录日志，不再反复通知用户
+        if (datasourceHealthCheckService.isFlapping(datasource.getId())) {
+            LogUtil.warn("Datasource status is flapping: " + datasource.getName());
+        } else {
+            sendWebMsg(datasource);
+        }
+        datasourceMapper.updateByExampleSelective(record, example);
     }
 
     public ApiDefinition checkApiDatasource(ApiDefinition apiDefinition) throws Exception {
@@ -560,27 +613,6 @@ public class DatasourceService {
         }
     }
 
-    private void checkAndUpdateDatasourceStatus(Datasource datasource, Boolean withMsg) {
-        Datasource record = new Datasource();
-        DatasourceExample example = new DatasourceExample();
-        example.createCriteria().andIdEqualTo(datasource.getId());
-        try {
-            Provider datasourceProvider = ProviderFactory.getProvider(datasource.getType());
-            DatasourceRequest datasourceRequest = new DatasourceRequest();
-            datasourceRequest.setDatasource(datasource);
-            String status = datasourceProvider.checkStatus(datasourceRequest);
-            record.setStatus(status);
-            datasourceMapper.updateByExampleSelective(record, example);
-        } catch (Exception e) {
-            Datasource temp = datasourceMapper.selectByPrimaryKey(datasource.getId());
-            record.setStatus("Error");
-            if (!StringUtils.equals(temp.getStatus(), "Error")) {
-                sendWebMsg(datasource);
-                datasourceMapper.updateByExampleSelective(record, example);
-            }
-        }
-    }
-
     private void sendWebMsg(Datasource datasource) {
         String id = datasource.getId();
         AuthURD authURD = AuthUtils.authURDR(id);
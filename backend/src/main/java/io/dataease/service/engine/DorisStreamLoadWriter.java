@@ -0,0 +1,328 @@
+package io.dataease.service.engine;
+
+import com.google.gson.Gson;
+import io.dataease.dto.datasource.DorisConfiguration;
+import io.dataease.provider.datasource.RowHandler;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultRedirectStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * 在 JVM 内直接向 doris 引擎 stream load 写入数据，代替 kettle 生成文本文件再由 shell 调用 curl 导入
+ * 行数据编码为分隔符格式写入内存批次，批次达到 batchBytes 后交给导入线程发送，
+ * 同时在途的批次数受限，导入跟不上读取时阻塞读取线程，内存占用与数据总量无关；
+ * 每个批次的 label 由 labelPrefix 和批次序号组成，只保证同一个 writer 内的批次不会被重复导入，
+ * 源数据读取顺序不固定，重新抽取时须使用新的 labelPrefix 并由调用方清理上次写入的部分数据
+ */
+public class DorisStreamLoadWriter implements RowHandler, AutoCloseable {
+
+    private static final String SEPARATOR = "|DE|";
+
+    private static final char[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private static final Pattern DATE_TIME = Pattern.compile("\\d{4}-\\d{2}-\\d{2}[ T]\\d{2}:\\d{2}:\\d{2}(\\.\\d*)?");
+
+    private static final Pattern DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    private final String url;
+
+    private final String authorization;
+
+    private final String columns;
+
+    private final String mergeType;
+
+    private final String labelPrefix;
+
+    private final boolean[] binaryColumns;
+
+    private final int batchBytes;
+
+    private final int threads;
+
+    private boolean[] timeColumns;
+
+    private boolean[] charsetColumns;
+
+    private String charset;
+
+    private String targetCharset;
+
+    private final Progress progress;
+
+    private final CloseableHttpClient httpClient;
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final MessageDigest digest;
+
+    private final StringBuilder hashSource = new StringBuilder();
+
+    private final byte[] separator = SEPARATOR.getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong rows = new AtomicLong();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private Batch batch;
+
+    private int batchRows;
+
+    private int batchNo;
+
+    public interface Progress {
+        void accept(long rows, long bytes);
+    }
+
+    /**
+     * @param columns       导入列，顺序与查询结果一致，最后一列为 dataease_uuid
+     * @param mergeType     APPEND 或 DELETE
+     * @param labelPrefix   stream load label 前缀
+     * @param binaryColumns 二进制字段，写入空串
+     * @param progress      每导入完一批回调一次该批的行数和字节数
+     * @param timeout       连接超时和读取超时，毫秒
+     */
+    public DorisStreamLoadWriter(DorisConfiguration dorisConfiguration, String table, String columns, String mergeType, String labelPrefix,
+                                 boolean[] binaryColumns, int batchBytes, int threads, int timeout, Progress progress) throws Exception {
+        this.url = "http://" + dorisConfiguration.getHost() + ":" + dorisConfiguration.getHttpPort() + "/api/" + dorisConfiguration.getDataBase() + "/" + table + "/_stream_load";
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString((dorisConfiguration.getUsername() + ":" + dorisConfiguration.getPassword()).getBytes(StandardCharsets.UTF_8));
+        this.columns = columns;
+        this.mergeType = mergeType;
+        this.labelPrefix = labelPrefix;
+        this.binaryColumns = binaryColumns;
+        this.batchBytes = Math.max(batchBytes, 1024);
+        this.threads = Math.max(threads, 1);
+        this.progress = progress;
+        // FE 以 307 把请求转发到 BE，PUT 请求默认不跟随跳转
+        RequestConfig requestConfig = RequestConfig.custom().setConnectTimeout(timeout).setConnectionRequestTimeout(timeout).setSocketTimeout(timeout).build();
+        this.httpClient = HttpClients.custom().setDefaultRequestConfig(requestConfig).setRedirectStrategy(new DefaultRedirectStrategy() {
+            @Override
+            protected boolean isRedirectable(String method) {
+                return true;
+            }
+        }).build();
+        this.executor = Executors.newFixedThreadPool(this.threads);
+        this.permits = new Semaphore(this.threads + 1);
+        this.digest = MessageDigest.getInstance("MD5");
+        this.batch = new Batch(initialCapacity());
+    }
+
+    /**
+     * 与原 kettle 转换输出一致，时间字段统一为 yyyy-MM-dd HH:mm:ss 后再计算 md5 和写入，
+     * 保证 dataease_uuid 与 kettle 导入的数据相同，增量删除能匹配到升级前导入的行
+     */
+    public void setTimeColumns(boolean[] timeColumns) {
+        this.timeColumns = timeColumns;
+    }
+
+    /**
+     * 与原 kettle 转换一致：oracle、db2 数据源配置了字符集时，字符串字段按数据源字符集取字节后以目标字符集重新解码，md5 仍按原值计算
+     */
+    public void setCharset(boolean[] charsetColumns, String charset, String targetCharset) {
+        this.charsetColumns = charsetColumns;
+        this.charset = charset;
+        this.targetCharset = targetCharset;
+    }
+
+    @Override
+    public void handle(String[] data) throws Exception {
+        hashSource.setLength(0);
+        for (int i = 0; i < data.length; i++) {
+            String value = data[i];
+            // 与原 kettle 转换一致：换行替换为空格，二进制字段和空值写入空串，uuid 取各列拼接后的 md5
+            if (value != null && (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0)) {
+                value = value.trim().replace('\r', ' ').replace('\n', ' ');
+            }
+            if (value != null && timeColumns != null && i < timeColumns.length && timeColumns[i]) {
+                value = formatTime(value);
+            }
+            hashSource.append(value);
+            if (binaryColumns != null && i < binaryColumns.length && binaryColumns[i]) {
+                value = "";
+            } else if (value != null && charset != null && charsetColumns != null && i < charsetColumns.length && charsetColumns[i]) {
+                value = convertCharset(value);
+            }
+            if (value != null) {
+                batch.write(value.getBytes(StandardCharsets.UTF_8));
+            }
+            batch.write(separator);
+        }
+        batch.write(md5(hashSource));
+        batch.write('\n');
+        batchRows++;
+        if (batch.size() >= batchBytes) {
+            flush();
+        }
+    }
+
+    /**
+     * 导入剩余数据并等待所有批次完成，任一批次失败时抛出异常
+     */
+    public void finish() throws Exception {
+        flush();
+        permits.acquire(threads + 1);
+        permits.release(threads + 1);
+        checkFailure();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * JDBC 驱动返回的时间字符串可能带毫秒(如 MySQL 5.x 的 .0)或只有日期，统一为 yyyy-MM-dd HH:mm:ss
+     */
+    static String formatTime(String value) {
+        if (DATE_TIME.matcher(value).matches()) {
+            return value.substring(0, 10) + " " + value.substring(11, 19);
+        }
+        if (DATE.matcher(value).matches()) {
+            return value + " 00:00:00";
+        }
+        return value;
+    }
+
+    private String convertCharset(String value) {
+        try {
+            return new String(value.getBytes(charset), targetCharset);
+        } catch (Exception e) {
+            return value;
+        }
+    }
+
+    private int initialCapacity() {
+        return Math.min(batchBytes, 1024 * 1024);
+    }
+
+    private byte[] md5(CharSequence source) {
+        digest.reset();
+        byte[] md = digest.digest(source.toString().getBytes(StandardCharsets.UTF_8));
+        byte[] hex = new byte[md.length * 2];
+        int k = 0;
+        for (byte b : md) {
+            hex[k++] = (byte) HEX_DIGITS[b >>> 4 & 0xf];
+            hex[k++] = (byte) HEX_DIGITS[b & 0xf];
+        }
+        return hex;
+    }
+
+    private void flush() throws Exception {
+        checkFailure();
+        if (batchRows == 0) {
+            return;
+        }
+        Batch data = batch;
+        int count = batchRows;
+        String label = labelPrefix + "_" + batchNo++;
+        batch = new Batch(initialCapacity());
+        batchRows = 0;
+        permits.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (failure.get() == null) {
+                        load(label, data);
+                        rows.addAndGet(count);
+                        bytes.addAndGet(data.size());
+                        if (progress != null) {
+                            progress.accept(count, data.size());
+                        }
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (Exception e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void load(String label, Batch data) throws Exception {
+        HttpPut put = new HttpPut(url);
+        put.setHeader(HttpHeaders.EXPECT, "100-continue");
+        put.setHeader(HttpHeaders.AUTHORIZATION, authorization);
+        put.setHeader("label", label);
+        put.setHeader("column_separator", SEPARATOR);
+        put.setHeader("columns", columns);
+        put.setHeader("merge_type", mergeType);
+        put.setEntity(new ByteArrayEntity(data.buffer(), 0, data.size()));
+        try (CloseableHttpResponse response = httpClient.execute(put)) {
+            String body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+            if (response.getStatusLine().getStatusCode() != 200) {
+                throw new Exception("Stream load failed, http status " + response.getStatusLine().getStatusCode() + ": " + body);
+            }
+            Map<?, ?> result = new Gson().fromJson(body, Map.class);
+            String status = result == null ? null : (String) result.get("Status");
+            if (StringUtils.equalsAny(status, "Success", "Publish Timeout")) {
+                return;
+            }
+            // 同一批次的请求被重复发送，该批次已导入成功
+            if ("Label Already Exists".equals(status) && !"CANCELLED".equals(result.get("ExistingJobStatus"))) {
+                return;
+            }
+            throw new Exception("Stream load failed: " + body);
+        }
+    }
+
+    private void checkFailure() throws Exception {
+        Exception e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.shutdownNow();
+        httpClient.close();
+    }
+
+    /**
+     * 直接使用内部数组作为请求体，避免复制
+     */
+    private static class Batch extends ByteArrayOutputStream {
+
+        Batch(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+    }
+}
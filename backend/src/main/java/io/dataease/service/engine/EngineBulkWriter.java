@@ -0,0 +1,135 @@
+package io.dataease.service.engine;
+
+import io.dataease.plugins.common.request.datasource.DatasourceRequest;
+import io.dataease.provider.datasource.JdbcProvider;
+import io.dataease.provider.datasource.RowHandler;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+
+/**
+ * 简易模式下向 mysql 引擎批量写入数据
+ * 行数据按 batchSize 攒批后交给写线程并行写入，同时在途的批次数受限，内存占用与数据总量无关
+ */
+public class EngineBulkWriter implements RowHandler, AutoCloseable {
+
+    private final JdbcProvider jdbcProvider;
+
+    private final DatasourceRequest datasourceRequest;
+
+    private final String insertSql;
+
+    private final int columnCount;
+
+    private final int batchSize;
+
+    private final int threads;
+
+    private final LongConsumer progress;
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private List<String[]> batch;
+
+    /**
+     * @param insertSql   带占位符的 INSERT 语句，第一列为 dataease_uuid
+     * @param columnCount 包含 dataease_uuid 在内的列数
+     * @param progress    每写完一批回调一次已写入的行数
+     */
+    public EngineBulkWriter(JdbcProvider jdbcProvider, DatasourceRequest datasourceRequest, String insertSql, int columnCount, int batchSize, int threads, LongConsumer progress) {
+        this.jdbcProvider = jdbcProvider;
+        this.datasourceRequest = datasourceRequest;
+        this.insertSql = insertSql;
+        this.columnCount = columnCount;
+        this.batchSize = Math.max(batchSize, 1);
+        this.threads = Math.max(threads, 1);
+        this.progress = progress;
+        this.executor = Executors.newFixedThreadPool(this.threads);
+        this.permits = new Semaphore(this.threads * 2);
+        this.batch = new ArrayList<>(this.batchSize);
+    }
+
+    @Override
+    public void handle(String[] data) throws Exception {
+        // 第一列为 dataease_uuid，空串按 null 写入，列数不足的行以空值补齐
+        String[] row = new String[columnCount];
+        row[0] = UUID.randomUUID().toString();
+        for (int i = 0; i < data.length && i + 1 < columnCount; i++) {
+            row[i + 1] = StringUtils.isEmpty(data[i]) ? null : data[i];
+        }
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 写入剩余数据并等待所有批次完成，任一批次失败时抛出异常
+     */
+    public void finish() throws Exception {
+        flush();
+        permits.acquire(threads * 2);
+        permits.release(threads * 2);
+        checkFailure();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    private void flush() throws Exception {
+        checkFailure();
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String[]> rows = batch;
+        batch = new ArrayList<>(batchSize);
+        permits.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (failure.get() == null) {
+                        jdbcProvider.batchExec(datasourceRequest, insertSql, rows, batchSize);
+                        long count = written.addAndGet(rows.size());
+                        if (progress != null) {
+                            progress.accept(count);
+                        }
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (Exception e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void checkFailure() throws Exception {
+        Exception e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
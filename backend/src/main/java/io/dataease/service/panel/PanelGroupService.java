@@ -1,6 +1,5 @@
 package io.dataease.service.panel;
 
-import cn.hutool.core.util.ArrayUtil;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.google.gson.Gson;
@@ -32,7 +31,6 @@ import io.dataease.i18n.Translator;
 import io.dataease.listener.util.CacheUtils;
 import io.dataease.plugins.common.base.domain.*;
 import io.dataease.plugins.common.base.mapper.*;
-import io.dataease.plugins.common.constants.DeTypeConstants;
 import io.dataease.service.chart.ChartViewService;
 import io.dataease.service.dataset.DataSetGroupService;
 import io.dataease.service.dataset.DataSetTableService;
@@ -41,18 +39,13 @@ import io.dataease.service.sys.SysAuthService;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.hssf.usermodel.HSSFClientAnchor;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.ss.util.CellRangeAddress;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.pentaho.di.core.util.UUIDUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
-import org.springframework.util.Base64Utils;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletResponse;
@@ -75,7 +68,8 @@ public class PanelGroupService {
 
     private final SysLogConstants.SOURCE_TYPE sourceType = SysLogConstants.SOURCE_TYPE.PANEL;
 
-    private final static String DATA_URL_TITLE = "data:image/jpeg;base64,";
+    @Value("${dataease.export.details.row-window:1000}")
+    private int excelRowWindow;
     @Resource
     private PanelGroupMapper panelGroupMapper;
     @Resource
@@ -654,151 +648,18 @@ public class PanelGroupService {
         OutputStream outputStream = response.getOutputStream();
         try {
             findExcelData(request);
-            String snapshot = request.getSnapshot();
-            List<Object[]> details = request.getDetails();
-            Integer[] excelTypes = request.getExcelTypes();
-            details.add(0, request.getHeader());
-
-            Workbook wb = new XSSFWorkbook();
-            //明细sheet
-            Sheet detailsSheet = wb.createSheet("数据");
-
-
-            //给单元格设置样式
-            CellStyle cellStyle = wb.createCellStyle();
-            Font font = wb.createFont();
-            //设置字体大小
-            font.setFontHeightInPoints((short) 12);
-            //设置字体加粗
-            font.setBold(true);
-            //给字体设置样式
-            cellStyle.setFont(font);
-            //设置单元格背景颜色
-            cellStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-            //设置单元格填充样式(使用纯色背景颜色填充)
-            cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-
-            Boolean mergeHead = false;
-            ViewDetailField[] detailFields = request.getDetailFields();
-            if (ArrayUtil.isNotEmpty(detailFields)) {
-                cellStyle.setBorderTop(BorderStyle.THIN);
-                cellStyle.setBorderRight(BorderStyle.THIN);
-                cellStyle.setBorderBottom(BorderStyle.THIN);
-                cellStyle.setBorderLeft(BorderStyle.THIN);
-                String[] detailField = Arrays.stream(detailFields).map(field -> field.getName()).collect(Collectors.toList()).toArray(new String[detailFields.length]);
-                Object[] header = request.getHeader();
-                Row row = detailsSheet.createRow(0);
-                int headLen = header.length;
-                int detailFieldLen = detailField.length;
-                for (int i = 0; i < headLen; i++) {
-                    Cell cell = row.createCell(i);
-                    cell.setCellValue(header[i].toString());
-                    if (i < headLen - 1) {
-                        CellRangeAddress cellRangeAddress = new CellRangeAddress(0, 1, i, i);
-                        detailsSheet.addMergedRegion(cellRangeAddress);
-                    } else {
-                        for (int j = i + 1; j < detailFieldLen + i; j++) {
-                            row.createCell(j).setCellStyle(cellStyle);
-                        }
-                        CellRangeAddress cellRangeAddress = new CellRangeAddress(0, 0, i, i + detailFieldLen - 1);
-                        detailsSheet.addMergedRegion(cellRangeAddress);
-                    }
-                    cell.setCellStyle(cellStyle);
-                    detailsSheet.setColumnWidth(i, 255 * 20);
-                }
-
-                Row detailRow = detailsSheet.createRow(1);
-                for (int i = 0; i < headLen - 1; i++) {
-                    Cell cell = detailRow.createCell(i);
-                    cell.setCellStyle(cellStyle);
+            try (ViewDetailsExcelWriter writer = new ViewDetailsExcelWriter(excelRowWindow, request.getExcelTypes())) {
+                writer.writeHeader(request.getHeader(), request.getDetailFields());
+                List<Object[]> details = request.getDetails();
+                if (CollectionUtils.isNotEmpty(details)) {
+                    details.forEach(writer::writeRow);
                 }
-                for (int i = 0; i < detailFieldLen; i++) {
-                    int colIndex = headLen - 1 + i;
-                    Cell cell = detailRow.createCell(colIndex);
-                    cell.setCellValue(detailField[i]);
-                    cell.setCellStyle(cellStyle);
-                    detailsSheet.setColumnWidth(colIndex, 255 * 20);
-                }
-                details.add(1, detailField);
-                mergeHead = true;
-            }
-            if (CollectionUtils.isNotEmpty(details) && (!mergeHead || details.size() > 2)) {
-                int realDetailRowIndex = 2;
-                for (int i = (mergeHead ? 2 : 0); i < details.size(); i++) {
-                    Row row = detailsSheet.createRow(realDetailRowIndex > 2 ? realDetailRowIndex : i);
-                    Object[] rowData = details.get(i);
-                    if (rowData != null) {
-                        for (int j = 0; j < rowData.length; j++) {
-                            Object cellValObj = rowData[j];
-                            if (mergeHead && j == rowData.length - 1 && (cellValObj.getClass().isArray() || cellValObj instanceof ArrayList)) {
-                                Object[] detailRowArray = ((List<Object>) cellValObj).toArray(new Object[((List<?>) cellValObj).size()]);
-                                int detailRowArrayLen = detailRowArray.length;
-                                int temlJ = j;
-                                while (detailRowArrayLen > 1 && temlJ-- > 0) {
-                                    CellRangeAddress cellRangeAddress = new CellRangeAddress(realDetailRowIndex, realDetailRowIndex + detailRowArrayLen - 1, temlJ, temlJ);
-                                    detailsSheet.addMergedRegion(cellRangeAddress);
-                                }
-
-                                for (int k = 0; k < detailRowArrayLen; k++) {
-                                    List<Object> detailRows = (List<Object>) detailRowArray[k];
-                                    Row curRow = row;
-                                    if (k > 0) {
-                                        curRow = detailsSheet.createRow(realDetailRowIndex + k);
-                                    }
-
-                                    for (int l = 0; l < detailRows.size(); l++) {
-                                        Object col = detailRows.get(l);
-                                        Cell cell = curRow.createCell(j + l);
-                                        cell.setCellValue(col.toString());
-                                    }
-                                }
-                                realDetailRowIndex += detailRowArrayLen;
-                                break;
-                            }
-
-                            Cell cell = row.createCell(j);
-                            if (i == 0) {// 头部
-                                cell.setCellValue(cellValObj.toString());
-                                cell.setCellStyle(cellStyle);
-                                //设置列的宽度
-                                detailsSheet.setColumnWidth(j, 255 * 20);
-                            } else if (cellValObj != null) {
-                                try {
-                                    // with DataType
-                                    if ((excelTypes[j] == DeTypeConstants.DE_INT || excelTypes[j] == DeTypeConstants.DE_FLOAT) && StringUtils.isNotEmpty(cellValObj.toString())) {
-                                        cell.setCellValue(Double.valueOf(cellValObj.toString()));
-                                    } else {
-                                        cell.setCellValue(cellValObj.toString());
-                                    }
-                                } catch (Exception e) {
-                                    LogUtil.warn("export excel data transform error");
-                                }
-                            }
-
-
-                        }
-                    }
-                }
-            }
-            if (StringUtils.isNotEmpty(snapshot)) {
-                //截图sheet 1px ≈ 2.33dx ≈ 0.48 dy  8*24 个单元格
-                Sheet snapshotSheet = wb.createSheet("图表");
-                short reDefaultRowHeight = (short) Math.round(request.getSnapshotHeight() * 3.5 / 8);
-                int reDefaultColumnWidth = (int) Math.round(request.getSnapshotWidth() * 0.25 / 24);
-                snapshotSheet.setDefaultColumnWidth(reDefaultColumnWidth);
-                snapshotSheet.setDefaultRowHeight(reDefaultRowHeight);
-
-                //画图的顶级管理器，一个sheet只能获取一个（一定要注意这点）i
-                Drawing patriarch = snapshotSheet.createDrawingPatriarch();
-                HSSFClientAnchor anchor = new HSSFClientAnchor(0, 0, reDefaultColumnWidth, reDefaultColumnWidth, (short) 0, 0, (short) 8, 24);
-                anchor.setAnchorType(ClientAnchor.AnchorType.DONT_MOVE_DO_RESIZE);
-                patriarch.createPicture(anchor, wb.addPicture(Base64Utils.decodeFromString(snapshot.replace(DATA_URL_TITLE, "")), HSSFWorkbook.PICTURE_TYPE_JPEG));
+                writer.writeSnapshot(request.getSnapshot(), request.getSnapshotWidth(), request.getSnapshotHeight());
+                response.setContentType("application/vnd.ms-excel");
+                //文件名称
+                response.setHeader("Content-disposition", "attachment;filename=" + request.getViewName() + ".xlsx");
+                writer.write(outputStream);
             }
-            response.setContentType("application/vnd.ms-excel");
-            //文件名称
-            response.setHeader("Content-disposition", "attachment;filename=" + request.getViewName() + ".xlsx");
-            wb.write(outputStream);
             outputStream.flush();
             outputStream.close();
         } catch (Exception e) {
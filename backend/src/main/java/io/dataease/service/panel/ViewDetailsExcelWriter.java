@@ -0,0 +1,221 @@
+package io.dataease.service.panel;
+
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.controller.request.panel.ViewDetailField;
+import io.dataease.plugins.common.constants.DeTypeConstants;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.hssf.usermodel.HSSFClientAnchor;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.util.Base64Utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 视图明细 Excel 写入
+ * 基于 SXSSF，内存中只保留最近 rowWindow 行，其余行写入临时文件，样式整个工作簿只创建一次
+ */
+public class ViewDetailsExcelWriter implements Closeable {
+
+    private static final String DATA_URL_TITLE = "data:image/jpeg;base64,";
+
+    private final SXSSFWorkbook wb;
+
+    private final Sheet detailsSheet;
+
+    private final CellStyle cellStyle;
+
+    private final Integer[] excelTypes;
+
+    private boolean mergeHead = false;
+
+    private int rowIndex = 0;
+
+    private long rowCount = 0;
+
+    public ViewDetailsExcelWriter(int rowWindow, Integer[] excelTypes) {
+        this.wb = new SXSSFWorkbook(Math.max(rowWindow, 1));
+        // 临时文件压缩，避免大数据量导出占满磁盘
+        this.wb.setCompressTempFiles(true);
+        this.excelTypes = excelTypes;
+        //明细sheet
+        this.detailsSheet = wb.createSheet("数据");
+
+        //给单元格设置样式
+        cellStyle = wb.createCellStyle();
+        Font font = wb.createFont();
+        //设置字体大小
+        font.setFontHeightInPoints((short) 12);
+        //设置字体加粗
+        font.setBold(true);
+        //给字体设置样式
+        cellStyle.setFont(font);
+        //设置单元格背景颜色
+        cellStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        //设置单元格填充样式(使用纯色背景颜色填充)
+        cellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+    }
+
+    /**
+     * 写入表头，存在明细字段时表头占两行并合并单元格
+     */
+    public void writeHeader(Object[] header, ViewDetailField[] detailFields) {
+        if (ArrayUtils.isEmpty(detailFields)) {
+            Row row = detailsSheet.createRow(rowIndex++);
+            if (header != null) {
+                for (int j = 0; j < header.length; j++) {
+                    Cell cell = row.createCell(j);
+                    cell.setCellValue(header[j].toString());
+                    cell.setCellStyle(cellStyle);
+                    //设置列的宽度
+                    detailsSheet.setColumnWidth(j, 255 * 20);
+                }
+            }
+            return;
+        }
+        cellStyle.setBorderTop(BorderStyle.THIN);
+        cellStyle.setBorderRight(BorderStyle.THIN);
+        cellStyle.setBorderBottom(BorderStyle.THIN);
+        cellStyle.setBorderLeft(BorderStyle.THIN);
+        String[] detailField = Arrays.stream(detailFields).map(ViewDetailField::getName).toArray(String[]::new);
+        Row row = detailsSheet.createRow(0);
+        int headLen = header.length;
+        int detailFieldLen = detailField.length;
+        for (int i = 0; i < headLen; i++) {
+            Cell cell = row.createCell(i);
+            cell.setCellValue(header[i].toString());
+            if (i < headLen - 1) {
+                CellRangeAddress cellRangeAddress = new CellRangeAddress(0, 1, i, i);
+                detailsSheet.addMergedRegion(cellRangeAddress);
+            } else {
+                for (int j = i + 1; j < detailFieldLen + i; j++) {
+                    row.createCell(j).setCellStyle(cellStyle);
+                }
+                CellRangeAddress cellRangeAddress = new CellRangeAddress(0, 0, i, i + detailFieldLen - 1);
+                detailsSheet.addMergedRegion(cellRangeAddress);
+            }
+            cell.setCellStyle(cellStyle);
+            detailsSheet.setColumnWidth(i, 255 * 20);
+        }
+
+        Row detailRow = detailsSheet.createRow(1);
+        for (int i = 0; i < headLen - 1; i++) {
+            Cell cell = detailRow.createCell(i);
+            cell.setCellStyle(cellStyle);
+        }
+        for (int i = 0; i < detailFieldLen; i++) {
+            int colIndex = headLen - 1 + i;
+            Cell cell = detailRow.createCell(colIndex);
+            cell.setCellValue(detailField[i]);
+            cell.setCellStyle(cellStyle);
+            detailsSheet.setColumnWidth(colIndex, 255 * 20);
+        }
+        rowIndex = 2;
+        mergeHead = true;
+    }
+
+    /**
+     * 写入一行数据，存在明细字段时最后一列为明细行列表，展开为多行并合并前面的单元格
+     */
+    public void writeRow(Object[] rowData) {
+        if (rowData == null) {
+            return;
+        }
+        Row row = detailsSheet.createRow(rowIndex);
+        int rows = 1;
+        for (int j = 0; j < rowData.length; j++) {
+            Object cellValObj = rowData[j];
+            if (mergeHead && j == rowData.length - 1 && cellValObj instanceof List) {
+                List<?> detailRowList = (List<?>) cellValObj;
+                int detailRowArrayLen = detailRowList.size();
+                int temlJ = j;
+                while (detailRowArrayLen > 1 && temlJ-- > 0) {
+                    CellRangeAddress cellRangeAddress = new CellRangeAddress(rowIndex, rowIndex + detailRowArrayLen - 1, temlJ, temlJ);
+                    detailsSheet.addMergedRegion(cellRangeAddress);
+                }
+
+                for (int k = 0; k < detailRowArrayLen; k++) {
+                    List<?> detailRows = (List<?>) detailRowList.get(k);
+                    Row curRow = row;
+                    if (k > 0) {
+                        curRow = detailsSheet.createRow(rowIndex + k);
+                    }
+
+                    for (int l = 0; l < detailRows.size(); l++) {
+                        Object col = detailRows.get(l);
+                        Cell cell = curRow.createCell(j + l);
+                        cell.setCellValue(col.toString());
+                    }
+                }
+                rows = Math.max(detailRowArrayLen, 1);
+                break;
+            }
+            if (cellValObj == null) {
+                continue;
+            }
+            Cell cell = row.createCell(j);
+            try {
+                // with DataType
+                if (isNumber(j) && StringUtils.isNotEmpty(cellValObj.toString())) {
+                    cell.setCellValue(Double.valueOf(cellValObj.toString()));
+                } else {
+                    cell.setCellValue(cellValObj.toString());
+                }
+            } catch (Exception e) {
+                LogUtil.warn("export excel data transform error");
+            }
+        }
+        rowIndex += rows;
+        rowCount++;
+    }
+
+    private boolean isNumber(int j) {
+        return excelTypes != null && j < excelTypes.length && excelTypes[j] != null
+                && (excelTypes[j] == DeTypeConstants.DE_INT || excelTypes[j] == DeTypeConstants.DE_FLOAT);
+    }
+
+    /**
+     * 已写入的数据行数，不含表头
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void writeSnapshot(String snapshot, int snapshotWidth, int snapshotHeight) {
+        if (StringUtils.isEmpty(snapshot)) {
+            return;
+        }
+        //截图sheet 1px ≈ 2.33dx ≈ 0.48 dy  8*24 个单元格
+        Sheet snapshotSheet = wb.createSheet("图表");
+        short reDefaultRowHeight = (short) Math.round(snapshotHeight * 3.5 / 8);
+        int reDefaultColumnWidth = (int) Math.round(snapshotWidth * 0.25 / 24);
+        snapshotSheet.setDefaultColumnWidth(reDefaultColumnWidth);
+        snapshotSheet.setDefaultRowHeight(reDefaultRowHeight);
+
+        //画图的顶级管理器，一个sheet只能获取一个（一定要注意这点）i
+        Drawing patriarch = snapshotSheet.createDrawingPatriarch();
+        HSSFClientAnchor anchor = new HSSFClientAnchor(0, 0, reDefaultColumnWidth, reDefaultColumnWidth, (short) 0, 0, (short) 8, 24);
+        anchor.setAnchorType(ClientAnchor.AnchorType.DONT_MOVE_DO_RESIZE);
+        patriarch.createPicture(anchor, wb.addPicture(Base64Utils.decodeFromString(snapshot.replace(DATA_URL_TITLE, "")), HSSFWorkbook.PICTURE_TYPE_JPEG));
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        wb.write(outputStream);
+    }
+
+    /**
+     * 删除 SXSSF 的临时文件
+     */
+    @Override
+    public void close() throws IOException {
+        wb.dispose();
+        wb.close();
+    }
+}
@@ -0,0 +1,262 @@
+package io.dataease.service.panel;
+
+import cn.hutool.core.io.FileUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dataease.commons.constants.JobStatus;
+import io.dataease.commons.constants.SysLogConstants;
+import io.dataease.commons.export.ExportTask;
+import io.dataease.commons.export.ExportTaskRegistry;
+import io.dataease.commons.utils.AuthUtils;
+import io.dataease.commons.utils.DeLogUtils;
+import io.dataease.commons.utils.LogUtil;
+import io.dataease.controller.request.chart.ChartExtRequest;
+import io.dataease.controller.request.panel.PanelViewDetailsRequest;
+import io.dataease.dto.panel.ViewDetailsExportTaskDTO;
+import io.dataease.exception.DataEaseException;
+import io.dataease.i18n.Translator;
+import io.dataease.plugins.common.base.domain.ChartViewWithBLOBs;
+import io.dataease.plugins.common.dto.chart.ChartViewFieldDTO;
+import io.dataease.plugins.xpack.auth.dto.request.ColumnPermissionItem;
+import io.dataease.service.chart.ChartViewService;
+import io.dataease.service.chart.ViewRowHandler;
+import io.dataease.service.chart.util.ChartDataBuild;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 视图明细异步导出
+ * 明细表的查询结果逐行写入 SXSSF 工作簿，不经过请求参数也不在内存中保留结果集；
+ * 任务在有界线程池中执行，可查询进度，完成后生成文件供下载，文件在保留时间后随任务一起清理
+ */
+@Service
+public class ViewDetailsExportService {
+
+    @Value("${dataease.export.details.row-window:1000}")
+    private int rowWindow;
+
+    @Value("${dataease.export.details.max-rows:1000000}")
+    private long maxRows;
+
+    @Value("${dataease.export.details.threads:2}")
+    private int threads;
+
+    @Value("${dataease.export.details.queue-size:20}")
+    private int queueSize;
+
+    @Value("${dataease.export.details.keep:1800}")
+    private long keepSeconds;
+
+    @Value("${dataease.export.details.path:/opt/dataease/data/export/details/}")
+    private String path;
+
+    @Resource
+    private ChartViewService chartViewService;
+
+    private ThreadPoolExecutor executor;
+
+    private ExportTaskRegistry<DetailsExportTask> tasks;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(Math.max(queueSize, 1)),
+                new ThreadFactoryBuilder().setNameFormat("view-details-export-%d").setDaemon(true).build());
+        tasks = new ExportTaskRegistry<>(keepSeconds, path, "xlsx");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交导出任务
+     *
+     * @param owner 任务所属用户，查询进度和下载时校验
+     */
+    public ViewDetailsExportTaskDTO submit(PanelViewDetailsRequest request, Long owner) {
+        DetailsExportTask task = new DetailsExportTask();
+        task.viewId = request.getViewId();
+        task.viewName = request.getViewName();
+        tasks.register(task, owner, "xlsx");
+        // 导出线程中没有当前用户的上下文，需要显式传递
+        Subject subject = SecurityUtils.getSubject();
+        Long proxyUserId = request.getProxy() != null ? request.getProxy().getUserId() : null;
+        try {
+            executor.execute(subject.associateWith(() -> {
+                if (proxyUserId != null) {
+                    AuthUtils.setProxyUser(proxyUserId);
+                }
+                try {
+                    run(task, request);
+                } finally {
+                    if (proxyUserId != null) {
+                        AuthUtils.cleanProxyUser();
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            tasks.remove(task);
+            DataEaseException.throwException(Translator.get("i18n_export_task_busy"));
+        }
+        return task.toDTO();
+    }
+
+    public ViewDetailsExportTaskDTO status(String taskId, Long owner) {
+        return tasks.get(taskId, owner).toDTO();
+    }
+
+    public void download(String taskId, Long owner, HttpServletResponse response) throws IOException {
+        DetailsExportTask task = tasks.get(taskId, owner);
+        if (task.getStatus() != JobStatus.Completed) {
+            DataEaseException.throwException(Translator.get("i18n_export_task_not_finished"));
+        }
+        if (!task.getFile().exists()) {
+            DataEaseException.throwException(Translator.get("i18n_export_task_not_exists"));
+        }
+        response.setContentType("application/vnd.ms-excel");
+        //文件名称
+        response.setHeader("Content-disposition", "attachment;filename=" + URLEncoder.encode(task.viewName, "UTF-8") + ".xlsx");
+        response.setContentLengthLong(task.getFile().length());
+        OutputStream outputStream = response.getOutputStream();
+        Files.copy(task.getFile().toPath(), outputStream);
+        outputStream.flush();
+    }
+
+    private void run(DetailsExportTask task, PanelViewDetailsRequest request) {
+        task.setStatus(JobStatus.Underway);
+        JobStatus status;
+        try (ViewDetailsExcelWriter writer = new ViewDetailsExcelWriter(rowWindow, request.getExcelTypes())) {
+            writer.writeHeader(request.getHeader(), request.getDetailFields());
+            ChartViewWithBLOBs viewInfo = chartViewService.get(request.getViewId());
+            if ("table-info".equals(viewInfo.getType())) {
+                ChartExtRequest componentFilterInfo = ObjectUtils.isEmpty(request.getComponentFilterInfo()) ? new ChartExtRequest() : request.getComponentFilterInfo();
+                componentFilterInfo.setGoPage(1L);
+                componentFilterInfo.setPageSize(maxRows);
+                componentFilterInfo.setExcelExportFlag(true);
+                componentFilterInfo.setProxy(request.getProxy());
+                componentFilterInfo.setUser(request.getUserId());
+                componentFilterInfo.setCache(false);
+                componentFilterInfo.setRowHandler(new DetailsRowHandler(writer, request.getExcelHeaderKeys(), task.getRows()));
+                chartViewService.getData(request.getViewId(), componentFilterInfo);
+            } else if (CollectionUtils.isNotEmpty(request.getDetails())) {
+                for (Object[] row : request.getDetails()) {
+                    writer.writeRow(row);
+                    task.getRows().set(writer.getRowCount());
+                }
+            }
+            writer.writeSnapshot(request.getSnapshot(), request.getSnapshotWidth(), request.getSnapshotHeight());
+            FileUtil.mkParentDirs(task.getFile());
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(task.getFile()))) {
+                writer.write(outputStream);
+            }
+            status = JobStatus.Completed;
+        } catch (Throwable e) {
+            LogUtil.error(e.getMessage(), e);
+            FileUtil.del(task.getFile());
+            task.setError(e.getMessage());
+            status = JobStatus.Error;
+        }
+        tasks.finish(task, status);
+        if (status == JobStatus.Completed && ObjectUtils.isNotEmpty(AuthUtils.getUser())) {
+            DeLogUtils.save(SysLogConstants.OPERATE_TYPE.EXPORT, SysLogConstants.SOURCE_TYPE.VIEW, task.viewId, chartViewService.get(task.viewId).getSceneId(), null, null);
+        }
+    }
+
+    /**
+     * 按导出列顺序把查询结果写入 Excel，脱敏规则与视图展示一致
+     */
+    private static class DetailsRowHandler implements ViewRowHandler {
+
+        private final ViewDetailsExcelWriter writer;
+
+        private final List<String> excelHeaderKeys;
+
+        private final AtomicLong rows;
+
+        private int[] indexes;
+
+        private ColumnPermissionItem[] desensitization;
+
+        private Object[] rowData;
+
+        DetailsRowHandler(ViewDetailsExcelWriter writer, List<String> excelHeaderKeys, AtomicLong rows) {
+            this.writer = writer;
+            this.excelHeaderKeys = excelHeaderKeys;
+            this.rows = rows;
+        }
+
+        @Override
+        public void fields(List<ChartViewFieldDTO> fields, Map<String, ColumnPermissionItem> desensitizationList) {
+            List<String> keys = excelHeaderKeys;
+            if (CollectionUtils.isEmpty(keys)) {
+                keys = new ArrayList<>();
+                for (ChartViewFieldDTO field : fields) {
+                    keys.add(field.getDataeaseName());
+                }
+            }
+            Map<String, Integer> fieldIndex = new HashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                fieldIndex.putIfAbsent(fields.get(i).getDataeaseName(), i);
+            }
+            indexes = new int[keys.size()];
+            desensitization = new ColumnPermissionItem[keys.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                indexes[i] = fieldIndex.getOrDefault(keys.get(i), -1);
+                desensitization[i] = desensitizationList == null ? null : desensitizationList.get(keys.get(i));
+            }
+            rowData = new Object[keys.size()];
+        }
+
+        @Override
+        public void handle(String[] row) {
+            for (int i = 0; i < indexes.length; i++) {
+                int index = indexes[i];
+                if (desensitization[i] != null) {
+                    rowData[i] = ChartDataBuild.desensitizationValue(desensitization[i], String.valueOf(index < 0 || index >= row.length ? null : row[index]));
+                } else {
+                    rowData[i] = index < 0 || index >= row.length ? null : row[index];
+                }
+            }
+            writer.writeRow(rowData);
+            rows.set(writer.getRowCount());
+        }
+    }
+
+    private static class DetailsExportTask extends ExportTask {
+
+        private String viewId;
+
+        private String viewName;
+
+        private ViewDetailsExportTaskDTO toDTO() {
+            ViewDetailsExportTaskDTO dto = new ViewDetailsExportTaskDTO();
+            dto.setId(getId());
+            dto.setViewId(viewId);
+            dto.setViewName(viewName);
+            dto.setStatus(getStatus().name());
+            dto.setRows(getRows().get());
+            dto.setError(getError());
+            dto.setCreateTime(getCreateTime());
+            dto.setFinishTime(isFinished() ? getFinishTime() : null);
+            return dto;
+        }
+    }
+}
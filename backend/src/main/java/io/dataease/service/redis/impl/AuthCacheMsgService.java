@@ -0,0 +1,27 @@
+package io.dataease.service.redis.impl;
+
+import io.dataease.auth.service.impl.AuthCacheService;
+import io.dataease.service.redis.RedisMessageBroadcast;
+import io.dataease.service.sys.DistributedAuthCacheService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.Map;
+
+@Service
+public class AuthCacheMsgService implements RedisMessageBroadcast<Map> {
+
+    @Resource
+    private AuthCacheService authCacheService;
+
+    @Override
+    public void messageCallBack(Map arg) {
+        if (StringUtils.equals(DistributedAuthCacheService.NODE_ID, (String) arg.get("node"))) {
+            return;
+        }
+        String key = (String) arg.get("key");
+        // 只失效本节点，不再继续广播
+        authCacheService.invalidateLocal((String) arg.get("cacheName"), StringUtils.isEmpty(key) ? null : key);
+    }
+}
@@ -0,0 +1,20 @@
+package io.dataease.service.redis.impl;
+
+import io.dataease.service.dataset.DatasetMetaCacheService;
+import io.dataease.service.redis.RedisMessageBroadcast;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+
+@Service
+public class DatasetMetaMsgService implements RedisMessageBroadcast<String> {
+
+    @Resource
+    private DatasetMetaCacheService datasetMetaCacheService;
+
+    @Override
+    public void messageCallBack(String tableId) {
+        // 只失效本节点，不再继续广播
+        datasetMetaCacheService.invalidateLocal(tableId);
+    }
+}
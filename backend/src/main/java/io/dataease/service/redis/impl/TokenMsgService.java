@@ -0,0 +1,15 @@
+package io.dataease.service.redis.impl;
+
+import io.dataease.commons.utils.TokenCacheUtils;
+import io.dataease.service.redis.RedisMessageBroadcast;
+import org.springframework.stereotype.Service;
+
+@Service
+public class TokenMsgService implements RedisMessageBroadcast<String> {
+
+    @Override
+    public void messageCallBack(String token) {
+        // 只失效本节点，不再继续广播
+        TokenCacheUtils.invalidateLocal(token);
+    }
+}
@@ -0,0 +1,27 @@
+package io.dataease.service.redis.impl;
+
+import io.dataease.service.chart.ChartViewResultCacheService;
+import io.dataease.service.redis.RedisMessageBroadcast;
+import io.dataease.service.sys.DistributedViewResultCacheService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Map;
+
+@Service
+public class ViewResultCacheMsgService implements RedisMessageBroadcast<Map> {
+
+    @Resource
+    private ChartViewResultCacheService chartViewResultCacheService;
+
+    @Override
+    public void messageCallBack(Map arg) {
+        if (StringUtils.equals(DistributedViewResultCacheService.NODE_ID, (String) arg.get("node"))) {
+            return;
+        }
+        // 只失效本节点，不再继续广播
+        chartViewResultCacheService.invalidateLocal((Collection<String>) arg.get("tags"));
+    }
+}
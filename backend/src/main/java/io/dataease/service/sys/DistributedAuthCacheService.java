@@ -0,0 +1,44 @@
+package io.dataease.service.sys;
+
+import io.dataease.commons.condition.RedisStatusCondition;
+import io.dataease.commons.constants.RedisConstants;
+import io.dataease.commons.model.RedisMessage;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+@Component
+@Conditional({RedisStatusCondition.class})
+public class DistributedAuthCacheService {
+
+    /**
+     * 本节点标识，收到自己发出的消息时忽略
+     */
+    public static final String NODE_ID = UUID.randomUUID().toString();
+
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 通知其他节点失效用户缓存的本地副本
+     *
+     * @param cacheName 缓存名称
+     * @param key       缓存 key，为空时清空全部
+     */
+    public void pushBroadcast(String cacheName, String key) {
+        Map<String, String> data = new HashMap<>();
+        data.put("node", NODE_ID);
+        data.put("cacheName", cacheName);
+        data.put("key", StringUtils.defaultString(key));
+        RedisMessage<Map<String, String>> msg = new RedisMessage();
+        msg.setType(RedisConstants.AUTH_CACHE_MSG);
+        msg.setData(data);
+        redisTemplate.convertAndSend(RedisConstants.GLOBAL_REDIS_TOPIC, msg);
+    }
+}
@@ -0,0 +1,31 @@
+package io.dataease.service.sys;
+
+import io.dataease.commons.condition.RedisStatusCondition;
+import io.dataease.commons.constants.RedisConstants;
+import io.dataease.commons.model.RedisMessage;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+@Component
+@Conditional({RedisStatusCondition.class})
+public class DistributedDatasetMetaService {
+
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 通知其他节点失效数据集元数据缓存
+     *
+     * @param tableId 数据集 id，为空时清空全部
+     */
+    public void pushBroadcast(String tableId) {
+        RedisMessage<String> msg = new RedisMessage();
+        msg.setType(RedisConstants.DATASET_META_MSG);
+        msg.setData(StringUtils.defaultString(tableId));
+        redisTemplate.convertAndSend(RedisConstants.GLOBAL_REDIS_TOPIC, msg);
+    }
+}
@@ -0,0 +1,28 @@
+package io.dataease.service.sys;
+
+import io.dataease.commons.condition.RedisStatusCondition;
+import io.dataease.commons.constants.RedisConstants;
+import io.dataease.commons.model.RedisMessage;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+@Component
+@Conditional({RedisStatusCondition.class})
+public class DistributedTokenService {
+
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 通知其他节点 token 已加入黑名单
+     */
+    public void pushBroadcast(String token) {
+        RedisMessage<String> msg = new RedisMessage();
+        msg.setType(RedisConstants.TOKEN_MSG);
+        msg.setData(token);
+        redisTemplate.convertAndSend(RedisConstants.GLOBAL_REDIS_TOPIC, msg);
+    }
+}
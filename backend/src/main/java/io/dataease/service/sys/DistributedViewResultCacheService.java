@@ -0,0 +1,39 @@
+package io.dataease.service.sys;
+
+import io.dataease.commons.condition.RedisStatusCondition;
+import io.dataease.commons.constants.RedisConstants;
+import io.dataease.commons.model.RedisMessage;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+
+@Component
+@Conditional({RedisStatusCondition.class})
+public class DistributedViewResultCacheService {
+
+    /**
+     * 本节点标识，收到自己发出的消息时忽略
+     */
+    public static final String NODE_ID = UUID.randomUUID().toString();
+
+    @Resource
+    private RedisTemplate redisTemplate;
+
+    /**
+     * 通知其他节点失效视图查询结果缓存
+     *
+     * @param tags 失效的视图、数据集、数据源标签，为空时清空全部
+     */
+    public void pushBroadcast(List<String> tags) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("node", NODE_ID);
+        data.put("tags", tags == null ? new ArrayList<>() : tags);
+        RedisMessage<Map<String, Object>> msg = new RedisMessage();
+        msg.setType(RedisConstants.VIEW_RESULT_CACHE_MSG);
+        msg.setData(data);
+        redisTemplate.convertAndSend(RedisConstants.GLOBAL_REDIS_TOPIC, msg);
+    }
+}
@@ -0,0 +1 @@
+CREATE INDEX idx_sys_log_operate_type_time ON sys_log (operate_type, time, user_id);
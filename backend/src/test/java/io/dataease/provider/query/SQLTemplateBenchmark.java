@@ -0,0 +1,117 @@
+package io.dataease.provider.query;
+
+import io.dataease.plugins.common.base.domain.DatasetTableField;
+import io.dataease.plugins.common.base.domain.Datasource;
+import io.dataease.plugins.common.constants.datasource.SQLConstants;
+import io.dataease.plugins.common.dto.sqlObj.SQLObj;
+import io.dataease.plugins.datasource.query.QueryProvider;
+import io.dataease.provider.query.ck.CKQueryProvider;
+import io.dataease.provider.query.mysql.MysqlQueryProvider;
+import io.dataease.provider.query.oracle.OracleQueryProvider;
+import io.dataease.provider.query.pg.PgQueryProvider;
+import io.dataease.provider.query.sqlserver.SqlserverQueryProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STGroupFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL 模板生成基准：每次新建 STGroupFile 与共享 SQLTemplates 的对比，以及各方言 createQuerySQL 的耗时
+ * <p>
+ * 运行：mvn test-compile 后执行 main，或在 IDE 中直接运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SQLTemplateBenchmark {
+
+    @Param({"mysql", "pg", "oracle", "ck", "sqlServer"})
+    private String type;
+
+    private QueryProvider provider;
+
+    private Datasource ds;
+
+    private List<DatasetTableField> fields;
+
+    @Setup
+    public void setUp() {
+        switch (type) {
+            case "pg":
+                provider = new PgQueryProvider();
+                break;
+            case "oracle":
+                provider = new OracleQueryProvider();
+                break;
+            case "ck":
+                provider = new CKQueryProvider();
+                break;
+            case "sqlServer":
+                provider = new SqlserverQueryProvider();
+                break;
+            default:
+                provider = new MysqlQueryProvider();
+        }
+        ds = new Datasource();
+        ds.setId("benchmark");
+        ds.setType(type);
+        ds.setConfiguration("{\"schema\":\"benchmark\"}");
+        fields = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            DatasetTableField field = new DatasetTableField();
+            field.setOriginName("c_" + i);
+            field.setDataeaseName("f_" + i);
+            field.setType(i % 2 == 0 ? "VARCHAR" : "BIGINT");
+            field.setDeType(i % 2 == 0 ? 0 : 2);
+            field.setDeExtractType(i % 2 == 0 ? 0 : 2);
+            field.setExtField(0);
+            field.setChecked(true);
+            fields.add(field);
+        }
+    }
+
+    /**
+     * 优化前的写法：每次生成 SQL 都重新解析模板文件
+     */
+    @Benchmark
+    public String renderWithNewGroup() {
+        ST st = new STGroupFile(SQLConstants.SQL_TEMPLATE).getInstanceOf("previewSql");
+        st.add("isGroup", false);
+        st.add("table", table());
+        return st.render();
+    }
+
+    @Benchmark
+    public String renderWithSharedGroup() {
+        ST st = SQLTemplates.sqlTemplate().getInstanceOf("previewSql");
+        st.add("isGroup", false);
+        st.add("table", table());
+        return st.render();
+    }
+
+    @Benchmark
+    public String createQuerySQL() {
+        return provider.createQuerySQL("benchmark_table", fields, false, ds, null, null, null);
+    }
+
+    private static SQLObj table() {
+        return SQLObj.builder().tableName("benchmark_table").tableAlias("t_a_0").build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SQLTemplateBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
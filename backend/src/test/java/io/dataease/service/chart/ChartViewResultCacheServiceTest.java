@@ -0,0 +1,130 @@
+package io.dataease.service.chart;
+
+import io.dataease.config.properties.ViewCacheProperties;
+import io.dataease.plugins.common.base.domain.Datasource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 视图结果缓存的并发加载
+ */
+public class ChartViewResultCacheServiceTest {
+
+    private static final String KEY = "key";
+
+    private static final String TABLE_ID = "table";
+
+    private ChartViewResultCacheService service;
+
+    private Datasource ds;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        service = new ChartViewResultCacheService();
+        ReflectionTestUtils.setField(service, "viewCacheProperties", new ViewCacheProperties());
+        service.init();
+        ds = new Datasource();
+        ds.setId("ds");
+        ds.setType("mysql");
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        int threads = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<List<String[]>> loader = () -> {
+            loads.incrementAndGet();
+            release.await();
+            return rows("a", "b");
+        };
+        List<Future<List<String[]>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> service.getOrLoad(KEY, loader, ds, true, null, TABLE_ID)));
+        }
+        awaitCoalesced(threads - 1);
+        release.countDown();
+        for (Future<List<String[]>> future : futures) {
+            List<String[]> result = future.get(5, TimeUnit.SECONDS);
+            assertEquals(2, result.size());
+            assertEquals("b", result.get(1)[0]);
+        }
+        assertEquals(1, loads.get());
+        assertNotNull(service.get(KEY));
+    }
+
+    @Test
+    public void loaderErrorReleasesWaiters() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Callable<List<String[]>> loader = () -> {
+            release.await();
+            throw new StackOverflowError("test");
+        };
+        Future<List<String[]>> first = executor.submit(() -> service.getOrLoad(KEY, loader, ds, true, null, TABLE_ID));
+        Future<List<String[]>> waiter = executor.submit(() -> service.getOrLoad(KEY, loader, ds, true, null, TABLE_ID));
+        awaitCoalesced(1);
+        release.countDown();
+        // 加载的请求和等待中的请求都以失败结束，而不是一直阻塞
+        assertTrue(rootCause(assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS))) instanceof StackOverflowError);
+        assertTrue(rootCause(assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS))) instanceof StackOverflowError);
+        assertNull(service.get(KEY));
+    }
+
+    @Test
+    public void invalidationDuringLoadIsNotCached() throws Exception {
+        List<String[]> result = service.getOrLoad(KEY, () -> {
+            service.invalidateDataset(TABLE_ID);
+            return rows("stale");
+        }, ds, true, null, TABLE_ID);
+        assertEquals("stale", result.get(0)[0]);
+        assertNull(service.get(KEY));
+
+        service.getOrLoad(KEY, () -> rows("fresh"), ds, true, null, TABLE_ID);
+        assertEquals("fresh", service.get(KEY).get(0)[0]);
+    }
+
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((Number) service.stats().get("coalescedCount")).longValue() < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("waiters did not join the in-flight load");
+            }
+            Thread.sleep(10);
+        }
+        // 计数在进入等待之前递增，留出时间进入 Future.get
+        Thread.sleep(50);
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private static List<String[]> rows(String... values) {
+        List<String[]> rows = new ArrayList<>();
+        for (String value : values) {
+            rows.add(new String[]{value});
+        }
+        return Collections.unmodifiableList(rows);
+    }
+}
@@ -0,0 +1,67 @@
+package io.dataease.service.chart.util;
+
+import io.dataease.plugins.common.dto.chart.ChartViewFieldDTO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 堆叠图形态的自定义排序基准：前置维度分组后对第二个维度按自定义值排序
+ * <p>
+ * 运行：mvn test-compile 后执行 main，或在 IDE 中直接运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChartCustomSortBenchmark {
+
+    @Param({"5000", "50000"})
+    private int rows;
+
+    @Param({"20", "200"})
+    private int customValues;
+
+    private List<ChartViewFieldDTO> fields;
+
+    private List<String[]> data;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> custom = new ArrayList<>();
+        for (int i = customValues - 1; i >= 0; i--) {
+            custom.add("v" + i);
+        }
+        ChartViewFieldDTO group = new ChartViewFieldDTO();
+        group.setSort("asc");
+        ChartViewFieldDTO stack = new ChartViewFieldDTO();
+        stack.setSort("custom_sort");
+        stack.setCustomSort(custom);
+        fields = Arrays.asList(group, stack);
+        data = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            // 少量值不在自定义列表中
+            data.add(new String[]{"g" + random.nextInt(50), "v" + random.nextInt(customValues + customValues / 10 + 1), String.valueOf(r)});
+        }
+    }
+
+    @Benchmark
+    public List<String[]> sort() {
+        return ChartCustomSort.sort(fields, data);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ChartCustomSortBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,152 @@
+package io.dataease.service.chart.util;
+
+import io.dataease.plugins.common.dto.chart.ChartViewFieldDTO;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 维度自定义排序，与逐个自定义值扫描数据的实现对比
+ */
+public class ChartCustomSortTest {
+
+    @Test
+    public void singleDimension() {
+        List<String[]> data = rows(new String[]{"b"}, new String[]{"x"}, new String[]{"A"}, new String[]{"c"}, new String[]{"a"});
+        List<String[]> result = ChartCustomSort.sort(Arrays.asList("a", "B"), data, 0);
+        assertEquals(Arrays.asList("A", "a", "b", "x", "c"), column(result, 0));
+    }
+
+    @Test
+    public void sortsWithinPrecedingGroups() {
+        List<ChartViewFieldDTO> fields = Arrays.asList(field("none", null), field("custom_sort", Arrays.asList("z", "y")));
+        List<String[]> data = rows(new String[]{"g1", "y"}, new String[]{"g2", "y"}, new String[]{"g1", "z"}, new String[]{"g2", "z"});
+        // 前置维度未排序时不参与分组，整体按自定义顺序排列
+        assertEquals(Arrays.asList("z", "z", "y", "y"), column(ChartCustomSort.sort(fields, data), 1));
+
+        fields.get(0).setSort("asc");
+        List<String[]> grouped = ChartCustomSort.sort(fields, data);
+        assertEquals(Arrays.asList("g1", "g1", "g2", "g2"), column(grouped, 0));
+        assertEquals(Arrays.asList("z", "y", "z", "y"), column(grouped, 1));
+    }
+
+    @Test
+    public void matchesScanImplementation() {
+        Random random = new Random(42);
+        String[] sorts = {"none", "asc", "custom_sort"};
+        for (int round = 0; round < 2000; round++) {
+            int dimensions = 1 + random.nextInt(3);
+            List<ChartViewFieldDTO> fields = new ArrayList<>();
+            for (int d = 0; d < dimensions; d++) {
+                String sort = sorts[random.nextInt(sorts.length)];
+                fields.add(field(sort, StringUtils.equals(sort, "custom_sort") ? customValues(random) : null));
+            }
+            List<String[]> data = new ArrayList<>();
+            int rows = random.nextInt(40);
+            for (int r = 0; r < rows; r++) {
+                String[] row = new String[dimensions];
+                for (int d = 0; d < dimensions; d++) {
+                    row[d] = value(random);
+                }
+                data.add(row);
+            }
+            List<String[]> expected = scanSort(fields, data);
+            List<String[]> actual = ChartCustomSort.sort(fields, data);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSame(expected.get(i), actual.get(i), "round " + round + ", row " + i);
+            }
+        }
+    }
+
+    /**
+     * 原有实现：按前置维度分组后，逐个自定义值扫描组内数据
+     */
+    private static List<String[]> scanSort(List<ChartViewFieldDTO> fields, List<String[]> data) {
+        List<String[]> res = new ArrayList<>(data);
+        for (int i = 0; i < fields.size(); i++) {
+            ChartViewFieldDTO item = fields.get(i);
+            if (!StringUtils.equalsIgnoreCase(item.getSort(), "custom_sort")) {
+                continue;
+            }
+            Map<List<String>, List<String[]>> map = new LinkedHashMap<>();
+            for (String[] d : res) {
+                List<String> key = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    if (!StringUtils.equalsIgnoreCase(fields.get(j).getSort(), "none")) {
+                        key.add(d[j]);
+                    }
+                }
+                map.computeIfAbsent(key, k -> new ArrayList<>()).add(d);
+            }
+            List<String[]> list = new ArrayList<>();
+            for (List<String[]> group : map.values()) {
+                list.addAll(scanSort(item.getCustomSort(), group, i));
+            }
+            res = list;
+        }
+        return res;
+    }
+
+    private static List<String[]> scanSort(List<String> custom, List<String[]> data, int index) {
+        List<String[]> res = new ArrayList<>();
+        Set<Integer> matched = new HashSet<>();
+        for (String ele : custom) {
+            for (int j = 0; j < data.size(); j++) {
+                if (StringUtils.equalsIgnoreCase(ele, data.get(j)[index])) {
+                    res.add(data.get(j));
+                    matched.add(j);
+                }
+            }
+        }
+        for (int j = 0; j < data.size(); j++) {
+            if (!matched.contains(j)) {
+                res.add(data.get(j));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 不含忽略大小写后重复的值，重复值在原有实现中会让同一行出现多次
+     */
+    private static List<String> customValues(Random random) {
+        List<String> values = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int size = random.nextInt(6);
+        for (int i = 0; i < size; i++) {
+            String value = value(random);
+            if (seen.add(value.toLowerCase())) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    private static String value(Random random) {
+        String value = String.valueOf((char) ('a' + random.nextInt(5)));
+        return random.nextBoolean() ? value.toUpperCase() : value;
+    }
+
+    private static ChartViewFieldDTO field(String sort, List<String> customSort) {
+        ChartViewFieldDTO field = new ChartViewFieldDTO();
+        field.setSort(sort);
+        field.setCustomSort(customSort);
+        return field;
+    }
+
+    private static List<String[]> rows(String[]... rows) {
+        return new ArrayList<>(Arrays.asList(rows));
+    }
+
+    private static List<String> column(List<String[]> rows, int index) {
+        List<String> values = new ArrayList<>();
+        for (String[] row : rows) {
+            values.add(row[index]);
+        }
+        return values;
+    }
+}
@@ -303,4 +303,43 @@ export function exportDataset(data) {
   })
 }
 
+export function exportDatasetTask(data) {
+  return request({
+    url: 'dataset/table/exportDatasetTask',
+    method: 'post',
+    data: data
+  })
+}
+
+export function exportDatasetTasks(tableId) {
+  return request({
+    url: 'dataset/table/exportDatasetTasks',
+    method: 'get',
+    params: { tableId }
+  })
+}
+
+export function exportDatasetTaskStatus(taskId) {
+  return request({
+    url: 'dataset/table/exportDatasetTask/' + taskId,
+    method: 'get'
+  })
+}
+
+export function cancelExportDatasetTask(taskId) {
+  return request({
+    url: 'dataset/table/exportDatasetTask/' + taskId + '/cancel',
+    method: 'post'
+  })
+}
+
+export function downloadExportDatasetTask(taskId) {
+  return request({
+    url: 'dataset/table/exportDatasetTask/' + taskId + '/download',
+    method: 'get',
+    loading: true,
+    responseType: 'blob'
+  })
+}
+
 export default { loadTable, getScene, addGroup, delGroup, addTable, delTable, groupTree, checkCustomDs, exportDataset }
@@ -58,11 +58,24 @@ export function groupTree(data, loading = true, timeout = 60000) {
   })
 }
 
-export function viewData(id, panelId, data) {
+export function viewData(id, panelId, data, queryScope) {
   return request({
     url: '/chart/view/getData/' + id + '/' + panelId,
     method: 'post',
     hideMsg: true,
+    queryScope,
+    data
+  })
+}
+
+export function batchViewData(panelId, data, onDownloadProgress) {
+  return request({
+    url: '/chart/view/batchGetData/' + panelId,
+    method: 'post',
+    hideMsg: true,
+    responseType: 'text',
+    transformResponse: [text => text],
+    onDownloadProgress,
     data
   })
 }
@@ -259,6 +272,54 @@ export function innerExportDetails(data) {
   })
 }
 
+export function exportDetailsTask(data) {
+  return request({
+    url: 'panel/group/exportDetailsTask',
+    method: 'post',
+    data: data
+  })
+}
+
+export function exportDetailsTaskStatus(taskId) {
+  return request({
+    url: 'panel/group/exportDetailsTask/' + taskId,
+    method: 'get',
+    loading: false
+  })
+}
+
+export function exportDetailsTaskDownload(taskId) {
+  return request({
+    url: 'panel/group/exportDetailsTask/' + taskId + '/download',
+    method: 'get',
+    responseType: 'blob'
+  })
+}
+
+export function innerExportDetailsTask(data) {
+  return request({
+    url: 'panel/group/innerExportDetailsTask',
+    method: 'post',
+    data: data
+  })
+}
+
+export function innerExportDetailsTaskStatus(taskId) {
+  return request({
+    url: 'panel/group/innerExportDetailsTask/' + taskId,
+    method: 'get',
+    loading: false
+  })
+}
+
+export function innerExportDetailsTaskDownload(taskId) {
+  return request({
+    url: 'panel/group/innerExportDetailsTask/' + taskId + '/download',
+    method: 'get',
+    responseType: 'blob'
+  })
+}
+
 export function updatePanelStatus(panelId, param) {
   return request({
     url: '/panel/group/updatePanelStatus/' + panelId,
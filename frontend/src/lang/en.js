@@ -1805,6 +1805,17 @@ export default {
     export_dataset: 'Export',
     filename: 'Filename',
     export_filter: 'Filter',
+    export_file_type: 'File type',
+    export_in_background: 'Export in background',
+    export_task_submitted: 'Export task submitted, the file will be downloaded when finished',
+    export_task_failed: 'Export failed',
+    export_tasks: 'Export tasks',
+    export_task_file: 'File',
+    export_task_status: 'Status',
+    export_task_running: 'Exporting, {0} rows exported',
+    export_task_completed: 'Completed',
+    export_task_cancelled: 'Cancelled',
+    export_task_download: 'Download',
     pls_input_filename: 'Please input filename',
     calc_tips: {
       tip1: 'The expression syntax should follow the database syntax corresponding to the data source.',
@@ -1925,6 +1936,23 @@ export default {
     isUseJsonPath: 'Specify JsonPath or not',
     path_all_info: 'Please fill in the full address',
     jsonpath_info: 'Please fill in JsonPath',
+    api_pagination: 'Pagination',
+    api_pagination_none: 'None',
+    api_pagination_offset: 'Offset',
+    api_pagination_page: 'Page number',
+    api_pagination_cursor: 'Cursor',
+    api_pagination_next_link: 'Next page link',
+    api_page_size: 'Page size',
+    api_offset_param: 'Offset parameter',
+    api_limit_param: 'Limit parameter',
+    api_page_param: 'Page parameter',
+    api_start_page: 'Start page',
+    api_cursor_param: 'Cursor parameter',
+    api_cursor_path: 'Cursor JsonPath',
+    api_next_link_path: 'Next link JsonPath',
+    api_max_pages: 'Max pages',
+    api_concurrency: 'Concurrent requests',
+    api_rate_limit: 'Requests per second (0 for unlimited)',
     req_param: 'Request parameters',
     headers: 'Request header',
     query_param: "QUERY param",
@@ -1799,6 +1799,17 @@ export default {
     export_dataset: '數據集導出',
     filename: '文件名稱',
     export_filter: '篩選條件',
+    export_file_type: '導出格式',
+    export_in_background: '後台導出',
+    export_task_submitted: '導出任務已提交，完成後自動下載',
+    export_task_failed: '導出失敗',
+    export_tasks: '導出任務',
+    export_task_file: '文件',
+    export_task_status: '狀態',
+    export_task_running: '導出中，已導出 {0} 行',
+    export_task_completed: '已完成',
+    export_task_cancelled: '已取消',
+    export_task_download: '下載',
     pls_input_filename: '請輸入文件名稱',
     calc_tips: {
       tip1: '表達式語法請遵循該數據源對應的數據庫語法。',
@@ -1919,6 +1930,23 @@ export default {
     isUseJsonPath: '是否指定JsonPath',
     path_all_info: '請輸入完整地址',
     jsonpath_info: '請輸入JsonPath',
+    api_pagination: '分頁',
+    api_pagination_none: '不分頁',
+    api_pagination_offset: '偏移量',
+    api_pagination_page: '頁碼',
+    api_pagination_cursor: '游標',
+    api_pagination_next_link: '下一頁地址',
+    api_page_size: '每頁條數',
+    api_offset_param: '偏移量參數名',
+    api_limit_param: '條數參數名',
+    api_page_param: '頁碼參數名',
+    api_start_page: '起始頁碼',
+    api_cursor_param: '游標參數名',
+    api_cursor_path: '游標路徑',
+    api_next_link_path: '下一頁地址路徑',
+    api_max_pages: '最大頁數',
+    api_concurrency: '並發請求數',
+    api_rate_limit: '每秒請求數上限(0 不限制)',
     req_param: '請求參數',
     headers: '請求頭',
     query_param: "QUERY參數",
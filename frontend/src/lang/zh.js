@@ -1813,6 +1813,17 @@ export default {
     export_dataset: '数据集导出',
     filename: '文件名称',
     export_filter: '筛选条件',
+    export_file_type: '导出格式',
+    export_in_background: '后台导出',
+    export_task_submitted: '导出任务已提交，完成后自动下载',
+    export_task_failed: '导出失败',
+    export_tasks: '导出任务',
+    export_task_file: '文件',
+    export_task_status: '状态',
+    export_task_running: '导出中，已导出 {0} 行',
+    export_task_completed: '已完成',
+    export_task_cancelled: '已取消',
+    export_task_download: '下载',
     pls_input_filename: '请输入文件名称',
     calc_tips: {
       tip1: '表达式语法请遵循该数据源对应的数据库语法。',
@@ -1933,6 +1944,23 @@ export default {
     isUseJsonPath: '是否指定JsonPath',
     path_all_info: '请填入完整地址',
     jsonpath_info: '请填入JsonPath',
+    api_pagination: '分页',
+    api_pagination_none: '不分页',
+    api_pagination_offset: '偏移量',
+    api_pagination_page: '页码',
+    api_pagination_cursor: '游标',
+    api_pagination_next_link: '下一页地址',
+    api_page_size: '每页条数',
+    api_offset_param: '偏移量参数名',
+    api_limit_param: '条数参数名',
+    api_page_param: '页码参数名',
+    api_start_page: '起始页码',
+    api_cursor_param: '游标参数名',
+    api_cursor_path: '游标路径',
+    api_next_link_path: '下一页地址路径',
+    api_max_pages: '最大页数',
+    api_concurrency: '并发请求数',
+    api_rate_limit: '每秒请求数上限(0 不限制)',
     req_param: '请求参数',
     headers: '请求头',
     query_param: "QUERY參數",
@@ -0,0 +1,39 @@
+/**
+ * 后台导出任务：轮询任务状态，完成后下载文件
+ *
+ * @param taskId   任务 id
+ * @param status   查询任务状态的接口
+ * @param download 下载导出文件的接口
+ * @param filename 保存的文件名
+ */
+export function waitExportTask(taskId, status, download, filename, interval = 2000) {
+  return new Promise((resolve, reject) => {
+    const poll = () => {
+      status(taskId).then(res => {
+        const task = res.data
+        if (task.status === 'Completed') {
+          download(taskId).then(file => {
+            saveExportFile(file, filename)
+            resolve(task)
+          }).catch(reject)
+        } else if (task.status === 'Error' || task.status === 'Cancelled') {
+          reject(task)
+        } else {
+          setTimeout(poll, interval)
+        }
+      }).catch(reject)
+    }
+    setTimeout(poll, interval)
+  })
+}
+
+export function saveExportFile(data, filename) {
+  const blob = new Blob([data], { type: filename.endsWith('.csv') ? 'text/csv' : 'application/vnd.ms-excel' })
+  const link = document.createElement('a')
+  link.style.display = 'none'
+  link.href = URL.createObjectURL(blob)
+  link.download = filename // 下载的文件名
+  document.body.appendChild(link)
+  link.click()
+  document.body.removeChild(link)
+}
@@ -48,6 +48,10 @@ let service = axios.create({
   timeout: time ? time * 1000 : 10000
 })
 
+// 当前标签页的取数客户端 id，加上发起请求的组件实例(queryScope)后，同一组件对同一视图的新请求会取消旧请求
+const queryClientId = Date.now().toString(36) + Math.random().toString(36).substring(2, 10)
+let querySeq = 0
+
 // request interceptor
 service.interceptors.request.use(
   config => {
@@ -73,6 +77,9 @@ service.interceptors.request.use(
       const lang = i18n.locale.replace('_', '-')
       config.headers['Accept-Language'] = lang
     }
+    if (config.url && config.url.indexOf('/chart/view/getData/') > -1) {
+      config.headers['DE-QUERY-ID'] = queryClientId + (config.queryScope ? '.' + config.queryScope : '') + ':' + (++querySeq)
+    }
     config.loading && tryShowLoading(store.getters.currentPath)
 
     config.cancelToken = new CancelToken(function executor(c) {
@@ -0,0 +1,75 @@
+import { batchViewData } from '@/api/panel/panel'
+
+// 同一仪表板在短时间内发起的视图取数合并为一个批量请求，服务端每完成一个视图返回一行结果
+const BATCH_DELAY = 20
+const batches = {}
+
+/**
+ * 与 viewData 的返回一致：成功时为 { success: true, data }，单个视图失败时为 { success: false, message }
+ */
+export function queueViewData(id, panelId, data) {
+  return new Promise((resolve, reject) => {
+    let batch = batches[panelId]
+    if (batch && batch.views[id]) {
+      // 同一视图再次取数时先发出已收集的请求
+      sendBatch(panelId)
+      batch = null
+    }
+    if (!batch) {
+      batch = batches[panelId] = { views: {}, callbacks: {}, proxy: data.proxy }
+      batch.timer = setTimeout(() => sendBatch(panelId), BATCH_DELAY)
+    }
+    batch.views[id] = data
+    batch.callbacks[id] = { resolve, reject }
+  })
+}
+
+function sendBatch(panelId) {
+  const batch = batches[panelId]
+  delete batches[panelId]
+  clearTimeout(batch.timer)
+  const settled = {}
+  let offset = 0
+  const settle = line => {
+    if (!line.trim()) {
+      return
+    }
+    const result = JSON.parse(line)
+    const callback = batch.callbacks[result.viewId]
+    if (!callback || settled[result.viewId]) {
+      return
+    }
+    settled[result.viewId] = true
+    callback.resolve(result.error ? { success: false, message: result.error } : { success: true, data: result.data })
+  }
+  const readLines = (text, finished) => {
+    let end
+    while ((end = text.indexOf('\n', offset)) > -1) {
+      settle(text.substring(offset, end))
+      offset = end + 1
+    }
+    if (finished && offset < text.length) {
+      settle(text.substring(offset))
+      offset = text.length
+    }
+  }
+  const pending = () => Object.keys(batch.callbacks).filter(id => !settled[id])
+  batchViewData(panelId, { views: batch.views, proxy: batch.proxy }, event => {
+    const xhr = event.target || event.currentTarget
+    if (xhr && typeof xhr.responseText === 'string') {
+      readLines(xhr.responseText, false)
+    }
+  }).then(text => {
+    readLines(typeof text === 'string' ? text : '', true)
+    pending().forEach(id => batch.callbacks[id].resolve({ success: false, message: '' }))
+  }).catch(err => {
+    if (err.response && typeof err.response.data === 'string') {
+      try {
+        err.response.data = JSON.parse(err.response.data)
+      } catch (e) {
+        err.response.data = { message: err.response.data }
+      }
+    }
+    pending().forEach(id => batch.callbacks[id].reject(err))
+  })
+}